@@ -0,0 +1,24 @@
+package com.electricity.forecast.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Chạy JMH với GC profiler mặc định (gc.alloc.rate và gc.alloc.rate.norm trong kết quả).
+ * Mọi tham số dòng lệnh của JMH vẫn dùng được, ví dụ {@code -p rows=10000 Preprocessing};
+ * truyền -prof khác để thay profiler.
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {}
+
+    public static void main(String[] args) throws Exception {
+        List<String> options = new ArrayList<>(Arrays.asList(args));
+        if (!options.contains("-prof")) {
+            options.add(0, "-prof");
+            options.add(1, "gc");
+        }
+        org.openjdk.jmh.Main.main(options.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,154 @@
+package com.electricity.forecast.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Sinh dữ liệu phụ tải theo giờ có thể tái lập (cùng seed cho cùng dữ liệu, không cần mạng hay file mẫu).
+ * Chuỗi gồm mùa vụ ngày, tuần và năm, ảnh hưởng nhiệt độ, nhiễu AR(1), cùng những gì dữ liệu thật có:
+ * ô trống, giờ bị mất, ngoại lệ, và nhiều định dạng thời gian / số thập phân trong cùng một file.
+ * n dòng đầu luôn giống nhau với mọi n, nên kết quả ở các kích thước khác nhau so sánh được.
+ */
+public final class SyntheticLoadCurve {
+
+    public static final String TIME_COLUMN = "time";
+    public static final String TARGET_COLUMN = "total load actual";
+    public static final String TEMPERATURE_COLUMN = "temperature";
+    public static final String HOLIDAY_COLUMN = "holiday";
+
+    private static final LocalDateTime START = LocalDateTime.of(2015, 1, 1, 0, 0);
+
+    // Các định dạng bộ tiền xử lý nhận được; đổi định dạng theo từng khối 1000 dòng
+    private static final DateTimeFormatter[] TIME_FORMATS = {
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"),
+        DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss"),
+        DateTimeFormatter.ISO_LOCAL_DATE_TIME,
+        DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss")
+    };
+
+    private static final double MISSING_VALUE_RATE = 0.005;
+    private static final double MISSING_HOUR_RATE = 0.002;
+    private static final double OUTLIER_RATE = 0.001;
+
+    /**
+     * Một dòng: load là null khi ô bị trống
+     */
+    public record Sample(LocalDateTime time, Double load, double temperature, boolean holiday, int format) {}
+
+    private final long seed;
+
+    public SyntheticLoadCurve(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Duyệt n dòng theo thứ tự thời gian
+     */
+    public void forEach(int rows, Consumer<Sample> consumer) {
+        SplittableRandom random = new SplittableRandom(seed);
+        LocalDateTime time = START;
+        double noise = 0;
+        for (int i = 0; i < rows; i++) {
+            // Giờ bị mất: timestamp nhảy qua một giờ
+            if (random.nextDouble() < MISSING_HOUR_RATE) {
+                time = time.plusHours(1);
+            }
+
+            int hour = time.getHour();
+            int dayOfYear = time.getDayOfYear();
+            boolean weekend = time.getDayOfWeek() == DayOfWeek.SATURDAY || time.getDayOfWeek() == DayOfWeek.SUNDAY;
+            boolean holiday = dayOfYear == 1 || (time.getMonthValue() == 12 && time.getDayOfMonth() == 25);
+
+            double temperature = 15 - 9 * Math.cos(2 * Math.PI * (dayOfYear - 20) / 365.0)
+                    - 4 * Math.cos(2 * Math.PI * (hour - 3) / 24.0) + random.nextGaussian() * 1.5;
+            noise = 0.8 * noise + random.nextGaussian() * 250;
+
+            double load = 25000
+                    - 4000 * Math.cos(2 * Math.PI * (hour - 3) / 24.0)
+                    - 1200 * Math.cos(4 * Math.PI * (hour - 3) / 24.0)
+                    - (weekend ? 2500 : 0)
+                    - (holiday ? 3500 : 0)
+                    + 1500 * Math.cos(2 * Math.PI * dayOfYear / 365.0)
+                    + 60 * Math.abs(temperature - 18)
+                    + noise;
+
+            if (random.nextDouble() < OUTLIER_RATE) {
+                load = random.nextBoolean() ? load * (2 + random.nextDouble()) : load * 0.05;
+            }
+            Double value = random.nextDouble() < MISSING_VALUE_RATE ? null : Math.round(load * 10) / 10.0;
+
+            consumer.accept(new Sample(time, value, Math.round(temperature * 100) / 100.0, holiday,
+                    (i / 1000) % TIME_FORMATS.length));
+            time = time.plusHours(1);
+        }
+    }
+
+    /**
+     * Chuỗi mục tiêu cho huấn luyện mô hình (ô trống lấy giá trị trước đó)
+     */
+    public double[] series(int rows) {
+        double[] series = new double[rows];
+        int[] index = {0};
+        double[] last = {25000};
+        forEach(rows, sample -> {
+            if (sample.load() != null) last[0] = sample.load();
+            series[index[0]++] = last[0];
+        });
+        return series;
+    }
+
+    /**
+     * Các dòng như ForecastService.readCSV trả về: số thập phân là Double, số nguyên là Long,
+     * thời gian là chuỗi, ô trống là null
+     */
+    public List<Map<String, Object>> rows(int rows) {
+        List<Map<String, Object>> data = new ArrayList<>(rows);
+        forEach(rows, sample -> {
+            Map<String, Object> row = new HashMap<>();
+            row.put(TIME_COLUMN, TIME_FORMATS[sample.format()].format(sample.time()));
+            row.put(TARGET_COLUMN, sample.load());
+            row.put(TEMPERATURE_COLUMN, sample.temperature());
+            row.put(HOLIDAY_COLUMN, sample.holiday() ? 1L : 0L);
+            data.add(row);
+        });
+        return data;
+    }
+
+    /**
+     * File CSV tương ứng; khối định dạng thứ hai ghi phụ tải có dấu phẩy thập phân trong ngoặc kép
+     */
+    public void writeCsv(Path file, int rows) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(TIME_COLUMN + "," + TARGET_COLUMN + "," + TEMPERATURE_COLUMN + "," + HOLIDAY_COLUMN);
+            writer.newLine();
+            IOException[] failure = {null};
+            forEach(rows, sample -> {
+                if (failure[0] != null) return;
+                try {
+                    writer.write(TIME_FORMATS[sample.format()].format(sample.time()));
+                    writer.write(',');
+                    if (sample.load() != null) {
+                        String load = Double.toString(sample.load());
+                        writer.write(sample.format() == 1 ? "\"" + load.replace('.', ',') + "\"" : load);
+                    }
+                    writer.write(',');
+                    writer.write(Double.toString(sample.temperature()));
+                    writer.write(',');
+                    writer.write(sample.holiday() ? "1" : "0");
+                    writer.newLine();
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) throw failure[0];
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.electricity.forecast.engine;
+
+import com.electricity.forecast.benchmark.SyntheticLoadCurve;
+import com.electricity.forecast.engine.lstm.LstmConfig;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Phần tính toán của ForecastService.generateForecast khi cache trượt: dự báo điểm
+ * và khoảng P10/P50/P90 (bootstrap 1000 đường) cho mỗi mô hình. Chi phí phụ thuộc horizon,
+ * không phụ thuộc độ dài chuỗi huấn luyện.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ForecastBenchmark {
+
+    private static final int TRAINING_ROWS = 10_000;
+    private static final int INTERVAL_PATHS = 1000;
+
+    @Param({"24", "168", "8760"})
+    public int horizon;
+
+    private FittedModel holtWinters;
+    private FittedModel lstm;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        TrainingData data = new TrainingData(new SyntheticLoadCurve(42).series(TRAINING_ROWS),
+                SyntheticLoadCurve.TARGET_COLUMN);
+        holtWinters = new HoltWintersEngine().fit(data);
+        lstm = new LstmEngine().fit(data, new LstmConfig());
+    }
+
+    @Benchmark
+    public void forecastHoltWinters(Blackhole blackhole) {
+        forecast(holtWinters, HoltWintersEngine.KEY, blackhole);
+    }
+
+    @Benchmark
+    public void forecastLstm(Blackhole blackhole) {
+        forecast(lstm, LstmEngine.KEY, blackhole);
+    }
+
+    private void forecast(FittedModel model, String key, Blackhole blackhole) {
+        double[] point = model.predict(horizon);
+        blackhole.consume(point);
+        blackhole.consume(PredictionIntervals.bootstrap(point, model.getResiduals(), INTERVAL_PATHS,
+                PredictionIntervals.DEFAULT_QUANTILES, key.hashCode()));
+    }
+}
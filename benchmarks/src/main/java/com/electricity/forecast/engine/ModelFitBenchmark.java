@@ -0,0 +1,44 @@
+package com.electricity.forecast.engine;
+
+import com.electricity.forecast.benchmark.SyntheticLoadCurve;
+import com.electricity.forecast.engine.lstm.LstmConfig;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Huấn luyện Holt-Winters và LSTM (cấu hình mặc định) trên chuỗi tổng hợp.
+ * ARIMA chỉ mô phỏng thời gian huấn luyện nên không đo.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ModelFitBenchmark {
+
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    private TrainingData data;
+    private HoltWintersEngine holtWinters;
+    private LstmEngine lstm;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = new TrainingData(new SyntheticLoadCurve(42).series(rows), SyntheticLoadCurve.TARGET_COLUMN);
+        holtWinters = new HoltWintersEngine();
+        lstm = new LstmEngine();
+    }
+
+    @Benchmark
+    public FittedModel fitHoltWinters() {
+        return holtWinters.fit(data);
+    }
+
+    @Benchmark
+    public FittedModel fitLstm() {
+        return lstm.fit(data, new LstmConfig());
+    }
+}
@@ -0,0 +1,197 @@
+package com.electricity.forecast.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Độ trễ (HdrHistogram, 3 chữ số có nghĩa, tối đa 10 phút) và số lỗi theo từng loại request.
+ * File báo cáo JSON có cùng cấu trúc giữa các lần chạy nên so sánh được (--baseline).
+ */
+final class LatencyReport {
+
+    private static final long MAX_LATENCY = TimeUnit.MINUTES.toNanos(10);
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private static final class Stats {
+        final Histogram latency = new ConcurrentHistogram(MAX_LATENCY, 3);
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+        final Map<String, AtomicLong> errorKinds = new ConcurrentHashMap<>();
+    }
+
+    private final Map<LoadTest.Operation, Stats> stats = new EnumMap<>(LoadTest.Operation.class);
+    private double elapsedSeconds;
+
+    LatencyReport(Collection<LoadTest.Operation> operations) {
+        for (LoadTest.Operation operation : operations) {
+            stats.put(operation, new Stats());
+        }
+    }
+
+    void succeeded(LoadTest.Operation operation, long latencyNanos) {
+        stats.get(operation).latency.recordValue(Math.min(latencyNanos, MAX_LATENCY));
+    }
+
+    /**
+     * Request lỗi vẫn được tính vào độ trễ: lỗi nhanh không được làm đẹp phân phối
+     */
+    void failed(LoadTest.Operation operation, long latencyNanos, String kind) {
+        Stats operationStats = stats.get(operation);
+        operationStats.latency.recordValue(Math.min(latencyNanos, MAX_LATENCY));
+        operationStats.errors.incrementAndGet();
+        operationStats.errorKinds.computeIfAbsent(kind, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    void dropped(LoadTest.Operation operation) {
+        stats.get(operation).dropped.incrementAndGet();
+    }
+
+    void finish(double elapsedSeconds) {
+        this.elapsedSeconds = elapsedSeconds;
+    }
+
+    Map<String, Object> toMap() {
+        Map<String, Object> operations = new LinkedHashMap<>();
+        Histogram all = new Histogram(MAX_LATENCY, 3);
+        long errors = 0;
+        long dropped = 0;
+        for (Map.Entry<LoadTest.Operation, Stats> entry : stats.entrySet()) {
+            Stats operationStats = entry.getValue();
+            // Bản sao ổn định: request về trễ sau thời gian chờ vẫn có thể đang ghi
+            Histogram latency = operationStats.latency.copy();
+            Map<String, Object> operation = summarize(latency, operationStats.errors.get(),
+                    operationStats.dropped.get());
+            Map<String, Long> kinds = new TreeMap<>();
+            operationStats.errorKinds.forEach((kind, count) -> kinds.put(kind, count.get()));
+            operation.put("errorKinds", kinds);
+            operations.put(entry.getKey().name().toLowerCase(), operation);
+
+            all.add(latency);
+            errors += operationStats.errors.get();
+            dropped += operationStats.dropped.get();
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("total", summarize(all, errors, dropped));
+        report.put("operations", operations);
+        return report;
+    }
+
+    private Map<String, Object> summarize(Histogram histogram, long errors, long dropped) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        long count = histogram.getTotalCount();
+        summary.put("count", count);
+        summary.put("errors", errors);
+        summary.put("dropped", dropped);
+        summary.put("throughput", round(count / Math.max(elapsedSeconds, 1e-9)));
+
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("mean", millis(histogram.getMean()));
+        for (double percentile : PERCENTILES) {
+            latency.put(label(percentile), millis(histogram.getValueAtPercentile(percentile)));
+        }
+        latency.put("max", millis(histogram.getMaxValue()));
+        summary.put("latencyMs", latency);
+        return summary;
+    }
+
+    void print(PrintStream out) {
+        Map<String, Object> report = toMap();
+        out.printf("%-10s %8s %7s %8s %9s %9s %9s %9s %9s%n",
+                "operation", "count", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        @SuppressWarnings("unchecked")
+        Map<String, Map<String, Object>> operations = (Map<String, Map<String, Object>>) report.get("operations");
+        operations.forEach((name, summary) -> printRow(out, name, summary));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> total = (Map<String, Object>) report.get("total");
+        printRow(out, "total", total);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void printRow(PrintStream out, String name, Map<String, Object> summary) {
+        Map<String, Object> latency = (Map<String, Object>) summary.get("latencyMs");
+        out.printf("%-10s %8d %7d %8.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n", name, summary.get("count"),
+                summary.get("errors"), summary.get("throughput"), latency.get("p50"), latency.get("p90"),
+                latency.get("p99"), latency.get("p99.9"), latency.get("max"));
+    }
+
+    void write(Path file, Map<String, Object> config) throws IOException {
+        Map<String, Object> document = new LinkedHashMap<>();
+        document.put("createdAt", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        document.put("java", System.getProperty("java.version"));
+        document.put("processors", Runtime.getRuntime().availableProcessors());
+        document.put("config", config);
+        document.put("elapsedSeconds", round(elapsedSeconds));
+        document.putAll(toMap());
+
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), document);
+    }
+
+    /**
+     * So với một báo cáo trước: thông lượng và p50/p99 theo từng loại request
+     */
+    @SuppressWarnings("unchecked")
+    void compare(Path baselineFile, PrintStream out) throws IOException {
+        Map<String, Object> baseline = new ObjectMapper().readValue(baselineFile.toFile(), Map.class);
+        Map<String, Object> current = toMap();
+
+        Map<String, Map<String, Object>> rows = new LinkedHashMap<>((Map<String, Map<String, Object>>) current.get("operations"));
+        rows.put("total", (Map<String, Object>) current.get("total"));
+        Map<String, Map<String, Object>> baseRows = new LinkedHashMap<>();
+        if (baseline.get("operations") instanceof Map) {
+            baseRows.putAll((Map<String, Map<String, Object>>) baseline.get("operations"));
+        }
+        if (baseline.get("total") instanceof Map) {
+            baseRows.put("total", (Map<String, Object>) baseline.get("total"));
+        }
+
+        out.println("Compared with " + baselineFile + ":");
+        out.printf("%-10s %18s %22s %22s%n", "operation", "req/s", "p50 ms", "p99 ms");
+        rows.forEach((name, summary) -> {
+            Map<String, Object> base = baseRows.get(name);
+            if (base == null) {
+                out.printf("%-10s (not in baseline)%n", name);
+                return;
+            }
+            Map<String, Object> latency = (Map<String, Object>) summary.get("latencyMs");
+            Map<String, Object> baseLatency = (Map<String, Object>) base.get("latencyMs");
+            out.printf("%-10s %18s %22s %22s%n", name,
+                    delta(base.get("throughput"), summary.get("throughput")),
+                    delta(baseLatency.get("p50"), latency.get("p50")),
+                    delta(baseLatency.get("p99"), latency.get("p99")));
+        });
+    }
+
+    private static String delta(Object before, Object after) {
+        double from = ((Number) before).doubleValue();
+        double to = ((Number) after).doubleValue();
+        String change = from == 0 ? "n/a" : String.format("%+.1f%%", (to - from) * 100 / from);
+        return String.format("%.1f -> %.1f (%s)", from, to, change);
+    }
+
+    private static String label(double percentile) {
+        return percentile == Math.rint(percentile) ? "p" + (int) percentile : "p" + percentile;
+    }
+
+    private static double millis(double nanos) {
+        return Math.round(nanos / 1e4) / 100.0;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
@@ -0,0 +1,287 @@
+package com.electricity.forecast.loadtest;
+
+import com.electricity.forecast.ForecastApplication;
+import com.electricity.forecast.benchmark.SyntheticLoadCurve;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Tải HTTP vòng hở (open-loop) lên ứng dụng: request thứ i được lên lịch tại t0 + i/rps bất kể
+ * các request trước đã xong chưa, và độ trễ tính từ thời điểm dự kiến đó chứ không phải lúc gửi thật.
+ * Khi server chậm, thời gian chờ trong hàng đợi vẫn được tính (tránh coordinated omission).
+ *
+ * Mặc định khởi động ứng dụng trong cùng tiến trình trên cổng ngẫu nhiên; --url để đo server có sẵn.
+ * Trước khi đo: tải dữ liệu tổng hợp và huấn luyện một mô hình vào workspace "loadtest".
+ * Upload trong lúc đo đi vào workspace "loadtest-ingest" để dự báo ở workspace chính luôn có mô hình;
+ * train huấn luyện lại ở workspace chính (xóa cache dự báo như khi dùng thật).
+ */
+public final class LoadTest {
+
+    enum Operation { FORECAST, SUMMARY, UPLOAD, TRAIN }
+
+    private static final String WORKSPACE = "loadtest";
+    private static final String INGEST_WORKSPACE = "loadtest-ingest";
+    private static final String BOUNDARY = "----loadtest-boundary";
+    private static final String DEFAULT_MIX = "forecast=85,summary=10,upload=3,train=2";
+
+    private final Map<String, String> options;
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    private String baseUrl;
+    private byte[] uploadBody;
+
+    private LoadTest(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoadTest(parseOptions(args)).run();
+    }
+
+    private void run() throws Exception {
+        double rps = Double.parseDouble(option("rps", "20"));
+        int durationSeconds = Integer.parseInt(option("duration", "30"));
+        int warmupSeconds = Integer.parseInt(option("warmup", "5"));
+        int rows = Integer.parseInt(option("rows", "2000"));
+        int hours = Integer.parseInt(option("hours", "24"));
+        int maxInFlight = Integer.parseInt(option("max-in-flight", "1000"));
+        String model = option("model", "holtwinters");
+        Map<Operation, Integer> mix = parseMix(option("mix", DEFAULT_MIX));
+        Path reportFile = Paths.get(option("report", "target/loadtest/report-"
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json"));
+
+        ConfigurableApplicationContext app = null;
+        Path dataDir = null;
+        if (options.containsKey("url")) {
+            baseUrl = options.get("url").replaceAll("/+$", "");
+        } else {
+            // CSV tải lên, snapshot và log của ứng dụng nhúng nằm trong thư mục tạm, xóa khi kết thúc
+            dataDir = Files.createTempDirectory("loadtest-data");
+            // Tham số dòng lệnh (không phải properties mặc định) để ghi đè application.properties
+            app = new SpringApplicationBuilder(ForecastApplication.class)
+                    .run("--server.port=0",
+                            "--forecast.storage.upload-dir=" + dataDir.resolve("uploads"),
+                            "--forecast.workspace.snapshot-dir=" + dataDir.resolve("workspaces"),
+                            "--logging.file.name=" + dataDir.resolve("application.log"));
+            baseUrl = "http://localhost:" + ((WebServerApplicationContext) app).getWebServer().getPort();
+        }
+
+        try {
+            uploadBody = multipartCsv(rows);
+            setUp(model);
+
+            System.out.printf("Load test against %s: %.1f req/s for %ds (+%ds warm-up), mix %s%n",
+                    baseUrl, rps, durationSeconds, warmupSeconds, mix);
+            LatencyReport report = drive(rps, durationSeconds, warmupSeconds, mix, maxInFlight, hours, model);
+
+            Map<String, Object> config = new LinkedHashMap<>();
+            config.put("target", options.containsKey("url") ? baseUrl : "embedded");
+            config.put("rps", rps);
+            config.put("durationSeconds", durationSeconds);
+            config.put("warmupSeconds", warmupSeconds);
+            config.put("mix", option("mix", DEFAULT_MIX));
+            config.put("rows", rows);
+            config.put("hours", hours);
+            config.put("model", model);
+            config.put("maxInFlight", maxInFlight);
+
+            report.print(System.out);
+            report.write(reportFile, config);
+            System.out.println("Report written to " + reportFile.toAbsolutePath());
+            if (options.containsKey("baseline")) {
+                report.compare(Paths.get(options.get("baseline")), System.out);
+            }
+        } finally {
+            if (app != null) app.close();
+            if (dataDir != null) deleteRecursively(dataDir);
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /**
+     * Dữ liệu và mô hình cho workspace chính; thất bại ở đây thì không đo
+     */
+    private void setUp(String model) throws IOException, InterruptedException {
+        for (HttpRequest request : List.of(request(Operation.UPLOAD, WORKSPACE, 0, model),
+                request(Operation.TRAIN, WORKSPACE, 0, model))) {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200 || !isSuccess(response.body())) {
+                throw new IllegalStateException("Set-up request " + request.uri() + " failed: "
+                        + response.statusCode() + " " + abbreviate(response.body()));
+            }
+        }
+    }
+
+    private LatencyReport drive(double rps, int durationSeconds, int warmupSeconds, Map<Operation, Integer> mix,
+                                int maxInFlight, int hours, String model) throws InterruptedException {
+        LatencyReport report = new LatencyReport(mix.keySet());
+        Operation[] schedule = weightedSchedule(mix);
+        SplittableRandom random = new SplittableRandom(42);
+        Semaphore inFlight = new Semaphore(maxInFlight);
+
+        long interval = Math.round(1e9 / rps);
+        long start = System.nanoTime();
+        long measureFrom = start + warmupSeconds * 1_000_000_000L;
+        long end = measureFrom + durationSeconds * 1_000_000_000L;
+
+        for (long i = 0; ; i++) {
+            long intended = start + i * interval;
+            if (intended >= end) break;
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            Operation operation = schedule[random.nextInt(schedule.length)];
+            boolean measured = intended >= measureFrom;
+            // Giới hạn bộ nhớ phía client: quá nhiều request treo thì bỏ lượt này và ghi nhận
+            if (!inFlight.tryAcquire()) {
+                if (measured) report.dropped(operation);
+                continue;
+            }
+            String workspace = operation == Operation.UPLOAD ? INGEST_WORKSPACE : WORKSPACE;
+            client.sendAsync(request(operation, workspace, hours, model), HttpResponse.BodyHandlers.ofString())
+                    .whenComplete((response, failure) -> {
+                        long latency = System.nanoTime() - intended;
+                        try {
+                            if (!measured) return;
+                            if (failure != null) {
+                                report.failed(operation, latency, "exception");
+                            } else if (response.statusCode() >= 400 || !isSuccess(response.body())) {
+                                report.failed(operation, latency, String.valueOf(response.statusCode()));
+                            } else {
+                                report.succeeded(operation, latency);
+                            }
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+        }
+
+        // Chờ các request còn dở, tối đa 60 giây
+        if (!inFlight.tryAcquire(maxInFlight, 60, TimeUnit.SECONDS)) {
+            System.err.println("Some requests did not complete within 60s after the run");
+        }
+        report.finish((System.nanoTime() - measureFrom) / 1e9);
+        return report;
+    }
+
+    private HttpRequest request(Operation operation, String workspace, int hours, String model) {
+        String prefix = baseUrl + "/workspaces/" + workspace;
+        HttpRequest.Builder builder = switch (operation) {
+            case FORECAST -> HttpRequest.newBuilder(URI.create(prefix + "/forecast?hours=" + hours)).GET();
+            case SUMMARY -> HttpRequest.newBuilder(URI.create(prefix + "/summary")).GET();
+            case UPLOAD -> HttpRequest.newBuilder(URI.create(prefix + "/upload"))
+                    .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(uploadBody));
+            case TRAIN -> HttpRequest.newBuilder(URI.create(prefix + "/train/" + model))
+                    .POST(HttpRequest.BodyPublishers.noBody());
+        };
+        return builder.timeout(Duration.ofMinutes(5)).build();
+    }
+
+    private static byte[] multipartCsv(int rows) throws IOException {
+        Path csv = Files.createTempFile("loadtest-", ".csv");
+        try {
+            new SyntheticLoadCurve(42).writeCsv(csv, rows);
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            body.write(("--" + BOUNDARY + "\r\n"
+                    + "Content-Disposition: form-data; name=\"file\"; filename=\"loadtest.csv\"\r\n"
+                    + "Content-Type: text/csv\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            body.write(Files.readAllBytes(csv));
+            body.write(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+            return body.toByteArray();
+        } finally {
+            Files.deleteIfExists(csv);
+        }
+    }
+
+    /**
+     * Mọi endpoint trả lỗi nghiệp vụ bằng "success": false trong body JSON
+     */
+    private static boolean isSuccess(String body) {
+        return !body.contains("\"success\":false");
+    }
+
+    private static String abbreviate(String body) {
+        return body.length() > 200 ? body.substring(0, 200) + "..." : body;
+    }
+
+    private static Operation[] weightedSchedule(Map<Operation, Integer> mix) {
+        List<Operation> schedule = new ArrayList<>();
+        mix.forEach((operation, weight) -> schedule.addAll(Collections.nCopies(weight, operation)));
+        return schedule.toArray(new Operation[0]);
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("mix entries must look like forecast=85: " + part);
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight > 0) weights.put(Operation.valueOf(pair[0].trim().toUpperCase()), weight);
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("mix needs at least one operation with a positive weight");
+        }
+        return weights;
+    }
+
+    private String option(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    /**
+     * --name value hoặc --name=value
+     */
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            }
+            String name = args[i].substring(2);
+            int equals = name.indexOf('=');
+            if (equals >= 0) {
+                options.put(name.substring(0, equals), name.substring(equals + 1));
+            } else if (i + 1 < args.length) {
+                options.put(name, args[++i]);
+            } else {
+                throw new IllegalArgumentException("Missing value for --" + name);
+            }
+        }
+        return options;
+    }
+}
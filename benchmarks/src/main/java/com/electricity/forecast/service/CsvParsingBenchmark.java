@@ -0,0 +1,59 @@
+package com.electricity.forecast.service;
+
+import com.electricity.forecast.benchmark.SyntheticLoadCurve;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Đọc CSV: parseCSVLine trên mọi dòng của file, và readCSV nguyên vẹn.
+ * readCSV được gọi với giới hạn bằng {@code rows} (ứng dụng mặc định dừng ở forecast.upload.max-rows = 10 000)
+ * để đo việc đọc cả file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class CsvParsingBenchmark {
+
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    private Path file;
+    private ForecastService forecastService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("load-" + rows + "-", ".csv");
+        new SyntheticLoadCurve(42).writeCsv(file, rows);
+        forecastService = new ForecastService();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void parseCsvLines(Blackhole blackhole) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                blackhole.consume(forecastService.parseCSVLine(line));
+            }
+        }
+    }
+
+    @Benchmark
+    public Object readCsv() throws IOException {
+        return forecastService.readCSV(file.toString(), () -> {}, rows);
+    }
+}
@@ -0,0 +1,115 @@
+package com.electricity.forecast.service;
+
+import com.electricity.forecast.benchmark.SyntheticLoadCurve;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Từng bước của DataPreprocessor, toàn bộ preprocessData, analyzeData và getPreprocessingInfo.
+ * Đầu vào của mỗi bước là đầu ra của bước trước, tính một lần khi khởi tạo.
+ * Dữ liệu dạng Map mỗi dòng rất tốn bộ nhớ: 10 triệu dòng cần heap lớn (-jvmArgs -Xmx...).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class PreprocessingBenchmark {
+
+    private static final String TARGET = SyntheticLoadCurve.TARGET_COLUMN;
+
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    private DataPreprocessor preprocessor;
+    private ForecastService forecastService;
+
+    private List<Map<String, Object>> raw;
+    private List<Map<String, Object>> cleaned;
+    private List<Map<String, Object>> timed;
+    private List<Map<String, Object>> imputed;
+    private List<Map<String, Object>> withoutOutliers;
+    private List<Map<String, Object>> withFeatures;
+    private List<Map<String, Object>> processed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        preprocessor = new DataPreprocessor();
+        forecastService = new ForecastService();
+
+        raw = new SyntheticLoadCurve(42).rows(rows);
+        cleaned = preprocessor.cleanBasicData(raw);
+        timed = preprocessor.normalizeTimeColumn(copy(cleaned));
+        imputed = preprocessor.handleMissingValues(timed, TARGET);
+        withoutOutliers = preprocessor.handleOutliers(imputed, TARGET);
+        withFeatures = preprocessor.createTimeFeatures(withoutOutliers);
+        processed = preprocessor.normalizeNumericalData(withFeatures, TARGET);
+    }
+
+    /**
+     * normalizeTimeColumn sửa và sắp xếp các dòng tại chỗ, nên mỗi lần đo cần bản sao mới
+     */
+    @State(Scope.Thread)
+    public static class TimeInput {
+        List<Map<String, Object>> rows;
+
+        @Setup(Level.Invocation)
+        public void copyRows(PreprocessingBenchmark benchmark) {
+            rows = copy(benchmark.cleaned);
+        }
+    }
+
+    private static List<Map<String, Object>> copy(List<Map<String, Object>> data) {
+        List<Map<String, Object>> copy = new ArrayList<>(data.size());
+        for (Map<String, Object> row : data) copy.add(new HashMap<>(row));
+        return copy;
+    }
+
+    @Benchmark
+    public Object cleanBasicData() {
+        return preprocessor.cleanBasicData(raw);
+    }
+
+    @Benchmark
+    public Object normalizeTimeColumn(TimeInput input) {
+        return preprocessor.normalizeTimeColumn(input.rows);
+    }
+
+    @Benchmark
+    public Object handleMissingValues() {
+        return preprocessor.handleMissingValues(timed, TARGET);
+    }
+
+    @Benchmark
+    public Object handleOutliers() {
+        return preprocessor.handleOutliers(imputed, TARGET);
+    }
+
+    @Benchmark
+    public Object createTimeFeatures() {
+        return preprocessor.createTimeFeatures(withoutOutliers);
+    }
+
+    @Benchmark
+    public Object normalizeNumericalData() {
+        return preprocessor.normalizeNumericalData(withFeatures, TARGET);
+    }
+
+    @Benchmark
+    public Object preprocessData() {
+        return preprocessor.preprocessData(raw, TARGET);
+    }
+
+    @Benchmark
+    public Object analyzeData() {
+        return forecastService.analyzeData(processed);
+    }
+
+    @Benchmark
+    public Object preprocessingInfo() {
+        return preprocessor.getPreprocessingInfo(raw, processed, TARGET);
+    }
+}
@@ -1,32 +1,82 @@
 package com.electricity.forecast.controller;
 
+import com.electricity.forecast.model.BatchForecastRequest;
 import com.electricity.forecast.model.ForecastResult;
+import com.electricity.forecast.service.BatchForecastService;
+import com.electricity.forecast.service.ColumnarEncoder;
 import com.electricity.forecast.service.ForecastService;
+import com.electricity.forecast.service.LiveIngestService;
+import com.electricity.forecast.service.PipelineProfiler;
+import com.electricity.forecast.service.SeriesQueryService;
+import com.electricity.forecast.service.WorkspaceManager;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * Mọi endpoint dữ liệu có hai dạng: /workspaces/{workspace}/... cho workspace có tên,
+ * và đường dẫn cũ (không tiền tố) dùng workspace "default".
+ */
 @Controller
 public class ForecastController {
     
     @Autowired
     private ForecastService forecastService;
     
+    @Autowired
+    private BatchForecastService batchForecastService;
+    
+    @Autowired
+    private SeriesQueryService seriesQueryService;
+    
+    @Autowired
+    private PipelineProfiler pipelineProfiler;
+    
+    @Autowired
+    private LiveIngestService liveIngestService;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    // Phiên bản bắt đầu lại từ đầu khi khởi động lại, nên ETag kèm mã của tiến trình
+    private final String instanceTag = Long.toString(System.currentTimeMillis(), 36);
+    
     @GetMapping("/")
     public String home(Model model) {
         model.addAttribute("pageTitle", "Energy Consumption Forecast");
         return "index";
     }
     
-    @PostMapping("/upload")
+    /**
+     * mode=replace (mặc định) thay bộ dữ liệu; mode=append nối các dòng mới hơn vào bộ dữ liệu hiện có
+     */
+    @PostMapping({"/upload", "/workspaces/{workspace}/upload"})
     @ResponseBody
-    public Map<String, Object> uploadFile(@RequestParam("file") MultipartFile file) {
+    public Map<String, Object> uploadFile(@PathVariable(name = "workspace", required = false) String workspace,
+                                          @RequestParam("file") MultipartFile file,
+                                          @RequestParam(name = "mode", defaultValue = "replace") String mode) {
+        if (!mode.equals("replace") && !mode.equals("append")) {
+            throw new IllegalArgumentException("mode must be 'replace' or 'append'");
+        }
         try {
-            return forecastService.uploadData(file);
+            return mode.equals("append")
+                ? forecastService.appendData(workspace, file)
+                : forecastService.uploadData(workspace, file);
         } catch (Exception e) {
             return Map.of(
                 "success", false,
@@ -35,33 +85,284 @@ public class ForecastController {
         }
     }
     
-    @GetMapping("/summary")
+    /**
+     * Số đo trực tiếp: một số đo {"timestamp", "value"}, một mảng, hoặc {"readings": [...]}
+     */
+    @PostMapping({"/ingest", "/workspaces/{workspace}/ingest"})
     @ResponseBody
-    public Map<String, Object> getSummary() {
-        return forecastService.getDataSummary();
+    public Map<String, Object> ingest(@PathVariable(name = "workspace", required = false) String workspace,
+                                      @RequestBody JsonNode readings) {
+        return liveIngestService.ingest(workspace, readings);
     }
     
-    @PostMapping("/train/lstm")
+    @GetMapping({"/live", "/workspaces/{workspace}/live"})
     @ResponseBody
-    public Map<String, Object> trainLSTM() {
-        return forecastService.trainLSTMModel();
+    public Map<String, Object> getLiveStatus(@PathVariable(name = "workspace", required = false) String workspace,
+                                             @RequestParam(defaultValue = "20") int limit) {
+        return liveIngestService.status(workspace, limit);
     }
     
-    @PostMapping("/train/arima")
+    /**
+     * SSE: dự báo ngắn hạn mỗi khi được làm mới ("forecast") và số đo ngoài khoảng dự báo ("flag")
+     */
+    @GetMapping(value = {"/live/subscribe", "/workspaces/{workspace}/live/subscribe"},
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeLive(@PathVariable(name = "workspace", required = false) String workspace) {
+        return liveIngestService.subscribe(workspace);
+    }
+    
+    /**
+     * ETag theo phiên bản dữ liệu: If-None-Match khớp thì trả về 304 mà không dựng lại tóm tắt
+     */
+    @GetMapping({"/summary", "/workspaces/{workspace}/summary"})
     @ResponseBody
-    public Map<String, Object> trainARIMA() {
-        return forecastService.trainARIMAModel();
+    public Map<String, Object> getSummary(@PathVariable(name = "workspace", required = false) String workspace,
+                                          WebRequest request) {
+        // ETag và nội dung lấy từ cùng một snapshot
+        return forecastService.withSnapshot(workspace, snapshot ->
+            request.checkNotModified(etag("d", snapshot.getDatasetVersion())) ? null : forecastService.getDataSummary(snapshot));
     }
     
-    @GetMapping("/forecast")
+    /**
+     * ACF/PACF tới {@code lags} và {@code top} chu kỳ trội của cột mục tiêu; ETag theo phiên bản dữ liệu
+     */
+    @GetMapping({"/diagnostics", "/workspaces/{workspace}/diagnostics"})
     @ResponseBody
-    public ForecastResult getForecast(@RequestParam(defaultValue = "24") int hours) {
-        return forecastService.generateForecast(hours);
+    public Map<String, Object> getDiagnostics(@PathVariable(name = "workspace", required = false) String workspace,
+                                              @RequestParam(defaultValue = "168") int lags,
+                                              @RequestParam(defaultValue = "5") int top,
+                                              WebRequest request) {
+        return forecastService.withSnapshot(workspace, snapshot ->
+            request.checkNotModified(etag("a", snapshot.getDatasetVersion())) ? null
+                : forecastService.getDiagnostics(snapshot, lags, top));
+    }
+    
+    /**
+     * Dữ liệu lịch sử trong khoảng thời gian, phân trang bằng cursor (nextCursor của trang trước).
+     * maxPoints giảm cả khoảng xuống tối đa maxPoints điểm cho biểu đồ.
+     */
+    @GetMapping({"/series", "/workspaces/{workspace}/series"})
+    @ResponseBody
+    public Map<String, Object> querySeries(@PathVariable(name = "workspace", required = false) String workspace,
+                                           @RequestParam(required = false) String from,
+                                           @RequestParam(required = false) String to,
+                                           @RequestParam(required = false) String columns,
+                                           @RequestParam(required = false) Integer limit,
+                                           @RequestParam(required = false) String cursor,
+                                           @RequestParam(required = false) Integer maxPoints) {
+        return seriesQueryService.query(workspace, from, to, columns, limit, cursor, maxPoints);
+    }
+    
+    /**
+     * /series dạng nhị phân dạng cột khi Accept là {@value ColumnarEncoder#MEDIA_TYPE};
+     * tổng số dòng và cursor trang sau nằm trong header X-Total-Count và X-Next-Cursor
+     */
+    @GetMapping(value = {"/series", "/workspaces/{workspace}/series"}, produces = ColumnarEncoder.MEDIA_TYPE)
+    public ResponseEntity<byte[]> querySeriesColumnar(@PathVariable(name = "workspace", required = false) String workspace,
+                                                      @RequestParam(required = false) String from,
+                                                      @RequestParam(required = false) String to,
+                                                      @RequestParam(required = false) String columns,
+                                                      @RequestParam(required = false) Integer limit,
+                                                      @RequestParam(required = false) String cursor,
+                                                      @RequestParam(required = false) Integer maxPoints,
+                                                      @RequestParam(defaultValue = "float") String precision) {
+        try {
+            ColumnarEncoder encoder = new ColumnarEncoder(isDoublePrecision(precision));
+            SeriesQueryService.Page page = seriesQueryService.encode(workspace, from, to, columns, limit, cursor,
+                maxPoints, encoder);
+            if (page == null) {
+                return jsonError(HttpStatus.CONFLICT, "No data loaded");
+            }
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(ColumnarEncoder.MEDIA_TYPE))
+                .header("X-Total-Count", String.valueOf(page.total()));
+            if (page.nextCursor() != null) {
+                response.header("X-Next-Cursor", page.nextCursor());
+            }
+            return response.body(encoder.toByteArray());
+        } catch (IllegalArgumentException e) {
+            return jsonError(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+    
+    @GetMapping({"/models", "/workspaces/{workspace}/models"})
+    @ResponseBody
+    public List<Map<String, Object>> listModels(@PathVariable(name = "workspace", required = false) String workspace) {
+        return forecastService.listModels(workspace);
+    }
+    
+    @PostMapping({"/train", "/workspaces/{workspace}/train"})
+    @ResponseBody
+    public Map<String, Object> trainAll(@PathVariable(name = "workspace", required = false) String workspace) {
+        return forecastService.trainAllModels(workspace);
+    }
+    
+    @PostMapping({"/train/lstm/search", "/workspaces/{workspace}/train/lstm/search"})
+    @ResponseBody
+    public Map<String, Object> searchLstm(@PathVariable(name = "workspace", required = false) String workspace,
+                                          @RequestBody(required = false) Map<String, Object> searchSpace) {
+        return forecastService.searchLstmHyperparameters(workspace, searchSpace);
+    }
+    
+    @PostMapping({"/train/{model}", "/workspaces/{workspace}/train/{model}"})
+    @ResponseBody
+    public Map<String, Object> trainModel(@PathVariable(name = "workspace", required = false) String workspace,
+                                          @PathVariable("model") String model) {
+        return forecastService.trainModel(workspace, model);
+    }
+    
+    /**
+     * maxPoints (tùy chọn) giảm mỗi chuỗi dự báo xuống tối đa maxPoints điểm cho biểu đồ
+     */
+    @GetMapping({"/forecast", "/workspaces/{workspace}/forecast"})
+    @ResponseBody
+    public ForecastResult getForecast(@PathVariable(name = "workspace", required = false) String workspace,
+                                      @RequestParam(defaultValue = "24") int hours,
+                                      @RequestParam(required = false) Integer maxPoints) {
+        return forecastService.generateForecast(workspace, hours, maxPoints);
+    }
+    
+    /**
+     * Dự báo dạng nhị phân dạng cột khi Accept là {@value ColumnarEncoder#MEDIA_TYPE} (JSON vẫn là mặc định)
+     */
+    @GetMapping(value = {"/forecast", "/workspaces/{workspace}/forecast"}, produces = ColumnarEncoder.MEDIA_TYPE)
+    public ResponseEntity<byte[]> getForecastColumnar(@PathVariable(name = "workspace", required = false) String workspace,
+                                                      @RequestParam(defaultValue = "24") int hours,
+                                                      @RequestParam(required = false) Integer maxPoints,
+                                                      @RequestParam(defaultValue = "float") String precision) {
+        try {
+            byte[] body = forecastService.encodeForecast(workspace, hours, maxPoints, isDoublePrecision(precision));
+            return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(ColumnarEncoder.MEDIA_TYPE))
+                .body(body);
+        } catch (IllegalArgumentException e) {
+            return jsonError(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IllegalStateException e) {
+            return jsonError(HttpStatus.CONFLICT, e.getMessage());
+        }
+    }
+    
+    /**
+     * Dự báo dạng luồng: NDJSON mặc định, SSE khi format=sse hoặc Accept: text/event-stream
+     */
+    @GetMapping({"/forecast/stream", "/workspaces/{workspace}/forecast/stream"})
+    public ResponseEntity<StreamingResponseBody> streamForecast(
+            @PathVariable(name = "workspace", required = false) String workspace,
+            @RequestParam(defaultValue = "24") int hours,
+            @RequestParam(required = false) String format,
+            @RequestHeader(name = "Accept", required = false) String accept) {
+        String workspaceId = WorkspaceManager.normalize(workspace);
+        forecastService.validateHours(hours);
+        boolean sse = "sse".equalsIgnoreCase(format)
+            || (format == null && accept != null && accept.contains(MediaType.TEXT_EVENT_STREAM_VALUE));
+        
+        StreamingResponseBody body = output -> forecastService.streamForecast(workspaceId, hours, sse, output);
+        return ResponseEntity.ok()
+            .contentType(sse ? MediaType.TEXT_EVENT_STREAM : MediaType.APPLICATION_NDJSON)
+            .header("Cache-Control", "no-cache")
+            .header("X-Accel-Buffering", "no")
+            .body(body);
+    }
+    
+    /**
+     * Nhiều công việc dự báo (workspace, mô hình, số giờ, lịch sử tùy chọn) trong một request
+     */
+    @PostMapping("/forecast/batch")
+    @ResponseBody
+    public Map<String, Object> batchForecast(@RequestBody BatchForecastRequest request) {
+        return batchForecastService.run(request);
+    }
+    
+    @GetMapping({"/forecast/cache", "/workspaces/{workspace}/forecast/cache"})
+    @ResponseBody
+    public Map<String, Object> getForecastCacheStats(@PathVariable(name = "workspace", required = false) String workspace) {
+        return forecastService.getForecastCacheStats(workspace);
+    }
+    
+    /**
+     * ETag theo phiên bản mô hình, như /summary
+     */
+    @GetMapping({"/compare", "/workspaces/{workspace}/compare"})
+    @ResponseBody
+    public Map<String, Object> compareModels(@PathVariable(name = "workspace", required = false) String workspace,
+                                             WebRequest request) {
+        return forecastService.withSnapshot(workspace, snapshot ->
+            request.checkNotModified(etag("m", snapshot.getModelVersion())) ? null : forecastService.compareModels(snapshot));
+    }
+    
+    /**
+     * Các lần chạy pipeline gần nhất (upload, train, forecast) với số đo từng bước, mới nhất trước
+     */
+    @GetMapping("/pipeline/runs")
+    @ResponseBody
+    public Map<String, Object> getPipelineRuns(@RequestParam(name = "kind", required = false) String kind,
+                                               @RequestParam(name = "limit", defaultValue = "20") int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        List<Map<String, Object>> runs = pipelineProfiler.recent(kind, limit);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("success", true);
+        result.put("capacity", pipelineProfiler.getCapacity());
+        result.put("count", runs.size());
+        result.put("runs", runs);
+        return result;
+    }
+    
+    /**
+     * Ngân sách bộ nhớ chung của mọi workspace
+     */
+    @GetMapping("/memory")
+    @ResponseBody
+    public Map<String, Object> getMemoryStats() {
+        return forecastService.getMemoryStats();
+    }
+    
+    @GetMapping("/workspaces")
+    @ResponseBody
+    public List<Map<String, Object>> listWorkspaces() {
+        return forecastService.listWorkspaces();
+    }
+    
+    @DeleteMapping("/workspaces/{workspace}")
+    @ResponseBody
+    public Map<String, Object> deleteWorkspace(@PathVariable("workspace") String workspace) throws Exception {
+        Map<String, Object> result = forecastService.deleteWorkspace(workspace);
+        if (Boolean.TRUE.equals(result.get("success"))) {
+            liveIngestService.forget(workspace);
+        }
+        return result;
+    }
+    
+    private String etag(String kind, long version) {
+        return "\"" + kind + version + "-" + instanceTag + "\"";
+    }
+    
+    private static boolean isDoublePrecision(String precision) {
+        if ("double".equalsIgnoreCase(precision)) return true;
+        if ("float".equalsIgnoreCase(precision)) return false;
+        throw new IllegalArgumentException("precision must be 'float' or 'double'");
+    }
+    
+    /**
+     * Lỗi của endpoint nhị phân vẫn trả về JSON {success, message} như các endpoint khác
+     */
+    private ResponseEntity<byte[]> jsonError(HttpStatus status, String message) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(Map.of("success", false, "message", message));
+            return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON).body(body);
+        } catch (JsonProcessingException e) {
+            return ResponseEntity.status(status).build();
+        }
     }
     
-    @GetMapping("/compare")
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
     @ResponseBody
-    public Map<String, Object> compareModels() {
-        return forecastService.compareModels();
+    public Map<String, Object> handleBadRequest(IllegalArgumentException e) {
+        return Map.of(
+            "success", false,
+            "message", e.getMessage()
+        );
     }
 }
\ No newline at end of file
@@ -0,0 +1,70 @@
+package com.electricity.forecast.engine;
+
+import com.electricity.forecast.model.ModelMetrics;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Component
+@Order(2)
+public class ArimaEngine extends SimulatedForecastEngine {
+
+    /**
+     * Bậc p, q lớn nhất khi gợi ý bậc từ ACF/PACF
+     */
+    public static final int MAX_ORDER = 5;
+
+    /**
+     * Bậc gợi ý chỉ để tham khảo: engine ARIMA mô phỏng không ước lượng mô hình theo bậc này
+     */
+    public static final String ORDER_NOTE = "Suggested from ACF/PACF only; the simulated ARIMA engine does not fit this order";
+
+    @Override
+    public String getKey() { return "arima"; }
+
+    @Override
+    public String getName() { return "ARIMA"; }
+
+    @Override
+    protected long simulatedTrainingMillis() { return 1000; }
+
+    @Override
+    protected double[] errorFactors() { return new double[] {1.2, 1.4}; }
+
+    @Override
+    protected ModelMetrics fallbackMetrics() { return metrics(180.2, 245.8, 10.3, 1.2); }
+
+    /**
+     * Bậc (p, d, q) và chu kỳ mùa vụ gợi ý từ ACF/PACF đã lưu của bộ dữ liệu, ghi kèm lưu ý rằng
+     * dự báo mô phỏng không dùng bậc này
+     */
+    @Override
+    protected Map<String, Object> fitParameters(TrainingData data) {
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        parameters.put("suggestedOrder", orderMap(data.diagnostics().suggestedArimaOrder(MAX_ORDER)));
+        return parameters;
+    }
+
+    /**
+     * {p, d, q, seasonalPeriod, note} của bậc gợi ý, dùng chung cho tham số mô hình và trang chẩn đoán
+     */
+    public static Map<String, Object> orderMap(SeriesDiagnostics.ArimaOrder order) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("p", order.p());
+        map.put("d", order.d());
+        map.put("q", order.q());
+        map.put("seasonalPeriod", order.seasonalPeriod());
+        map.put("note", ORDER_NOTE);
+        return map;
+    }
+
+    @Override
+    protected double simulate(double lastValue, int step) {
+        // ARIMA forecast with different pattern (độ bất định nằm ở khoảng dự báo, không cộng nhiễu vào điểm)
+        double hourOfDay = (step % 24);
+        return lastValue * (0.97 + 0.06 * Math.cos(hourOfDay * Math.PI / 12))
+             + 40 * Math.cos(step * 0.15) + 20;
+    }
+}
@@ -0,0 +1,83 @@
+package com.electricity.forecast.engine;
+
+import com.electricity.forecast.model.ModelMetrics;
+
+import java.io.IOException;
+
+/**
+ * Mô hình đã huấn luyện: dự báo, tuần tự hóa và các chỉ số đánh giá.
+ */
+public interface FittedModel {
+
+    /**
+     * Nhận từng bước dự báo (step bắt đầu từ 0) ngay khi bước đó được tính xong
+     */
+    @FunctionalInterface
+    interface StepSink {
+        void accept(int step, double value) throws IOException;
+    }
+
+    String getEngineKey();
+
+    /**
+     * Dự báo h bước tiếp theo sau quan sát cuối cùng của dữ liệu huấn luyện
+     */
+    double[] predict(int horizon);
+
+    /**
+     * Dự báo từng bước mà không giữ cả chuỗi trong bộ nhớ. Mặc định tính hết rồi phát lần lượt;
+     * các engine đệ quy ghi đè để phát mỗi bước ngay khi tính xong.
+     */
+    default void predictStepwise(int horizon, StepSink sink) throws IOException {
+        double[] values = predict(horizon);
+        for (int step = 0; step < values.length; step++) {
+            sink.accept(step, values[step]);
+        }
+    }
+
+    /**
+     * Mô hình có dự báo được từ lịch sử của chuỗi khác (không phải chuỗi huấn luyện) hay không
+     */
+    default boolean supportsContexts() {
+        return false;
+    }
+
+    /**
+     * Dự báo cho nhiều chuỗi ngữ cảnh (thang gốc) bằng cùng mô hình trong một lần gọi
+     */
+    default double[][] predictBatch(double[][] contexts, int horizon) {
+        throw new UnsupportedOperationException(getEngineKey() + " can only forecast its own training series");
+    }
+
+    /**
+     * Số quan sát cuối cùng của ngữ cảnh mà mô hình dùng khi dự báo từ chuỗi khác (0 nếu không hỗ trợ)
+     */
+    default int contextLength() {
+        return 0;
+    }
+
+    /**
+     * Như {@link #predictStepwise(int, StepSink)} nhưng từ một chuỗi ngữ cảnh khác (chỉ khi {@link #supportsContexts()})
+     */
+    default void predictStepwise(double[] context, int horizon, StepSink sink) throws IOException {
+        double[] values = predictBatch(new double[][] {context}, horizon)[0];
+        for (int step = 0; step < values.length; step++) {
+            sink.accept(step, values[step]);
+        }
+    }
+
+    /**
+     * Sai số (thực tế - dự báo) trên tập kiểm tra, theo thứ tự thời gian; dùng để bootstrap khoảng dự báo
+     */
+    double[] getResiduals();
+
+    byte[] serialize() throws IOException;
+
+    ModelMetrics getMetrics();
+
+    /**
+     * Trả tài nguyên ngoài heap (nếu có) khi mô hình bị thay thế hoặc workspace rời bộ nhớ;
+     * mô hình không được dùng nữa sau đó
+     */
+    default void release() {}
+}
@@ -0,0 +1,30 @@
+package com.electricity.forecast.engine;
+
+import java.io.IOException;
+
+/**
+ * SPI cho một loại mô hình dự báo. Mỗi engine là một Spring bean và được
+ * {@link ModelRegistry} tự động phát hiện, nên thêm mô hình mới không cần sửa ForecastService.
+ */
+public interface ForecastEngine {
+
+    /**
+     * Khóa dùng trong URL và JSON, ví dụ "lstm"
+     */
+    String getKey();
+
+    /**
+     * Tên hiển thị, ví dụ "LSTM"
+     */
+    String getName();
+
+    /**
+     * Huấn luyện trên dữ liệu dùng chung (chỉ đọc). Có thể được gọi song song với các engine khác.
+     */
+    FittedModel fit(TrainingData data) throws Exception;
+
+    /**
+     * Khôi phục mô hình đã huấn luyện từ {@link FittedModel#serialize()}
+     */
+    FittedModel deserialize(byte[] bytes) throws IOException;
+}
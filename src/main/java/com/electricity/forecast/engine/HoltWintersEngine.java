@@ -0,0 +1,102 @@
+package com.electricity.forecast.engine;
+
+import com.electricity.forecast.model.ModelMetrics;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * Engine Holt-Winters: rẻ, O(n) cho mỗi lần đánh giá, phù hợp cho các chuỗi nhỏ.
+ */
+@Component
+@Order(3)
+public class HoltWintersEngine implements ForecastEngine {
+
+    public static final String KEY = "holtwinters";
+
+    @Override
+    public String getKey() { return KEY; }
+
+    @Override
+    public String getName() { return "HoltWinters"; }
+
+    @Override
+    public FittedModel fit(TrainingData data) {
+        double[] series = data.values();
+        if (series.length < 8) {
+            throw new IllegalArgumentException("Not enough numeric values in target column for Holt-Winters");
+        }
+
+        System.out.println("Training Holt-Winters model with " + series.length + " observations");
+        long start = System.nanoTime();
+
+        // 1. Đánh giá trên tập kiểm tra (phần cuối chuỗi)
+        int holdout = ModelEvaluation.holdoutSize(series.length);
+        double[] train = Arrays.copyOf(series, series.length - holdout);
+        double[] predicted = HoltWintersModel.fit(train).forecast(holdout);
+
+        // 2. Huấn luyện lại trên toàn bộ chuỗi để dự báo
+        HoltWintersModel model = HoltWintersModel.fit(series);
+        double trainingTime = (System.nanoTime() - start) / 1e9;
+
+        ModelMetrics metrics = ModelEvaluation.computeMetrics(getName(), series, series.length - holdout, predicted);
+        metrics.setTrainingTime(Math.round(trainingTime * 1000.0) / 1000.0);
+        metrics.setParameters(model.getParameters());
+
+        double[] residuals = ModelEvaluation.residuals(series, series.length - holdout, predicted);
+        return new Fitted(model, metrics, residuals);
+    }
+
+    @Override
+    public FittedModel deserialize(byte[] bytes) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            ModelMetrics metrics = ModelEvaluation.readMetrics(in);
+            HoltWintersModel model = HoltWintersModel.readFrom(in);
+            return new Fitted(model, metrics, ModelEvaluation.readArray(in));
+        }
+    }
+
+    private static final class Fitted implements FittedModel {
+        private final HoltWintersModel model;
+        private final ModelMetrics metrics;
+        private final double[] residuals;
+
+        Fitted(HoltWintersModel model, ModelMetrics metrics, double[] residuals) {
+            this.model = model;
+            this.metrics = metrics;
+            this.residuals = residuals;
+        }
+
+        @Override
+        public String getEngineKey() { return KEY; }
+
+        @Override
+        public double[] predict(int horizon) { return model.forecast(horizon); }
+
+        @Override
+        public void predictStepwise(int horizon, StepSink sink) throws IOException {
+            for (int h = 1; h <= horizon; h++) {
+                sink.accept(h - 1, model.forecastAt(h));
+            }
+        }
+
+        @Override
+        public double[] getResiduals() { return residuals; }
+
+        @Override
+        public byte[] serialize() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                ModelEvaluation.writeMetrics(out, metrics);
+                model.writeTo(out);
+                ModelEvaluation.writeArray(out, residuals);
+            }
+            return bytes.toByteArray();
+        }
+
+        @Override
+        public ModelMetrics getMetrics() { return metrics; }
+    }
+}
@@ -0,0 +1,338 @@
+package com.electricity.forecast.engine;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Mô hình Holt-Winters (triple exponential smoothing) với mùa vụ kép: theo ngày (24h) và theo tuần (168h).
+ * Mỗi lần đánh giá hàm mất mát là một vòng lặp O(n) trên mảng primitive, tham số được tối ưu bằng Nelder-Mead.
+ */
+public class HoltWintersModel {
+
+    public static final int DAILY_PERIOD = 24;
+    public static final int WEEKLY_PERIOD = 168;
+
+    // Hệ số giảm dần xu hướng (damped trend) để dự báo dài không bị "bay"
+    private static final double PHI = 0.98;
+    private static final int MAX_ITERATIONS = 300;
+
+    private final double alpha;
+    private final double beta;
+    private final double gamma;
+    private final double delta;
+    private final int dailyPeriod;
+    private final int weeklyPeriod;
+
+    // Trạng thái sau khi đã quét hết chuỗi
+    private double level;
+    private double trend;
+    private double[] daily;
+    private double[] weekly;
+    private int observations;
+
+    private HoltWintersModel(double[] params, int dailyPeriod, int weeklyPeriod) {
+        this.alpha = params[0];
+        this.beta = params[1];
+        this.gamma = dailyPeriod > 0 ? params[2] : 0;
+        this.delta = weeklyPeriod > 0 ? params[3] : 0;
+        this.dailyPeriod = dailyPeriod;
+        this.weeklyPeriod = weeklyPeriod;
+    }
+
+    /**
+     * Huấn luyện: chọn mùa vụ theo độ dài chuỗi, tối ưu tham số theo SSE dự báo một bước, rồi quét lại để lấy trạng thái cuối.
+     */
+    public static HoltWintersModel fit(double[] series) {
+        if (series == null || series.length < 4) {
+            throw new IllegalArgumentException("Holt-Winters needs at least 4 observations");
+        }
+
+        int dailyPeriod = series.length >= 2 * DAILY_PERIOD ? DAILY_PERIOD : 0;
+        int weeklyPeriod = series.length >= 2 * WEEKLY_PERIOD ? WEEKLY_PERIOD : 0;
+
+        SmoothingState state = new SmoothingState(dailyPeriod, weeklyPeriod);
+        double[] best = optimize(series, state);
+
+        HoltWintersModel model = new HoltWintersModel(best, dailyPeriod, weeklyPeriod);
+        state.run(series, best);
+        model.level = state.level;
+        model.trend = state.trend;
+        model.daily = state.daily.clone();
+        model.weekly = state.weekly.clone();
+        model.observations = series.length;
+        return model;
+    }
+
+    /**
+     * Dự báo h bước tiếp theo từ trạng thái cuối.
+     */
+    public double[] forecast(int horizon) {
+        double[] result = new double[horizon];
+        for (int h = 1; h <= horizon; h++) {
+            result[h - 1] = forecastAt(h);
+        }
+        return result;
+    }
+
+    /**
+     * Dự báo riêng bước h (bắt đầu từ 1) với O(1) phép tính: tổng xu hướng tắt dần
+     * phi + phi^2 + ... + phi^h có dạng đóng nên không cần tính các bước trước.
+     */
+    public double forecastAt(int h) {
+        double damped = PHI * (1 - Math.pow(PHI, h)) / (1 - PHI);
+        double value = level + damped * trend;
+        int last = observations - 1;
+        if (dailyPeriod > 0) value += daily[(last + h) % dailyPeriod];
+        if (weeklyPeriod > 0) value += weekly[(last + h) % weeklyPeriod];
+        return value;
+    }
+
+    public Map<String, Object> getParameters() {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("alpha", Math.round(alpha * 10000.0) / 10000.0);
+        params.put("beta", Math.round(beta * 10000.0) / 10000.0);
+        params.put("gamma", Math.round(gamma * 10000.0) / 10000.0);
+        params.put("delta", Math.round(delta * 10000.0) / 10000.0);
+        params.put("dailyPeriod", dailyPeriod);
+        params.put("weeklyPeriod", weeklyPeriod);
+        return params;
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeDouble(alpha);
+        out.writeDouble(beta);
+        out.writeDouble(gamma);
+        out.writeDouble(delta);
+        out.writeInt(dailyPeriod);
+        out.writeInt(weeklyPeriod);
+        out.writeDouble(level);
+        out.writeDouble(trend);
+        out.writeInt(observations);
+        writeArray(out, daily);
+        writeArray(out, weekly);
+    }
+
+    public static HoltWintersModel readFrom(DataInputStream in) throws IOException {
+        double[] params = {in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble()};
+        HoltWintersModel model = new HoltWintersModel(params, in.readInt(), in.readInt());
+        model.level = in.readDouble();
+        model.trend = in.readDouble();
+        model.observations = in.readInt();
+        model.daily = readArray(in);
+        model.weekly = readArray(in);
+        return model;
+    }
+
+    private static void writeArray(DataOutputStream out, double[] values) throws IOException {
+        out.writeInt(values.length);
+        for (double value : values) out.writeDouble(value);
+    }
+
+    private static double[] readArray(DataInputStream in) throws IOException {
+        double[] values = new double[in.readInt()];
+        for (int i = 0; i < values.length; i++) values[i] = in.readDouble();
+        return values;
+    }
+
+    // ========== TỐI ƯU THAM SỐ (NELDER-MEAD) ==========
+
+    private static double[] optimize(double[] series, SmoothingState state) {
+        // Tham số được tối ưu trong không gian logit để luôn nằm trong (0, 1)
+        double[] start = {logit(0.3), logit(0.01), logit(0.1), logit(0.1)};
+        int dims = start.length;
+
+        double[][] simplex = new double[dims + 1][];
+        double[] losses = new double[dims + 1];
+        double[] params = new double[dims];
+
+        simplex[0] = start.clone();
+        for (int i = 0; i < dims; i++) {
+            double[] vertex = start.clone();
+            vertex[i] += 1.0;
+            simplex[i + 1] = vertex;
+        }
+        for (int i = 0; i <= dims; i++) {
+            losses[i] = loss(series, state, simplex[i], params);
+        }
+
+        double[] centroid = new double[dims];
+        double[] candidate = new double[dims];
+        double[] expanded = new double[dims];
+
+        for (int iter = 0; iter < MAX_ITERATIONS; iter++) {
+            sortSimplex(simplex, losses);
+
+            double spread = Math.abs(losses[dims] - losses[0]);
+            if (spread <= 1e-10 * (Math.abs(losses[0]) + 1e-12)) {
+                break;
+            }
+
+            Arrays.fill(centroid, 0);
+            for (int i = 0; i < dims; i++) {
+                for (int j = 0; j < dims; j++) centroid[j] += simplex[i][j] / dims;
+            }
+
+            // Phản xạ
+            for (int j = 0; j < dims; j++) candidate[j] = centroid[j] + (centroid[j] - simplex[dims][j]);
+            double reflectedLoss = loss(series, state, candidate, params);
+
+            if (reflectedLoss < losses[0]) {
+                // Mở rộng
+                for (int j = 0; j < dims; j++) expanded[j] = centroid[j] + 2 * (centroid[j] - simplex[dims][j]);
+                double expandedLoss = loss(series, state, expanded, params);
+                if (expandedLoss < reflectedLoss) {
+                    System.arraycopy(expanded, 0, simplex[dims], 0, dims);
+                    losses[dims] = expandedLoss;
+                } else {
+                    System.arraycopy(candidate, 0, simplex[dims], 0, dims);
+                    losses[dims] = reflectedLoss;
+                }
+            } else if (reflectedLoss < losses[dims - 1]) {
+                System.arraycopy(candidate, 0, simplex[dims], 0, dims);
+                losses[dims] = reflectedLoss;
+            } else {
+                // Co lại
+                for (int j = 0; j < dims; j++) candidate[j] = centroid[j] + 0.5 * (simplex[dims][j] - centroid[j]);
+                double contractedLoss = loss(series, state, candidate, params);
+                if (contractedLoss < losses[dims]) {
+                    System.arraycopy(candidate, 0, simplex[dims], 0, dims);
+                    losses[dims] = contractedLoss;
+                } else {
+                    // Thu nhỏ toàn bộ simplex về đỉnh tốt nhất
+                    for (int i = 1; i <= dims; i++) {
+                        for (int j = 0; j < dims; j++) {
+                            simplex[i][j] = simplex[0][j] + 0.5 * (simplex[i][j] - simplex[0][j]);
+                        }
+                        losses[i] = loss(series, state, simplex[i], params);
+                    }
+                }
+            }
+        }
+
+        sortSimplex(simplex, losses);
+        double[] best = new double[dims];
+        for (int j = 0; j < dims; j++) best[j] = sigmoid(simplex[0][j]);
+        return best;
+    }
+
+    private static double loss(double[] series, SmoothingState state, double[] point, double[] params) {
+        for (int j = 0; j < point.length; j++) params[j] = sigmoid(point[j]);
+        double sse = state.run(series, params);
+        return Double.isFinite(sse) ? sse : Double.MAX_VALUE;
+    }
+
+    private static void sortSimplex(double[][] simplex, double[] losses) {
+        // Insertion sort: simplex chỉ có 5 đỉnh
+        for (int i = 1; i < losses.length; i++) {
+            double key = losses[i];
+            double[] vertex = simplex[i];
+            int j = i - 1;
+            while (j >= 0 && losses[j] > key) {
+                losses[j + 1] = losses[j];
+                simplex[j + 1] = simplex[j];
+                j--;
+            }
+            losses[j + 1] = key;
+            simplex[j + 1] = vertex;
+        }
+    }
+
+    private static double sigmoid(double x) {
+        return 1.0 / (1.0 + Math.exp(-x));
+    }
+
+    private static double logit(double p) {
+        return Math.log(p / (1 - p));
+    }
+
+    /**
+     * Bộ đệm trạng thái dùng lại giữa các lần đánh giá hàm mất mát, tránh cấp phát trong vòng tối ưu.
+     */
+    private static final class SmoothingState {
+        private final int dailyPeriod;
+        private final int weeklyPeriod;
+        private final double[] daily;
+        private final double[] weekly;
+        private double level;
+        private double trend;
+
+        SmoothingState(int dailyPeriod, int weeklyPeriod) {
+            this.dailyPeriod = dailyPeriod;
+            this.weeklyPeriod = weeklyPeriod;
+            this.daily = new double[Math.max(dailyPeriod, 1)];
+            this.weekly = new double[Math.max(weeklyPeriod, 1)];
+        }
+
+        /**
+         * Quét toàn bộ chuỗi với bộ tham số cho trước, trả về SSE của dự báo một bước.
+         */
+        double run(double[] y, double[] params) {
+            double a = params[0];
+            double b = params[1];
+            double g = dailyPeriod > 0 ? params[2] : 0;
+            double d = weeklyPeriod > 0 ? params[3] : 0;
+
+            int season = initialize(y);
+            double sse = 0;
+
+            for (int t = season; t < y.length; t++) {
+                double dPrev = dailyPeriod > 0 ? daily[t % dailyPeriod] : 0;
+                double wPrev = weeklyPeriod > 0 ? weekly[t % weeklyPeriod] : 0;
+
+                double yhat = level + PHI * trend + dPrev + wPrev;
+                double error = y[t] - yhat;
+                sse += error * error;
+
+                double newLevel = a * (y[t] - dPrev - wPrev) + (1 - a) * (level + PHI * trend);
+                trend = b * (newLevel - level) + (1 - b) * PHI * trend;
+                level = newLevel;
+
+                if (dailyPeriod > 0) daily[t % dailyPeriod] = g * (y[t] - newLevel - wPrev) + (1 - g) * dPrev;
+                if (weeklyPeriod > 0) weekly[t % weeklyPeriod] = d * (y[t] - newLevel - dPrev) + (1 - d) * wPrev;
+            }
+            return sse;
+        }
+
+        /**
+         * Khởi tạo level, trend và chỉ số mùa vụ từ chu kỳ đầu tiên; trả về vị trí bắt đầu làm mượt.
+         */
+        private int initialize(double[] y) {
+            int season = Math.max(Math.max(dailyPeriod, weeklyPeriod), 1);
+            if (season == 1) {
+                level = y[0];
+                trend = y[1] - y[0];
+                return 1;
+            }
+
+            double firstMean = mean(y, 0, season);
+            double secondMean = mean(y, season, 2 * season);
+            level = firstMean;
+            trend = (secondMean - firstMean) / season;
+
+            if (dailyPeriod > 0) {
+                int days = season / dailyPeriod;
+                for (int j = 0; j < dailyPeriod; j++) {
+                    double sum = 0;
+                    for (int k = 0; k < days; k++) sum += y[k * dailyPeriod + j] - firstMean;
+                    daily[j] = sum / days;
+                }
+            }
+            if (weeklyPeriod > 0) {
+                for (int j = 0; j < weeklyPeriod; j++) {
+                    weekly[j] = y[j] - firstMean - (dailyPeriod > 0 ? daily[j % dailyPeriod] : 0);
+                }
+            }
+            return season;
+        }
+
+        private static double mean(double[] y, int from, int to) {
+            double sum = 0;
+            for (int i = from; i < to; i++) sum += y[i];
+            return sum / (to - from);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.electricity.forecast.engine;
+
+import com.electricity.forecast.engine.lstm.*;
+import com.electricity.forecast.model.ModelMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Engine LSTM: huấn luyện trên phần đầu chuỗi, đánh giá bằng dự báo đệ quy trên tập kiểm tra.
+ */
+@Component
+@Order(1)
+public class LstmEngine implements ForecastEngine {
+
+    public static final String KEY = "lstm";
+
+    @Value("${forecast.lstm.window:24}")
+    private int window;
+
+    // Chọn cửa sổ theo chu kỳ trội của chuỗi (ACF/periodogram), tối đa max-window; không có chu kỳ rõ thì giữ window
+    @Value("${forecast.lstm.auto-window:false}")
+    private boolean autoWindow;
+
+    @Value("${forecast.lstm.max-window:168}")
+    private int maxWindow;
+
+    @Value("${forecast.lstm.hidden-size:16}")
+    private int hiddenSize;
+
+    @Value("${forecast.lstm.layers:1}")
+    private int layers;
+
+    @Value("${forecast.lstm.learning-rate:0.01}")
+    private double learningRate;
+
+    @Value("${forecast.lstm.epochs:20}")
+    private int epochs;
+
+    @Value("${forecast.lstm.batch-size:32}")
+    private int batchSize;
+
+    // Nạp trước batch kế tiếp trên luồng nền trong lúc tính batch hiện tại
+    @Value("${forecast.lstm.prefetch:false}")
+    private boolean prefetch;
+
+    // none | fp16 | int8: độ chính xác lưu trữ trọng số khi suy luận
+    @Value("${forecast.lstm.quantization:none}")
+    private String quantization;
+
+    // Giữ trọng số FP64 ngoài heap (cùng cờ với chuỗi mục tiêu của bộ dữ liệu)
+    @Value("${forecast.lstm.search.max-hidden-size:256}")
+    private int searchMaxHiddenSize;
+
+    @Value("${forecast.lstm.search.max-layers:4}")
+    private int searchMaxLayers;
+
+    @Value("${forecast.lstm.search.max-trials:100}")
+    private int searchMaxTrials;
+
+    @Value("${forecast.lstm.search.max-epochs:200}")
+    private int searchMaxEpochs;
+
+    @Value("${forecast.lstm.search.max-parallelism:8}")
+    private int searchMaxParallelism;
+
+    @Value("${forecast.storage.off-heap:false}")
+    private boolean offHeap;
+
+    @Override
+    public String getKey() { return KEY; }
+
+    @Override
+    public String getName() { return "LSTM"; }
+
+    public LstmConfig defaultConfig() {
+        LstmConfig config = new LstmConfig();
+        config.setWindow(window);
+        config.setHiddenSize(hiddenSize);
+        config.setLayers(layers);
+        config.setLearningRate(learningRate);
+        config.setEpochs(epochs);
+        config.setBatchSize(batchSize);
+        config.setPrefetch(prefetch);
+        return config;
+    }
+
+    /**
+     * Giới hạn cho không gian tìm kiếm trong request; cửa sổ dùng chung giới hạn forecast.lstm.max-window
+     */
+    public LstmSearchSpace.Limits searchLimits() {
+        return new LstmSearchSpace.Limits(maxWindow, searchMaxHiddenSize, searchMaxLayers, searchMaxTrials,
+                searchMaxEpochs, searchMaxParallelism);
+    }
+
+    @Override
+    public FittedModel fit(TrainingData data) {
+        LstmConfig config = defaultConfig();
+        if (autoWindow) {
+            // Cửa sổ phải nhỏ hơn nhiều so với phần huấn luyện để còn đủ mẫu
+            int suggested = data.diagnostics().suggestedWindow(2, Math.min(maxWindow, data.size() / 4));
+            if (suggested > 0) config.setWindow(suggested);
+        }
+        return fit(data, config);
+    }
+
+    public LstmFittedModel fit(TrainingData data, LstmConfig config) {
+        double[] series = data.values();
+        int holdout = ModelEvaluation.holdoutSize(series.length);
+        int trainEnd = series.length - holdout;
+        if (holdout < 1 || trainEnd <= config.getWindow() + 1) {
+            throw new IllegalArgumentException("Not enough data for LSTM window " + config.getWindow());
+        }
+
+        System.out.println("Training LSTM model with " + series.length + " observations");
+        long start = System.nanoTime();
+
+        // 1. Huấn luyện trên phần đầu, phần cuối dùng làm tập kiểm tra (không cần validation khi không chọn cấu hình)
+        LstmTrainer trainer = new LstmTrainer(config, new LstmTrainingSet(series, trainEnd, trainEnd));
+        trainer.train();
+        double trainingTime = (System.nanoTime() - start) / 1e9;
+
+        return buildFittedModel(trainer, config, series, trainEnd, trainingTime);
+    }
+
+    /**
+     * Tìm siêu tham số bằng successive halving; mô hình của trial tốt nhất được dùng luôn, không huấn luyện lại.
+     * Trial được xếp hạng trên khối validation cắt từ cuối phần huấn luyện; tập kiểm tra (cùng khối như
+     * {@link #fit(TrainingData, LstmConfig)}) chỉ dùng cho metrics của mô hình được chọn, nên không bị rò rỉ.
+     */
+    public SearchOutcome search(TrainingData data, LstmSearchSpace space) throws InterruptedException {
+        double[] series = data.values();
+        int holdout = ModelEvaluation.holdoutSize(series.length);
+        int testStart = series.length - holdout;
+        int validation = ModelEvaluation.holdoutSize(testStart);
+        int trainEnd = testStart - validation;
+        if (holdout < 1 || validation < 1) {
+            throw new IllegalArgumentException("Not enough data for LSTM hyperparameter search");
+        }
+
+        // Chuỗi chuẩn hóa được tạo một lần và dùng chung cho mọi trial
+        LstmTrainingSet shared = new LstmTrainingSet(series, trainEnd, testStart);
+        List<LstmConfig> candidates = space.sample(defaultConfig(), trainEnd);
+        LstmHyperparameterSearch.Result result = new LstmHyperparameterSearch().run(shared, candidates, space);
+
+        LstmHyperparameterSearch.Trial best = result.getBest();
+        if (best.getTrainer() == null) {
+            throw new IllegalStateException("No LSTM trial finished successfully");
+        }
+        LstmFittedModel model = buildFittedModel(best.getTrainer(), best.getConfig(), series, testStart, result.getWallTime());
+        return new SearchOutcome(result, model);
+    }
+
+    /**
+     * Metrics và sai số bootstrap tính trên tập kiểm tra [testStart, n), ngữ cảnh là {@code window} giá trị ngay trước đó
+     */
+    private LstmFittedModel buildFittedModel(LstmTrainer trainer, LstmConfig config, double[] series,
+                                             int testStart, double trainingTime) {
+        LstmNetwork network = trainer.getNetwork();
+        int holdout = series.length - testStart;
+
+        // 2. Dự báo đệ quy trên tập kiểm tra để tính metrics (ngữ cảnh có thể gồm khối validation, không gồm tập kiểm tra)
+        WeightPrecision precision = WeightPrecision.fromProperty(quantization);
+        double[][] trainContext = {Arrays.copyOfRange(series, testStart - config.getWindow(), testStart)};
+        InferenceWeights fullWeights = InferenceWeights.from(network, WeightPrecision.FP64);
+        double[] predicted = BatchedLstmInference.forecast(fullWeights, trainContext, holdout)[0];
+        ModelMetrics metrics = ModelEvaluation.computeMetrics(getName(), series, testStart, predicted);
+        double[] residuals = ModelEvaluation.residuals(series, testStart, predicted);
+
+        Map<String, Object> parameters = config.toMap();
+        // Loss một bước (thang chuẩn hóa); validation chỉ có khi tìm siêu tham số
+        double validationLoss = trainer.validationLoss();
+        double testLoss = trainer.testLoss();
+        if (!Double.isNaN(validationLoss)) parameters.put("validationLoss", Math.round(validationLoss * 10000.0) / 10000.0);
+        if (!Double.isNaN(testLoss)) parameters.put("testLoss", Math.round(testLoss * 10000.0) / 10000.0);
+        parameters.put("parameterCount", network.parameterCount());
+        parameters.put("quantization", precision.name().toLowerCase());
+
+        // 3. Chế độ lượng tử hóa: đánh giá lại với trọng số nén và báo cáo chênh lệch so với FP64
+        InferenceWeights weights = fullWeights;
+        if (precision != WeightPrecision.FP64) {
+            weights = InferenceWeights.from(network, precision);
+            double[] quantizedPredicted = BatchedLstmInference.forecast(weights, trainContext, holdout)[0];
+            ModelMetrics quantizedMetrics = ModelEvaluation.computeMetrics(getName(), series, testStart, quantizedPredicted);
+
+            parameters.put("fullPrecisionMae", metrics.getMae());
+            parameters.put("quantizationMaeDelta", Math.round((quantizedMetrics.getMae() - metrics.getMae()) * 100.0) / 100.0);
+            parameters.put("fullPrecisionBytes", fullWeights.footprintBytes());
+            metrics = quantizedMetrics;
+            residuals = ModelEvaluation.residuals(series, testStart, quantizedPredicted);
+        }
+        parameters.put("modelBytes", weights.footprintBytes());
+        if (offHeap && precision == WeightPrecision.FP64) {
+            weights = weights.toOffHeap();
+            parameters.put("offHeap", true);
+        }
+
+        metrics.setTrainingTime(Math.round(trainingTime * 1000.0) / 1000.0);
+        metrics.setParameters(parameters);
+
+        // 4. Ngữ cảnh để dự báo tiếp từ cuối chuỗi đầy đủ
+        double[] context = Arrays.copyOfRange(series, Math.max(0, series.length - config.getWindow()), series.length);
+        return new LstmFittedModel(weights, context, residuals, metrics);
+    }
+
+    @Override
+    public FittedModel deserialize(byte[] bytes) throws IOException {
+        return LstmFittedModel.deserialize(bytes);
+    }
+
+    /**
+     * Kết quả tìm kiếm cùng mô hình tốt nhất đã sẵn sàng để dự báo
+     */
+    public static final class SearchOutcome {
+        private final LstmHyperparameterSearch.Result result;
+        private final LstmFittedModel model;
+
+        SearchOutcome(LstmHyperparameterSearch.Result result, LstmFittedModel model) {
+            this.result = result;
+            this.model = model;
+        }
+
+        public LstmHyperparameterSearch.Result getResult() { return result; }
+        public LstmFittedModel getModel() { return model; }
+    }
+}
@@ -0,0 +1,101 @@
+package com.electricity.forecast.engine;
+
+import com.electricity.forecast.engine.lstm.BatchedLstmInference;
+import com.electricity.forecast.engine.lstm.InferenceWeights;
+import com.electricity.forecast.model.ModelMetrics;
+
+import java.io.*;
+
+/**
+ * LSTM đã huấn luyện cùng cửa sổ ngữ cảnh cuối của chuỗi huấn luyện.
+ * Chỉ giữ trọng số suy luận (có thể đã lượng tử hóa), không giữ bản double dùng khi huấn luyện.
+ */
+public class LstmFittedModel implements FittedModel {
+
+    private final InferenceWeights weights;
+    private final double[] context;
+    private final double[] residuals;
+    private final ModelMetrics metrics;
+
+    public LstmFittedModel(InferenceWeights weights, double[] context, double[] residuals, ModelMetrics metrics) {
+        this.weights = weights;
+        this.context = context;
+        this.residuals = residuals;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public String getEngineKey() { return LstmEngine.KEY; }
+
+    @Override
+    public double[] predict(int horizon) {
+        return BatchedLstmInference.forecast(weights, new double[][] {context}, horizon)[0];
+    }
+
+    @Override
+    public void predictStepwise(int horizon, StepSink sink) throws IOException {
+        predictStepwise(context, horizon, sink);
+    }
+
+    @Override
+    public void predictStepwise(double[] context, int horizon, StepSink sink) throws IOException {
+        try {
+            BatchedLstmInference.forecast(weights, new double[][] {context}, horizon, (step, values) -> {
+                try {
+                    sink.accept(step, values[0]);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public boolean supportsContexts() { return true; }
+
+    @Override
+    public int contextLength() { return context.length; }
+
+    /**
+     * Dự báo cho nhiều chuỗi (ví dụ nhiều công tơ) với cùng mạng trong một lần gọi
+     */
+    @Override
+    public double[][] predictBatch(double[][] contexts, int horizon) {
+        return BatchedLstmInference.forecast(weights, contexts, horizon);
+    }
+
+    public InferenceWeights getWeights() { return weights; }
+
+    @Override
+    public void release() { weights.release(); }
+
+    @Override
+    public double[] getResiduals() { return residuals; }
+
+    @Override
+    public ModelMetrics getMetrics() { return metrics; }
+
+    @Override
+    public byte[] serialize() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            ModelEvaluation.writeMetrics(out, metrics);
+            weights.writeTo(out);
+            ModelEvaluation.writeArray(out, context);
+            ModelEvaluation.writeArray(out, residuals);
+        }
+        return bytes.toByteArray();
+    }
+
+    static LstmFittedModel deserialize(byte[] bytes) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            ModelMetrics metrics = ModelEvaluation.readMetrics(in);
+            InferenceWeights weights = InferenceWeights.readFrom(in);
+            double[] context = ModelEvaluation.readArray(in);
+            double[] residuals = ModelEvaluation.readArray(in);
+            return new LstmFittedModel(weights, context, residuals, metrics);
+        }
+    }
+}
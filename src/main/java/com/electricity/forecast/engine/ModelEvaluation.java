@@ -0,0 +1,131 @@
+package com.electricity.forecast.engine;
+
+import com.electricity.forecast.model.ModelMetrics;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Các hàm dùng chung cho engine: tính chỉ số lỗi và tuần tự hóa ModelMetrics.
+ */
+public final class ModelEvaluation {
+
+    private ModelEvaluation() {}
+
+    /**
+     * Tính MAE, RMSE, MAPE giữa dự báo và giá trị thực bắt đầu từ vị trí offset
+     */
+    public static ModelMetrics computeMetrics(String modelName, double[] actual, int offset, double[] predicted) {
+        double absSum = 0;
+        double sqSum = 0;
+        double pctSum = 0;
+        int pctCount = 0;
+
+        for (int i = 0; i < predicted.length; i++) {
+            double error = actual[offset + i] - predicted[i];
+            absSum += Math.abs(error);
+            sqSum += error * error;
+            if (actual[offset + i] != 0) {
+                pctSum += Math.abs(error / actual[offset + i]);
+                pctCount++;
+            }
+        }
+
+        int n = Math.max(predicted.length, 1);
+        ModelMetrics metrics = new ModelMetrics();
+        metrics.setModelName(modelName);
+        metrics.setMae(Math.round(absSum / n * 100.0) / 100.0);
+        metrics.setRmse(Math.round(Math.sqrt(sqSum / n) * 100.0) / 100.0);
+        metrics.setMape(pctCount > 0 ? Math.round(pctSum / pctCount * 1000.0) / 10.0 : 0.0);
+        return metrics;
+    }
+
+    /**
+     * Sai số thực tế - dự báo bắt đầu từ vị trí offset
+     */
+    public static double[] residuals(double[] actual, int offset, double[] predicted) {
+        double[] residuals = new double[predicted.length];
+        for (int i = 0; i < predicted.length; i++) {
+            residuals[i] = actual[offset + i] - predicted[i];
+        }
+        return residuals;
+    }
+
+    /**
+     * Số điểm cuối chuỗi giữ lại để đánh giá (tối đa một tuần)
+     */
+    public static int holdoutSize(int length) {
+        return Math.min(HoltWintersModel.WEEKLY_PERIOD, length / 5);
+    }
+
+    public static void writeMetrics(DataOutputStream out, ModelMetrics metrics) throws IOException {
+        out.writeUTF(metrics.getModelName() != null ? metrics.getModelName() : "");
+        out.writeDouble(metrics.getMae());
+        out.writeDouble(metrics.getRmse());
+        out.writeDouble(metrics.getMape());
+        out.writeDouble(metrics.getTrainingTime());
+
+        Map<String, Object> params = metrics.getParameters() != null ? metrics.getParameters() : Map.of();
+        out.writeInt(params.size());
+        for (Map.Entry<String, Object> entry : params.entrySet()) {
+            out.writeUTF(entry.getKey());
+            Object value = entry.getValue();
+            if (value instanceof Integer || value instanceof Long) {
+                out.writeByte('I');
+                out.writeLong(((Number) value).longValue());
+            } else if (value instanceof Number) {
+                out.writeByte('D');
+                out.writeDouble(((Number) value).doubleValue());
+            } else if (value instanceof Boolean) {
+                out.writeByte('B');
+                out.writeBoolean((Boolean) value);
+            } else {
+                out.writeByte('S');
+                out.writeUTF(String.valueOf(value));
+            }
+        }
+    }
+
+    public static void writeArray(DataOutputStream out, double[] values) throws IOException {
+        out.writeInt(values.length);
+        for (double value : values) out.writeDouble(value);
+    }
+
+    public static double[] readArray(DataInputStream in) throws IOException {
+        double[] values = new double[in.readInt()];
+        for (int i = 0; i < values.length; i++) values[i] = in.readDouble();
+        return values;
+    }
+
+    public static ModelMetrics readMetrics(DataInputStream in) throws IOException {
+        ModelMetrics metrics = new ModelMetrics();
+        metrics.setModelName(in.readUTF());
+        metrics.setMae(in.readDouble());
+        metrics.setRmse(in.readDouble());
+        metrics.setMape(in.readDouble());
+        metrics.setTrainingTime(in.readDouble());
+
+        int count = in.readInt();
+        if (count > 0) {
+            Map<String, Object> params = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                byte type = in.readByte();
+                switch (type) {
+                    case 'I' -> {
+                        long value = in.readLong();
+                        params.put(key, value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE ? (Object) (int) value : value);
+                    }
+                    case 'D' -> params.put(key, in.readDouble());
+                    case 'B' -> params.put(key, in.readBoolean());
+                    default -> params.put(key, in.readUTF());
+                }
+            }
+            metrics.setParameters(params);
+        }
+        return metrics;
+    }
+}
@@ -0,0 +1,35 @@
+package com.electricity.forecast.engine;
+
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Danh bạ các engine dự báo đã đăng ký (theo thứ tự @Order của bean).
+ */
+@Component
+public class ModelRegistry {
+
+    private final Map<String, ForecastEngine> engines = new LinkedHashMap<>();
+
+    public ModelRegistry(List<ForecastEngine> engines) {
+        for (ForecastEngine engine : engines) {
+            String key = engine.getKey().toLowerCase();
+            if (this.engines.putIfAbsent(key, engine) != null) {
+                throw new IllegalStateException("Duplicate forecast engine key: " + key);
+            }
+        }
+    }
+
+    public Optional<ForecastEngine> find(String key) {
+        return key == null ? Optional.empty() : Optional.ofNullable(engines.get(key.toLowerCase()));
+    }
+
+    public Collection<ForecastEngine> getEngines() {
+        return Collections.unmodifiableCollection(engines.values());
+    }
+
+    public Set<String> getKeys() {
+        return Collections.unmodifiableSet(engines.keySet());
+    }
+}
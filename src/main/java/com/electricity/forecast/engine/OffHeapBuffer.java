@@ -0,0 +1,114 @@
+package com.electricity.forecast.engine;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mảng double nằm ngoài heap (direct buffer) với vòng đời tường minh: không làm tăng heap và GC
+ * không phải sao chép nó. Người đọc ghim buffer trong lúc dùng ({@link #pin()} / {@link #unpin()});
+ * {@link #release()} chỉ trả bộ nhớ khi lần ghim cuối cùng kết thúc, nên một snapshot cũ còn đang
+ * được đọc không bao giờ đọc phải vùng nhớ đã trả. Ghim sau khi đã trả thì ném IllegalStateException.
+ */
+public final class OffHeapBuffer {
+
+    private static final MethodHandle INVOKE_CLEANER = cleaner();
+    private static final AtomicLong ALLOCATED = new AtomicLong();
+
+    private final ByteBuffer bytes;
+    private final DoubleBuffer values;
+    // Một tham chiếu của chủ sở hữu cộng số lần đang ghim; về 0 thì bộ nhớ đã được trả
+    private final AtomicInteger references = new AtomicInteger(1);
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private OffHeapBuffer(int length) {
+        this.bytes = ByteBuffer.allocateDirect(length * Double.BYTES).order(ByteOrder.nativeOrder());
+        this.values = bytes.asDoubleBuffer();
+        ALLOCATED.addAndGet(bytes.capacity());
+    }
+
+    /**
+     * Buffer {@code length} phần tử (giá trị 0), để người tạo ghi dần qua {@link #pin()}
+     */
+    public static OffHeapBuffer allocate(int length) {
+        return new OffHeapBuffer(length);
+    }
+
+    public static OffHeapBuffer copyOf(double[] source) {
+        OffHeapBuffer buffer = allocate(source.length);
+        buffer.values.put(0, source);
+        return buffer;
+    }
+
+    /**
+     * Tổng số byte ngoài heap của mọi buffer chưa được trả
+     */
+    public static long allocatedBytes() {
+        return ALLOCATED.get();
+    }
+
+    public int length() { return values.capacity(); }
+
+    public long footprintBytes() { return bytes.capacity(); }
+
+    public boolean isReleased() { return released.get(); }
+
+    /**
+     * Giữ bộ nhớ sống trong lúc đọc; view trả về chỉ được dùng đến khi gọi {@link #unpin()}
+     */
+    public DoubleBuffer pin() {
+        while (true) {
+            int count = references.get();
+            if (count == 0) {
+                throw new IllegalStateException("Off-heap buffer has already been released");
+            }
+            if (references.compareAndSet(count, count + 1)) {
+                return values;
+            }
+        }
+    }
+
+    public void unpin() {
+        if (references.decrementAndGet() == 0) free();
+    }
+
+    /**
+     * Chủ sở hữu trả buffer (gọi nhiều lần cũng chỉ có tác dụng một lần)
+     */
+    public void release() {
+        if (released.compareAndSet(false, true)) unpin();
+    }
+
+    private void free() {
+        ALLOCATED.addAndGet(-bytes.capacity());
+        if (INVOKE_CLEANER == null) return;
+        try {
+            INVOKE_CLEANER.invokeExact(bytes);
+        } catch (Throwable e) {
+            // Không trả ngay được thì Cleaner của JVM trả khi buffer không còn được tham chiếu
+        }
+    }
+
+    /**
+     * sun.misc.Unsafe#invokeCleaner (module jdk.unsupported); null nếu JVM không có
+     */
+    private static MethodHandle cleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
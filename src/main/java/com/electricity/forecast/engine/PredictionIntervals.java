@@ -0,0 +1,189 @@
+package com.electricity.forecast.engine;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Khoảng dự báo bằng bootstrap sai số: sai số trên tập kiểm tra được mô hình hóa AR(1),
+ * mỗi đường mô phỏng cộng chuỗi sai số lấy mẫu lại vào dự báo điểm.
+ * Các khối đường chạy song song, mỗi khối có luồng ngẫu nhiên riêng tách từ một seed gốc
+ * nên kết quả không phụ thuộc vào cách lập lịch luồng.
+ */
+public final class PredictionIntervals {
+
+    public static final double[] DEFAULT_QUANTILES = {0.1, 0.5, 0.9};
+
+    /**
+     * Số đường mô phỏng trong một khối công việc song song
+     */
+    private static final int PATHS_PER_TASK = 128;
+
+    private static final double MAX_AUTOCORRELATION = 0.98;
+
+    private PredictionIntervals() {}
+
+    /**
+     * Mô hình AR(1) của sai số: hệ số tự tương quan và các innovation đã trừ trung bình
+     */
+    private static final class ErrorModel {
+        final double rho;
+        final double[] innovations;
+
+        ErrorModel(double rho, double[] innovations) {
+            this.rho = rho;
+            this.innovations = innovations;
+        }
+    }
+
+    /**
+     * Mô phỏng đường theo từng bước với bộ nhớ O(paths), không phụ thuộc horizon.
+     * Cùng seed thì cho đúng các giá trị như {@link #bootstrap} (mỗi khối rút số theo cùng thứ tự).
+     */
+    public static final class PathSimulator {
+        private final ErrorModel model;
+        private final SplittableRandom[] streams;
+        private final double[] errors;
+        private final double[] row;
+
+        private PathSimulator(ErrorModel model, int paths, long seed) {
+            this.model = model;
+            this.streams = model != null ? splitStreams(seed, paths) : null;
+            this.errors = new double[model != null ? paths : 0];
+            this.row = new double[model != null ? paths : 0];
+        }
+
+        /**
+         * Bước kế tiếp: ghi phân vị quanh dự báo điểm vào out[q]
+         */
+        public void next(double point, double[] quantiles, double[] out) {
+            if (model == null) {
+                Arrays.fill(out, 0, quantiles.length, point);
+                return;
+            }
+            int paths = errors.length;
+            for (int task = 0; task < streams.length; task++) {
+                SplittableRandom random = streams[task];
+                int to = Math.min(paths, (task + 1) * PATHS_PER_TASK);
+                for (int p = task * PATHS_PER_TASK; p < to; p++) {
+                    errors[p] = model.rho * errors[p] + model.innovations[random.nextInt(model.innovations.length)];
+                    row[p] = point + errors[p];
+                }
+            }
+            Arrays.sort(row);
+            for (int q = 0; q < quantiles.length; q++) {
+                out[q] = quantile(row, 0, paths, quantiles[q]);
+            }
+        }
+    }
+
+    public static PathSimulator simulator(double[] residuals, int paths, long seed) {
+        return new PathSimulator(paths >= 1 ? estimate(residuals) : null, paths, seed);
+    }
+
+    /**
+     * Trả về [quantile][horizon]. Không có đủ sai số (ít hơn 2 điểm) thì mọi phân vị bằng dự báo điểm.
+     */
+    public static double[][] bootstrap(double[] point, double[] residuals, int paths, double[] quantiles, long seed) {
+        int horizon = point.length;
+        double[][] bands = new double[quantiles.length][];
+        ErrorModel model = paths >= 1 ? estimate(residuals) : null;
+        if (model == null) {
+            for (int q = 0; q < quantiles.length; q++) bands[q] = point.clone();
+            return bands;
+        }
+        double rho = model.rho;
+        double[] innovations = model.innovations;
+
+        // Ma trận đường [horizon x paths] cấp phát một lần; mỗi bước là một hàng liên tục để lấy phân vị
+        double[] matrix = new double[horizon * paths];
+        int tasks = (paths + PATHS_PER_TASK - 1) / PATHS_PER_TASK;
+        SplittableRandom[] streams = splitStreams(seed, paths);
+
+        IntStream.range(0, tasks).parallel().forEach(task -> {
+            SplittableRandom random = streams[task];
+            int from = task * PATHS_PER_TASK;
+            int to = Math.min(paths, from + PATHS_PER_TASK);
+            // Đi theo bước rồi theo đường để ghi liên tục vào hàng của ma trận
+            double[] errors = new double[to - from];
+            for (int h = 0; h < horizon; h++) {
+                int row = h * paths + from;
+                for (int p = 0; p < errors.length; p++) {
+                    errors[p] = rho * errors[p] + innovations[random.nextInt(innovations.length)];
+                    matrix[row + p] = point[h] + errors[p];
+                }
+            }
+        });
+
+        // Phân vị theo từng bước, song song theo hàng
+        for (int q = 0; q < quantiles.length; q++) bands[q] = new double[horizon];
+        IntStream.range(0, horizon).parallel().forEach(h -> {
+            int offset = h * paths;
+            Arrays.sort(matrix, offset, offset + paths);
+            for (int q = 0; q < quantiles.length; q++) {
+                bands[q][h] = quantile(matrix, offset, paths, quantiles[q]);
+            }
+        });
+        return bands;
+    }
+
+    /**
+     * Mỗi khối PATHS_PER_TASK đường có một luồng ngẫu nhiên riêng, tách theo thứ tự từ seed gốc
+     */
+    private static SplittableRandom[] splitStreams(long seed, int paths) {
+        int tasks = (paths + PATHS_PER_TASK - 1) / PATHS_PER_TASK;
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] streams = new SplittableRandom[tasks];
+        for (int task = 0; task < tasks; task++) streams[task] = root.split();
+        return streams;
+    }
+
+    /**
+     * Ước lượng AR(1) trên sai số đã trừ trung bình, lấy phần dư (innovation) để lấy mẫu lại.
+     * Trả về null nếu có ít hơn 2 sai số.
+     */
+    private static ErrorModel estimate(double[] residuals) {
+        if (residuals == null || residuals.length < 2) return null;
+
+        double mean = 0;
+        for (double r : residuals) mean += r;
+        mean /= residuals.length;
+
+        double lagged = 0;
+        double squares = 0;
+        for (int t = 0; t < residuals.length; t++) {
+            double centered = residuals[t] - mean;
+            squares += centered * centered;
+            if (t > 0) lagged += centered * (residuals[t - 1] - mean);
+        }
+        double rho = squares > 0 ? Math.max(0, Math.min(MAX_AUTOCORRELATION, lagged / squares)) : 0;
+
+        double[] innovations = new double[residuals.length - 1];
+        double innovationMean = 0;
+        for (int t = 1; t < residuals.length; t++) {
+            innovations[t - 1] = (residuals[t] - mean) - rho * (residuals[t - 1] - mean);
+            innovationMean += innovations[t - 1];
+        }
+        innovationMean /= innovations.length;
+        for (int t = 0; t < innovations.length; t++) innovations[t] -= innovationMean;
+        return new ErrorModel(rho, innovations);
+    }
+
+    /**
+     * Phân vị nội suy tuyến tính trên đoạn đã sắp xếp [offset, offset + length)
+     */
+    private static double quantile(double[] sorted, int offset, int length, double probability) {
+        double position = probability * (length - 1);
+        int lower = (int) Math.floor(position);
+        int upper = Math.min(length - 1, lower + 1);
+        double weight = position - lower;
+        return sorted[offset + lower] * (1 - weight) + sorted[offset + upper] * weight;
+    }
+
+    /**
+     * Nhãn phân vị cho JSON, ví dụ 0.1 -> "p10"
+     */
+    public static String label(double probability) {
+        return "p" + Math.round(probability * 100);
+    }
+}
@@ -0,0 +1,212 @@
+package com.electricity.forecast.engine;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Một cột số của bộ dữ liệu (chuỗi mục tiêu), nằm trên heap hoặc ngoài heap.
+ * Bản ngoài heap giữ chuỗi rất dài mà không làm phình heap; engine vẫn nhận double[] như trước,
+ * chỉ là bản sao tạm trong lúc huấn luyện. Chủ sở hữu (snapshot) gọi {@link #release()} khi bộ dữ liệu
+ * bị thay thế; với cột trên heap thì không làm gì.
+ * {@link #append(double[])} trả cột mới dùng chung vùng lưu (có dư dung lượng) với cột cũ, nên chỉ ghi phần đuôi;
+ * hai cột dùng chung vùng lưu ({@link #sharesStorage(SeriesColumn)}) thì chỉ cột còn dùng sau cùng được trả.
+ */
+public abstract class SeriesColumn {
+
+    private static final SeriesColumn EMPTY = new Heap(new HeapStorage(new double[0], 0), 0);
+
+    public static SeriesColumn empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Cột chứa {@code values}; bản trên heap dùng chung mảng (không được ghi vào sau đó),
+     * bản ngoài heap sao chép một lần
+     */
+    public static SeriesColumn of(double[] values, boolean offHeap) {
+        return offHeap && values.length > 0
+                ? new OffHeap(new OffHeapStorage(OffHeapBuffer.copyOf(values), values.length), values.length)
+                : new Heap(new HeapStorage(values, values.length), values.length);
+    }
+
+    public abstract int size();
+
+    public abstract double get(int index);
+
+    /**
+     * Mảng giá trị theo thứ tự thời gian (chỉ đọc); bản ngoài heap trả về bản sao trên heap
+     */
+    public abstract double[] toArray();
+
+    public abstract boolean isOffHeap();
+
+    /**
+     * Cột sau khi nối {@code tail}: nếu đây là cột mới nhất của vùng lưu và còn chỗ thì chỉ ghi phần đuôi,
+     * ngược lại sao chép sang vùng lưu mới (dung lượng gấp đôi). Cột này vẫn đọc đúng như cũ.
+     */
+    public abstract SeriesColumn append(double[] tail);
+
+    /**
+     * Hai cột dùng chung vùng lưu (trả một cột là trả cả cột kia)
+     */
+    public boolean sharesStorage(SeriesColumn other) {
+        return this == other;
+    }
+
+    /**
+     * Số byte ngoài heap mà cột đang giữ
+     */
+    public long offHeapBytes() { return 0; }
+
+    public void release() {}
+
+    static int grownCapacity(int size, int extra) {
+        return (int) Math.min(Integer.MAX_VALUE - 8, Math.max(2L * size, (long) size + extra));
+    }
+
+    // ========== Trên heap ==========
+
+    private static final class HeapStorage {
+        final double[] values;
+        // Số giá trị đã ghi; chỉ đổi khi giữ khóa của vùng lưu
+        int length;
+
+        HeapStorage(double[] values, int length) {
+            this.values = values;
+            this.length = length;
+        }
+    }
+
+    private static final class Heap extends SeriesColumn {
+        private final HeapStorage storage;
+        private final int size;
+
+        Heap(HeapStorage storage, int size) {
+            this.storage = storage;
+            this.size = size;
+        }
+
+        @Override
+        public int size() { return size; }
+
+        @Override
+        public double get(int index) { return storage.values[Objects.checkIndex(index, size)]; }
+
+        @Override
+        public double[] toArray() {
+            return storage.values.length == size ? storage.values : Arrays.copyOf(storage.values, size);
+        }
+
+        @Override
+        public boolean isOffHeap() { return false; }
+
+        @Override
+        public SeriesColumn append(double[] tail) {
+            synchronized (storage) {
+                if (storage.length == size && size + tail.length <= storage.values.length) {
+                    System.arraycopy(tail, 0, storage.values, size, tail.length);
+                    storage.length = size + tail.length;
+                    return new Heap(storage, storage.length);
+                }
+            }
+            double[] grown = Arrays.copyOf(storage.values, grownCapacity(size, tail.length));
+            System.arraycopy(tail, 0, grown, size, tail.length);
+            return new Heap(new HeapStorage(grown, size + tail.length), size + tail.length);
+        }
+
+        @Override
+        public boolean sharesStorage(SeriesColumn other) {
+            return other instanceof Heap heap && heap.storage == storage;
+        }
+    }
+
+    // ========== Ngoài heap ==========
+
+    private static final class OffHeapStorage {
+        final OffHeapBuffer buffer;
+        int length;
+
+        OffHeapStorage(OffHeapBuffer buffer, int length) {
+            this.buffer = buffer;
+            this.length = length;
+        }
+    }
+
+    private static final class OffHeap extends SeriesColumn {
+        private final OffHeapStorage storage;
+        private final OffHeapBuffer buffer;
+        private final int size;
+
+        OffHeap(OffHeapStorage storage, int size) {
+            this.storage = storage;
+            this.buffer = storage.buffer;
+            this.size = size;
+        }
+
+        @Override
+        public int size() { return size; }
+
+        @Override
+        public double get(int index) {
+            Objects.checkIndex(index, size);
+            DoubleBuffer values = buffer.pin();
+            try {
+                return values.get(index);
+            } finally {
+                buffer.unpin();
+            }
+        }
+
+        @Override
+        public double[] toArray() {
+            DoubleBuffer values = buffer.pin();
+            try {
+                double[] copy = new double[size];
+                values.get(0, copy);
+                return copy;
+            } finally {
+                buffer.unpin();
+            }
+        }
+
+        @Override
+        public boolean isOffHeap() { return true; }
+
+        @Override
+        public SeriesColumn append(double[] tail) {
+            DoubleBuffer values = buffer.pin();
+            try {
+                synchronized (storage) {
+                    if (storage.length == size && size + tail.length <= buffer.length()) {
+                        values.put(size, tail);
+                        storage.length = size + tail.length;
+                        return new OffHeap(storage, storage.length);
+                    }
+                }
+                OffHeapBuffer grown = OffHeapBuffer.allocate(grownCapacity(size, tail.length));
+                DoubleBuffer target = grown.pin();
+                try {
+                    target.put(0, values, 0, size);
+                    target.put(size, tail);
+                } finally {
+                    grown.unpin();
+                }
+                return new OffHeap(new OffHeapStorage(grown, size + tail.length), size + tail.length);
+            } finally {
+                buffer.unpin();
+            }
+        }
+
+        @Override
+        public boolean sharesStorage(SeriesColumn other) {
+            return other instanceof OffHeap offHeap && offHeap.storage == storage;
+        }
+
+        @Override
+        public long offHeapBytes() { return buffer.isReleased() ? 0 : buffer.footprintBytes(); }
+
+        @Override
+        public void release() { buffer.release(); }
+    }
+}
@@ -0,0 +1,323 @@
+package com.electricity.forecast.engine;
+
+import java.util.*;
+
+/**
+ * Chẩn đoán chuỗi mục tiêu để chọn bậc ARIMA và độ dài cửa sổ LSTM:
+ * - ACF tới MAX_LAG qua FFT (định lý Wiener-Khinchin): O(n log n) thay vì O(n * L)
+ * - PACF bằng đệ quy Durbin-Levinson trên ACF: O(L^2), không phụ thuộc n
+ * - periodogram từ cùng phép FFT, lấy các đỉnh mạnh nhất làm chu kỳ trội
+ * Kết quả bất biến; snapshot tính một lần cho mỗi phiên bản dữ liệu và dùng chung cho endpoint và các engine.
+ */
+public final class SeriesDiagnostics {
+
+    /**
+     * Hai tuần dữ liệu theo giờ: đủ thấy mùa vụ tuần (168) và bội của nó
+     */
+    public static final int MAX_LAG = 336;
+
+    public static final int MAX_PERIODS = 10;
+
+    /**
+     * Số lag của ACF/PACF trên chuỗi sai phân bậc 1 (chỉ dùng chọn bậc ARIMA nên tính trực tiếp)
+     */
+    public static final int ORDER_LAGS = 10;
+
+    /**
+     * Một đỉnh của periodogram: chu kỳ (số bước, đã nội suy giữa các tần số), lag tương ứng
+     * (đã chỉnh theo ACF), công suất và tỷ lệ trên tổng công suất
+     */
+    public record Period(double period, int lag, double power, double share) {}
+
+    /**
+     * Bậc ARIMA(p, d, q) gợi ý cùng chu kỳ mùa vụ (0 nếu không có)
+     */
+    public record ArimaOrder(int p, int d, int q, int seasonalPeriod) {}
+
+    private final int size;
+    private final double[] acf;
+    private final double[] pacf;
+    private final double[] differencedAcf;
+    private final double[] differencedPacf;
+    private final List<Period> periods;
+    private final long computeNanos;
+
+    private SeriesDiagnostics(int size, double[] acf, double[] pacf, double[] differencedAcf, double[] differencedPacf,
+                              List<Period> periods, long computeNanos) {
+        this.size = size;
+        this.acf = acf;
+        this.pacf = pacf;
+        this.differencedAcf = differencedAcf;
+        this.differencedPacf = differencedPacf;
+        this.periods = periods;
+        this.computeNanos = computeNanos;
+    }
+
+    public static SeriesDiagnostics compute(double[] series) {
+        return compute(series, MAX_LAG, MAX_PERIODS);
+    }
+
+    public static SeriesDiagnostics compute(double[] series, int maxLag, int maxPeriods) {
+        long start = System.nanoTime();
+        int n = series.length;
+        int lags = Math.max(0, Math.min(maxLag, n - 1));
+        if (n < 2) {
+            return new SeriesDiagnostics(n, new double[] {1}, new double[] {1}, new double[] {1}, new double[] {1},
+                    List.of(), System.nanoTime() - start);
+        }
+
+        // 1. FFT của chuỗi đã trừ trung bình, đệm 0 tới lũy thừa của 2 >= 2n để tích chập vòng không bị chồng
+        double mean = 0;
+        for (double v : series) mean += v;
+        mean /= n;
+        int length = Integer.highestOneBit(2 * n - 1) << 1;
+        double[] re = new double[length];
+        double[] im = new double[length];
+        for (int i = 0; i < n; i++) re[i] = series[i] - mean;
+        fft(re, im, false);
+
+        // 2. Phổ công suất |X|^2: nửa đầu là periodogram, biến đổi ngược là tự hiệp phương sai
+        double[] power = new double[length / 2 + 1];
+        for (int j = 0; j < length; j++) {
+            double p = re[j] * re[j] + im[j] * im[j];
+            if (j <= length / 2) power[j] = p;
+            re[j] = p;
+            im[j] = 0;
+        }
+
+        fft(re, im, true);
+        double[] acf = new double[lags + 1];
+        double variance = re[0];
+        for (int k = 0; k <= lags; k++) {
+            acf[k] = variance > 0 ? re[k] / variance : (k == 0 ? 1 : 0);
+        }
+        List<Period> periods = topPeriods(power, length, n, maxPeriods, acf);
+
+        // 3. Chuỗi sai phân bậc 1 cho việc chọn bậc khi chuỗi gần như không dừng
+        double[] differencedAcf = differencedAcf(series, Math.min(ORDER_LAGS, Math.max(0, n - 2)));
+
+        return new SeriesDiagnostics(n, acf, durbinLevinson(acf), differencedAcf, durbinLevinson(differencedAcf),
+                Collections.unmodifiableList(periods), System.nanoTime() - start);
+    }
+
+    /**
+     * FFT cơ số 2 tại chỗ (Cooley-Tukey lặp); {@code inverse} tính biến đổi ngược đã chia cho độ dài
+     */
+    static void fft(double[] re, double[] im, boolean inverse) {
+        int n = re.length;
+        for (int i = 1, j = 0; i < n; i++) {
+            int bit = n >> 1;
+            for (; (j & bit) != 0; bit >>= 1) j ^= bit;
+            j ^= bit;
+            if (i < j) {
+                double t = re[i]; re[i] = re[j]; re[j] = t;
+                t = im[i]; im[i] = im[j]; im[j] = t;
+            }
+        }
+        for (int len = 2; len <= n; len <<= 1) {
+            double angle = 2 * Math.PI / len * (inverse ? 1 : -1);
+            double stepRe = Math.cos(angle);
+            double stepIm = Math.sin(angle);
+            int half = len >> 1;
+            for (int i = 0; i < n; i += len) {
+                double wRe = 1;
+                double wIm = 0;
+                for (int k = 0; k < half; k++) {
+                    int a = i + k;
+                    int b = a + half;
+                    double xRe = re[b] * wRe - im[b] * wIm;
+                    double xIm = re[b] * wIm + im[b] * wRe;
+                    re[b] = re[a] - xRe;
+                    im[b] = im[a] - xIm;
+                    re[a] += xRe;
+                    im[a] += xIm;
+                    double nextRe = wRe * stepRe - wIm * stepIm;
+                    wIm = wRe * stepIm + wIm * stepRe;
+                    wRe = nextRe;
+                }
+            }
+        }
+        if (inverse) {
+            for (int i = 0; i < n; i++) {
+                re[i] /= n;
+                im[i] /= n;
+            }
+        }
+    }
+
+    /**
+     * PACF từ ACF bằng Durbin-Levinson; pacf[0] = 1. Dừng (các lag sau bằng 0) nếu ACF không xác định dương.
+     */
+    static double[] durbinLevinson(double[] acf) {
+        int lags = acf.length - 1;
+        double[] pacf = new double[lags + 1];
+        pacf[0] = 1;
+        double[] phi = new double[lags + 1];
+        double[] previous = new double[lags + 1];
+        double error = 1;
+        for (int k = 1; k <= lags; k++) {
+            double numerator = acf[k];
+            for (int j = 1; j < k; j++) numerator -= previous[j] * acf[k - j];
+            double reflection = numerator / error;
+            if (!(error > 1e-12) || Double.isNaN(reflection)) break;
+            phi[k] = reflection;
+            for (int j = 1; j < k; j++) phi[j] = previous[j] - reflection * previous[k - j];
+            pacf[k] = reflection;
+            error *= 1 - reflection * reflection;
+            System.arraycopy(phi, 1, previous, 1, k);
+        }
+        return pacf;
+    }
+
+    private static double[] differencedAcf(double[] series, int lags) {
+        int n = series.length - 1;
+        double[] acf = new double[lags + 1];
+        acf[0] = 1;
+        if (n < 2) return acf;
+        double mean = (series[n] - series[0]) / n;
+        double variance = 0;
+        for (int t = 1; t <= n; t++) {
+            double d = series[t] - series[t - 1] - mean;
+            variance += d * d;
+        }
+        if (variance <= 0) return acf;
+        for (int k = 1; k <= lags; k++) {
+            double sum = 0;
+            for (int t = k + 1; t <= n; t++) {
+                sum += (series[t] - series[t - 1] - mean) * (series[t - k] - series[t - k - 1] - mean);
+            }
+            acf[k] = sum / variance;
+        }
+        return acf;
+    }
+
+    /**
+     * Các cực đại địa phương của periodogram có chu kỳ trong [2, n/2] (ít nhất hai chu kỳ trong chuỗi),
+     * mạnh nhất trước. Độ phân giải tần số chỉ là 1/n nên chu kỳ dài ước lượng từ phổ rất thô (±p^2/n):
+     * lag của mỗi đỉnh được chỉnh về cực đại ACF trong khoảng chu kỳ của ±2 ô phân giải quanh đỉnh.
+     * Búp phụ của một đỉnh mạnh rơi về cùng lag với đỉnh đó nên bị bỏ.
+     */
+    private static List<Period> topPeriods(double[] power, int length, int n, int maxPeriods, double[] acf) {
+        double total = 0;
+        for (int j = 1; j < power.length; j++) total += power[j];
+        if (total <= 0 || maxPeriods <= 0) return new ArrayList<>();
+
+        int first = (int) Math.ceil(2.0 * length / n);
+        int last = Math.min(power.length - 2, length / 2);
+        List<Integer> peaks = new ArrayList<>();
+        for (int j = Math.max(first, 1); j <= last; j++) {
+            if (power[j] > power[j - 1] && power[j] >= power[j + 1]) peaks.add(j);
+        }
+        peaks.sort((a, b) -> Double.compare(power[b], power[a]));
+
+        double resolution = 2.0 * length / n;
+        Set<Integer> lags = new HashSet<>();
+        List<Period> periods = new ArrayList<>();
+        for (int j : peaks) {
+            if (periods.size() >= maxPeriods) break;
+
+            // Nội suy parabol trên log công suất (Gaussian) giữa ba tần số quanh đỉnh
+            double left = Math.log(Math.max(power[j - 1], Double.MIN_NORMAL));
+            double right = Math.log(Math.max(power[j + 1], Double.MIN_NORMAL));
+            double curvature = left - 2 * Math.log(power[j]) + right;
+            double offset = curvature != 0 ? 0.5 * (left - right) / curvature : 0;
+            double period = length / (j + offset);
+
+            int lag = (int) Math.round(period);
+            int from = Math.max(2, (int) Math.floor(length / (j + resolution)));
+            int to = Math.min(acf.length - 2, (int) Math.ceil(length / Math.max(1.0, j - resolution)));
+            if (lag < acf.length - 1 && from <= to) {
+                lag = from;
+                for (int k = from + 1; k <= to; k++) {
+                    if (unbiased(acf, k, n) > unbiased(acf, lag, n)) lag = k;
+                }
+                // Chu kỳ thật nằm trên một đỉnh của ACF; cực đại ở mép khoảng là búp phụ của đỉnh bên cạnh
+                if (unbiased(acf, lag, n) < unbiased(acf, lag - 1, n) || unbiased(acf, lag, n) < unbiased(acf, lag + 1, n)) {
+                    continue;
+                }
+            }
+            if (!lags.add(lag)) continue;
+            periods.add(new Period(period, lag, power[j], power[j] / total));
+        }
+        return periods;
+    }
+
+    /**
+     * ACF đã bỏ hệ số co (n - k) / n của ước lượng chệch, để so các lag xa với nhau
+     */
+    private static double unbiased(double[] acf, int lag, int n) {
+        return acf[lag] * n / (n - lag);
+    }
+
+    /**
+     * Ngưỡng ý nghĩa xấp xỉ 95% của ACF/PACF (±1.96 / sqrt(n))
+     */
+    public double confidenceBound() {
+        return size > 0 ? 1.96 / Math.sqrt(size) : 1;
+    }
+
+    /**
+     * Chu kỳ trội: đỉnh mạnh nhất có lag trong [minLag, maxLag] mà ACF tại lag đó vượt ngưỡng ý nghĩa; 0 nếu không có
+     */
+    public int dominantPeriod(int minLag, int maxLag) {
+        for (Period period : periods) {
+            int lag = period.lag();
+            if (lag >= minLag && lag <= maxLag && lag < acf.length && acf[lag] > confidenceBound()) {
+                return lag;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Cửa sổ LSTM gợi ý: chu kỳ trội trong [minWindow, maxWindow] để mỗi mẫu thấy trọn một chu kỳ;
+     * nếu không có thì lag cuối mà ACF còn vượt ngưỡng liên tục từ lag 1; 0 nếu cũng không có
+     */
+    public int suggestedWindow(int minWindow, int maxWindow) {
+        int period = dominantPeriod(minWindow, maxWindow);
+        if (period > 0) return period;
+        int lag = 0;
+        while (lag + 1 < acf.length && lag + 1 <= maxWindow && acf[lag + 1] > confidenceBound()) lag++;
+        return lag >= minWindow ? lag : 0;
+    }
+
+    /**
+     * Bậc ARIMA theo quy tắc Box-Jenkins: d = 1 nếu ACF lag 1 > 0.9 (tắt rất chậm); p là số lag PACF liên tiếp
+     * vượt ngưỡng, q là số lag ACF liên tiếp vượt ngưỡng (của chuỗi đã sai phân d lần), tối đa {@code maxOrder}
+     */
+    public ArimaOrder suggestedArimaOrder(int maxOrder) {
+        int d = acf.length > 1 && acf[1] > 0.9 ? 1 : 0;
+        double[] r = d == 1 ? differencedAcf : acf;
+        double[] partial = d == 1 ? differencedPacf : pacf;
+        int limit = Math.min(maxOrder, ORDER_LAGS);
+        return new ArimaOrder(leadingSignificant(partial, limit), d, leadingSignificant(r, limit),
+                dominantPeriod(2, acf.length - 1));
+    }
+
+    private int leadingSignificant(double[] values, int limit) {
+        int lag = 0;
+        while (lag + 1 < values.length && lag + 1 <= limit && Math.abs(values[lag + 1]) > confidenceBound()) lag++;
+        return lag;
+    }
+
+    public int size() { return size; }
+
+    /**
+     * Lag lớn nhất đã tính (tối đa MAX_LAG và n - 1)
+     */
+    public int maxLag() { return acf.length - 1; }
+
+    /**
+     * acf[k] với k = 0..maxLag (chỉ đọc)
+     */
+    public double[] acf() { return acf; }
+
+    /**
+     * pacf[k] với k = 0..maxLag (chỉ đọc)
+     */
+    public double[] pacf() { return pacf; }
+
+    public List<Period> periods() { return periods; }
+
+    public long computeNanos() { return computeNanos; }
+}
@@ -0,0 +1,157 @@
+package com.electricity.forecast.engine;
+
+import com.electricity.forecast.model.ModelMetrics;
+
+import java.io.*;
+import java.util.Map;
+
+/**
+ * Engine mô phỏng: metrics được suy ra từ thống kê thực của dữ liệu, dự báo là dạng sóng quanh giá trị gần nhất.
+ */
+public abstract class SimulatedForecastEngine implements ForecastEngine {
+
+    /**
+     * Thời gian huấn luyện mô phỏng (ms)
+     */
+    protected abstract long simulatedTrainingMillis();
+
+    /**
+     * Hệ số nhân sai số so với 10% độ lệch chuẩn (MAE, RMSE)
+     */
+    protected abstract double[] errorFactors();
+
+    protected abstract ModelMetrics fallbackMetrics();
+
+    /**
+     * Giá trị dự báo tại bước i (bắt đầu từ 1), xác định theo lastValue và step
+     */
+    protected abstract double simulate(double lastValue, int step);
+
+    /**
+     * Tham số của mô hình cho dữ liệu này, ghi vào metrics; null nếu không có
+     */
+    protected Map<String, Object> fitParameters(TrainingData data) {
+        return null;
+    }
+
+    @Override
+    public FittedModel fit(TrainingData data) throws Exception {
+        System.out.println("Training " + getName() + " model with " + data.size() + " rows of preprocessed data");
+
+        Thread.sleep(simulatedTrainingMillis()); // Simulate training time
+
+        ModelMetrics metrics = createSimulatedMetrics(data.values());
+        if (data.size() > 0) metrics.setParameters(fitParameters(data));
+        return new Fitted(data.lastValue(), metrics, holdoutResiduals(data.values()));
+    }
+
+    /**
+     * Sai số khi mô phỏng từ điểm trước tập kiểm tra, để khoảng dự báo phản ánh độ lệch thật của dạng sóng
+     */
+    private double[] holdoutResiduals(double[] series) {
+        int holdout = ModelEvaluation.holdoutSize(series.length);
+        if (holdout == 0) return new double[0];
+
+        int origin = series.length - holdout;
+        double[] predicted = new double[holdout];
+        for (int i = 1; i <= holdout; i++) {
+            predicted[i - 1] = simulate(series[origin - 1], i);
+        }
+        return ModelEvaluation.residuals(series, origin, predicted);
+    }
+
+    @Override
+    public FittedModel deserialize(byte[] bytes) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            ModelMetrics metrics = ModelEvaluation.readMetrics(in);
+            double lastValue = in.readDouble();
+            return new Fitted(lastValue, metrics, ModelEvaluation.readArray(in));
+        }
+    }
+
+    private ModelMetrics createSimulatedMetrics(double[] targetValues) {
+        if (targetValues.length == 0) {
+            // Fallback nếu không có dữ liệu
+            return fallbackMetrics();
+        }
+
+        ModelMetrics metrics = new ModelMetrics();
+        metrics.setModelName(getName());
+
+        // Tính thống kê cơ bản
+        double sum = 0;
+        for (double v : targetValues) sum += v;
+        double mean = sum / targetValues.length;
+        double variance = 0;
+        for (double v : targetValues) variance += (v - mean) * (v - mean);
+        double std = Math.sqrt(variance / targetValues.length);
+
+        // Tạo metrics mô phỏng dựa trên thống kê thực
+        double baseError = std * 0.1; // 10% của độ lệch chuẩn
+        double[] factors = errorFactors();
+
+        metrics.setMae(Math.round(baseError * factors[0] * 100.0) / 100.0);
+        metrics.setRmse(Math.round(baseError * factors[1] * 100.0) / 100.0);
+        metrics.setMape(Math.round((baseError * factors[0] / mean) * 1000.0) / 10.0);
+        metrics.setTrainingTime(fallbackMetrics().getTrainingTime());
+        return metrics;
+    }
+
+    protected ModelMetrics metrics(double mae, double rmse, double mape, double trainingTime) {
+        ModelMetrics metrics = new ModelMetrics();
+        metrics.setModelName(getName());
+        metrics.setMae(mae);
+        metrics.setRmse(rmse);
+        metrics.setMape(mape);
+        metrics.setTrainingTime(trainingTime);
+        return metrics;
+    }
+
+    private final class Fitted implements FittedModel {
+        private final double lastValue;
+        private final ModelMetrics metrics;
+        private final double[] residuals;
+
+        Fitted(double lastValue, ModelMetrics metrics, double[] residuals) {
+            this.lastValue = lastValue;
+            this.metrics = metrics;
+            this.residuals = residuals;
+        }
+
+        @Override
+        public String getEngineKey() { return getKey(); }
+
+        @Override
+        public double[] predict(int horizon) {
+            double[] forecast = new double[horizon];
+            for (int i = 1; i <= horizon; i++) {
+                forecast[i - 1] = simulate(lastValue, i);
+            }
+            return forecast;
+        }
+
+        @Override
+        public void predictStepwise(int horizon, StepSink sink) throws IOException {
+            for (int i = 1; i <= horizon; i++) {
+                sink.accept(i - 1, simulate(lastValue, i));
+            }
+        }
+
+        @Override
+        public double[] getResiduals() { return residuals; }
+
+        @Override
+        public byte[] serialize() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                ModelEvaluation.writeMetrics(out, metrics);
+                out.writeDouble(lastValue);
+                ModelEvaluation.writeArray(out, residuals);
+            }
+            return bytes.toByteArray();
+        }
+
+        @Override
+        public ModelMetrics getMetrics() { return metrics; }
+    }
+}
@@ -0,0 +1,57 @@
+package com.electricity.forecast.engine;
+
+import java.util.function.Supplier;
+
+/**
+ * Dữ liệu huấn luyện dùng chung cho mọi engine. Mảng giá trị được chia sẻ (không sao chép)
+ * giữa các luồng huấn luyện, nên engine tuyệt đối không được ghi vào mảng này.
+ */
+public final class TrainingData {
+
+    private final double[] series;
+    private final String targetColumn;
+    private final Supplier<SeriesDiagnostics> diagnostics;
+    private volatile SeriesDiagnostics computed;
+
+    public TrainingData(double[] series, String targetColumn) {
+        this(series, targetColumn, null);
+    }
+
+    /**
+     * Từ một cột của bộ dữ liệu; cột ngoài heap được sao chép lên heap một lần cho cả lần huấn luyện.
+     * {@code diagnostics} trả chẩn đoán đã lưu của bộ dữ liệu (null: tính khi engine cần lần đầu)
+     */
+    public TrainingData(SeriesColumn series, String targetColumn, Supplier<SeriesDiagnostics> diagnostics) {
+        this(series.toArray(), targetColumn, diagnostics);
+    }
+
+    private TrainingData(double[] series, String targetColumn, Supplier<SeriesDiagnostics> diagnostics) {
+        this.series = series;
+        this.targetColumn = targetColumn;
+        this.diagnostics = diagnostics;
+    }
+
+    /**
+     * Chuỗi giá trị cột mục tiêu theo thứ tự thời gian (chỉ đọc)
+     */
+    public double[] values() { return series; }
+
+    public int size() { return series.length; }
+
+    public double lastValue() { return series.length > 0 ? series[series.length - 1] : 0.0; }
+
+    public String getTargetColumn() { return targetColumn; }
+
+    /**
+     * ACF/PACF và chu kỳ trội của chuỗi, để engine tự chọn bậc hoặc cửa sổ
+     */
+    public SeriesDiagnostics diagnostics() {
+        if (diagnostics != null) return diagnostics.get();
+        SeriesDiagnostics result = computed;
+        if (result == null) {
+            result = SeriesDiagnostics.compute(series);
+            computed = result;
+        }
+        return result;
+    }
+}
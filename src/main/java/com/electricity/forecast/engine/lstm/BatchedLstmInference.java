@@ -0,0 +1,147 @@
+package com.electricity.forecast.engine.lstm;
+
+import java.util.Arrays;
+
+/**
+ * Suy luận LSTM cho nhiều chuỗi cùng lúc. Trạng thái ẩn của B chuỗi được xếp thành ma trận
+ * [B x H], nên mỗi bước đệ quy là một phép nhân ma trận-ma trận thay vì B phép ma trận-vector.
+ * Các bộ đệm được cấp phát một lần; một instance không an toàn khi dùng từ nhiều luồng.
+ */
+public class BatchedLstmInference {
+
+    /**
+     * Nhận kết quả của một bước đệ quy cho cả batch (thang gốc); mảng values được dùng lại giữa các bước
+     */
+    @FunctionalInterface
+    public interface StepListener {
+        void onStep(int step, double[] values);
+    }
+
+    private final InferenceWeights weights;
+    private final int batch;
+    private final int hidden;
+    private final double[][] h;
+    private final double[][] c;
+    private final double[] z;
+    private final double[] input;
+
+    public BatchedLstmInference(InferenceWeights weights, int batch) {
+        this.weights = weights;
+        this.batch = batch;
+        this.hidden = weights.getHiddenSize();
+        this.h = new double[weights.getLayers()][batch * hidden];
+        this.c = new double[weights.getLayers()][batch * hidden];
+        this.z = new double[batch * 4 * hidden];
+        this.input = new double[batch * LstmNetwork.INPUT_SIZE];
+    }
+
+    public void reset() {
+        for (int l = 0; l < h.length; l++) {
+            Arrays.fill(h[l], 0);
+            Arrays.fill(c[l], 0);
+        }
+    }
+
+    /**
+     * Một bước cho cả batch: nhận giá trị đã chuẩn hóa, ghi dự báo bước kế tiếp (đã chuẩn hóa) vào outputs
+     */
+    public void step(double[] scaledInputs, double[] scaledOutputs) {
+        System.arraycopy(scaledInputs, 0, input, 0, batch);
+        int gates = 4 * hidden;
+
+        for (int l = 0; l < h.length; l++) {
+            double[] x = l == 0 ? input : h[l - 1];
+            double[] hl = h[l];
+            double[] cl = c[l];
+
+            MatrixKernels.broadcastRows(weights.getBias(l), z, batch, gates);
+            weights.getWx(l).multiplyAccumulate(x, z, batch);
+            weights.getWh(l).multiplyAccumulate(hl, z, batch);
+
+            for (int b = 0; b < batch; b++) {
+                int zRow = b * gates;
+                int hRow = b * hidden;
+                for (int j = 0; j < hidden; j++) {
+                    double i = MatrixKernels.sigmoid(z[zRow + j]);
+                    double f = MatrixKernels.sigmoid(z[zRow + hidden + j]);
+                    double g = MatrixKernels.tanh(z[zRow + 2 * hidden + j]);
+                    double o = MatrixKernels.sigmoid(z[zRow + 3 * hidden + j]);
+                    double cell = f * cl[hRow + j] + i * g;
+                    cl[hRow + j] = cell;
+                    hl[hRow + j] = o * MatrixKernels.tanh(cell);
+                }
+            }
+        }
+
+        double[] top = h[h.length - 1];
+        double[] wy = weights.getWy();
+        double by = weights.getBy();
+        for (int b = 0; b < batch; b++) {
+            double sum = by;
+            int hRow = b * hidden;
+            for (int j = 0; j < hidden; j++) sum += top[hRow + j] * wy[j];
+            scaledOutputs[b] = sum;
+        }
+    }
+
+    /**
+     * Dự báo đệ quy cho nhiều chuỗi bằng một lần gọi. contexts[b] là lịch sử (thang gốc) của chuỗi b;
+     * chỉ {@code window} giá trị cuối được dùng (thiếu thì lặp giá trị đầu tiên). Trả về [B][horizon] (thang gốc).
+     * Cửa sổ chỉ chạy một lần để dựng trạng thái (h, c); sau đó mỗi bước đệ quy đưa dự báo vừa có vào mạng
+     * với trạng thái mang tiếp, nên mỗi bước chỉ tốn một bước batch (window + horizon bước, không phải window x horizon).
+     */
+    public static double[][] forecast(LstmNetwork network, double[][] contexts, int horizon) {
+        return forecast(InferenceWeights.from(network, WeightPrecision.FP64), contexts, horizon);
+    }
+
+    /**
+     * Như trên, với trọng số đã chọn độ chính xác (có thể lượng tử hóa)
+     */
+    public static double[][] forecast(InferenceWeights weights, double[][] contexts, int horizon) {
+        double[][] result = new double[contexts.length][horizon];
+        forecast(weights, contexts, horizon, (step, values) -> {
+            for (int b = 0; b < values.length; b++) result[b][step] = values[b];
+        });
+        return result;
+    }
+
+    /**
+     * Như trên nhưng phát từng bước cho listener thay vì giữ cả ma trận [B][horizon];
+     * bộ nhớ chỉ phụ thuộc vào B, không phụ thuộc window hay horizon.
+     */
+    public static void forecast(InferenceWeights weights, double[][] contexts, int horizon, StepListener listener) {
+        int batch = contexts.length;
+        int window = weights.getWindow();
+        for (double[] context : contexts) {
+            if (context == null || context.length == 0) {
+                throw new IllegalArgumentException("Every series needs at least one observation");
+            }
+        }
+        BatchedLstmInference engine = new BatchedLstmInference(weights, batch);
+        if (horizon <= 0) return;
+
+        double[] in = new double[batch];
+        double[] out = new double[batch];
+        double[] values = new double[batch];
+
+        // Dựng trạng thái từ window giá trị cuối của mỗi chuỗi (thang chuẩn hóa)
+        for (int t = 0; t < window; t++) {
+            for (int b = 0; b < batch; b++) {
+                double[] context = contexts[b];
+                int index = context.length - window + t;
+                in[b] = weights.scale(context[Math.max(index, 0)]);
+            }
+            engine.step(in, out);
+        }
+
+        for (int step = 0; step < horizon; step++) {
+            if (step > 0) {
+                // Dự báo bước trước là đầu vào của bước này; trạng thái (h, c) mang tiếp
+                System.arraycopy(out, 0, in, 0, batch);
+                engine.step(in, out);
+            }
+            for (int b = 0; b < batch; b++) values[b] = weights.unscale(out[b]);
+            listener.onStep(step, values);
+        }
+    }
+}
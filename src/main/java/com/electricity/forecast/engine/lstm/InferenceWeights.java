@@ -0,0 +1,143 @@
+package com.electricity.forecast.engine.lstm;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Trọng số chỉ dùng cho suy luận, với độ chính xác lưu trữ tùy chọn (FP64, FP16, INT8).
+ * Chỉ các ma trận lớn Wx, Wh được lượng tử hóa; bias và tầng đầu ra giữ nguyên double.
+ */
+public class InferenceWeights {
+
+    private final int hiddenSize;
+    private final int layers;
+    private final int window;
+    private final double mean;
+    private final double std;
+    private final WeightMatrix[] wx;
+    private final WeightMatrix[] wh;
+    private final double[][] bias;
+    private final double[] wy;
+    private final double by;
+
+    private InferenceWeights(int hiddenSize, int layers, int window, double mean, double std,
+                             WeightMatrix[] wx, WeightMatrix[] wh, double[][] bias, double[] wy, double by) {
+        this.hiddenSize = hiddenSize;
+        this.layers = layers;
+        this.window = window;
+        this.mean = mean;
+        this.std = std;
+        this.wx = wx;
+        this.wh = wh;
+        this.bias = bias;
+        this.wy = wy;
+        this.by = by;
+    }
+
+    public static InferenceWeights from(LstmNetwork network, WeightPrecision precision) {
+        int layers = network.getLayers();
+        int hidden = network.getHiddenSize();
+        WeightMatrix[] wx = new WeightMatrix[layers];
+        WeightMatrix[] wh = new WeightMatrix[layers];
+        double[][] bias = new double[layers][];
+        for (int l = 0; l < layers; l++) {
+            wx[l] = WeightMatrix.of(network.getWx(l), network.inputSize(l), 4 * hidden, precision);
+            wh[l] = WeightMatrix.of(network.getWh(l), hidden, 4 * hidden, precision);
+            bias[l] = network.getBias(l).clone();
+        }
+        return new InferenceWeights(hidden, layers, network.getWindow(), network.getMean(), network.getStd(),
+            wx, wh, bias, network.getWy().clone(), network.getBy());
+    }
+
+    /**
+     * Bản sao với các ma trận Wx, Wh chuyển ra ngoài heap (chỉ FP64); bias và tầng đầu ra nhỏ nên giữ trên heap
+     */
+    public InferenceWeights toOffHeap() {
+        WeightMatrix[] offHeapWx = new WeightMatrix[layers];
+        WeightMatrix[] offHeapWh = new WeightMatrix[layers];
+        for (int l = 0; l < layers; l++) {
+            offHeapWx[l] = wx[l].toOffHeap();
+            offHeapWh[l] = wh[l].toOffHeap();
+        }
+        return new InferenceWeights(hiddenSize, layers, window, mean, std, offHeapWx, offHeapWh, bias, wy, by);
+    }
+
+    public boolean isOffHeap() { return wh[0].isOffHeap(); }
+
+    /**
+     * Trả bộ nhớ ngoài heap của các ma trận; gọi khi mô hình bị thay thế hoặc bỏ khỏi bộ nhớ
+     */
+    public void release() {
+        for (int l = 0; l < layers; l++) {
+            wx[l].release();
+            wh[l].release();
+        }
+    }
+
+    public int inputSize(int layer) {
+        return layer == 0 ? LstmNetwork.INPUT_SIZE : hiddenSize;
+    }
+
+    public double scale(double value) { return (value - mean) / std; }
+
+    public double unscale(double value) { return value * std + mean; }
+
+    public WeightPrecision getPrecision() { return wh[0].getPrecision(); }
+
+    /**
+     * Dung lượng xấp xỉ của trọng số (byte), kể cả phần ngoài heap
+     */
+    public long footprintBytes() {
+        long bytes = 8L * (wy.length + 1);
+        for (int l = 0; l < layers; l++) {
+            bytes += wx[l].footprintBytes() + wh[l].footprintBytes() + 8L * bias[l].length;
+        }
+        return bytes;
+    }
+
+    // Getters
+    public int getHiddenSize() { return hiddenSize; }
+    public int getLayers() { return layers; }
+    public int getWindow() { return window; }
+    public WeightMatrix getWx(int layer) { return wx[layer]; }
+    public WeightMatrix getWh(int layer) { return wh[layer]; }
+    public double[] getBias(int layer) { return bias[layer]; }
+    public double[] getWy() { return wy; }
+    public double getBy() { return by; }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(hiddenSize);
+        out.writeInt(layers);
+        out.writeInt(window);
+        out.writeDouble(mean);
+        out.writeDouble(std);
+        for (int l = 0; l < layers; l++) {
+            wx[l].writeTo(out);
+            wh[l].writeTo(out);
+            for (double value : bias[l]) out.writeDouble(value);
+        }
+        for (double value : wy) out.writeDouble(value);
+        out.writeDouble(by);
+    }
+
+    public static InferenceWeights readFrom(DataInputStream in) throws IOException {
+        int hidden = in.readInt();
+        int layers = in.readInt();
+        int window = in.readInt();
+        double mean = in.readDouble();
+        double std = in.readDouble();
+        WeightMatrix[] wx = new WeightMatrix[layers];
+        WeightMatrix[] wh = new WeightMatrix[layers];
+        double[][] bias = new double[layers][4 * hidden];
+        for (int l = 0; l < layers; l++) {
+            wx[l] = WeightMatrix.readFrom(in);
+            wh[l] = WeightMatrix.readFrom(in);
+            for (int j = 0; j < bias[l].length; j++) bias[l][j] = in.readDouble();
+        }
+        double[] wy = new double[hidden];
+        for (int j = 0; j < hidden; j++) wy[j] = in.readDouble();
+        double by = in.readDouble();
+        return new InferenceWeights(hidden, layers, window, mean, std, wx, wh, bias, wy, by);
+    }
+}
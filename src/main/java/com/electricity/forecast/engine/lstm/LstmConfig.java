@@ -0,0 +1,74 @@
+package com.electricity.forecast.engine.lstm;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Siêu tham số của mạng LSTM và quá trình huấn luyện.
+ */
+public class LstmConfig {
+    private int window = 24;
+    private int hiddenSize = 16;
+    private int layers = 1;
+    private double learningRate = 0.01;
+    private int epochs = 20;
+    private int batchSize = 32;
+    private int maxBatchesPerEpoch = 64;
+    private long seed = 42;
+    private boolean prefetch = false;
+
+    public LstmConfig() {}
+
+    public LstmConfig copy() {
+        LstmConfig copy = new LstmConfig();
+        copy.window = window;
+        copy.hiddenSize = hiddenSize;
+        copy.layers = layers;
+        copy.learningRate = learningRate;
+        copy.epochs = epochs;
+        copy.batchSize = batchSize;
+        copy.maxBatchesPerEpoch = maxBatchesPerEpoch;
+        copy.seed = seed;
+        copy.prefetch = prefetch;
+        return copy;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("window", window);
+        map.put("hiddenSize", hiddenSize);
+        map.put("layers", layers);
+        map.put("learningRate", learningRate);
+        map.put("epochs", epochs);
+        map.put("batchSize", batchSize);
+        return map;
+    }
+
+    // Getters and Setters
+    public int getWindow() { return window; }
+    public void setWindow(int window) { this.window = window; }
+
+    public int getHiddenSize() { return hiddenSize; }
+    public void setHiddenSize(int hiddenSize) { this.hiddenSize = hiddenSize; }
+
+    public int getLayers() { return layers; }
+    public void setLayers(int layers) { this.layers = layers; }
+
+    public double getLearningRate() { return learningRate; }
+    public void setLearningRate(double learningRate) { this.learningRate = learningRate; }
+
+    public int getEpochs() { return epochs; }
+    public void setEpochs(int epochs) { this.epochs = epochs; }
+
+    public int getBatchSize() { return batchSize; }
+    public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+
+    public int getMaxBatchesPerEpoch() { return maxBatchesPerEpoch; }
+    public void setMaxBatchesPerEpoch(int maxBatchesPerEpoch) { this.maxBatchesPerEpoch = maxBatchesPerEpoch; }
+
+    public long getSeed() { return seed; }
+    public void setSeed(long seed) { this.seed = seed; }
+
+    public boolean isPrefetch() { return prefetch; }
+    public void setPrefetch(boolean prefetch) { this.prefetch = prefetch; }
+}
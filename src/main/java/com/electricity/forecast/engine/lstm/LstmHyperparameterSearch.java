@@ -0,0 +1,160 @@
+package com.electricity.forecast.engine.lstm;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Tìm siêu tham số LSTM bằng successive halving: mọi cấu hình được huấn luyện vài epoch,
+ * chỉ 1/eta cấu hình có validation loss tốt nhất được huấn luyện tiếp ở bậc sau.
+ * Các trial trong một bậc chạy song song với số luồng giới hạn; tất cả dùng chung một
+ * {@link LstmTrainingSet} chỉ đọc (cửa sổ là offset, không sao chép).
+ */
+public class LstmHyperparameterSearch {
+
+    /**
+     * Một cấu hình đang được thử
+     */
+    public static final class Trial {
+        private final int id;
+        private final LstmConfig config;
+        private LstmTrainer trainer;
+        private int epochs;
+        private int rung;
+        private double validationLoss = Double.POSITIVE_INFINITY;
+        private String error;
+
+        Trial(int id, LstmConfig config) {
+            this.id = id;
+            this.config = config;
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("trial", id);
+            map.put("config", config.toMap());
+            map.put("epochs", epochs);
+            map.put("rung", rung);
+            map.put("validationLoss", Double.isFinite(validationLoss) ? Math.round(validationLoss * 100000.0) / 100000.0 : null);
+            if (error != null) map.put("error", error);
+            return map;
+        }
+
+        public LstmConfig getConfig() { return config; }
+        public LstmTrainer getTrainer() { return trainer; }
+        public double getValidationLoss() { return validationLoss; }
+    }
+
+    /**
+     * Kết quả: trial tốt nhất, bảng xếp hạng và chi phí so với tìm kiếm lưới
+     */
+    public static final class Result {
+        private final Trial best;
+        private final List<Trial> leaderboard;
+        private final long totalEpochs;
+        private final long gridEpochs;
+        private final double wallTime;
+
+        Result(Trial best, List<Trial> leaderboard, long totalEpochs, long gridEpochs, double wallTime) {
+            this.best = best;
+            this.leaderboard = leaderboard;
+            this.totalEpochs = totalEpochs;
+            this.gridEpochs = gridEpochs;
+            this.wallTime = wallTime;
+        }
+
+        public Trial getBest() { return best; }
+        public List<Trial> getLeaderboard() { return leaderboard; }
+        public long getTotalEpochs() { return totalEpochs; }
+        public long getGridEpochs() { return gridEpochs; }
+        public double getWallTime() { return wallTime; }
+    }
+
+    public Result run(LstmTrainingSet data, List<LstmConfig> candidates, LstmSearchSpace space) throws InterruptedException {
+        if (candidates.isEmpty()) {
+            throw new IllegalArgumentException("Search space has no configuration that fits the data");
+        }
+        long start = System.nanoTime();
+        int eta = space.getEta();
+        int maxEpochs = space.getMaxEpochs();
+
+        List<Trial> trials = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) trials.add(new Trial(i + 1, candidates.get(i)));
+
+        // Số bậc: giảm 1/eta mỗi bậc cho tới khi còn ít nhất 1 cấu hình
+        int rungs = 1;
+        for (int n = trials.size(); n >= eta; n /= eta) rungs++;
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(space.getParallelism(), trials.size()), runnable -> {
+            Thread thread = new Thread(runnable, "lstm-search");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long totalEpochs = 0;
+        List<Trial> alive = trials;
+        try {
+            for (int rung = 0; rung < rungs; rung++) {
+                // Ngân sách epoch tăng theo cấp số nhân eta, bậc cuối chạy đủ maxEpochs
+                int budget = (int) Math.max(1, Math.round(maxEpochs / Math.pow(eta, rungs - 1 - rung)));
+                int rungIndex = rung;
+
+                List<Callable<Integer>> tasks = new ArrayList<>();
+                for (Trial trial : alive) {
+                    tasks.add(() -> advance(trial, data, budget, rungIndex));
+                }
+                for (Future<Integer> future : pool.invokeAll(tasks)) {
+                    try {
+                        totalEpochs += future.get();
+                    } catch (ExecutionException e) {
+                        // advance() tự ghi lỗi vào trial
+                    }
+                }
+
+                alive = new ArrayList<>(alive);
+                alive.sort(Comparator.comparingDouble(Trial::getValidationLoss));
+                if (rung < rungs - 1) {
+                    alive = alive.subList(0, Math.max(1, alive.size() / eta));
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        List<Trial> leaderboard = new ArrayList<>(trials);
+        leaderboard.sort(Comparator.comparingInt((Trial t) -> -t.rung).thenComparingDouble(Trial::getValidationLoss));
+        Trial best = leaderboard.get(0);
+
+        // Giải phóng bộ đệm của các trial đã bị loại
+        for (Trial trial : trials) {
+            if (trial != best) trial.trainer = null;
+        }
+
+        double wallTime = (System.nanoTime() - start) / 1e9;
+        return new Result(best, leaderboard, totalEpochs, (long) maxEpochs * trials.size(), wallTime);
+    }
+
+    /**
+     * Huấn luyện tiếp trial tới {@code budget} epoch, trả về số epoch vừa chạy
+     */
+    private int advance(Trial trial, LstmTrainingSet data, int budget, int rung) {
+        int ran = 0;
+        try {
+            if (trial.trainer == null) {
+                trial.trainer = new LstmTrainer(trial.config, data);
+            }
+            while (trial.epochs < budget) {
+                trial.trainer.trainEpoch();
+                trial.epochs++;
+                ran++;
+            }
+            double loss = trial.trainer.validationLoss();
+            trial.validationLoss = Double.isNaN(loss) ? Double.POSITIVE_INFINITY : loss;
+            trial.rung = rung;
+        } catch (RuntimeException e) {
+            trial.error = e.getMessage();
+            trial.validationLoss = Double.POSITIVE_INFINITY;
+            trial.trainer = null;
+        }
+        return ran;
+    }
+}
@@ -0,0 +1,128 @@
+package com.electricity.forecast.engine.lstm;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Trọng số của mạng LSTM nhiều tầng với một đầu ra tuyến tính.
+ * Mỗi tầng: Wx [input x 4H], Wh [H x 4H], b [4H], thứ tự cổng i, f, g, o.
+ * Mạng làm việc trên giá trị đã chuẩn hóa (x - mean) / std.
+ */
+public class LstmNetwork {
+
+    public static final int INPUT_SIZE = 1;
+
+    private final int hiddenSize;
+    private final int layers;
+    private final int window;
+    private final double[][] wx;
+    private final double[][] wh;
+    private final double[][] bias;
+    private final double[] wy;
+    private final double[] by;
+    private double mean;
+    private double std;
+
+    public LstmNetwork(int hiddenSize, int layers, int window) {
+        this.hiddenSize = hiddenSize;
+        this.layers = layers;
+        this.window = window;
+        this.wx = new double[layers][];
+        this.wh = new double[layers][];
+        this.bias = new double[layers][];
+        for (int l = 0; l < layers; l++) {
+            wx[l] = new double[inputSize(l) * 4 * hiddenSize];
+            wh[l] = new double[hiddenSize * 4 * hiddenSize];
+            bias[l] = new double[4 * hiddenSize];
+        }
+        this.wy = new double[hiddenSize];
+        this.by = new double[1];
+        this.std = 1.0;
+    }
+
+    /**
+     * Khởi tạo Xavier, bias cổng quên = 1 để gradient đi xa hơn lúc đầu
+     */
+    public void initialize(long seed) {
+        Random rand = new Random(seed);
+        for (int l = 0; l < layers; l++) {
+            fillUniform(wx[l], Math.sqrt(6.0 / (inputSize(l) + 4 * hiddenSize)), rand);
+            fillUniform(wh[l], Math.sqrt(6.0 / (5 * hiddenSize)), rand);
+            for (int j = hiddenSize; j < 2 * hiddenSize; j++) bias[l][j] = 1.0;
+        }
+        fillUniform(wy, Math.sqrt(6.0 / (hiddenSize + 1)), rand);
+    }
+
+    private static void fillUniform(double[] values, double limit, Random rand) {
+        for (int i = 0; i < values.length; i++) values[i] = (rand.nextDouble() * 2 - 1) * limit;
+    }
+
+    public int inputSize(int layer) {
+        return layer == 0 ? INPUT_SIZE : hiddenSize;
+    }
+
+    /**
+     * Tất cả tham số học được, theo thứ tự cố định (dùng cho optimizer)
+     */
+    public double[][] parameters() {
+        double[][] params = new double[3 * layers + 2][];
+        for (int l = 0; l < layers; l++) {
+            params[3 * l] = wx[l];
+            params[3 * l + 1] = wh[l];
+            params[3 * l + 2] = bias[l];
+        }
+        params[3 * layers] = wy;
+        params[3 * layers + 1] = by;
+        return params;
+    }
+
+    public long parameterCount() {
+        long count = 0;
+        for (double[] p : parameters()) count += p.length;
+        return count;
+    }
+
+    public double scale(double value) { return (value - mean) / std; }
+
+    public double unscale(double value) { return value * std + mean; }
+
+    public void setScaler(double mean, double std) {
+        this.mean = mean;
+        this.std = std > 0 ? std : 1.0;
+    }
+
+    // Getters
+    public int getHiddenSize() { return hiddenSize; }
+    public int getLayers() { return layers; }
+    public int getWindow() { return window; }
+    public double[] getWx(int layer) { return wx[layer]; }
+    public double[] getWh(int layer) { return wh[layer]; }
+    public double[] getBias(int layer) { return bias[layer]; }
+    public double[] getWy() { return wy; }
+    public double getBy() { return by[0]; }
+    public double getMean() { return mean; }
+    public double getStd() { return std; }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(hiddenSize);
+        out.writeInt(layers);
+        out.writeInt(window);
+        out.writeDouble(mean);
+        out.writeDouble(std);
+        for (double[] param : parameters()) {
+            for (double value : param) out.writeDouble(value);
+        }
+    }
+
+    public static LstmNetwork readFrom(DataInputStream in) throws IOException {
+        LstmNetwork net = new LstmNetwork(in.readInt(), in.readInt(), in.readInt());
+        net.mean = in.readDouble();
+        net.std = in.readDouble();
+        for (double[] param : net.parameters()) {
+            for (int i = 0; i < param.length; i++) param[i] = in.readDouble();
+        }
+        return net;
+    }
+}
@@ -0,0 +1,132 @@
+package com.electricity.forecast.engine.lstm;
+
+import java.util.*;
+
+/**
+ * Không gian tìm kiếm siêu tham số LSTM và các thiết lập của successive halving.
+ */
+public class LstmSearchSpace {
+    private List<Integer> windows = List.of(24, 48);
+    private List<Integer> hiddenSizes = List.of(8, 16, 32);
+    private List<Integer> layers = List.of(1, 2);
+    private List<Double> learningRates = List.of(0.003, 0.01, 0.03);
+    private int trials = 27;
+    private int maxEpochs = 20;
+    private int eta = 3;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private long seed = 42;
+
+    /**
+     * Giới hạn cho giá trị trong request (forecast.lstm.search.*): kích thước mạng, số trial, số epoch và số luồng
+     * quyết định bộ nhớ và CPU của lần tìm kiếm, còn ngân sách bộ nhớ chỉ tính theo độ dài chuỗi
+     */
+    public record Limits(int maxWindow, int maxHiddenSize, int maxLayers, int maxTrials, int maxEpochs,
+                         int maxParallelism) {}
+
+    public LstmSearchSpace() {}
+
+    /**
+     * Đọc từ JSON của request; khóa không có thì giữ mặc định. Giá trị không phải số hoặc ngoài giới hạn
+     * ném IllegalArgumentException (trả về 400).
+     */
+    public static LstmSearchSpace fromMap(Map<String, Object> body, Limits limits) {
+        LstmSearchSpace space = new LstmSearchSpace();
+        space.parallelism = Math.min(space.parallelism, limits.maxParallelism());
+        if (body == null) return space;
+
+        space.windows = intList(body, "window", 2, limits.maxWindow(), space.windows);
+        space.hiddenSizes = intList(body, "hiddenSize", 1, limits.maxHiddenSize(), space.hiddenSizes);
+        space.layers = intList(body, "layers", 1, limits.maxLayers(), space.layers);
+        space.learningRates = doubleList(body, "learningRate", space.learningRates);
+        space.trials = intValue(body, "trials", 1, limits.maxTrials(), space.trials);
+        space.maxEpochs = intValue(body, "maxEpochs", 1, limits.maxEpochs(), space.maxEpochs);
+        space.eta = intValue(body, "eta", 2, 10, space.eta);
+        space.parallelism = intValue(body, "parallelism", 1, limits.maxParallelism(), space.parallelism);
+        return space;
+    }
+
+    /**
+     * Lấy ngẫu nhiên (có seed) tối đa {@code trials} cấu hình khác nhau từ lưới.
+     * Cấu hình có window không vừa dữ liệu huấn luyện bị loại.
+     */
+    public List<LstmConfig> sample(LstmConfig base, int trainLength) {
+        List<LstmConfig> grid = new ArrayList<>();
+        for (int window : windows) {
+            if (window < 1 || window + 1 >= trainLength) continue;
+            for (int hidden : hiddenSizes) {
+                for (int layerCount : layers) {
+                    for (double learningRate : learningRates) {
+                        LstmConfig config = base.copy();
+                        config.setWindow(window);
+                        config.setHiddenSize(hidden);
+                        config.setLayers(layerCount);
+                        config.setLearningRate(learningRate);
+                        config.setEpochs(maxEpochs);
+                        grid.add(config);
+                    }
+                }
+            }
+        }
+        Collections.shuffle(grid, new Random(seed));
+        return grid.size() > trials ? new ArrayList<>(grid.subList(0, trials)) : grid;
+    }
+
+    /**
+     * Một số hoặc danh sách số nguyên trong [min, max]
+     */
+    private static List<Integer> intList(Map<String, Object> body, String key, int min, int max, List<Integer> fallback) {
+        Object value = body.get(key);
+        if (value == null) return fallback;
+        List<Integer> result = new ArrayList<>();
+        for (Object item : items(value)) result.add(checkedInt(key, item, min, max));
+        return result.isEmpty() ? fallback : result;
+    }
+
+    /**
+     * Một số hoặc danh sách learning rate trong (0, 1]
+     */
+    private static List<Double> doubleList(Map<String, Object> body, String key, List<Double> fallback) {
+        Object value = body.get(key);
+        if (value == null) return fallback;
+        List<Double> result = new ArrayList<>();
+        for (Object item : items(value)) {
+            double number = number(key, item).doubleValue();
+            if (!(number > 0 && number <= 1)) {
+                throw new IllegalArgumentException(key + " must be in (0, 1]");
+            }
+            result.add(number);
+        }
+        return result.isEmpty() ? fallback : result;
+    }
+
+    private static int intValue(Map<String, Object> body, String key, int min, int max, int fallback) {
+        Object value = body.get(key);
+        return value == null ? fallback : checkedInt(key, value, min, max);
+    }
+
+    private static Collection<?> items(Object value) {
+        return value instanceof Collection ? (Collection<?>) value : List.of(value);
+    }
+
+    private static int checkedInt(String key, Object item, int min, int max) {
+        double number = number(key, item).doubleValue();
+        if (number != Math.rint(number) || number < min || number > max) {
+            throw new IllegalArgumentException(key + " must be an integer between " + min + " and " + max);
+        }
+        return (int) number;
+    }
+
+    private static Number number(String key, Object item) {
+        if (!(item instanceof Number)) {
+            throw new IllegalArgumentException(key + " must be a number or a list of numbers");
+        }
+        return (Number) item;
+    }
+
+    // Getters
+    public int getTrials() { return trials; }
+    public int getMaxEpochs() { return maxEpochs; }
+    public int getEta() { return eta; }
+    public int getParallelism() { return parallelism; }
+    public void setParallelism(int parallelism) { this.parallelism = Math.max(1, parallelism); }
+}
@@ -0,0 +1,347 @@
+package com.electricity.forecast.engine.lstm;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Huấn luyện LSTM bằng BPTT theo mini-batch và Adam. Mỗi mẫu là một cửa sổ [s, s + window)
+ * dự báo giá trị tại s + window; toàn bộ phép tính trên batch dùng {@link MatrixKernels}.
+ * Trainer giữ trạng thái giữa các epoch để có thể dừng sớm từ bên ngoài (tìm siêu tham số).
+ * Mẫu được đọc qua {@link WindowedDataset} nên chỉ có chuỗi gốc và hai bộ đệm batch nằm trong bộ nhớ.
+ */
+public class LstmTrainer {
+
+    private static final double CLIP_NORM = 5.0;
+    private static final double BETA1 = 0.9;
+    private static final double BETA2 = 0.999;
+    private static final double EPSILON = 1e-8;
+
+    private final LstmConfig config;
+    private final WindowedDataset dataset;
+    private final LstmNetwork network;
+    private final Random rand;
+
+    private final int window;
+    private final int hidden;
+    private final int layers;
+    private final int batch;
+
+    // Mẫu huấn luyện: offset bắt đầu cửa sổ
+    private final int[] trainOffsets;
+    private final int[] validationOffsets;
+    private final int[] testOffsets;
+
+    // Hai bộ đệm batch luân phiên (một đang tính, một đang nạp trước); inputs/targets trỏ vào batch hiện tại
+    private final WindowedDataset.Batch[] buffers;
+    private double[][] inputs;
+    private double[] targets;
+
+    // Bộ đệm kích hoạt [layer][t][batch * H]
+    private final double[][][] hStates;
+    private final double[][][] cStates;
+    private final double[][][] gateI;
+    private final double[][][] gateF;
+    private final double[][][] gateG;
+    private final double[][][] gateO;
+    private final double[] z;
+    private final double[] dz;
+    private final double[] dh;
+    private final double[] dhNext;
+    private final double[] dcNext;
+    private final double[][] dxAbove;
+    private final double[][] dxBelow;
+    private final double[] predictions;
+
+    // Gradient và trạng thái Adam, cùng thứ tự với network.parameters()
+    private final double[][] params;
+    private final double[][] grads;
+    private final double[][] adamM;
+    private final double[][] adamV;
+    private int step;
+    private int epochsDone;
+
+    public LstmTrainer(LstmConfig config, LstmTrainingSet data) {
+        this.config = config;
+        this.window = config.getWindow();
+        this.hidden = config.getHiddenSize();
+        this.layers = config.getLayers();
+        this.batch = config.getBatchSize();
+        this.rand = new Random(config.getSeed());
+
+        if (data.getTrainEnd() <= window + 1) {
+            throw new IllegalArgumentException("Series too short for LSTM window " + window);
+        }
+
+        this.network = new LstmNetwork(hidden, layers, window);
+        network.initialize(config.getSeed());
+        network.setScaler(data.getMean(), data.getStd());
+
+        this.dataset = data.windows(window);
+        WindowedDataset.Split split = dataset.split(data.getTrainEnd(), data.getValidationEnd());
+        this.trainOffsets = split.train();
+        this.validationOffsets = split.validation();
+        this.testOffsets = split.test();
+        this.buffers = new WindowedDataset.Batch[] {dataset.newBatch(batch), dataset.newBatch(batch)};
+
+        this.hStates = new double[layers][window][batch * hidden];
+        this.cStates = new double[layers][window][batch * hidden];
+        this.gateI = new double[layers][window][batch * hidden];
+        this.gateF = new double[layers][window][batch * hidden];
+        this.gateG = new double[layers][window][batch * hidden];
+        this.gateO = new double[layers][window][batch * hidden];
+        this.z = new double[batch * 4 * hidden];
+        this.dz = new double[batch * 4 * hidden];
+        this.dh = new double[batch * hidden];
+        this.dhNext = new double[batch * hidden];
+        this.dcNext = new double[batch * hidden];
+        this.dxAbove = new double[window][batch * hidden];
+        this.dxBelow = new double[window][batch * hidden];
+        this.predictions = new double[batch];
+
+        this.params = network.parameters();
+        this.grads = new double[params.length][];
+        this.adamM = new double[params.length][];
+        this.adamV = new double[params.length][];
+        for (int i = 0; i < params.length; i++) {
+            grads[i] = new double[params[i].length];
+            adamM[i] = new double[params[i].length];
+            adamV[i] = new double[params[i].length];
+        }
+    }
+
+    /**
+     * Huấn luyện đủ số epoch trong cấu hình, trả về mạng đã huấn luyện
+     */
+    public LstmNetwork train() {
+        while (epochsDone < config.getEpochs()) {
+            trainEpoch();
+        }
+        return network;
+    }
+
+    /**
+     * Một epoch: xáo trộn offset, chạy tối đa maxBatchesPerEpoch batch. Trả về MSE (thang chuẩn hóa).
+     */
+    public double trainEpoch() {
+        WindowedDataset.shuffle(trainOffsets, rand);
+        WindowedDataset.Batches batches = dataset.batches(trainOffsets, batch, config.getMaxBatchesPerEpoch(),
+                buffers, config.isPrefetch());
+        double lossSum = 0;
+        int sampleCount = 0;
+
+        while (batches.hasNext()) {
+            int size = forward(batches.next());
+            lossSum += backward(size) * size;
+            sampleCount += size;
+            applyAdam();
+        }
+
+        epochsDone++;
+        return sampleCount > 0 ? lossSum / sampleCount : 0;
+    }
+
+    /**
+     * MSE dự báo một bước trên phần validation (thang chuẩn hóa); NaN nếu không có phần validation
+     */
+    public double validationLoss() {
+        return loss(validationOffsets);
+    }
+
+    /**
+     * MSE dự báo một bước trên tập kiểm tra; không dùng để chọn cấu hình
+     */
+    public double testLoss() {
+        return loss(testOffsets);
+    }
+
+    private double loss(int[] offsets) {
+        if (offsets.length == 0) return Double.NaN;
+        double lossSum = 0;
+        WindowedDataset.Batches batches = dataset.batches(offsets, batch, Integer.MAX_VALUE,
+                buffers, config.isPrefetch());
+        while (batches.hasNext()) {
+            int size = forward(batches.next());
+            for (int b = 0; b < size; b++) {
+                double error = predictions[b] - targets[b];
+                lossSum += error * error;
+            }
+        }
+        return lossSum / offsets.length;
+    }
+
+    public LstmNetwork getNetwork() { return network; }
+
+    public int getEpochsDone() { return epochsDone; }
+
+    // ========== LAN TRUYỀN THUẬN ==========
+
+    private int forward(WindowedDataset.Batch current) {
+        int size = current.size();
+        inputs = current.inputs();
+        targets = current.targets();
+
+        int gates = 4 * hidden;
+        for (int l = 0; l < layers; l++) {
+            double[] wx = network.getWx(l);
+            double[] wh = network.getWh(l);
+            int inSize = network.inputSize(l);
+
+            for (int t = 0; t < window; t++) {
+                double[] x = l == 0 ? inputs[t] : hStates[l - 1][t];
+                MatrixKernels.broadcastRows(network.getBias(l), z, size, gates);
+                MatrixKernels.gemm(x, wx, z, size, gates, inSize);
+                if (t > 0) MatrixKernels.gemm(hStates[l][t - 1], wh, z, size, gates, hidden);
+
+                double[] i = gateI[l][t], f = gateF[l][t], g = gateG[l][t], o = gateO[l][t];
+                double[] c = cStates[l][t], h = hStates[l][t];
+                double[] cPrev = t > 0 ? cStates[l][t - 1] : null;
+                for (int b = 0; b < size; b++) {
+                    int zRow = b * gates;
+                    int hRow = b * hidden;
+                    for (int j = 0; j < hidden; j++) {
+                        int k = hRow + j;
+                        i[k] = MatrixKernels.sigmoid(z[zRow + j]);
+                        f[k] = MatrixKernels.sigmoid(z[zRow + hidden + j]);
+                        g[k] = MatrixKernels.tanh(z[zRow + 2 * hidden + j]);
+                        o[k] = MatrixKernels.sigmoid(z[zRow + 3 * hidden + j]);
+                        c[k] = (cPrev != null ? f[k] * cPrev[k] : 0) + i[k] * g[k];
+                        h[k] = o[k] * MatrixKernels.tanh(c[k]);
+                    }
+                }
+            }
+        }
+
+        double[] top = hStates[layers - 1][window - 1];
+        double[] wy = network.getWy();
+        for (int b = 0; b < size; b++) {
+            double sum = network.getBy();
+            for (int j = 0; j < hidden; j++) sum += top[b * hidden + j] * wy[j];
+            predictions[b] = sum;
+        }
+        return size;
+    }
+
+    // ========== LAN TRUYỀN NGƯỢC (BPTT) ==========
+
+    private double backward(int size) {
+        for (double[] g : grads) Arrays.fill(g, 0);
+
+        int gates = 4 * hidden;
+        double loss = 0;
+        double[] dy = predictions; // dùng lại bộ đệm: predictions -> dL/dy
+        for (int b = 0; b < size; b++) {
+            double error = predictions[b] - targets[b];
+            loss += error * error;
+            dy[b] = error / size;
+        }
+
+        // Tầng đầu ra
+        double[] top = hStates[layers - 1][window - 1];
+        double[] wy = network.getWy();
+        double[] gWy = grads[3 * layers];
+        for (int b = 0; b < size; b++) {
+            for (int j = 0; j < hidden; j++) gWy[j] += top[b * hidden + j] * dy[b];
+            grads[3 * layers + 1][0] += dy[b];
+        }
+
+        double[][] above = dxAbove;
+        double[][] below = dxBelow;
+
+        for (int l = layers - 1; l >= 0; l--) {
+            double[] wx = network.getWx(l);
+            double[] wh = network.getWh(l);
+            double[] gWx = grads[3 * l];
+            double[] gWh = grads[3 * l + 1];
+            double[] gB = grads[3 * l + 2];
+            int inSize = network.inputSize(l);
+            Arrays.fill(dhNext, 0, size * hidden, 0);
+            Arrays.fill(dcNext, 0, size * hidden, 0);
+
+            for (int t = window - 1; t >= 0; t--) {
+                // dh = gradient từ bước sau + từ tầng trên (hoặc đầu ra)
+                for (int k = 0; k < size * hidden; k++) dh[k] = dhNext[k];
+                if (l == layers - 1) {
+                    if (t == window - 1) {
+                        for (int b = 0; b < size; b++) {
+                            for (int j = 0; j < hidden; j++) dh[b * hidden + j] += dy[b] * wy[j];
+                        }
+                    }
+                } else {
+                    for (int k = 0; k < size * hidden; k++) dh[k] += above[t][k];
+                }
+
+                double[] i = gateI[l][t], f = gateF[l][t], g = gateG[l][t], o = gateO[l][t];
+                double[] c = cStates[l][t];
+                double[] cPrev = t > 0 ? cStates[l][t - 1] : null;
+                for (int b = 0; b < size; b++) {
+                    int zRow = b * gates;
+                    int hRow = b * hidden;
+                    for (int j = 0; j < hidden; j++) {
+                        int k = hRow + j;
+                        double tc = MatrixKernels.tanh(c[k]);
+                        double dO = dh[k] * tc;
+                        double dC = dcNext[k] + dh[k] * o[k] * (1 - tc * tc);
+                        double dI = dC * g[k];
+                        double dG = dC * i[k];
+                        double dF = cPrev != null ? dC * cPrev[k] : 0;
+                        dcNext[k] = dC * f[k];
+
+                        dz[zRow + j] = dI * i[k] * (1 - i[k]);
+                        dz[zRow + hidden + j] = dF * f[k] * (1 - f[k]);
+                        dz[zRow + 2 * hidden + j] = dG * (1 - g[k] * g[k]);
+                        dz[zRow + 3 * hidden + j] = dO * o[k] * (1 - o[k]);
+                    }
+                }
+
+                double[] x = l == 0 ? inputs[t] : hStates[l - 1][t];
+                MatrixKernels.gemmTransA(x, dz, gWx, size, gates, inSize);
+                for (int b = 0; b < size; b++) {
+                    int zRow = b * gates;
+                    for (int j = 0; j < gates; j++) gB[j] += dz[zRow + j];
+                }
+
+                Arrays.fill(dhNext, 0, size * hidden, 0);
+                if (t > 0) {
+                    MatrixKernels.gemmTransA(hStates[l][t - 1], dz, gWh, size, gates, hidden);
+                    MatrixKernels.gemmTransB(dz, wh, dhNext, size, gates, hidden);
+                }
+                if (l > 0) {
+                    Arrays.fill(below[t], 0, size * hidden, 0);
+                    MatrixKernels.gemmTransB(dz, wx, below[t], size, gates, inSize);
+                }
+            }
+
+            double[][] swap = above;
+            above = below;
+            below = swap;
+        }
+
+        return loss / size;
+    }
+
+    // ========== ADAM ==========
+
+    private void applyAdam() {
+        double norm = 0;
+        for (double[] g : grads) {
+            for (double v : g) norm += v * v;
+        }
+        norm = Math.sqrt(norm);
+        double clip = norm > CLIP_NORM ? CLIP_NORM / norm : 1.0;
+
+        step++;
+        double lr = config.getLearningRate();
+        double correction1 = 1 - Math.pow(BETA1, step);
+        double correction2 = 1 - Math.pow(BETA2, step);
+
+        for (int p = 0; p < params.length; p++) {
+            double[] w = params[p], g = grads[p], m = adamM[p], v = adamV[p];
+            for (int k = 0; k < w.length; k++) {
+                double grad = g[k] * clip;
+                m[k] = BETA1 * m[k] + (1 - BETA1) * grad;
+                v[k] = BETA2 * v[k] + (1 - BETA2) * grad * grad;
+                w[k] -= lr * (m[k] / correction1) / (Math.sqrt(v[k] / correction2) + EPSILON);
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.electricity.forecast.engine.lstm;
+
+/**
+ * Chuỗi đã chuẩn hóa dùng chung (chỉ đọc) cho việc huấn luyện. Mẫu huấn luyện là các cửa sổ
+ * được xác định bằng offset trên mảng này, không sao chép dữ liệu.
+ * Chia theo thời gian: [0, trainEnd) để huấn luyện, [trainEnd, validationEnd) để chọn cấu hình
+ * (tìm siêu tham số), [validationEnd, n) là tập kiểm tra chỉ dùng cho metrics cuối cùng.
+ * Thang chuẩn hóa chỉ tính trên phần huấn luyện.
+ */
+public final class LstmTrainingSet {
+
+    private final double[] scaled;
+    private final int trainEnd;
+    private final int validationEnd;
+    private final double mean;
+    private final double std;
+
+    public LstmTrainingSet(double[] series, int trainEnd, int validationEnd) {
+        if (trainEnd > validationEnd || validationEnd > series.length) {
+            throw new IllegalArgumentException("Invalid split " + trainEnd + "/" + validationEnd + " of " + series.length);
+        }
+        double sum = 0;
+        for (int i = 0; i < trainEnd; i++) sum += series[i];
+        double m = sum / Math.max(trainEnd, 1);
+        double variance = 0;
+        for (int i = 0; i < trainEnd; i++) variance += (series[i] - m) * (series[i] - m);
+        double s = Math.sqrt(variance / Math.max(trainEnd, 1));
+
+        this.mean = m;
+        this.std = s > 0 ? s : 1.0;
+        this.trainEnd = trainEnd;
+        this.validationEnd = validationEnd;
+        this.scaled = new double[series.length];
+        for (int i = 0; i < series.length; i++) scaled[i] = (series[i] - mean) / std;
+    }
+
+    public double[] scaled() { return scaled; }
+
+    /**
+     * Các cửa sổ độ dài {@code window} trên chuỗi đã chuẩn hóa (dùng chung mảng, không sao chép)
+     */
+    public WindowedDataset windows(int window) {
+        return new WindowedDataset(scaled, LstmNetwork.INPUT_SIZE, window, 0);
+    }
+
+    public int size() { return scaled.length; }
+    public int getTrainEnd() { return trainEnd; }
+    public int getValidationEnd() { return validationEnd; }
+    public double getMean() { return mean; }
+    public double getStd() { return std; }
+}
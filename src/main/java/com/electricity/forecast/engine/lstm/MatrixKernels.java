@@ -0,0 +1,97 @@
+package com.electricity.forecast.engine.lstm;
+
+/**
+ * Nhân ma trận dense (row-major) chia khối theo cache. Vòng lặp trong cùng chạy trên
+ * các phần tử liên tiếp của B và C để JIT có thể vector hóa.
+ */
+public final class MatrixKernels {
+
+    // Khối K x N của B (~64 x 256 double = 128KB) nằm gọn trong L2
+    private static final int BLOCK_K = 64;
+    private static final int BLOCK_N = 256;
+
+    private MatrixKernels() {}
+
+    /**
+     * C[m x n] += A[m x k] * B[k x n]
+     */
+    public static void gemm(double[] a, double[] b, double[] c, int m, int n, int k) {
+        for (int kk = 0; kk < k; kk += BLOCK_K) {
+            int kEnd = Math.min(kk + BLOCK_K, k);
+            for (int jj = 0; jj < n; jj += BLOCK_N) {
+                int jEnd = Math.min(jj + BLOCK_N, n);
+                for (int i = 0; i < m; i++) {
+                    int aRow = i * k;
+                    int cRow = i * n;
+                    for (int p = kk; p < kEnd; p++) {
+                        double aip = a[aRow + p];
+                        if (aip == 0.0) continue;
+                        int bRow = p * n;
+                        for (int j = jj; j < jEnd; j++) {
+                            c[cRow + j] += aip * b[bRow + j];
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * C[k x n] += A^T * B, với A[m x k], B[m x n] (dùng cho gradient của trọng số)
+     */
+    public static void gemmTransA(double[] a, double[] b, double[] c, int m, int n, int k) {
+        for (int i = 0; i < m; i++) {
+            int aRow = i * k;
+            int bRow = i * n;
+            for (int p = 0; p < k; p++) {
+                double aip = a[aRow + p];
+                if (aip == 0.0) continue;
+                int cRow = p * n;
+                for (int j = 0; j < n; j++) {
+                    c[cRow + j] += aip * b[bRow + j];
+                }
+            }
+        }
+    }
+
+    /**
+     * C[m x k] += A * B^T, với A[m x n], B[k x n] (lan truyền ngược qua trọng số)
+     */
+    public static void gemmTransB(double[] a, double[] b, double[] c, int m, int n, int k) {
+        for (int i = 0; i < m; i++) {
+            int aRow = i * n;
+            int cRow = i * k;
+            for (int p = 0; p < k; p++) {
+                int bRow = p * n;
+                double sum = 0;
+                for (int j = 0; j < n; j++) {
+                    sum += a[aRow + j] * b[bRow + j];
+                }
+                c[cRow + p] += sum;
+            }
+        }
+    }
+
+    /**
+     * Ghi bias vào từng hàng của C[m x n]
+     */
+    public static void broadcastRows(double[] bias, double[] c, int m, int n) {
+        for (int i = 0; i < m; i++) {
+            System.arraycopy(bias, 0, c, i * n, n);
+        }
+    }
+
+    public static double sigmoid(double x) {
+        return 1.0 / (1.0 + Math.exp(-x));
+    }
+
+    /**
+     * tanh qua Math.exp (được JIT intrinsic hóa), nhanh hơn nhiều so với Math.tanh
+     */
+    public static double tanh(double x) {
+        if (x > 20) return 1.0;
+        if (x < -20) return -1.0;
+        double e = Math.exp(2 * x);
+        return (e - 1) / (e + 1);
+    }
+}
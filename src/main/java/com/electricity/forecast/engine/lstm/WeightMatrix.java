@@ -0,0 +1,347 @@
+package com.electricity.forecast.engine.lstm;
+
+import com.electricity.forecast.engine.OffHeapBuffer;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+
+/**
+ * Ma trận trọng số B [rows x cols] (row-major) dùng trong phép C += A * B khi suy luận.
+ * Bản lượng tử hóa được giải nén ngay trong vòng lặp nhân, không bao giờ tạo lại mảng double.
+ */
+public abstract class WeightMatrix {
+
+    private static final int BLOCK_K = 64;
+    private static final int BLOCK_N = 256;
+
+    protected final int rows;
+    protected final int cols;
+
+    protected WeightMatrix(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    public static WeightMatrix of(double[] values, int rows, int cols, WeightPrecision precision) {
+        switch (precision) {
+            case INT8:
+                return new Int8(values, rows, cols);
+            case FP16:
+                return new Half(values, rows, cols);
+            default:
+                return new Dense(values.clone(), rows, cols);
+        }
+    }
+
+    /**
+     * C[m x cols] += A[m x rows] * this
+     */
+    public abstract void multiplyAccumulate(double[] a, double[] c, int m);
+
+    public abstract WeightPrecision getPrecision();
+
+    public abstract long footprintBytes();
+
+    protected abstract void writeValues(DataOutputStream out) throws IOException;
+
+    /**
+     * Bản FP64 với giá trị chuyển ra ngoài heap; các độ chính xác khác (vốn đã nhỏ) giữ nguyên
+     */
+    public WeightMatrix toOffHeap() { return this; }
+
+    public boolean isOffHeap() { return false; }
+
+    /**
+     * Trả bộ nhớ ngoài heap (nếu có); ma trận không dùng được nữa sau đó
+     */
+    public void release() {}
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeByte(getPrecision().ordinal());
+        out.writeInt(rows);
+        out.writeInt(cols);
+        writeValues(out);
+    }
+
+    public static WeightMatrix readFrom(DataInputStream in) throws IOException {
+        WeightPrecision precision = WeightPrecision.values()[in.readByte()];
+        int rows = in.readInt();
+        int cols = in.readInt();
+        switch (precision) {
+            case INT8: {
+                float[] scales = new float[rows];
+                for (int i = 0; i < rows; i++) scales[i] = in.readFloat();
+                byte[] values = new byte[rows * cols];
+                in.readFully(values);
+                return new Int8(values, scales, rows, cols);
+            }
+            case FP16: {
+                short[] values = new short[rows * cols];
+                for (int i = 0; i < values.length; i++) values[i] = in.readShort();
+                return new Half(values, rows, cols);
+            }
+            default: {
+                double[] values = new double[rows * cols];
+                for (int i = 0; i < values.length; i++) values[i] = in.readDouble();
+                return new Dense(values, rows, cols);
+            }
+        }
+    }
+
+    // ========== FP64 ==========
+
+    static final class Dense extends WeightMatrix {
+        private final double[] values;
+
+        Dense(double[] values, int rows, int cols) {
+            super(rows, cols);
+            this.values = values;
+        }
+
+        @Override
+        public void multiplyAccumulate(double[] a, double[] c, int m) {
+            MatrixKernels.gemm(a, values, c, m, cols, rows);
+        }
+
+        @Override
+        public WeightPrecision getPrecision() { return WeightPrecision.FP64; }
+
+        @Override
+        public long footprintBytes() { return 8L * values.length; }
+
+        @Override
+        protected void writeValues(DataOutputStream out) throws IOException {
+            for (double value : values) out.writeDouble(value);
+        }
+
+        @Override
+        public WeightMatrix toOffHeap() { return new OffHeap(OffHeapBuffer.copyOf(values), rows, cols); }
+    }
+
+    // ========== FP64 ngoài heap (cùng định dạng tuần tự hóa với Dense, đọc lại thành Dense) ==========
+
+    static final class OffHeap extends WeightMatrix {
+        private final OffHeapBuffer buffer;
+
+        OffHeap(OffHeapBuffer buffer, int rows, int cols) {
+            super(rows, cols);
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void multiplyAccumulate(double[] a, double[] c, int m) {
+            // Ghim một lần cho cả phép nhân; cùng thứ tự khối như MatrixKernels.gemm
+            DoubleBuffer b = buffer.pin();
+            try {
+                int n = cols;
+                for (int kk = 0; kk < rows; kk += BLOCK_K) {
+                    int kEnd = Math.min(kk + BLOCK_K, rows);
+                    for (int jj = 0; jj < n; jj += BLOCK_N) {
+                        int jEnd = Math.min(jj + BLOCK_N, n);
+                        for (int i = 0; i < m; i++) {
+                            int aRow = i * rows;
+                            int cRow = i * n;
+                            for (int p = kk; p < kEnd; p++) {
+                                double aip = a[aRow + p];
+                                if (aip == 0.0) continue;
+                                int bRow = p * n;
+                                for (int j = jj; j < jEnd; j++) {
+                                    c[cRow + j] += aip * b.get(bRow + j);
+                                }
+                            }
+                        }
+                    }
+                }
+            } finally {
+                buffer.unpin();
+            }
+        }
+
+        @Override
+        public WeightPrecision getPrecision() { return WeightPrecision.FP64; }
+
+        @Override
+        public long footprintBytes() { return buffer.footprintBytes(); }
+
+        @Override
+        protected void writeValues(DataOutputStream out) throws IOException {
+            DoubleBuffer values = buffer.pin();
+            try {
+                for (int i = 0; i < values.capacity(); i++) out.writeDouble(values.get(i));
+            } finally {
+                buffer.unpin();
+            }
+        }
+
+        @Override
+        public boolean isOffHeap() { return true; }
+
+        @Override
+        public void release() { buffer.release(); }
+    }
+
+    // ========== INT8, mỗi hàng một hệ số scale ==========
+
+    static final class Int8 extends WeightMatrix {
+        private final byte[] values;
+        private final float[] scales;
+
+        Int8(double[] source, int rows, int cols) {
+            super(rows, cols);
+            this.values = new byte[rows * cols];
+            this.scales = new float[rows];
+            for (int p = 0; p < rows; p++) {
+                double maxAbs = 0;
+                for (int j = 0; j < cols; j++) maxAbs = Math.max(maxAbs, Math.abs(source[p * cols + j]));
+                double scale = maxAbs > 0 ? maxAbs / 127.0 : 1.0;
+                scales[p] = (float) scale;
+                for (int j = 0; j < cols; j++) {
+                    long q = Math.round(source[p * cols + j] / scales[p]);
+                    values[p * cols + j] = (byte) Math.max(-127, Math.min(127, q));
+                }
+            }
+        }
+
+        Int8(byte[] values, float[] scales, int rows, int cols) {
+            super(rows, cols);
+            this.values = values;
+            this.scales = scales;
+        }
+
+        @Override
+        public void multiplyAccumulate(double[] a, double[] c, int m) {
+            int n = cols;
+            for (int kk = 0; kk < rows; kk += BLOCK_K) {
+                int kEnd = Math.min(kk + BLOCK_K, rows);
+                for (int jj = 0; jj < n; jj += BLOCK_N) {
+                    int jEnd = Math.min(jj + BLOCK_N, n);
+                    for (int i = 0; i < m; i++) {
+                        int aRow = i * rows;
+                        int cRow = i * n;
+                        for (int p = kk; p < kEnd; p++) {
+                            // Gộp scale của hàng vào hệ số của A: giải nén chỉ tốn một phép nhân cho cả hàng
+                            double s = a[aRow + p] * scales[p];
+                            if (s == 0.0) continue;
+                            int bRow = p * n;
+                            for (int j = jj; j < jEnd; j++) {
+                                c[cRow + j] += s * values[bRow + j];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        @Override
+        public WeightPrecision getPrecision() { return WeightPrecision.INT8; }
+
+        @Override
+        public long footprintBytes() { return values.length + 4L * scales.length; }
+
+        @Override
+        protected void writeValues(DataOutputStream out) throws IOException {
+            for (float scale : scales) out.writeFloat(scale);
+            out.write(values);
+        }
+    }
+
+    // ========== FP16 (IEEE 754 half) ==========
+
+    static final class Half extends WeightMatrix {
+        // Bảng giải nén 65536 giá trị, dùng chung cho mọi ma trận
+        private static final float[] DECODE = new float[1 << 16];
+
+        static {
+            for (int bits = 0; bits < DECODE.length; bits++) DECODE[bits] = halfToFloat((short) bits);
+        }
+
+        private final short[] values;
+
+        Half(double[] source, int rows, int cols) {
+            super(rows, cols);
+            this.values = new short[rows * cols];
+            for (int i = 0; i < values.length; i++) values[i] = floatToHalf((float) source[i]);
+        }
+
+        Half(short[] values, int rows, int cols) {
+            super(rows, cols);
+            this.values = values;
+        }
+
+        @Override
+        public void multiplyAccumulate(double[] a, double[] c, int m) {
+            int n = cols;
+            for (int kk = 0; kk < rows; kk += BLOCK_K) {
+                int kEnd = Math.min(kk + BLOCK_K, rows);
+                for (int jj = 0; jj < n; jj += BLOCK_N) {
+                    int jEnd = Math.min(jj + BLOCK_N, n);
+                    for (int i = 0; i < m; i++) {
+                        int aRow = i * rows;
+                        int cRow = i * n;
+                        for (int p = kk; p < kEnd; p++) {
+                            double aip = a[aRow + p];
+                            if (aip == 0.0) continue;
+                            int bRow = p * n;
+                            for (int j = jj; j < jEnd; j++) {
+                                c[cRow + j] += aip * DECODE[values[bRow + j] & 0xFFFF];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        @Override
+        public WeightPrecision getPrecision() { return WeightPrecision.FP16; }
+
+        @Override
+        public long footprintBytes() { return 2L * values.length; }
+
+        @Override
+        protected void writeValues(DataOutputStream out) throws IOException {
+            for (short value : values) out.writeShort(value);
+        }
+
+        static short floatToHalf(float value) {
+            int bits = Float.floatToIntBits(value);
+            int sign = (bits >>> 16) & 0x8000;
+            int exponent = ((bits >>> 23) & 0xFF) - 127 + 15;
+            int mantissa = bits & 0x7FFFFF;
+
+            if (exponent <= 0) {
+                // Số dưới chuẩn hoặc quá nhỏ -> 0
+                if (exponent < -10) return (short) sign;
+                mantissa = (mantissa | 0x800000) >> (1 - exponent);
+                return (short) (sign | ((mantissa + 0x1000) >> 13));
+            }
+            if (exponent >= 31) {
+                // Tràn -> vô cực (NaN giữ nguyên NaN)
+                return (short) (sign | 0x7C00 | (((bits >>> 23) & 0xFF) == 0xFF && mantissa != 0 ? 0x200 : 0));
+            }
+            int half = sign | (exponent << 10) | (mantissa >> 13);
+            // Làm tròn tới gần nhất
+            if ((mantissa & 0x1000) != 0) half++;
+            return (short) half;
+        }
+
+        static float halfToFloat(short half) {
+            int h = half & 0xFFFF;
+            int sign = (h & 0x8000) << 16;
+            int exponent = (h >>> 10) & 0x1F;
+            int mantissa = h & 0x3FF;
+
+            if (exponent == 0) {
+                if (mantissa == 0) return Float.intBitsToFloat(sign);
+                // Số dưới chuẩn
+                float value = mantissa / 1024f * (float) Math.pow(2, -14);
+                return sign != 0 ? -value : value;
+            }
+            if (exponent == 31) {
+                return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+            }
+            return Float.intBitsToFloat(sign | ((exponent - 15 + 127) << 23) | (mantissa << 13));
+        }
+    }
+}
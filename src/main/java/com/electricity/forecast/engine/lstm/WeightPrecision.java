@@ -0,0 +1,38 @@
+package com.electricity.forecast.engine.lstm;
+
+/**
+ * Độ chính xác lưu trữ trọng số khi suy luận.
+ */
+public enum WeightPrecision {
+    FP64(8),
+    FP16(2),
+    INT8(1);
+
+    private final int bytesPerWeight;
+
+    WeightPrecision(int bytesPerWeight) {
+        this.bytesPerWeight = bytesPerWeight;
+    }
+
+    public int getBytesPerWeight() { return bytesPerWeight; }
+
+    /**
+     * Đọc từ cấu hình: none/fp64, fp16/float16, int8
+     */
+    public static WeightPrecision fromProperty(String value) {
+        if (value == null) return FP64;
+        switch (value.trim().toLowerCase()) {
+            case "fp16":
+            case "float16":
+                return FP16;
+            case "int8":
+                return INT8;
+            case "":
+            case "none":
+            case "fp64":
+                return FP64;
+            default:
+                throw new IllegalArgumentException("Unknown LSTM quantization mode: " + value);
+        }
+    }
+}
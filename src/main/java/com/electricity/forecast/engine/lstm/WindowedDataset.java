@@ -0,0 +1,215 @@
+package com.electricity.forecast.engine.lstm;
+
+import java.util.Random;
+import java.util.concurrent.*;
+
+/**
+ * Tập mẫu cửa sổ trượt trên ma trận đặc trưng [rows x features] (lưu theo hàng, chỉ đọc).
+ * Mẫu s là cửa sổ các hàng [s, s + window) với mục tiêu là cột targetFeature của hàng s + window;
+ * mẫu chỉ là một offset nên bộ nhớ là O(rows * features) thay vì nhân thêm window khi dựng sẵn mẫu.
+ * Dữ liệu chỉ được sao chép vào bộ đệm batch dùng lại ({@link Batch}), theo thứ tự thời gian
+ * [t][b * features + f] như đầu vào của {@link LstmTrainer}.
+ */
+public final class WindowedDataset {
+
+    private static final ExecutorService PREFETCH = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "lstm-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final double[] values;
+    private final int features;
+    private final int rows;
+    private final int window;
+    private final int targetFeature;
+
+    /**
+     * {@code values} dùng chung (không sao chép), độ dài là bội của {@code features}
+     */
+    public WindowedDataset(double[] values, int features, int window, int targetFeature) {
+        if (features < 1 || values.length % features != 0) {
+            throw new IllegalArgumentException("Values do not form a " + features + "-column matrix");
+        }
+        if (targetFeature < 0 || targetFeature >= features) {
+            throw new IllegalArgumentException("Target feature " + targetFeature + " out of range");
+        }
+        this.values = values;
+        this.features = features;
+        this.rows = values.length / features;
+        this.window = window;
+        this.targetFeature = targetFeature;
+    }
+
+    /**
+     * Từ các cột riêng (mỗi cột một đặc trưng, cùng độ dài): xếp lại theo hàng một lần để mỗi cửa sổ
+     * đọc liên tục trong bộ nhớ
+     */
+    public static WindowedDataset fromColumns(double[][] columns, int window, int targetFeature) {
+        int features = columns.length;
+        int rows = features > 0 ? columns[0].length : 0;
+        double[] values = new double[rows * features];
+        for (int f = 0; f < features; f++) {
+            if (columns[f].length != rows) {
+                throw new IllegalArgumentException("Columns must have the same length");
+            }
+            for (int r = 0; r < rows; r++) values[r * features + f] = columns[f][r];
+        }
+        return new WindowedDataset(values, features, window, targetFeature);
+    }
+
+    public int getRows() { return rows; }
+    public int getFeatures() { return features; }
+    public int getWindow() { return window; }
+
+    /**
+     * Giá trị tại bước t (0..window-1) của mẫu {@code sample}
+     */
+    public double get(int sample, int t, int feature) {
+        return values[(sample + t) * features + feature];
+    }
+
+    public double target(int sample) {
+        return values[(sample + window) * features + targetFeature];
+    }
+
+    /**
+     * Các mẫu có hàng mục tiêu trong [fromRow, toRow), theo thứ tự thời gian
+     */
+    public int[] samples(int fromRow, int toRow) {
+        int first = Math.max(fromRow, window);
+        int last = Math.min(toRow, rows);
+        if (last <= first) return new int[0];
+        int[] samples = new int[last - first];
+        for (int i = 0; i < samples.length; i++) samples[i] = first + i - window;
+        return samples;
+    }
+
+    /**
+     * Chia theo thời gian: mục tiêu của train nằm trước trainEnd, của validation trong [trainEnd, validationEnd),
+     * của test từ validationEnd; cửa sổ đầu vào của phần sau vẫn được đọc lùi vào phần trước như khi dự báo thật
+     */
+    public Split split(int trainEnd, int validationEnd) {
+        return new Split(samples(0, trainEnd), samples(trainEnd, validationEnd), samples(validationEnd, rows));
+    }
+
+    public record Split(int[] train, int[] validation, int[] test) {}
+
+    /**
+     * Bộ đệm một batch, dùng lại cho mọi batch: inputs[t][b * features + f], targets[b]
+     */
+    public static final class Batch {
+        final double[][] inputs;
+        final double[] targets;
+        int size;
+
+        Batch(int window, int capacity, int features) {
+            this.inputs = new double[window][capacity * features];
+            this.targets = new double[capacity];
+        }
+
+        public double[][] inputs() { return inputs; }
+        public double[] targets() { return targets; }
+        public int size() { return size; }
+    }
+
+    public Batch newBatch(int capacity) {
+        return new Batch(window, capacity, features);
+    }
+
+    /**
+     * Chép các mẫu order[from, from + size) vào {@code batch}
+     */
+    public void fill(int[] order, int from, int size, Batch batch) {
+        for (int t = 0; t < window; t++) {
+            double[] input = batch.inputs[t];
+            if (features == 1) {
+                for (int b = 0; b < size; b++) input[b] = values[order[from + b] + t];
+            } else {
+                for (int b = 0; b < size; b++) {
+                    System.arraycopy(values, (order[from + b] + t) * features, input, b * features, features);
+                }
+            }
+        }
+        for (int b = 0; b < size; b++) batch.targets[b] = target(order[from + b]);
+        batch.size = size;
+    }
+
+    /**
+     * Xáo trộn tại chỗ (Fisher-Yates)
+     */
+    public static void shuffle(int[] samples, Random random) {
+        for (int i = samples.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = samples[i];
+            samples[i] = samples[j];
+            samples[j] = tmp;
+        }
+    }
+
+    /**
+     * Duyệt tối đa {@code maxBatches} batch liên tiếp của {@code order}. Với prefetch, batch kế tiếp được chép
+     * trên luồng nền trong lúc batch hiện tại đang được tính; hai bộ đệm luân phiên nên batch trả về
+     * chỉ hợp lệ tới lần gọi {@link Batches#next()} sau. {@code order} không được đổi trong lúc duyệt.
+     */
+    public Batches batches(int[] order, int batchSize, int maxBatches, Batch[] buffers, boolean prefetch) {
+        return new Batches(order, batchSize, Math.min(maxBatches, (order.length + batchSize - 1) / batchSize),
+                buffers, prefetch);
+    }
+
+    public final class Batches {
+        private final int[] order;
+        private final int batchSize;
+        private final int count;
+        private final Batch[] buffers;
+        private final boolean prefetch;
+        private int index;
+        private Future<?> pending;
+
+        private Batches(int[] order, int batchSize, int count, Batch[] buffers, boolean prefetch) {
+            this.order = order;
+            this.batchSize = batchSize;
+            this.count = count;
+            this.buffers = buffers;
+            this.prefetch = prefetch && buffers.length > 1 && count > 1;
+            if (this.prefetch) pending = schedule(0);
+        }
+
+        public boolean hasNext() {
+            return index < count;
+        }
+
+        public Batch next() {
+            Batch batch = buffers[index % buffers.length];
+            if (prefetch) {
+                await();
+                if (index + 1 < count) pending = schedule(index + 1);
+            } else {
+                load(index, batch);
+            }
+            index++;
+            return batch;
+        }
+
+        private Future<?> schedule(int batchIndex) {
+            Batch target = buffers[batchIndex % buffers.length];
+            return PREFETCH.submit(() -> load(batchIndex, target));
+        }
+
+        private void load(int batchIndex, Batch batch) {
+            int from = batchIndex * batchSize;
+            fill(order, from, Math.min(batchSize, order.length - from), batch);
+        }
+
+        private void await() {
+            try {
+                pending.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the next batch", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Failed to prepare batch", e.getCause());
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.electricity.forecast.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BatchForecastRequest {
+    private List<ForecastJob> jobs = new ArrayList<>();
+    private boolean intervals;  // Có kèm P10/P50/P90 hay không
+    
+    public BatchForecastRequest() {}
+    
+    // Getters and Setters
+    public List<ForecastJob> getJobs() { return jobs; }
+    public void setJobs(List<ForecastJob> jobs) { this.jobs = jobs; }
+    
+    public boolean isIntervals() { return intervals; }
+    public void setIntervals(boolean intervals) { this.intervals = intervals; }
+}
@@ -9,6 +9,7 @@ public class DataModel {
     private List<Map<String, Object>> data;
     private Map<String, Object> summary;
     private String targetColumn;
+    private List<String> appendedFiles = List.of();
     
     public DataModel() {}
     
@@ -27,4 +28,8 @@ public class DataModel {
     
     public String getTargetColumn() { return targetColumn; }
     public void setTargetColumn(String targetColumn) { this.targetColumn = targetColumn; }
+    
+    // Các file CSV đã nối thêm vào filepath, theo thứ tự
+    public List<String> getAppendedFiles() { return appendedFiles; }
+    public void setAppendedFiles(List<String> appendedFiles) { this.appendedFiles = appendedFiles; }
 }
\ No newline at end of file
@@ -0,0 +1,33 @@
+package com.electricity.forecast.model;
+
+import java.util.List;
+
+/**
+ * Một công việc trong batch dự báo: mô hình của workspace nào, bao nhiêu giờ,
+ * và (tùy chọn) lịch sử của một chuỗi khác để dự báo thay cho chuỗi huấn luyện
+ */
+public class ForecastJob {
+    private String id;
+    private String workspace;
+    private String model;
+    private int hours = 24;
+    private List<Double> history;  // Null: dùng chuỗi huấn luyện của workspace
+    
+    public ForecastJob() {}
+    
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    
+    public String getWorkspace() { return workspace; }
+    public void setWorkspace(String workspace) { this.workspace = workspace; }
+    
+    public String getModel() { return model; }
+    public void setModel(String model) { this.model = model; }
+    
+    public int getHours() { return hours; }
+    public void setHours(int hours) { this.hours = hours; }
+    
+    public List<Double> getHistory() { return history; }
+    public void setHistory(List<Double> history) { this.history = history; }
+}
@@ -1,13 +1,16 @@
 package com.electricity.forecast.model;
 
 import java.util.List;
+import java.util.Map;
 
 public class ForecastResult {
     private boolean success;
     private String message;
-    private List<Double> lstmForecast;
-    private List<Double> arimaForecast;
+    private Map<String, List<Double>> forecasts;  // Khóa mô hình -> giá trị dự báo
+    private Map<String, Map<String, List<Double>>> intervals;  // Khóa mô hình -> phân vị (p10/p50/p90) -> giá trị
     private List<String> timestamps;
+    private Map<String, List<Integer>> steps;  // Khi giảm điểm (maxPoints): khóa mô hình -> giờ dự báo của từng điểm
+    private Map<String, Integer> staleModels;  // Mô hình chưa thấy dữ liệu nối thêm -> số dòng nối sau lần huấn luyện
     private String plotImage;
     
     public ForecastResult() {}
@@ -24,15 +27,21 @@ public class ForecastResult {
     public String getMessage() { return message; }
     public void setMessage(String message) { this.message = message; }
     
-    public List<Double> getLstmForecast() { return lstmForecast; }
-    public void setLstmForecast(List<Double> lstmForecast) { this.lstmForecast = lstmForecast; }
+    public Map<String, List<Double>> getForecasts() { return forecasts; }
+    public void setForecasts(Map<String, List<Double>> forecasts) { this.forecasts = forecasts; }
     
-    public List<Double> getArimaForecast() { return arimaForecast; }
-    public void setArimaForecast(List<Double> arimaForecast) { this.arimaForecast = arimaForecast; }
+    public Map<String, Map<String, List<Double>>> getIntervals() { return intervals; }
+    public void setIntervals(Map<String, Map<String, List<Double>>> intervals) { this.intervals = intervals; }
     
     public List<String> getTimestamps() { return timestamps; }
     public void setTimestamps(List<String> timestamps) { this.timestamps = timestamps; }
     
+    public Map<String, List<Integer>> getSteps() { return steps; }
+    public void setSteps(Map<String, List<Integer>> steps) { this.steps = steps; }
+    
+    public Map<String, Integer> getStaleModels() { return staleModels; }
+    public void setStaleModels(Map<String, Integer> staleModels) { this.staleModels = staleModels; }
+    
     public String getPlotImage() { return plotImage; }
     public void setPlotImage(String plotImage) { this.plotImage = plotImage; }
-}
\ No newline at end of file
+}
@@ -1,11 +1,14 @@
 package com.electricity.forecast.model;
 
+import java.util.Map;
+
 public class ModelMetrics {
     private String modelName;
     private double mae;
     private double rmse;
     private double mape;
     private double trainingTime;
+    private Map<String, Object> parameters;
     
     // Getters and Setters
     public String getModelName() { return modelName; }
@@ -22,4 +25,7 @@ public class ModelMetrics {
     
     public double getTrainingTime() { return trainingTime; }
     public void setTrainingTime(double trainingTime) { this.trainingTime = trainingTime; }
+    
+    public Map<String, Object> getParameters() { return parameters; }
+    public void setParameters(Map<String, Object> parameters) { this.parameters = parameters; }
 }
\ No newline at end of file
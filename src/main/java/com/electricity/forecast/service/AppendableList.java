@@ -0,0 +1,79 @@
+package com.electricity.forecast.service;
+
+import java.util.*;
+
+/**
+ * Danh sách chỉ đọc nối thêm được mà không sao chép phần đã có: các bản nối tiếp nhau dùng chung một vùng lưu
+ * (dung lượng tăng gấp đôi), mỗi bản chỉ thấy {@code size} phần tử đầu. Nối vào bản mới nhất chỉ ghi phần đuôi;
+ * nối vào một bản cũ hơn (vùng lưu đã bị bản khác nối tiếp) thì chép sang vùng lưu mới.
+ * Phần tử đã ghi không bao giờ bị ghi đè nên các bản cũ (snapshot cũ) vẫn đọc đúng.
+ */
+public final class AppendableList<T> extends AbstractList<T> implements RandomAccess {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private static final class Storage {
+        final Object[] elements;
+        // Số phần tử đã ghi; chỉ đổi khi giữ khóa của vùng lưu
+        int length;
+
+        Storage(int capacity) {
+            this.elements = new Object[capacity];
+        }
+    }
+
+    private final Storage storage;
+    private final int size;
+
+    private AppendableList(Storage storage, int size) {
+        this.storage = storage;
+        this.size = size;
+    }
+
+    /**
+     * {@code base} nối thêm {@code tail}; chỉ sao chép {@code base} nếu nó chưa phải AppendableList
+     * hoặc vùng lưu của nó đã đầy
+     */
+    public static <T> AppendableList<T> appended(List<T> base, List<? extends T> tail) {
+        if (base instanceof AppendableList<T> list) {
+            return list.append(tail);
+        }
+        return copyOf(base, tail.size()).append(tail);
+    }
+
+    private static <T> AppendableList<T> copyOf(List<T> values, int extra) {
+        Storage storage = new Storage(grownCapacity(values.size(), extra));
+        int length = 0;
+        for (T value : values) storage.elements[length++] = value;
+        storage.length = length;
+        return new AppendableList<>(storage, length);
+    }
+
+    private static int grownCapacity(int size, int extra) {
+        return (int) Math.min(Integer.MAX_VALUE - 8, Math.max(MIN_CAPACITY, Math.max(2L * size, (long) size + extra)));
+    }
+
+    public AppendableList<T> append(List<? extends T> tail) {
+        synchronized (storage) {
+            if (storage.length == size && size + tail.size() <= storage.elements.length) {
+                int length = size;
+                for (T value : tail) storage.elements[length++] = value;
+                storage.length = length;
+                return new AppendableList<>(storage, length);
+            }
+        }
+        return copyOf(this, tail.size()).append(tail);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        Objects.checkIndex(index, size);
+        return (T) storage.elements[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
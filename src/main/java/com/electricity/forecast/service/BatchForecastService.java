@@ -0,0 +1,266 @@
+package com.electricity.forecast.service;
+
+import com.electricity.forecast.engine.FittedModel;
+import com.electricity.forecast.engine.ModelRegistry;
+import com.electricity.forecast.engine.PredictionIntervals;
+import com.electricity.forecast.model.BatchForecastRequest;
+import com.electricity.forecast.model.ForecastJob;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Batch dự báo: nhiều công việc (workspace, mô hình, số giờ) trong một request.
+ * Các công việc được lập kế hoạch chung trước khi chạy:
+ * 1. Gom theo (workspace, mô hình); mỗi nhóm chỉ dự báo chuỗi huấn luyện một lần với số giờ lớn nhất,
+ *    các công việc ngắn hơn lấy phần đầu (dự báo đệ quy nên phần đầu trùng khớp)
+ * 2. Các công việc có lịch sử riêng trong cùng nhóm chạy chung một lần predictBatch (LSTM nhân ma trận theo batch)
+ * 3. Các nhóm chạy song song
+ */
+@Service
+public class BatchForecastService {
+
+    @Autowired
+    private ForecastService forecastService;
+
+    @Autowired
+    private ModelRegistry modelRegistry;
+
+    @Value("${forecast.batch.max-jobs:1000}")
+    private int maxJobs;
+
+    // Cùng giới hạn với ForecastService (tầm dự báo và số dòng một mô hình được phép chậm hơn dữ liệu)
+    @Value("${forecast.max-hours:${forecast.batch.max-hours:8760}}")
+    private int maxForecastHours;
+
+    @Value("${forecast.intervals.paths:1000}")
+    private int intervalPaths;
+
+    private final ExecutorService batchExecutor = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), runnable -> {
+                Thread thread = new Thread(runnable, "batch-forecast");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /**
+     * Các công việc dùng chung một mô hình đã huấn luyện
+     */
+    private static final class Group {
+        final String workspace;
+        final ForecastSnapshot snapshot;
+        final String modelKey;
+        final FittedModel model;
+        final List<Integer> ownSeriesJobs = new ArrayList<>();
+        final List<Integer> contextJobs = new ArrayList<>();
+
+        Group(String workspace, ForecastSnapshot snapshot, String modelKey, FittedModel model) {
+            this.workspace = workspace;
+            this.snapshot = snapshot;
+            this.modelKey = modelKey;
+            this.model = model;
+        }
+    }
+
+    public Map<String, Object> run(BatchForecastRequest request) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        List<ForecastJob> jobs = request.getJobs() != null ? request.getJobs() : List.of();
+
+        if (jobs.isEmpty()) {
+            result.put("success", false);
+            result.put("message", "No jobs in request");
+            return result;
+        }
+        if (jobs.size() > maxJobs) {
+            result.put("success", false);
+            result.put("message", "Too many jobs: " + jobs.size() + " (max " + maxJobs + ")");
+            return result;
+        }
+
+        long start = System.nanoTime();
+        List<Map<String, Object>> jobResults = new ArrayList<>(jobs.size());
+        for (int i = 0; i < jobs.size(); i++) {
+            Map<String, Object> jobResult = new LinkedHashMap<>();
+            ForecastJob job = jobs.get(i);
+            jobResult.put("id", job.getId() != null ? job.getId() : String.valueOf(i));
+            jobResults.add(jobResult);
+        }
+
+        // Mỗi workspace được giữ từ lúc lập kế hoạch tới khi chạy xong, để mô hình (có thể nằm ngoài heap)
+        // không bị trả do huấn luyện lại, thay dữ liệu hay ghi workspace ra đĩa giữa chừng
+        Map<String, Workspace> acquired = new HashMap<>();
+        Map<String, Group> groups;
+        try {
+            // 1. Lập kế hoạch: kiểm tra từng công việc và gom nhóm
+            groups = plan(jobs, jobResults, acquired);
+
+            // 2. Chạy các nhóm song song
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (Group group : groups.values()) {
+                futures.add(CompletableFuture.runAsync(
+                        () -> execute(group, jobs, jobResults, request.isIntervals()), batchExecutor));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        } finally {
+            acquired.values().forEach(Workspace::release);
+        }
+
+        int succeeded = 0;
+        int computations = 0;
+        for (Map<String, Object> jobResult : jobResults) {
+            if (Boolean.TRUE.equals(jobResult.get("success"))) succeeded++;
+        }
+        for (Group group : groups.values()) {
+            computations += (group.ownSeriesJobs.isEmpty() ? 0 : 1) + (group.contextJobs.isEmpty() ? 0 : 1);
+        }
+
+        double wallTime = (System.nanoTime() - start) / 1e9;
+        result.put("success", succeeded > 0);
+        result.put("message", succeeded + "/" + jobs.size() + " jobs forecast in " + computations + " model runs");
+        result.put("jobs", jobResults);
+        result.put("groups", groups.size());
+        result.put("modelRuns", computations);
+        result.put("wallTime", Math.round(wallTime * 1000.0) / 1000.0);
+        return result;
+    }
+
+    /**
+     * Workspace được giữ lần đầu gặp và ghi vào {@code acquired}; người gọi trả chúng sau khi chạy xong
+     */
+    private Map<String, Group> plan(List<ForecastJob> jobs, List<Map<String, Object>> jobResults,
+                                    Map<String, Workspace> acquired) {
+        Map<String, ForecastSnapshot> snapshots = new HashMap<>();
+        Map<String, Group> groups = new LinkedHashMap<>();
+
+        for (int i = 0; i < jobs.size(); i++) {
+            ForecastJob job = jobs.get(i);
+            Map<String, Object> jobResult = jobResults.get(i);
+            try {
+                String workspace = WorkspaceManager.normalize(job.getWorkspace());
+                jobResult.put("workspace", workspace);
+                jobResult.put("model", job.getModel());
+                jobResult.put("hours", job.getHours());
+
+                if (job.getHours() < 1 || job.getHours() > maxForecastHours) {
+                    throw new IllegalArgumentException("hours must be between 1 and " + maxForecastHours);
+                }
+                String modelKey = job.getModel() != null ? job.getModel().toLowerCase() : null;
+                if (modelKey == null || modelRegistry.find(modelKey).isEmpty()) {
+                    throw new IllegalArgumentException("Unknown model: " + job.getModel() + ". Available: " + modelRegistry.getKeys());
+                }
+
+                // Snapshot bất biến: đọc một lần cho mỗi workspace, các công việc cùng workspace thấy cùng phiên bản
+                ForecastSnapshot snapshot = snapshots.computeIfAbsent(workspace,
+                        id -> acquired.computeIfAbsent(id, forecastService::acquireWorkspace).getSnapshot());
+                FittedModel model = snapshot.getModels().get(modelKey);
+                if (model == null) {
+                    throw new IllegalArgumentException("Model " + modelKey + " is not trained in workspace " + workspace);
+                }
+
+                boolean hasHistory = job.getHistory() != null;
+                if (hasHistory && job.getHistory().isEmpty()) {
+                    throw new IllegalArgumentException("history must not be empty");
+                }
+                if (hasHistory && !model.supportsContexts()) {
+                    throw new IllegalArgumentException("Model " + modelKey + " cannot forecast a custom history");
+                }
+
+                Group group = groups.computeIfAbsent(workspace + "/" + modelKey, key -> new Group(workspace, snapshot, modelKey, model));
+                (hasHistory ? group.contextJobs : group.ownSeriesJobs).add(i);
+            } catch (IllegalArgumentException e) {
+                jobResult.put("success", false);
+                jobResult.put("message", e.getMessage());
+            }
+        }
+        return groups;
+    }
+
+    private void execute(Group group, List<ForecastJob> jobs, List<Map<String, Object>> jobResults, boolean intervals) {
+        try {
+            // Chuỗi của workspace (kể cả các dòng nối thêm sau lần huấn luyện): một lần dự báo với số giờ lớn nhất
+            if (!group.ownSeriesJobs.isEmpty()) {
+                int horizon = maxHorizon(group.ownSeriesJobs, jobs);
+                double[] values = forecastService.predictFromEnd(group.snapshot, group.modelKey, group.model, horizon);
+                if (values == null) {
+                    throw new IllegalStateException("model is more than " + maxForecastHours
+                            + " rows (forecast.max-hours) behind the appended data; please retrain");
+                }
+                int staleRows = forecastService.isStale(group.snapshot, group.modelKey, group.model)
+                        ? group.snapshot.rowsSinceTraining(group.modelKey) : 0;
+                double[][] bands = intervals
+                        ? PredictionIntervals.bootstrap(values, group.model.getResiduals(), intervalPaths,
+                                PredictionIntervals.DEFAULT_QUANTILES, group.modelKey.hashCode())
+                        : null;
+                for (int index : group.ownSeriesJobs) {
+                    fill(jobResults.get(index), values, bands, jobs.get(index).getHours());
+                    if (staleRows > 0) jobResults.get(index).put("staleRows", staleRows);
+                }
+            }
+
+            // Lịch sử riêng: một lần predictBatch cho mọi chuỗi của nhóm
+            if (!group.contextJobs.isEmpty()) {
+                int horizon = maxHorizon(group.contextJobs, jobs);
+                double[][] contexts = new double[group.contextJobs.size()][];
+                for (int c = 0; c < contexts.length; c++) {
+                    List<Double> history = jobs.get(group.contextJobs.get(c)).getHistory();
+                    contexts[c] = new double[history.size()];
+                    for (int t = 0; t < contexts[c].length; t++) contexts[c][t] = history.get(t);
+                }
+                double[][] forecasts = group.model.predictBatch(contexts, horizon);
+                for (int c = 0; c < contexts.length; c++) {
+                    int index = group.contextJobs.get(c);
+                    double[][] bands = intervals
+                            ? PredictionIntervals.bootstrap(forecasts[c], group.model.getResiduals(), intervalPaths,
+                                    PredictionIntervals.DEFAULT_QUANTILES, group.modelKey.hashCode())
+                            : null;
+                    fill(jobResults.get(index), forecasts[c], bands, jobs.get(index).getHours());
+                }
+            }
+        } catch (RuntimeException e) {
+            for (int index : group.ownSeriesJobs) fail(jobResults.get(index), e);
+            for (int index : group.contextJobs) fail(jobResults.get(index), e);
+        }
+    }
+
+    private static int maxHorizon(List<Integer> indices, List<ForecastJob> jobs) {
+        int horizon = 0;
+        for (int index : indices) horizon = Math.max(horizon, jobs.get(index).getHours());
+        return horizon;
+    }
+
+    /**
+     * Ghi {@code hours} giá trị đầu (và phân vị nếu có) vào kết quả của công việc
+     */
+    private static void fill(Map<String, Object> jobResult, double[] values, double[][] bands, int hours) {
+        jobResult.put("success", true);
+        jobResult.put("values", round(values, hours));
+        if (bands != null) {
+            double[] quantiles = PredictionIntervals.DEFAULT_QUANTILES;
+            for (int q = 0; q < quantiles.length; q++) {
+                jobResult.put(PredictionIntervals.label(quantiles[q]), round(bands[q], hours));
+            }
+        }
+    }
+
+    private static void fail(Map<String, Object> jobResult, RuntimeException e) {
+        jobResult.put("success", false);
+        jobResult.put("message", "Error forecasting: " + e.getMessage());
+    }
+
+    private static List<Double> round(double[] values, int count) {
+        List<Double> rounded = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rounded.add(Math.round(values[i] * 100.0) / 100.0);
+        }
+        return rounded;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        batchExecutor.shutdownNow();
+    }
+}
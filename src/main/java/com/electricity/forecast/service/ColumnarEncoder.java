@@ -0,0 +1,90 @@
+package com.electricity.forecast.service;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mã hóa nhị phân dạng cột (little-endian) cho client máy: mỗi chuỗi là một mảng float32/float64
+ * kèm thời gian bắt đầu và bước, thay vì một chuỗi JSON cho mỗi điểm.
+ *
+ * <pre>
+ * header : magic "EFC1" | u8 valueBytes (4 hoặc 8) | u8 reserved | u16 blockCount
+ * block  : u16 nameLength | name (UTF-8) | u8 timeMode | i32 count
+ *          timeMode 0 (đều)      : i64 startEpochSecond | i32 stepSeconds
+ *          timeMode 1 (tường minh): i64[count] epochSecond
+ *          values : float32/float64[count] (NaN cho giá trị thiếu)
+ * </pre>
+ */
+public final class ColumnarEncoder {
+
+    public static final String MEDIA_TYPE = "application/vnd.energy-forecast.columnar";
+
+    private static final byte[] MAGIC = { 'E', 'F', 'C', '1' };
+    private static final int REGULAR = 0;
+    private static final int EXPLICIT = 1;
+
+    private record Block(byte[] name, long start, int step, long[] times, double[] values) {}
+
+    private final boolean doublePrecision;
+    private final List<Block> blocks = new ArrayList<>();
+
+    public ColumnarEncoder(boolean doublePrecision) {
+        this.doublePrecision = doublePrecision;
+    }
+
+    /**
+     * Chuỗi cách đều: điểm thứ i ở thời điểm start + i * step
+     */
+    public ColumnarEncoder addRegular(String name, long startEpochSecond, int stepSeconds, double[] values) {
+        blocks.add(new Block(name.getBytes(StandardCharsets.UTF_8), startEpochSecond, stepSeconds, null, values));
+        return this;
+    }
+
+    /**
+     * Chuỗi không đều (ví dụ sau khi giảm điểm): mỗi điểm mang thời gian riêng
+     */
+    public ColumnarEncoder addExplicit(String name, long[] epochSeconds, double[] values) {
+        if (epochSeconds.length != values.length) {
+            throw new IllegalArgumentException("times and values must have the same length");
+        }
+        blocks.add(new Block(name.getBytes(StandardCharsets.UTF_8), 0, 0, epochSeconds, values));
+        return this;
+    }
+
+    public byte[] toByteArray() {
+        int valueBytes = doublePrecision ? Double.BYTES : Float.BYTES;
+        int size = MAGIC.length + 4;
+        for (Block block : blocks) {
+            size += 2 + block.name().length + 1 + 4;
+            size += block.times() == null ? 8 + 4 : block.times().length * Long.BYTES;
+            size += block.values().length * valueBytes;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(MAGIC);
+        buffer.put((byte) valueBytes);
+        buffer.put((byte) 0);
+        buffer.putShort((short) blocks.size());
+        for (Block block : blocks) {
+            buffer.putShort((short) block.name().length);
+            buffer.put(block.name());
+            buffer.put((byte) (block.times() == null ? REGULAR : EXPLICIT));
+            buffer.putInt(block.values().length);
+            if (block.times() == null) {
+                buffer.putLong(block.start());
+                buffer.putInt(block.step());
+            } else {
+                for (long time : block.times()) buffer.putLong(time);
+            }
+            if (doublePrecision) {
+                for (double value : block.values()) buffer.putDouble(value);
+            } else {
+                for (double value : block.values()) buffer.putFloat((float) value);
+            }
+        }
+        return buffer.array();
+    }
+}
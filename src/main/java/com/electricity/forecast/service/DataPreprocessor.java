@@ -20,38 +20,148 @@ public class DataPreprocessor {
     };
     
     /**
-     * Tiền xử lý dữ liệu thô từ CSV
+     * Tiền xử lý dữ liệu thô từ CSV.
+     * Các bước bên dưới để package-private để module benchmarks đo riêng từng bước.
      */
     public List<Map<String, Object>> preprocessData(List<Map<String, Object>> rawData, String targetColumn) {
+        return preprocessData(rawData, targetColumn, PipelineTrace.disabled());
+    }
+    
+    /**
+     * Như trên, mỗi bước được ghi thời gian và cấp phát vào {@code trace}
+     */
+    public List<Map<String, Object>> preprocessData(List<Map<String, Object>> rawData, String targetColumn,
+                                                    PipelineTrace trace) {
+        return prepare(rawData, targetColumn, trace).rows();
+    }
+
+    /**
+     * Dữ liệu đã xử lý cùng các tham số đã học (state null nếu không có dữ liệu)
+     */
+    record Prepared(List<Map<String, Object>> rows, PreprocessingState state) {}
+
+    /**
+     * Tiền xử lý toàn bộ file và giữ lại các tham số đã học để {@link #appendData} xử lý các dòng nối thêm
+     */
+    Prepared prepare(List<Map<String, Object>> rawData, String targetColumn, PipelineTrace trace) {
         if (rawData == null || rawData.isEmpty()) {
-            return new ArrayList<>();
+            return new Prepared(new ArrayList<>(), null);
         }
-        
+
         // 1. Làm sạch dữ liệu cơ bản
-        List<Map<String, Object>> cleanedData = cleanBasicData(rawData);
-        
+        List<Map<String, Object>> cleaned = trace.stage("cleanBasicData", () -> cleanBasicData(rawData));
+        Set<String> columns = new HashSet<>(cleaned.get(0).keySet());
+        String timeColumn = findTimeColumn(cleaned.get(0));
+
         // 2. Xác định và chuẩn hóa cột thời gian
-        cleanedData = normalizeTimeColumn(cleanedData);
-        
+        List<Map<String, Object>> timed = trace.stage("normalizeTimeColumn", () -> normalizeTimeColumn(cleaned));
+
         // 3. Xử lý giá trị thiếu
-        cleanedData = handleMissingValues(cleanedData, targetColumn);
-        
+        Imputation imputation = trace.stage("fitImputation", () -> fitImputation(timed, targetColumn));
+        List<Map<String, Object>> imputed = trace.stage("handleMissingValues",
+            () -> imputeRows(timed, targetColumn, imputation, null));
+
         // 4. Xử lý ngoại lệ (outliers)
-        cleanedData = handleOutliers(cleanedData, targetColumn);
-        
+        double[] bounds = trace.stage("fitOutlierBounds", () -> outlierBounds(imputed, targetColumn));
+        List<Map<String, Object>> withoutOutliers = trace.stage("handleOutliers",
+            () -> applyOutlierBounds(imputed, targetColumn, bounds));
+
         // 5. Tạo đặc trưng thời gian
-        cleanedData = createTimeFeatures(cleanedData);
-        
+        List<Map<String, Object>> withFeatures = trace.stage("createTimeFeatures",
+            () -> createTimeFeatures(withoutOutliers));
+
         // 6. Chuẩn hóa dữ liệu số
-        cleanedData = normalizeNumericalData(cleanedData, targetColumn);
-        
-        return cleanedData;
+        Map<String, double[]> scaler = trace.stage("fitScaler", () -> fitScaler(withFeatures));
+        List<Map<String, Object>> scaled = trace.stage("normalizeNumericalData",
+            () -> applyScaler(withFeatures, scaler));
+
+        PreprocessingState state = new PreprocessingState(targetColumn, timeColumn, columns, imputation.sparse(),
+            imputation.fills(), bounds, scaler, null, null);
+        return new Prepared(scaled, withLastRow(state, scaled));
+    }
+
+    /**
+     * Tiền xử lý các dòng nối thêm bằng tham số của bộ dữ liệu hiện có: chỉ xử lý phần mới, không học lại
+     * median, ngưỡng ngoại lệ hay thang chuẩn hóa, nên phần mới được xử lý đúng như khi nó nằm trong file cũ
+     * (trừ các tham số lẽ ra đã thay đổi nhẹ khi có thêm dữ liệu).
+     * Các dòng không mới hơn dòng cuối của bộ dữ liệu bị bỏ; cột lạ bị bỏ, cột thiếu coi như giá trị thiếu.
+     */
+    Prepared appendData(PreprocessingState state, List<Map<String, Object>> rawData, PipelineTrace trace) {
+        if (rawData == null || rawData.isEmpty()) {
+            return new Prepared(new ArrayList<>(), state);
+        }
+        String targetColumn = state.getTargetColumn();
+
+        // 1. Làm sạch và đưa về đúng các cột của bộ dữ liệu
+        List<Map<String, Object>> cleaned = trace.stage("cleanBasicData", () -> {
+            List<Map<String, Object>> rows = cleanBasicData(rawData);
+            for (Map<String, Object> row : rows) {
+                row.keySet().retainAll(state.getColumns());
+                for (String column : state.getColumns()) {
+                    row.putIfAbsent(column, null);
+                }
+            }
+            return rows;
+        });
+
+        // 2. Thời gian theo cột đã biết (hoặc nối tiếp timestamp tự sinh), chỉ giữ dòng mới hơn dòng cuối
+        List<Map<String, Object>> timed = trace.stage("normalizeTimeColumn", () -> {
+            List<Map<String, Object>> rows = state.getTimeColumn() != null
+                ? applyTimeColumn(cleaned, state.getTimeColumn())
+                : continueAutoTimestamp(cleaned, state.getLastTimestamp());
+            LocalDateTime last = state.getLastTimestamp();
+            List<Map<String, Object>> newer = new ArrayList<>();
+            for (Map<String, Object> row : rows) {
+                Object timestamp = row.get("timestamp");
+                if (timestamp instanceof LocalDateTime
+                        && (last == null || ((LocalDateTime) timestamp).isAfter(last))) {
+                    newer.add(row);
+                }
+            }
+            return newer;
+        });
+        if (timed.isEmpty()) {
+            return new Prepared(new ArrayList<>(), state);
+        }
+
+        // 3-6. Các bước còn lại với tham số đã lưu
+        Imputation imputation = new Imputation(state.getSparseColumns(), state.getFillValues());
+        List<Map<String, Object>> imputed = trace.stage("handleMissingValues",
+            () -> imputeRows(timed, targetColumn, imputation, state.getLastTarget()));
+        List<Map<String, Object>> withoutOutliers = trace.stage("handleOutliers",
+            () -> applyOutlierBounds(imputed, targetColumn, state.getOutlierBounds()));
+        List<Map<String, Object>> withFeatures = trace.stage("createTimeFeatures",
+            () -> createTimeFeatures(withoutOutliers));
+        List<Map<String, Object>> scaled = trace.stage("normalizeNumericalData",
+            () -> applyScaler(withFeatures, state.getScaler()));
+
+        return new Prepared(scaled, withLastRow(state, scaled));
+    }
+
+    private PreprocessingState withLastRow(PreprocessingState state, List<Map<String, Object>> rows) {
+        LocalDateTime lastTimestamp = state.getLastTimestamp();
+        for (Map<String, Object> row : rows) {
+            Object timestamp = row.get("timestamp");
+            if (timestamp instanceof LocalDateTime
+                    && (lastTimestamp == null || ((LocalDateTime) timestamp).isAfter(lastTimestamp))) {
+                lastTimestamp = (LocalDateTime) timestamp;
+            }
+        }
+        Double lastTarget = state.getLastTarget();
+        for (int i = rows.size() - 1; i >= 0; i--) {
+            Object value = rows.get(i).get(state.getTargetColumn());
+            if (value instanceof Number) {
+                lastTarget = ((Number) value).doubleValue();
+                break;
+            }
+        }
+        return state.withTail(lastTimestamp, lastTarget);
     }
     
     /**
      * 1. Làm sạch dữ liệu cơ bản
      */
-    private List<Map<String, Object>> cleanBasicData(List<Map<String, Object>> data) {
+    List<Map<String, Object>> cleanBasicData(List<Map<String, Object>> data) {
         List<Map<String, Object>> cleaned = new ArrayList<>();
         
         for (Map<String, Object> row : data) {
@@ -92,16 +202,20 @@ public class DataPreprocessor {
     /**
      * 2. Chuẩn hóa cột thời gian
      */
-    private List<Map<String, Object>> normalizeTimeColumn(List<Map<String, Object>> data) {
+    List<Map<String, Object>> normalizeTimeColumn(List<Map<String, Object>> data) {
         if (data.isEmpty()) return data;
         
         // Tìm cột thời gian
         String timeColumn = findTimeColumn(data.get(0));
         if (timeColumn == null) {
             // Nếu không có cột thời gian, tạo timestamp tự động
-            return addAutoTimestamp(data);
+            return continueAutoTimestamp(data, null);
         }
-        
+
+        return applyTimeColumn(data, timeColumn);
+    }
+
+    private List<Map<String, Object>> applyTimeColumn(List<Map<String, Object>> data, String timeColumn) {
         // Chuẩn hóa giá trị thời gian
         for (Map<String, Object> row : data) {
             Object timeValue = row.get(timeColumn);
@@ -132,34 +246,58 @@ public class DataPreprocessor {
     /**
      * 3. Xử lý giá trị thiếu (Missing Values)
      */
-    private List<Map<String, Object>> handleMissingValues(List<Map<String, Object>> data, String targetColumn) {
+    List<Map<String, Object>> handleMissingValues(List<Map<String, Object>> data, String targetColumn) {
         if (data.isEmpty()) return data;
-        
+        return imputeRows(data, targetColumn, fitImputation(data, targetColumn), null);
+    }
+
+    /**
+     * Cột thiếu hơn 30% (bị bỏ khi thiếu) và median của mỗi cột để điền giá trị thiếu
+     */
+    record Imputation(Set<String> sparse, Map<String, Double> fills) {}
+
+    Imputation fitImputation(List<Map<String, Object>> data, String targetColumn) {
+        Set<String> sparse = new HashSet<>();
+        Map<String, Double> fills = new HashMap<>();
+        if (data.isEmpty()) return new Imputation(sparse, fills);
+
         // Phân tích missing values
-        Map<String, Integer> missingCounts = new HashMap<>();
         for (String column : data.get(0).keySet()) {
             int missing = 0;
             for (Map<String, Object> row : data) {
                 if (row.get(column) == null) missing++;
             }
-            missingCounts.put(column, missing);
+            if (missing > data.size() * 0.3 && !column.equals(targetColumn)) {
+                sparse.add(column);
+            } else if (!column.equals("timestamp")) {
+                fills.put(column, fillMissingValue(data, column));
+            }
         }
-        
-        // Xử lý missing values cho cột mục tiêu
+        return new Imputation(sparse, fills);
+    }
+
+    /**
+     * Điền giá trị thiếu; {@code before} là giá trị mục tiêu của dòng ngay trước {@code data}
+     * (null nếu data là đầu bộ dữ liệu)
+     */
+    private List<Map<String, Object>> imputeRows(List<Map<String, Object>> data, String targetColumn,
+                                                 Imputation imputation, Double before) {
         List<Map<String, Object>> result = new ArrayList<>();
-        
-        for (Map<String, Object> row : data) {
+
+        for (int index = 0; index < data.size(); index++) {
+            Map<String, Object> row = data.get(index);
             Map<String, Object> processedRow = new HashMap<>(row);
-            
+
             for (String column : row.keySet()) {
                 Object value = row.get(column);
-                
+
                 if (value == null) {
                     // Chiến lược xử lý missing values
                     if (column.equals(targetColumn)) {
                         // Cột mục tiêu: sử dụng interpolation hoặc fill forward/backward
-                        processedRow.put(column, interpolateMissingValue(data, result, column, result.size()));
-                    } else if (missingCounts.get(column) > data.size() * 0.3) {
+                        processedRow.put(column, interpolateMissingValue(data, before, column, index,
+                            imputation.fills().getOrDefault(column, 0.0)));
+                    } else if (imputation.sparse().contains(column)) {
                         // Nhiều hơn 30% missing: xóa cột
                         processedRow.remove(column);
                     } else if (column.equals("timestamp")) {
@@ -167,52 +305,57 @@ public class DataPreprocessor {
                         continue;
                     } else {
                         // Cột khác: fill với mean/median/mode
-                        processedRow.put(column, fillMissingValue(data, column));
+                        processedRow.put(column, imputation.fills().getOrDefault(column, 0.0));
                     }
                 }
             }
+            Object target = processedRow.get(targetColumn);
+            if (target instanceof Number) {
+                before = ((Number) target).doubleValue();
+            }
             result.add(processedRow);
         }
-        
+
         return result;
     }
     
     /**
      * 4. Xử lý ngoại lệ (Outliers)
      */
-    private List<Map<String, Object>> handleOutliers(List<Map<String, Object>> data, String targetColumn) {
+    List<Map<String, Object>> handleOutliers(List<Map<String, Object>> data, String targetColumn) {
         if (data.isEmpty() || targetColumn == null) return data;
+        return applyOutlierBounds(data, targetColumn, outlierBounds(data, targetColumn));
+    }
+
+    /**
+     * Ngưỡng IQR và median của cột mục tiêu: {lower, upper, median}, null nếu không xử lý ngoại lệ
+     */
+    double[] outlierBounds(List<Map<String, Object>> data, String targetColumn) {
+        if (data.isEmpty() || targetColumn == null) return null;
         
         // Chỉ xử lý nếu cột mục tiêu là số
         if (!isNumericColumn(data, targetColumn)) {
-            return data;
+            return null;
         }
         
         // Tính IQR (Interquartile Range)
-        List<Double> values = data.stream()
-            .map(row -> row.get(targetColumn))
-            .filter(Objects::nonNull)
-            .map(value -> {
-                if (value instanceof Number) {
-                    return ((Number) value).doubleValue();
-                }
-                return null;
-            })
-            .filter(Objects::nonNull)
-            .collect(Collectors.toList());
+        List<Double> values = extractNumericValues(data, targetColumn);
         
-        if (values.size() < 10) return data; // Không đủ dữ liệu
+        if (values.size() < 10) return null; // Không đủ dữ liệu
         
         Collections.sort(values);
         
         double q1 = values.get((int) (values.size() * 0.25));
         double q3 = values.get((int) (values.size() * 0.75));
         double iqr = q3 - q1;
-        double lowerBound = q1 - 1.5 * iqr;
-        double upperBound = q3 + 1.5 * iqr;
         
-        // Thay thế outliers bằng median
-        double median = values.get(values.size() / 2);
+        // Outlier được thay bằng median
+        return new double[]{q1 - 1.5 * iqr, q3 + 1.5 * iqr, values.get(values.size() / 2)};
+    }
+
+    private List<Map<String, Object>> applyOutlierBounds(List<Map<String, Object>> data, String targetColumn,
+                                                         double[] bounds) {
+        if (bounds == null) return data;
         
         List<Map<String, Object>> result = new ArrayList<>();
         for (Map<String, Object> row : data) {
@@ -221,9 +364,9 @@ public class DataPreprocessor {
             
             if (value instanceof Number) {
                 double numValue = ((Number) value).doubleValue();
-                if (numValue < lowerBound || numValue > upperBound) {
+                if (numValue < bounds[0] || numValue > bounds[1]) {
                     // Thay thế outlier bằng median
-                    processedRow.put(targetColumn, median);
+                    processedRow.put(targetColumn, bounds[2]);
                 }
             }
             result.add(processedRow);
@@ -235,7 +378,7 @@ public class DataPreprocessor {
     /**
      * 5. Tạo đặc trưng thời gian
      */
-    private List<Map<String, Object>> createTimeFeatures(List<Map<String, Object>> data) {
+    List<Map<String, Object>> createTimeFeatures(List<Map<String, Object>> data) {
         List<Map<String, Object>> result = new ArrayList<>();
         
         for (Map<String, Object> row : data) {
@@ -243,31 +386,7 @@ public class DataPreprocessor {
             
             Object timestamp = row.get("timestamp");
             if (timestamp instanceof LocalDateTime) {
-                LocalDateTime dt = (LocalDateTime) timestamp;
-                
-                // Các đặc trưng cơ bản
-                enhancedRow.put("hour", dt.getHour());
-                enhancedRow.put("day_of_week", dt.getDayOfWeek().getValue()); // 1-7
-                enhancedRow.put("day_of_month", dt.getDayOfMonth());
-                enhancedRow.put("month", dt.getMonthValue());
-                enhancedRow.put("year", dt.getYear());
-                enhancedRow.put("is_weekend", 
-                    dt.getDayOfWeek() == DayOfWeek.SATURDAY || 
-                    dt.getDayOfWeek() == DayOfWeek.SUNDAY);
-                
-                // Cyclical encoding cho giờ
-                enhancedRow.put("hour_sin", Math.sin(2 * Math.PI * dt.getHour() / 24));
-                enhancedRow.put("hour_cos", Math.cos(2 * Math.PI * dt.getHour() / 24));
-                
-                // Cyclical encoding cho ngày trong tuần
-                enhancedRow.put("day_sin", Math.sin(2 * Math.PI * dt.getDayOfWeek().getValue() / 7));
-                enhancedRow.put("day_cos", Math.cos(2 * Math.PI * dt.getDayOfWeek().getValue() / 7));
-                
-                // Đặc trưng mùa
-                enhancedRow.put("season", getSeason(dt.getMonthValue()));
-                
-                // Giờ trong ngày phân loại
-                enhancedRow.put("time_of_day", getTimeOfDay(dt.getHour()));
+                putTimeFeatures(enhancedRow, (LocalDateTime) timestamp);
             }
             
             result.add(enhancedRow);
@@ -276,50 +395,76 @@ public class DataPreprocessor {
         return result;
     }
     
+    /**
+     * Các cột đặc trưng thời gian của một thời điểm; dùng cho cả tiền xử lý file và từng số đo trực tiếp
+     */
+    void putTimeFeatures(Map<String, Object> row, LocalDateTime dt) {
+        // Các đặc trưng cơ bản
+        row.put("hour", dt.getHour());
+        row.put("day_of_week", dt.getDayOfWeek().getValue()); // 1-7
+        row.put("day_of_month", dt.getDayOfMonth());
+        row.put("month", dt.getMonthValue());
+        row.put("year", dt.getYear());
+        row.put("is_weekend", 
+            dt.getDayOfWeek() == DayOfWeek.SATURDAY || 
+            dt.getDayOfWeek() == DayOfWeek.SUNDAY);
+        
+        // Cyclical encoding cho giờ
+        row.put("hour_sin", Math.sin(2 * Math.PI * dt.getHour() / 24));
+        row.put("hour_cos", Math.cos(2 * Math.PI * dt.getHour() / 24));
+        
+        // Cyclical encoding cho ngày trong tuần
+        row.put("day_sin", Math.sin(2 * Math.PI * dt.getDayOfWeek().getValue() / 7));
+        row.put("day_cos", Math.cos(2 * Math.PI * dt.getDayOfWeek().getValue() / 7));
+        
+        // Đặc trưng mùa
+        row.put("season", getSeason(dt.getMonthValue()));
+        
+        // Giờ trong ngày phân loại
+        row.put("time_of_day", getTimeOfDay(dt.getHour()));
+    }
+    
     /**
      * 6. Chuẩn hóa dữ liệu số
      */
-    private List<Map<String, Object>> normalizeNumericalData(List<Map<String, Object>> data, String targetColumn) {
+    List<Map<String, Object>> normalizeNumericalData(List<Map<String, Object>> data, String targetColumn) {
         if (data.isEmpty()) return data;
+        return applyScaler(data, fitScaler(data));
+    }
+
+    /**
+     * Mean và std của mỗi cột số: cột -> {mean, std}
+     */
+    Map<String, double[]> fitScaler(List<Map<String, Object>> data) {
+        Map<String, double[]> scaler = new HashMap<>();
+        if (data.isEmpty()) return scaler;
         
         // Xác định các cột số
-        Set<String> numericColumns = new HashSet<>();
-        Map<String, Object> firstRow = data.get(0);
-        
-        for (String column : firstRow.keySet()) {
+        for (String column : data.get(0).keySet()) {
             if (isNumericColumn(data, column) && !column.equals("timestamp")) {
-                numericColumns.add(column);
-            }
-        }
-        
-        // Tính min, max, mean, std cho mỗi cột số
-        Map<String, Double> columnMeans = new HashMap<>();
-        Map<String, Double> columnStds = new HashMap<>();
-        Map<String, Double> columnMins = new HashMap<>();
-        Map<String, Double> columnMaxs = new HashMap<>();
-        
-        for (String column : numericColumns) {
-            List<Double> values = extractNumericValues(data, column);
-            if (!values.isEmpty()) {
-                columnMeans.put(column, calculateMean(values));
-                columnStds.put(column, calculateStd(values));
-                columnMins.put(column, Collections.min(values));
-                columnMaxs.put(column, Collections.max(values));
+                List<Double> values = extractNumericValues(data, column);
+                if (!values.isEmpty()) {
+                    scaler.put(column, new double[]{calculateMean(values), calculateStd(values)});
+                }
             }
         }
-        
+        return scaler;
+    }
+
+    private List<Map<String, Object>> applyScaler(List<Map<String, Object>> data, Map<String, double[]> scaler) {
         // Chuẩn hóa dữ liệu (Standardization)
         List<Map<String, Object>> normalizedData = new ArrayList<>();
         
         for (Map<String, Object> row : data) {
             Map<String, Object> normalizedRow = new HashMap<>(row);
             
-            for (String column : numericColumns) {
+            for (Map.Entry<String, double[]> entry : scaler.entrySet()) {
+                String column = entry.getKey();
                 Object value = row.get(column);
                 if (value instanceof Number) {
                     double numValue = ((Number) value).doubleValue();
-                    double mean = columnMeans.get(column);
-                    double std = columnStds.get(column);
+                    double mean = entry.getValue()[0];
+                    double std = entry.getValue()[1];
                     
                     if (std > 0) {
                         // Standardization: (x - mean) / std
@@ -357,7 +502,7 @@ public class DataPreprocessor {
         return null;
     }
     
-    private LocalDateTime parseDateTime(String dateString) {
+    LocalDateTime parseDateTime(String dateString) {
         for (DateTimeFormatter formatter : DATE_FORMATTERS) {
             try {
                 return LocalDateTime.parse(dateString, formatter);
@@ -426,8 +571,12 @@ public class DataPreprocessor {
         return "evening";
     }
     
-    private List<Map<String, Object>> addAutoTimestamp(List<Map<String, Object>> data) {
-        LocalDateTime startTime = LocalDateTime.now().minusHours(data.size());
+    /**
+     * Timestamp tự sinh theo giờ; nối tiếp bộ dữ liệu thì dòng thứ i là last + (i + 1) giờ,
+     * còn file mới (last null) thì kết thúc ở thời điểm hiện tại
+     */
+    private List<Map<String, Object>> continueAutoTimestamp(List<Map<String, Object>> data, LocalDateTime last) {
+        LocalDateTime startTime = last != null ? last.plusHours(1) : LocalDateTime.now().minusHours(data.size());
         List<Map<String, Object>> result = new ArrayList<>();
         
         for (int i = 0; i < data.size(); i++) {
@@ -439,25 +588,19 @@ public class DataPreprocessor {
         return result;
     }
     
-    private Object interpolateMissingValue(List<Map<String, Object>> allData, 
-                                          List<Map<String, Object>> processedData, 
-                                          String column, int currentIndex) {
-        // Linear interpolation cho time series
-        if (allData.size() < 2 || currentIndex == 0) {
-            return fillMissingValue(allData, column);
+    /**
+     * {@code before} là giá trị đã xử lý gần nhất phía trước (null nếu chưa có)
+     */
+    private Object interpolateMissingValue(List<Map<String, Object>> allData, Double before,
+                                          String column, int currentIndex, double median) {
+        // Linear interpolation cho time series; dòng đầu của bộ dữ liệu lấy median
+        if (before == null && currentIndex == 0) {
+            return median;
         }
-        
-        // Tìm giá trị trước và sau
-        Double before = null;
+
+        // Tìm giá trị sau
         Double after = null;
-        
-        for (int i = currentIndex - 1; i >= 0 && before == null; i--) {
-            Object val = processedData.get(i).get(column);
-            if (val instanceof Number) {
-                before = ((Number) val).doubleValue();
-            }
-        }
-        
+
         for (int i = currentIndex + 1; i < allData.size() && after == null; i++) {
             Object val = allData.get(i).get(column);
             if (val instanceof Number) {
@@ -474,10 +617,10 @@ public class DataPreprocessor {
             return after;
         }
         
-        return fillMissingValue(allData, column);
+        return median;
     }
     
-    private Object fillMissingValue(List<Map<String, Object>> data, String column) {
+    private double fillMissingValue(List<Map<String, Object>> data, String column) {
         // Tính median cho cột
         List<Double> values = extractNumericValues(data, column);
         if (!values.isEmpty()) {
@@ -548,6 +691,42 @@ public class DataPreprocessor {
         return info;
     }
     
+    /**
+     * Báo cáo tiền xử lý sau khi nối thêm: cộng dồn số dòng, giá trị thiếu và ngoại lệ của phần mới
+     * vào báo cáo của bộ dữ liệu (ngoại lệ của phần mới được đếm theo ngưỡng đã lưu)
+     */
+    public Map<String, Object> appendPreprocessingInfo(Map<String, Object> info,
+                                                      List<Map<String, Object>> rawData,
+                                                      List<Map<String, Object>> processedData,
+                                                      PreprocessingState state) {
+        Map<String, Object> merged = new HashMap<>(info);
+        int rowsBefore = ((Number) info.getOrDefault("rows_before", 0)).intValue() + rawData.size();
+        merged.put("rows_before", rowsBefore);
+        merged.put("rows_after", ((Number) info.getOrDefault("rows_after", 0)).intValue() + processedData.size());
+        merged.put("missing_before", addCounts(info.get("missing_before"), countMissingValues(rawData)));
+        merged.put("missing_after", addCounts(info.get("missing_after"), countMissingValues(processedData)));
+        merged.put("rows_appended", processedData.size());
+        merged.put("appends", ((Number) info.getOrDefault("appends", 0)).intValue() + 1);
+        
+        double[] bounds = state.getOutlierBounds();
+        if (bounds != null && info.containsKey("outliers_detected")) {
+            long outliers = ((Number) info.get("outliers_detected")).longValue()
+                + extractNumericValues(rawData, state.getTargetColumn()).stream()
+                    .filter(v -> v < bounds[0] || v > bounds[1])
+                    .count();
+            merged.put("outliers_detected", outliers);
+            merged.put("outlier_percentage", (outliers * 100.0) / rowsBefore);
+        }
+        return merged;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Integer> addCounts(Object previous, Map<String, Integer> counts) {
+        Map<String, Integer> sum = previous instanceof Map ? new HashMap<>((Map<String, Integer>) previous) : new HashMap<>();
+        counts.forEach((column, missing) -> sum.merge(column, missing, Integer::sum));
+        return sum;
+    }
+    
     private Map<String, Integer> countMissingValues(List<Map<String, Object>> data) {
         Map<String, Integer> counts = new HashMap<>();
         
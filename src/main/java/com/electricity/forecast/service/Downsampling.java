@@ -0,0 +1,78 @@
+package com.electricity.forecast.service;
+
+import java.util.Arrays;
+
+/**
+ * Giảm số điểm cho biểu đồ bằng Largest-Triangle-Three-Buckets (LTTB).
+ * Điểm đầu và cuối luôn được giữ; mỗi bucket ở giữa giữ điểm tạo tam giác lớn nhất với điểm đã chọn
+ * trước đó và trung bình của bucket kế tiếp, nên đỉnh và đáy của chuỗi vẫn còn sau khi giảm.
+ * Một lần duyệt tuyến tính, trả về vị trí các điểm được chọn để áp dụng cho cột/khoảng dự báo đi kèm.
+ */
+public final class Downsampling {
+
+    public static final int MIN_POINTS = 3;
+
+    private Downsampling() {}
+
+    /**
+     * Vị trí (tăng dần) của tối đa {@code maxPoints} điểm được giữ; giá trị NaN không bao giờ được chọn
+     * trừ khi cả bucket là NaN. Trả về mọi vị trí nếu chuỗi đã đủ ngắn.
+     */
+    public static int[] lttb(double[] x, double[] y, int maxPoints) {
+        int n = y.length;
+        if (maxPoints < MIN_POINTS) {
+            throw new IllegalArgumentException("maxPoints must be at least " + MIN_POINTS);
+        }
+        if (n <= maxPoints) {
+            int[] all = new int[n];
+            Arrays.setAll(all, i -> i);
+            return all;
+        }
+
+        int[] selected = new int[maxPoints];
+        int count = 0;
+        selected[count++] = 0;
+
+        // Các bucket chia đều n - 2 điểm ở giữa
+        double bucketSize = (double) (n - 2) / (maxPoints - 2);
+        int previous = 0;
+        for (int bucket = 0; bucket < maxPoints - 2; bucket++) {
+            int nextStart = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int) Math.floor((bucket + 2) * bucketSize) + 1, n);
+            double averageX = 0;
+            double averageY = 0;
+            int averageCount = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                if (Double.isNaN(y[i])) continue;
+                averageX += x[i];
+                averageY += y[i];
+                averageCount++;
+            }
+            if (averageCount > 0) {
+                averageX /= averageCount;
+                averageY /= averageCount;
+            } else {
+                averageX = x[n - 1];
+                averageY = y[n - 1];
+            }
+
+            int start = (int) Math.floor(bucket * bucketSize) + 1;
+            int end = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+            int chosen = start;
+            double maxArea = -1;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((x[previous] - averageX) * (y[i] - y[previous])
+                        - (x[previous] - x[i]) * (averageY - y[previous]));
+                if (area > maxArea) {
+                    maxArea = area;
+                    chosen = i;
+                }
+            }
+            selected[count++] = chosen;
+            previous = chosen;
+        }
+
+        selected[count++] = n - 1;
+        return selected;
+    }
+}
@@ -0,0 +1,166 @@
+package com.electricity.forecast.service;
+
+import com.electricity.forecast.model.ForecastResult;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.IntFunction;
+
+/**
+ * Cache kết quả dự báo theo (phiên bản dữ liệu, phiên bản mô hình, số giờ).
+ * LRU giới hạn số mục và có TTL; dự báo ngắn hơn được cắt từ một mục dài hơn cùng phiên bản
+ * (dự báo đệ quy và bootstrap theo bước nên phần đầu luôn trùng khớp).
+ * Phiên bản nằm trong khóa nên kết quả tính dở từ phiên bản cũ không bao giờ được trả lại.
+ * Đường đọc không khóa (ConcurrentHashMap); chỉ việc loại mục khi vượt giới hạn mới đồng bộ.
+ * Mỗi workspace có một cache riêng.
+ */
+public class ForecastCache {
+
+    private record Key(long datasetVersion, long modelVersion, int hours) {}
+
+    private static final class Entry {
+        final ForecastResult result;
+        final long createdAt;
+        volatile long lastAccess;
+
+        Entry(ForecastResult result, long createdAt) {
+            this.result = result;
+            this.createdAt = createdAt;
+            this.lastAccess = createdAt;
+        }
+    }
+
+    private final int maxEntries;
+    private final long ttlSeconds;
+
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final Object evictionLock = new Object();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong prefixHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ForecastCache(int maxEntries, long ttlSeconds) {
+        this.maxEntries = maxEntries;
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    /**
+     * Trả về dự báo từ cache, cắt từ mục dài hơn nếu có, hoặc tính mới bằng {@code compute}.
+     * Việc tính toán diễn ra ngoài khóa; chỉ kết quả thành công mới được lưu.
+     */
+    public ForecastResult get(long datasetVersion, long modelVersion, int hours,
+                              IntFunction<ForecastResult> compute,
+                              BiFunction<ForecastResult, Integer, ForecastResult> prefix) {
+        Key key = new Key(datasetVersion, modelVersion, hours);
+
+        Entry exact = live(key);
+        if (exact != null) {
+            exact.lastAccess = System.nanoTime();
+            hits.incrementAndGet();
+            return exact.result;
+        }
+
+        ForecastResult longer = findLonger(key);
+        if (longer != null) {
+            prefixHits.incrementAndGet();
+            ForecastResult sliced = prefix.apply(longer, hours);
+            put(key, sliced);
+            return sliced;
+        }
+
+        misses.incrementAndGet();
+        ForecastResult computed = compute.apply(hours);
+        if (computed.isSuccess()) {
+            put(key, computed);
+        }
+        return computed;
+    }
+
+    /**
+     * Xóa toàn bộ cache (gọi sau khi tải dữ liệu mới hoặc huấn luyện lại)
+     */
+    public void invalidate() {
+        entries.clear();
+    }
+
+    /**
+     * Số lần trả về từ cache, tính cả mục được cắt từ dự báo dài hơn
+     */
+    public long getHitCount() { return hits.get() + prefixHits.get(); }
+
+    public long getRequestCount() { return getHitCount() + misses.get(); }
+
+    public Map<String, Object> getStats() {
+        long hitCount = getHitCount();
+        long total = getRequestCount();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", entries.size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlSeconds", ttlSeconds);
+        stats.put("hits", hits.get());
+        stats.put("prefixHits", prefixHits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        stats.put("hitRate", total > 0 ? Math.round(hitCount * 1000.0 / total) / 1000.0 : 0.0);
+        return stats;
+    }
+
+    private void put(Key key, ForecastResult result) {
+        entries.put(key, new Entry(result, System.nanoTime()));
+        if (entries.size() <= maxEntries) return;
+
+        // Loại mục lâu không dùng nhất (LRU); số mục nhỏ nên quét tuyến tính là đủ
+        synchronized (evictionLock) {
+            while (entries.size() > maxEntries) {
+                Key oldest = null;
+                long oldestAccess = Long.MAX_VALUE;
+                for (Map.Entry<Key, Entry> candidate : entries.entrySet()) {
+                    if (candidate.getValue().lastAccess < oldestAccess) {
+                        oldestAccess = candidate.getValue().lastAccess;
+                        oldest = candidate.getKey();
+                    }
+                }
+                if (oldest == null || entries.remove(oldest) == null) break;
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private Entry live(Key key) {
+        Entry entry = entries.get(key);
+        if (entry != null && expired(entry)) {
+            if (entries.remove(key, entry)) evictions.incrementAndGet();
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Mục ngắn nhất còn hạn của cùng phiên bản có số giờ lớn hơn yêu cầu
+     */
+    private ForecastResult findLonger(Key key) {
+        Entry best = null;
+        int bestHours = Integer.MAX_VALUE;
+        for (Map.Entry<Key, Entry> candidate : entries.entrySet()) {
+            Key other = candidate.getKey();
+            if (other.datasetVersion() == key.datasetVersion()
+                    && other.modelVersion() == key.modelVersion()
+                    && other.hours() > key.hours()
+                    && other.hours() < bestHours
+                    && !expired(candidate.getValue())) {
+                best = candidate.getValue();
+                bestHours = other.hours();
+            }
+        }
+        return best != null ? best.result : null;
+    }
+
+    private boolean expired(Entry entry) {
+        return System.nanoTime() - entry.createdAt > ttlSeconds * 1_000_000_000L;
+    }
+}
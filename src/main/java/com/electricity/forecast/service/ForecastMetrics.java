@@ -0,0 +1,127 @@
+package com.electricity.forecast.service;
+
+import com.electricity.forecast.engine.OffHeapBuffer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.*;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Metric Micrometer của dịch vụ dự báo (xuất ra /actuator/prometheus).
+ * Gauge được tính lại mỗi lần scrape và cộng dồn qua các workspace đang nằm trong bộ nhớ;
+ * thời gian của từng endpoint đã có sẵn trong http.server.requests của Spring Boot.
+ */
+public final class ForecastMetrics {
+
+    private final WorkspaceManager workspaces;
+    private final Counter malformedCsvRows;
+    private final Counter ingestedRows;
+    private final Counter liveReadings;
+    private final Counter liveFlagged;
+
+    public ForecastMetrics(MeterRegistry registry, WorkspaceManager workspaces, MemoryBudget budget) {
+        this.workspaces = workspaces;
+
+        Gauge.builder("forecast.workspaces.active", workspaces, manager -> manager.getActive().size())
+                .description("Workspaces loaded in memory")
+                .register(registry);
+        Gauge.builder("forecast.dataset.rows", this, metrics -> metrics.sum(ForecastMetrics::rows))
+                .description("Preprocessed rows of loaded datasets")
+                .register(registry);
+        Gauge.builder("forecast.dataset.columns", this, metrics -> metrics.sum(ForecastMetrics::columns))
+                .description("Columns of loaded preprocessed datasets")
+                .register(registry);
+        Gauge.builder("forecast.memory.datasets", this, metrics -> metrics.sum(w -> w.getSnapshot().getMemoryBytes()))
+                .description("Estimated heap used by loaded raw and preprocessed datasets")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("forecast.memory.models", this, metrics -> metrics.sum(budget::modelBytes))
+                .description("Serialized size of trained models, as an estimate of their heap use")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("forecast.memory.offheap", OffHeapBuffer::allocatedBytes)
+                .description("Off-heap memory held by target series and LSTM weights")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("forecast.memory.budget", budget, MemoryBudget::getBudgetBytes)
+                .description("Heap budget shared by all workspaces")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("forecast.memory.reserved", budget, MemoryBudget::getReservedBytes)
+                .description("Memory reserved by uploads and trainings in progress")
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionCounter.builder("forecast.memory.raw.dropped", budget, MemoryBudget::getRawDroppedCount)
+                .description("Raw dataset copies dropped to stay within the memory budget")
+                .register(registry);
+        FunctionCounter.builder("forecast.memory.spilled", budget, MemoryBudget::getSpilledCount)
+                .description("Workspaces written to disk to stay within the memory budget")
+                .register(registry);
+        FunctionCounter.builder("forecast.memory.rejected", budget, MemoryBudget::getRejectedCount)
+                .description("Uploads and trainings rejected by the memory budget")
+                .register(registry);
+        Gauge.builder("forecast.training.queue", this, metrics -> metrics.sum(Workspace::getTrainingQueueLength))
+                .description("Training threads waiting for a workspace training slot")
+                .register(registry);
+        Gauge.builder("forecast.cache.hit.ratio", this, ForecastMetrics::cacheHitRatio)
+                .description("Forecast cache hits (including prefix hits) over all lookups")
+                .register(registry);
+
+        malformedCsvRows = Counter.builder("forecast.csv.malformed.rows")
+                .description("CSV rows with a field count different from the header, or without any value")
+                .register(registry);
+        ingestedRows = Counter.builder("forecast.ingest.rows")
+                .description("Raw CSV rows accepted by uploads")
+                .register(registry);
+        liveReadings = Counter.builder("forecast.live.readings")
+                .description("Single readings accepted by the live ingest endpoint")
+                .register(registry);
+        liveFlagged = Counter.builder("forecast.live.flagged")
+                .description("Live readings outside the current prediction interval")
+                .register(registry);
+    }
+
+    public void malformedCsvRow() {
+        malformedCsvRows.increment();
+    }
+
+    public void ingestedRows(int rows) {
+        ingestedRows.increment(rows);
+    }
+
+    public void liveReadings(int readings, int flagged) {
+        liveReadings.increment(readings);
+        if (flagged > 0) liveFlagged.increment(flagged);
+    }
+
+    private double sum(ToDoubleFunction<Workspace> value) {
+        double total = 0;
+        for (Workspace workspace : workspaces.getActive()) {
+            total += value.applyAsDouble(workspace);
+        }
+        return total;
+    }
+
+    private static double rows(Workspace workspace) {
+        List<Map<String, Object>> data = workspace.getSnapshot().getProcessedData();
+        return data != null ? data.size() : 0;
+    }
+
+    private static double columns(Workspace workspace) {
+        List<Map<String, Object>> data = workspace.getSnapshot().getProcessedData();
+        return data != null && !data.isEmpty() ? data.get(0).size() : 0;
+    }
+
+    private double cacheHitRatio() {
+        long hits = 0;
+        long requests = 0;
+        for (Workspace workspace : workspaces.getActive()) {
+            hits += workspace.getForecastCache().getHitCount();
+            requests += workspace.getForecastCache().getRequestCount();
+        }
+        return requests > 0 ? (double) hits / requests : 0;
+    }
+}
@@ -1,51 +1,172 @@
 package com.electricity.forecast.service;
 
+import com.electricity.forecast.engine.*;
+import com.electricity.forecast.engine.lstm.LstmHyperparameterSearch;
+import com.electricity.forecast.engine.lstm.LstmSearchSpace;
 import com.electricity.forecast.model.*;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
 
 @Service
 public class ForecastService {
     
+    // Dữ liệu và dự báo theo giờ
+    private static final int HOUR_SECONDS = 3600;
+    
     @Autowired
     private DataPreprocessor dataPreprocessor;  // Thêm dependency injection
     
-    private DataModel currentData;
-    private ModelMetrics lstmMetrics;
-    private ModelMetrics arimaMetrics;
-    private List<Map<String, Object>> rawData;  // Thêm để lưu dữ liệu thô
-    private List<Map<String, Object>> processedData;  // Thêm để lưu dữ liệu đã xử lý
+    @Autowired
+    private ModelRegistry modelRegistry;
+    
+    @Autowired
+    private LstmEngine lstmEngine;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private PipelineProfiler profiler;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    // Số đường bootstrap cho khoảng dự báo P10/P50/P90
+    @Value("${forecast.intervals.paths:1000}")
+    private int intervalPaths;
+    
+    // Thư mục lưu CSV được tải lên hoặc nối thêm (snapshot workspace tham chiếu tới các file này)
+    @Value("${forecast.storage.upload-dir:data}")
+    private String uploadDirectory;
+    
+    // Số dòng dữ liệu tối đa đọc từ mỗi CSV (upload, nối thêm, khôi phục)
+    @Value("${forecast.upload.max-rows:10000}")
+    private int maxCsvRows = 10000;
+    
+    // Tầm dự báo lớn nhất cho mọi đường dự báo (bootstrap cấp phát hours * paths giá trị mỗi mô hình);
+    // forecast.batch.max-hours là tên cũ, vẫn được đọc nếu chưa đặt forecast.max-hours
+    @Value("${forecast.max-hours:${forecast.batch.max-hours:8760}}")
+    private int maxForecastHours;
+    
+    @Value("${forecast.cache.max-entries:64}")
+    private int cacheEntries;
+    
+    @Value("${forecast.cache.ttl-seconds:600}")
+    private long cacheTtlSeconds;
+    
+    // Hạn mức cho mỗi workspace
+    @Value("${forecast.workspace.memory-quota-mb:256}")
+    private long workspaceMemoryQuotaMb;
+    
+    @Value("${forecast.workspace.training-threads:2}")
+    private int workspaceTrainingThreads;
+    
+    @Value("${forecast.workspace.idle-timeout-minutes:30}")
+    private long workspaceIdleTimeoutMinutes;
+    
+    // Mọi id hợp lệ đều tạo workspace nên số workspace trong bộ nhớ bị giới hạn
+    @Value("${forecast.workspace.max-workspaces:100}")
+    private int maxWorkspaces;
+    
+    @Value("${forecast.workspace.snapshot-dir:data/workspaces}")
+    private String workspaceSnapshotDir;
+    
+    // Ngân sách heap chung cho dữ liệu và mô hình của mọi workspace; 0 là 60% heap tối đa
+    @Value("${forecast.memory.budget-mb:0}")
+    private long memoryBudgetMb;
+    
+    @Value("${forecast.memory.admission-timeout-seconds:10}")
+    private long admissionTimeoutSeconds;
+    
+    // Giữ chuỗi mục tiêu (và trọng số LSTM FP64) ngoài heap cho chuỗi rất dài
+    @Value("${forecast.storage.off-heap:false}")
+    private boolean offHeapStorage;
+    
+    // Mỗi workspace giữ snapshot trạng thái (dữ liệu, mô hình, phiên bản) và cache dự báo riêng
+    private WorkspaceManager workspaces;
     
-    public ForecastService() {
-        this.currentData = new DataModel();
+    private MemoryBudget memoryBudget;
+    
+    private ForecastMetrics metrics;
+    
+    // Mỗi mô hình được huấn luyện trên một luồng riêng
+    private final ExecutorService trainingExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "model-training");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    @PostConstruct
+    public void init() {
+        workspaces = new WorkspaceManager(new DiskSnapshotStore(), workspaceMemoryQuotaMb * 1024 * 1024,
+                workspaceTrainingThreads, workspaceIdleTimeoutMinutes * 60_000, cacheEntries, cacheTtlSeconds,
+                maxWorkspaces);
+        long budgetBytes = memoryBudgetMb > 0 ? memoryBudgetMb * 1024 * 1024 : Runtime.getRuntime().maxMemory() / 10 * 6;
+        memoryBudget = new MemoryBudget(budgetBytes, admissionTimeoutSeconds * 1000, workspaces);
+        metrics = new ForecastMetrics(meterRegistry, workspaces, memoryBudget);
+    }
+    
+    /**
+     * Chạy thao tác trên workspace; workspace không bị loại khỏi bộ nhớ khi thao tác đang chạy
+     */
+    private <T> T inWorkspace(String workspaceId, Function<Workspace, T> action) {
+        Workspace workspace = workspaces.acquire(workspaceId);
+        try {
+            return action.apply(workspace);
+        } finally {
+            workspace.release();
+        }
+    }
+    
+    public Map<String, Object> uploadData(String workspaceId, MultipartFile file) throws IOException {
+        Workspace workspace = workspaces.acquire(workspaceId);
+        try {
+            return uploadData(workspace, file);
+        } finally {
+            workspace.release();
+        }
     }
     
-    public Map<String, Object> uploadData(MultipartFile file) throws IOException {
+    private Map<String, Object> uploadData(Workspace workspace, MultipartFile file) throws IOException {
         Map<String, Object> result = new HashMap<>();
-        
-        // Save file
-        String filename = System.currentTimeMillis() + "_" + file.getOriginalFilename();
-        Path uploadDir = Paths.get("data");
-        
-        if (!Files.exists(uploadDir)) {
-            Files.createDirectories(uploadDir);
+        PipelineTrace trace = profiler.start("upload", workspace.getId());
+        try {
+            return uploadData(workspace, file, trace, result);
+        } finally {
+            // Số đo từng bước có cả khi tải thất bại
+            result.put("profile", profiler.finish(trace));
         }
+    }
+    
+    private Map<String, Object> uploadData(Workspace workspace, MultipartFile file, PipelineTrace trace,
+                                           Map<String, Object> result) throws IOException {
+        // Save file
+        Path filePath = saveFile(file, trace);
+        String filename = filePath.getFileName().toString();
         
-        Path filePath = uploadDir.resolve(filename);
-        file.transferTo(filePath);
-        
-        // Update current data
-        currentData.setFilename(filename);
-        currentData.setFilepath(filePath.toString());
+        // Dữ liệu mới được dựng riêng, chỉ công bố khi đã xử lý xong
+        DataModel dataModel = new DataModel();
+        dataModel.setFilename(filename);
+        dataModel.setFilepath(filePath.toString());
         
         try {
             // 1. Đọc dữ liệu thô từ CSV
-            rawData = readCSV(filePath.toString());
+            List<Map<String, Object>> rawData = trace.stage("readCSV",
+                () -> readCSV(filePath.toString(), metrics::malformedCsvRow));
             
             if (rawData.isEmpty()) {
                 result.put("success", false);
@@ -53,33 +174,108 @@ public class ForecastService {
                 return result;
             }
             
+            // Giữ chỗ trong ngân sách bộ nhớ trước khi tiền xử lý (bước tốn bộ nhớ nhất)
+            MemoryBudget.Reservation reservation = trace.stage("reserveMemory",
+                    () -> memoryBudget.reserve(MemoryBudget.projectUpload(rawData), "Upload", workspace));
+            try {
+                return processUpload(workspace, trace, result, dataModel, filename, rawData);
+            } finally {
+                reservation.close();
+                memoryBudget.enforce();
+            }
+            
+        } catch (MemoryBudget.MemoryBudgetExceededException e) {
+            result.put("success", false);
+            result.put("retryable", true);
+            result.put("message", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.put("success", false);
+            result.put("message", "Upload interrupted");
+        } catch (Exception e) {
+            result.put("success", false);
+            result.put("message", "Error processing file: " + e.getMessage());
+            e.printStackTrace();
+        }
+        
+        return result;
+    }
+    
+    private Path saveFile(MultipartFile file, PipelineTrace trace) throws IOException {
+        String filename = System.currentTimeMillis() + "_" + file.getOriginalFilename();
+        Path uploadDir = Paths.get(uploadDirectory);
+        
+        if (!Files.exists(uploadDir)) {
+            Files.createDirectories(uploadDir);
+        }
+        
+        Path filePath = uploadDir.resolve(filename);
+        trace.stage("saveFile", () -> {
+            file.transferTo(filePath);
+            return null;
+        });
+        return filePath;
+    }
+    
+    private Map<String, Object> processUpload(Workspace workspace, PipelineTrace trace, Map<String, Object> result,
+                                              DataModel dataModel, String filename,
+                                              List<Map<String, Object>> rawData) {
+        try {
             // 2. Tìm cột mục tiêu từ dữ liệu thô
-            String targetCol = findTargetColumn(rawData);
-            currentData.setTargetColumn(targetCol);
+            String targetCol = trace.stage("findTargetColumn", () -> findTargetColumn(rawData));
+            dataModel.setTargetColumn(targetCol);
             
             // 3. TIỀN XỬ LÝ DỮ LIỆU - SỬ DỤNG DATAPREPROCESSOR
-            processedData = dataPreprocessor.preprocessData(rawData, targetCol);
+            DataPreprocessor.Prepared prepared = dataPreprocessor.prepare(rawData, targetCol, trace);
+            List<Map<String, Object>> processedData = prepared.rows();
             
-            // 4. Lưu dữ liệu đã xử lý vào currentData
-            currentData.setData(processedData);
+            // 4. Lưu dữ liệu đã xử lý vào dataModel
+            dataModel.setData(Collections.unmodifiableList(processedData));
             
             // 5. Phân tích dữ liệu đã xử lý
-            Map<String, Object> summary = analyzeData(processedData);
-            currentData.setSummary(summary);
+            Map<String, Object> summary = trace.stage("analyzeData", () -> analyzeData(processedData));
+            dataModel.setSummary(summary);
             
             // 6. Lấy thông tin tiền xử lý để hiển thị
-            Map<String, Object> preprocessingInfo = 
-                dataPreprocessor.getPreprocessingInfo(rawData, processedData, targetCol);
+            Map<String, Object> preprocessingInfo = trace.stage("preprocessingInfo",
+                () -> dataPreprocessor.getPreprocessingInfo(rawData, processedData, targetCol));
             
-            // 7. Chuẩn bị kết quả trả về
+            // 7. Kiểm tra hạn mức bộ nhớ của workspace
+            long memoryBytes = MemoryBudget.estimateRows(rawData) + MemoryBudget.estimateRows(processedData);
+            if (memoryBytes > workspace.getMemoryQuotaBytes()) {
+                result.put("success", false);
+                result.put("message", String.format("Dataset needs about %.1f MB, workspace quota is %.1f MB",
+                    memoryBytes / 1048576.0, workspace.getMemoryQuotaBytes() / 1048576.0));
+                return result;
+            }
+            
+            // 8. Công bố snapshot mới (chuỗi mục tiêu được trích một lần, dùng chung cho mọi lần huấn luyện);
+            //    mô hình của bộ dữ liệu cũ bị bỏ, cần huấn luyện lại
+            List<String> modelsReset = new ArrayList<>();
+            trace.stage("publish", () -> {
+                SeriesColumn targetSeries = SeriesColumn.of(extractTargetSeries(processedData, targetCol), offHeapStorage);
+                workspace.update(current -> {
+                    modelsReset.clear();
+                    modelsReset.addAll(trainedModelsInOrder(current).keySet());
+                    return current.withDataset(dataModel, rawData, processedData, targetSeries,
+                        preprocessingInfo, prepared.state(), memoryBytes);
+                });
+                workspace.getForecastCache().invalidate();
+                return null;
+            });
+            metrics.ingestedRows(rawData.size());
+            
+            // 9. Chuẩn bị kết quả trả về
             result.put("success", true);
             result.put("message", "File uploaded and preprocessed successfully");
+            result.put("workspace", workspace.getId());
             result.put("filename", filename);
             result.put("summary", summary);
             result.put("targetColumn", targetCol);
             result.put("preprocessing_info", preprocessingInfo);
             result.put("rows_raw", rawData.size());
             result.put("rows_processed", processedData.size());
+            result.put("models_reset", modelsReset);
             result.put("data_sample", processedData.size() > 5 ? 
                 processedData.subList(0, Math.min(5, processedData.size())) : processedData);
             
@@ -92,7 +288,187 @@ public class ForecastService {
         return result;
     }
     
-    private List<Map<String, Object>> readCSV(String filepath) throws IOException {
+    /**
+     * Nối các dòng của một CSV mới vào bộ dữ liệu hiện có của workspace.
+     * Chỉ phần mới được tiền xử lý, bằng tham số đã học khi tải file gốc (median, ngưỡng ngoại lệ, thang chuẩn hóa);
+     * chỉ mục thời gian, chuỗi mục tiêu và báo cáo được nối tiếp thay vì dựng lại. Mô hình đã huấn luyện được giữ.
+     */
+    public Map<String, Object> appendData(String workspaceId, MultipartFile file) throws IOException {
+        Workspace workspace = workspaces.acquire(workspaceId);
+        try {
+            Map<String, Object> result = new HashMap<>();
+            PipelineTrace trace = profiler.start("append", workspace.getId());
+            try {
+                return appendData(workspace, file, trace, result);
+            } finally {
+                result.put("profile", profiler.finish(trace));
+            }
+        } finally {
+            workspace.release();
+        }
+    }
+    
+    private Map<String, Object> appendData(Workspace workspace, MultipartFile file, PipelineTrace trace,
+                                           Map<String, Object> result) throws IOException {
+        ForecastSnapshot base = workspace.getSnapshot();
+        if (!base.hasData() || base.getPreprocessingState() == null) {
+            result.put("success", false);
+            result.put("message", "No dataset to append to. Please upload a file first.");
+            return result;
+        }
+        
+        Path filePath = saveFile(file, trace);
+        
+        try {
+            List<Map<String, Object>> rawData = trace.stage("readCSV",
+                () -> readCSV(filePath.toString(), metrics::malformedCsvRow));
+            
+            if (rawData.isEmpty()) {
+                result.put("success", false);
+                result.put("message", "File is empty or cannot be read");
+                return result;
+            }
+            
+            MemoryBudget.Reservation reservation = trace.stage("reserveMemory",
+                    () -> memoryBudget.reserve(MemoryBudget.projectUpload(rawData), "Append", workspace));
+            try {
+                return processAppend(workspace, trace, result, base, filePath, rawData);
+            } finally {
+                reservation.close();
+                memoryBudget.enforce();
+            }
+            
+        } catch (MemoryBudget.MemoryBudgetExceededException e) {
+            result.put("success", false);
+            result.put("retryable", true);
+            result.put("message", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.put("success", false);
+            result.put("message", "Append interrupted");
+        } catch (Exception e) {
+            result.put("success", false);
+            result.put("message", "Error processing file: " + e.getMessage());
+            e.printStackTrace();
+        }
+        
+        return result;
+    }
+    
+    private Map<String, Object> processAppend(Workspace workspace, PipelineTrace trace, Map<String, Object> result,
+                                              ForecastSnapshot base, Path filePath,
+                                              List<Map<String, Object>> rawData) {
+        PreprocessingState state = base.getPreprocessingState();
+        String targetCol = state.getTargetColumn();
+        
+        // 1. Tiền xử lý riêng các dòng mới
+        DataPreprocessor.Prepared prepared = dataPreprocessor.appendData(state, rawData, trace);
+        List<Map<String, Object>> tail = prepared.rows();
+        if (tail.isEmpty()) {
+            result.put("success", false);
+            result.put("message", "No rows newer than " + state.getLastTimestamp() + " in the file");
+            return result;
+        }
+        
+        // 2. Kiểm tra hạn mức (bản thô chỉ được nối nếu bộ dữ liệu còn giữ bản thô)
+        long memoryBytes = base.getMemoryBytes() + MemoryBudget.estimateRows(tail)
+            + (base.getRawData() != null ? MemoryBudget.estimateRows(rawData) : 0);
+        if (memoryBytes > workspace.getMemoryQuotaBytes()) {
+            result.put("success", false);
+            result.put("message", String.format("Dataset needs about %.1f MB, workspace quota is %.1f MB",
+                memoryBytes / 1048576.0, workspace.getMemoryQuotaBytes() / 1048576.0));
+            return result;
+        }
+        
+        // 3. Nối vào bộ dữ liệu hiện có: mỗi phần chỉ ghi phần mới vào vùng lưu dùng chung với snapshot cũ
+        DataModel dataModel = trace.stage("mergeDataset", () -> appendedDataModel(base, tail, filePath));
+        Map<String, Object> preprocessingInfo = trace.stage("preprocessingInfo",
+            () -> dataPreprocessor.appendPreprocessingInfo(base.getPreprocessingReport(), rawData, tail, state));
+        
+        // 4. Công bố, trừ khi bộ dữ liệu đã bị thay trong lúc xử lý
+        ForecastSnapshot published = trace.stage("publish", () -> {
+            List<Map<String, Object>> rawRows = base.getRawData() != null
+                ? AppendableList.appended(base.getRawData(), rawData)
+                : null;
+            SeriesColumn targetSeries = base.getTargetSeries().append(extractTargetSeries(tail, targetCol));
+            TimeIndex timeIndex = base.getTimeIndex().append(tail, base.getProcessedData().size());
+            
+            ForecastSnapshot next = workspace.update(current -> current.getDatasetVersion() != base.getDatasetVersion()
+                ? current
+                : current.withAppended(dataModel, rawRows, dataModel.getData(), targetSeries, timeIndex,
+                    preprocessingInfo, prepared.state(), memoryBytes));
+            if (next.getTargetSeries() != targetSeries) {
+                // Cột mới nằm trong vùng lưu của chuỗi cũ thì chuỗi cũ vẫn sở hữu nó
+                if (!targetSeries.sharesStorage(base.getTargetSeries())) targetSeries.release();
+                return null;
+            }
+            workspace.getForecastCache().invalidate();
+            return next;
+        });
+        if (published == null) {
+            result.put("success", false);
+            result.put("retryable", true);
+            result.put("message", "Dataset was replaced while appending; please retry");
+            return result;
+        }
+        metrics.ingestedRows(rawData.size());
+        
+        result.put("success", true);
+        result.put("message", "Rows appended and preprocessed successfully");
+        result.put("workspace", workspace.getId());
+        result.put("filename", filePath.getFileName().toString());
+        result.put("summary", dataModel.getSummary());
+        result.put("targetColumn", targetCol);
+        result.put("preprocessing_info", preprocessingInfo);
+        result.put("rows_raw", rawData.size());
+        result.put("rows_appended", tail.size());
+        result.put("rows_total", dataModel.getData().size());
+        result.put("dataset_version", published.getDatasetVersion());
+        result.put("data_sample", tail.subList(0, Math.min(5, tail.size())));
+        return result;
+    }
+    
+    /**
+     * DataModel của bộ dữ liệu sau khi nối {@code tail}. Tóm tắt chỉ lấy mẫu 100 dòng đầu
+     * nên chỉ cần cập nhật số dòng. Dữ liệu là {@link AppendableList} (cũng là processedData của snapshot),
+     * nên chỉ lần nối đầu tiên sao chép các dòng cũ.
+     */
+    private DataModel appendedDataModel(ForecastSnapshot base, List<Map<String, Object>> tail, Path filePath) {
+        DataModel current = base.getDataModel();
+        List<Map<String, Object>> data = AppendableList.appended(base.getProcessedData(), tail);
+        
+        Map<String, Object> summary = new HashMap<>(current.getSummary());
+        summary.put("rowCount", data.size());
+        
+        List<String> appendedFiles = new ArrayList<>(current.getAppendedFiles());
+        appendedFiles.add(filePath.toString());
+        
+        DataModel dataModel = new DataModel();
+        dataModel.setFilename(current.getFilename());
+        dataModel.setFilepath(current.getFilepath());
+        dataModel.setTargetColumn(current.getTargetColumn());
+        dataModel.setData(data);
+        dataModel.setSummary(summary);
+        dataModel.setAppendedFiles(Collections.unmodifiableList(appendedFiles));
+        return dataModel;
+    }
+    
+    // readCSV, parseCSVLine và analyzeData để package-private cho module benchmarks
+    List<Map<String, Object>> readCSV(String filepath) throws IOException {
+        return readCSV(filepath, () -> {});
+    }
+    
+    /**
+     * {@code onMalformedRow} được gọi cho mỗi dòng có số trường khác header hoặc không có giá trị nào
+     */
+    List<Map<String, Object>> readCSV(String filepath, Runnable onMalformedRow) throws IOException {
+        return readCSV(filepath, onMalformedRow, maxCsvRows);
+    }
+    
+    /**
+     * Chỉ đọc tối đa {@code maxRows} dòng dữ liệu đầu tiên
+     */
+    List<Map<String, Object>> readCSV(String filepath, Runnable onMalformedRow, int maxRows) throws IOException {
         List<Map<String, Object>> data = new ArrayList<>();
         
         try (BufferedReader br = new BufferedReader(new FileReader(filepath))) {
@@ -110,7 +486,6 @@ public class ForecastService {
             }
             
             int rowCount = 0;
-            int maxRows = 10000; // Tăng giới hạn cho dữ liệu thực tế
             
             while ((line = br.readLine()) != null && rowCount < maxRows) {
                 String[] values = parseCSVLine(line);
@@ -118,6 +493,9 @@ public class ForecastService {
                 if (values.length == 0) {
                     continue; // Bỏ qua dòng trống
                 }
+                if (values.length != headers.length) {
+                    onMalformedRow.run();
+                }
                 
                 Map<String, Object> row = new HashMap<>();
                 
@@ -153,6 +531,8 @@ public class ForecastService {
                 if (!row.isEmpty() && row.values().stream().anyMatch(Objects::nonNull)) {
                     data.add(row);
                     rowCount++;
+                } else if (values.length == headers.length) {
+                    onMalformedRow.run();
                 }
             }
             
@@ -167,7 +547,7 @@ public class ForecastService {
         return data;
     }
     
-    private String[] parseCSVLine(String line) {
+    String[] parseCSVLine(String line) {
         // Xử lý CSV với các giá trị có dấu phẩy bên trong
         List<String> values = new ArrayList<>();
         StringBuilder current = new StringBuilder();
@@ -236,7 +616,7 @@ public class ForecastService {
         return data;
     }
     
-    private Map<String, Object> analyzeData(List<Map<String, Object>> data) {
+    Map<String, Object> analyzeData(List<Map<String, Object>> data) {
         Map<String, Object> summary = new HashMap<>();
         
         if (data == null || data.isEmpty()) {
@@ -383,8 +763,16 @@ public class ForecastService {
         return totalCount > 0 && ((double) numericCount / totalCount) > 0.5;
     }
     
-    public Map<String, Object> getDataSummary() {
+    public Map<String, Object> getDataSummary(String workspaceId) {
+        return withSnapshot(workspaceId, this::getDataSummary);
+    }
+    
+    /**
+     * Tóm tắt của một snapshot; báo cáo tiền xử lý đã được tính khi tải dữ liệu nên không quét lại dữ liệu
+     */
+    public Map<String, Object> getDataSummary(ForecastSnapshot snapshot) {
         Map<String, Object> summary = new HashMap<>();
+        DataModel currentData = snapshot.getDataModel();
         
         if (currentData.getSummary() != null) {
             summary.put("success", true);
@@ -393,10 +781,8 @@ public class ForecastService {
             summary.put("targetColumn", currentData.getTargetColumn());
             
             // Thêm thông tin tiền xử lý nếu có
-            if (rawData != null && processedData != null) {
-                Map<String, Object> preprocessingInfo = 
-                    dataPreprocessor.getPreprocessingInfo(rawData, processedData, currentData.getTargetColumn());
-                summary.put("preprocessing", preprocessingInfo);
+            if (snapshot.getPreprocessingReport() != null) {
+                summary.put("preprocessing", snapshot.getPreprocessingReport());
             }
         } else {
             summary.put("success", false);
@@ -406,22 +792,95 @@ public class ForecastService {
         return summary;
     }
     
+    /**
+     * ACF, PACF và chu kỳ trội của cột mục tiêu, cùng bậc ARIMA và cửa sổ LSTM gợi ý.
+     * Tính một lần cho mỗi phiên bản dữ liệu (tới SeriesDiagnostics.MAX_LAG lag);
+     * {@code lags} và {@code top} chỉ cắt bớt kết quả đã lưu.
+     */
+    public Map<String, Object> getDiagnostics(String workspaceId, int lags, int top) {
+        return withSnapshot(workspaceId, snapshot -> getDiagnostics(snapshot, lags, top));
+    }
+    
+    public Map<String, Object> getDiagnostics(ForecastSnapshot snapshot, int lags, int top) {
+        if (lags < 1 || lags > SeriesDiagnostics.MAX_LAG) {
+            throw new IllegalArgumentException("lags must be between 1 and " + SeriesDiagnostics.MAX_LAG);
+        }
+        if (top < 1 || top > SeriesDiagnostics.MAX_PERIODS) {
+            throw new IllegalArgumentException("top must be between 1 and " + SeriesDiagnostics.MAX_PERIODS);
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        if (!snapshot.hasData()) {
+            result.put("success", false);
+            result.put("message", "No data loaded");
+            return result;
+        }
+        boolean cached = snapshot.hasDiagnostics();
+        SeriesDiagnostics diagnostics = snapshot.diagnostics();
+        int maxLag = Math.min(lags, diagnostics.maxLag());
+        
+        List<Map<String, Object>> periods = new ArrayList<>();
+        for (SeriesDiagnostics.Period period : diagnostics.periods().subList(0, Math.min(top, diagnostics.periods().size()))) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("period", Math.round(period.period() * 100.0) / 100.0);
+            entry.put("lag", period.lag());
+            entry.put("share", Math.round(period.share() * 10000.0) / 10000.0);
+            entry.put("acf", period.lag() <= diagnostics.maxLag()
+                ? Math.round(diagnostics.acf()[period.lag()] * 10000.0) / 10000.0 : null);
+            periods.add(entry);
+        }
+        
+        Map<String, Object> suggestions = new LinkedHashMap<>();
+        suggestions.put("arima", ArimaEngine.orderMap(diagnostics.suggestedArimaOrder(ArimaEngine.MAX_ORDER)));
+        suggestions.put("lstmWindow", diagnostics.suggestedWindow(2, SeriesDiagnostics.MAX_LAG));
+        
+        result.put("success", true);
+        result.put("targetColumn", snapshot.getDataModel().getTargetColumn());
+        result.put("datasetVersion", snapshot.getDatasetVersion());
+        result.put("observations", diagnostics.size());
+        result.put("lags", maxLag);
+        result.put("confidenceBound", Math.round(diagnostics.confidenceBound() * 10000.0) / 10000.0);
+        result.put("acf", rounded(diagnostics.acf(), maxLag));
+        result.put("pacf", rounded(diagnostics.pacf(), maxLag));
+        result.put("periods", periods);
+        result.put("suggestions", suggestions);
+        result.put("cached", cached);
+        result.put("computeMs", Math.round(diagnostics.computeNanos() / 1e4) / 100.0);
+        return result;
+    }
+    
+    private static double[] rounded(double[] values, int maxLag) {
+        double[] result = new double[maxLag + 1];
+        for (int k = 0; k <= maxLag; k++) {
+            result[k] = Math.round(values[k] * 10000.0) / 10000.0;
+        }
+        return result;
+    }
+    
     // Thêm phương thức để lấy thông tin tiền xử lý chi tiết
-    public Map<String, Object> getPreprocessingDetails() {
+    public Map<String, Object> getPreprocessingDetails(String workspaceId) {
+        return inWorkspace(workspaceId, workspace -> getPreprocessingDetails(workspace));
+    }
+    
+    private Map<String, Object> getPreprocessingDetails(Workspace workspace) {
         Map<String, Object> details = new HashMap<>();
+        ForecastSnapshot snapshot = workspace.getSnapshot();
+        DataModel currentData = snapshot.getDataModel();
+        List<Map<String, Object>> rawData = snapshot.getRawData();
+        List<Map<String, Object>> processedData = snapshot.getProcessedData();
         
-        if (rawData != null && processedData != null && currentData.getTargetColumn() != null) {
+        if (processedData != null && currentData.getTargetColumn() != null) {
+            // Bản thô có thể đã bị bỏ khi thiếu bộ nhớ; số dòng/cột gốc vẫn có trong báo cáo tiền xử lý
+            Map<String, Object> report = snapshot.getPreprocessingReport();
             details.put("success", true);
-            details.put("raw_rows", rawData.size());
+            details.put("raw_rows", rawData != null ? rawData.size() : report.get("rows_before"));
             details.put("processed_rows", processedData.size());
-            details.put("raw_columns", rawData.isEmpty() ? 0 : rawData.get(0).keySet().size());
+            details.put("raw_columns", rawData != null ? (rawData.isEmpty() ? 0 : rawData.get(0).keySet().size())
+                    : report.get("columns_before"));
             details.put("processed_columns", processedData.isEmpty() ? 0 : processedData.get(0).keySet().size());
             details.put("target_column", currentData.getTargetColumn());
             
-            // Lấy thông tin từ DataPreprocessor
-            Map<String, Object> preprocessingInfo = 
-                dataPreprocessor.getPreprocessingInfo(rawData, processedData, currentData.getTargetColumn());
-            details.put("preprocessing_info", preprocessingInfo);
+            // Báo cáo từ DataPreprocessor, tính một lần khi tải dữ liệu
+            details.put("preprocessing_info", snapshot.getPreprocessingReport());
             
         } else {
             details.put("success", false);
@@ -432,206 +891,537 @@ public class ForecastService {
     }
     
     // Thêm getter methods để controller có thể truy cập
-    public DataModel getCurrentData() {
-        return currentData;
+    public DataModel getCurrentData(String workspaceId) {
+        return getSnapshot(workspaceId).getDataModel();
+    }
+    
+    public List<Map<String, Object>> getRawData(String workspaceId) {
+        return getSnapshot(workspaceId).getRawData();
+    }
+    
+    public List<Map<String, Object>> getProcessedData(String workspaceId) {
+        return getSnapshot(workspaceId).getProcessedData();
+    }
+    
+    /**
+     * Snapshot hiện tại; workspace được trả ngay nên chỉ dùng phần trên heap (dòng dữ liệu, chỉ mục thời gian).
+     * Mô hình và chuỗi mục tiêu có thể nằm ngoài heap và bị trả sau khi workspace được trả:
+     * đọc chúng trong {@link #withSnapshot} hoặc giữ workspace bằng {@link #acquireWorkspace}.
+     */
+    public ForecastSnapshot getSnapshot(String workspaceId) {
+        return inWorkspace(workspaceId, Workspace::getSnapshot);
+    }
+    
+    public boolean isWorkspaceLoaded(String workspaceId) {
+        return workspaces.isLoaded(workspaceId);
+    }
+    
+    /**
+     * Giữ workspace cho nhiều thao tác liên tiếp; phải gọi {@link Workspace#release()} khi xong
+     */
+    public Workspace acquireWorkspace(String workspaceId) {
+        return workspaces.acquire(workspaceId);
+    }
+    
+    /**
+     * Chạy {@code action} trên snapshot trong lúc giữ workspace (mô hình và chuỗi ngoài heap chưa bị trả)
+     */
+    public <T> T withSnapshot(String workspaceId, Function<ForecastSnapshot, T> action) {
+        return inWorkspace(workspaceId, workspace -> action.apply(workspace.getSnapshot()));
+    }
+    
+    /**
+     * Như {@link #withSnapshot} nhưng chỉ với workspace đang nằm trong bộ nhớ (không khôi phục từ đĩa);
+     * trả về null nếu workspace không được nạp
+     */
+    public <T> T withLoadedSnapshot(String workspaceId, Function<ForecastSnapshot, T> action) {
+        Workspace workspace = workspaces.acquireIfLoaded(workspaceId);
+        if (workspace == null) return null;
+        try {
+            return action.apply(workspace.getSnapshot());
+        } finally {
+            workspace.release();
+        }
+    }
+    
+    /**
+     * Huấn luyện một mô hình theo khóa engine (ví dụ "lstm", "arima", "holtwinters")
+     */
+    public Map<String, Object> trainModel(String workspaceId, String modelKey) {
+        return inWorkspace(workspaceId, workspace -> trainModel(workspace, modelKey));
     }
     
-    public List<Map<String, Object>> getRawData() {
-        return rawData;
+    private Map<String, Object> trainModel(Workspace workspace, String modelKey) {
+        Map<String, Object> result = new HashMap<>();
+        
+        Optional<ForecastEngine> engine = modelRegistry.find(modelKey);
+        if (engine.isEmpty()) {
+            result.put("success", false);
+            result.put("message", "Unknown model: " + modelKey + ". Available: " + modelRegistry.getKeys());
+            return result;
+        }
+        
+        // Kiểm tra dữ liệu đã được xử lý
+        ForecastSnapshot snapshot = workspace.getSnapshot();
+        if (!snapshot.hasData()) {
+            result.put("success", false);
+            result.put("message", "No preprocessed data available. Please upload and process data first.");
+            return result;
+        }
+        
+        PipelineTrace trace = profiler.start("train", workspace.getId());
+        result.putAll(fitAndStore(workspace, engine.get(), snapshot.trainingData(), trace));
+        result.put("data_size", snapshot.getProcessedData().size());
+        result.put("profile", profiler.finish(trace));
+        return result;
     }
     
-    public List<Map<String, Object>> getProcessedData() {
-        return processedData;
+    /**
+     * Huấn luyện song song tất cả mô hình đã đăng ký trên cùng một tập dữ liệu chỉ đọc.
+     * Tổng thời gian bằng thời gian của mô hình chậm nhất, không phải tổng.
+     */
+    public Map<String, Object> trainAllModels(String workspaceId) {
+        return inWorkspace(workspaceId, workspace -> trainAllModels(workspace));
     }
     
-    public Map<String, Object> trainLSTMModel() {
+    private Map<String, Object> trainAllModels(Workspace workspace) {
         Map<String, Object> result = new HashMap<>();
         
+        ForecastSnapshot snapshot = workspace.getSnapshot();
+        if (!snapshot.hasData()) {
+            result.put("success", false);
+            result.put("message", "No preprocessed data available. Please upload and process data first.");
+            return result;
+        }
+        
+        long start = System.nanoTime();
+        TrainingData data = snapshot.trainingData();
+        PipelineTrace trace = profiler.start("train", workspace.getId());
+        
+        Map<String, CompletableFuture<Map<String, Object>>> futures = new LinkedHashMap<>();
+        for (ForecastEngine engine : modelRegistry.getEngines()) {
+            futures.put(engine.getKey(), CompletableFuture.supplyAsync(() -> fitAndStore(workspace, engine, data, trace), trainingExecutor));
+        }
+        
+        Map<String, Object> models = new LinkedHashMap<>();
+        int trained = 0;
+        for (Map.Entry<String, CompletableFuture<Map<String, Object>>> entry : futures.entrySet()) {
+            Map<String, Object> modelResult = entry.getValue().join();
+            if (Boolean.TRUE.equals(modelResult.get("success"))) trained++;
+            models.put(entry.getKey(), modelResult);
+        }
+        
+        double wallTime = (System.nanoTime() - start) / 1e9;
+        result.put("success", trained > 0);
+        result.put("message", trained + "/" + futures.size() + " models trained in parallel");
+        result.put("models", models);
+        result.put("wallTime", Math.round(wallTime * 1000.0) / 1000.0);
+        result.put("data_size", data.size());
+        result.put("profile", profiler.finish(trace));
+        return result;
+    }
+    
+    /**
+     * Tìm siêu tham số LSTM (successive halving), mô hình tốt nhất thay thế LSTM hiện tại
+     */
+    public Map<String, Object> searchLstmHyperparameters(String workspaceId, Map<String, Object> request) {
+        return inWorkspace(workspaceId, workspace -> searchLstmHyperparameters(workspace, request));
+    }
+    
+    private Map<String, Object> searchLstmHyperparameters(Workspace workspace, Map<String, Object> request) {
+        Map<String, Object> result = new HashMap<>();
+        // Không gian tìm kiếm sai thì trả 400 trước khi làm gì khác
+        LstmSearchSpace space = LstmSearchSpace.fromMap(request, lstmEngine.searchLimits());
+        
+        ForecastSnapshot snapshot = workspace.getSnapshot();
+        if (!snapshot.hasData()) {
+            result.put("success", false);
+            result.put("message", "No preprocessed data available. Please upload and process data first.");
+            return result;
+        }
+        
         try {
-            // Kiểm tra dữ liệu đã được xử lý
-            if (processedData == null || processedData.isEmpty()) {
-                result.put("success", false);
-                result.put("message", "No preprocessed data available. Please upload and process data first.");
-                return result;
+            // Tìm kiếm song song không vượt hạn mức luồng của workspace
+            space.setParallelism(Math.min(space.getParallelism(), workspace.getTrainingThreads()));
+            LstmEngine.SearchOutcome outcome;
+            TrainingData data = snapshot.trainingData();
+            workspace.acquireTrainingSlots(space.getParallelism());
+            try {
+                outcome = lstmEngine.search(data, space);
+            } finally {
+                workspace.releaseTrainingSlots(space.getParallelism());
             }
+            LstmHyperparameterSearch.Result search = outcome.getResult();
             
-            // Mô phỏng training với dữ liệu thực
-            System.out.println("Training LSTM model with " + processedData.size() + " rows of preprocessed data");
-            
-            Thread.sleep(2000); // Simulate training time
+            publishModel(workspace, LstmEngine.KEY, outcome.getModel(), data.size());
             
-            // Tạo metrics dựa trên dữ liệu thực (vẫn là mô phỏng nhưng có cải tiến)
-            lstmMetrics = createSimulatedMetrics("LSTM", processedData, currentData.getTargetColumn());
+            List<Map<String, Object>> leaderboard = new ArrayList<>();
+            for (LstmHyperparameterSearch.Trial trial : search.getLeaderboard()) {
+                leaderboard.add(trial.toMap());
+            }
             
             result.put("success", true);
-            result.put("message", "LSTM model trained successfully on preprocessed data");
-            result.put("metrics", lstmMetrics);
-            result.put("data_size", processedData.size());
-            
+            result.put("message", "LSTM hyperparameter search finished, best model installed");
+            result.put("bestConfig", search.getBest().getConfig().toMap());
+            result.put("bestValidationLoss", search.getBest().toMap().get("validationLoss"));
+            result.put("metrics", outcome.getModel().getMetrics());
+            result.put("leaderboard", leaderboard);
+            result.put("trials", leaderboard.size());
+            result.put("epochsTrained", search.getTotalEpochs());
+            result.put("gridEpochs", search.getGridEpochs());
+            result.put("wallTime", Math.round(search.getWallTime() * 1000.0) / 1000.0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.put("success", false);
+            result.put("message", "LSTM hyperparameter search interrupted");
         } catch (Exception e) {
             result.put("success", false);
-            result.put("message", "Error training LSTM: " + e.getMessage());
+            result.put("message", "Error searching LSTM hyperparameters: " + e.getMessage());
         }
         
         return result;
     }
     
-    public Map<String, Object> trainARIMAModel() {
+    private Map<String, Object> fitAndStore(Workspace workspace, ForecastEngine engine, TrainingData data,
+                                            PipelineTrace trace) {
         Map<String, Object> result = new HashMap<>();
-        
+        // Hạn mức bộ nhớ chung: bộ nhớ tạm của lần huấn luyện được giữ chỗ trước
         try {
-            // Kiểm tra dữ liệu đã được xử lý
-            if (processedData == null || processedData.isEmpty()) {
-                result.put("success", false);
-                result.put("message", "No preprocessed data available. Please upload and process data first.");
-                return result;
+            MemoryBudget.Reservation reservation = trace.stage("reserveMemory:" + engine.getKey(),
+                () -> memoryBudget.reserve(MemoryBudget.projectTraining(data), engine.getName() + " training", workspace));
+            FittedModel model;
+            try {
+                // Hạn mức CPU: số mô hình huấn luyện đồng thời trong một workspace
+                trace.stage("waitForSlot:" + engine.getKey(), () -> {
+                    workspace.acquireTrainingSlots(1);
+                    return null;
+                });
+                try {
+                    model = trace.stage("fit:" + engine.getKey(), () -> engine.fit(data));
+                } finally {
+                    workspace.releaseTrainingSlots(1);
+                }
+                publishModel(workspace, engine.getKey(), model, data.size());
+            } finally {
+                reservation.close();
             }
             
-            // Mô phỏng training với dữ liệu thực
-            System.out.println("Training ARIMA model with " + processedData.size() + " rows of preprocessed data");
-            
-            Thread.sleep(1000); // Simulate training time
-            
-            // Tạo metrics dựa trên dữ liệu thực (vẫn là mô phỏng nhưng có cải tiến)
-            arimaMetrics = createSimulatedMetrics("ARIMA", processedData, currentData.getTargetColumn());
-            
             result.put("success", true);
-            result.put("message", "ARIMA model trained successfully on preprocessed data");
-            result.put("metrics", arimaMetrics);
-            result.put("data_size", processedData.size());
-            
+            result.put("message", engine.getName() + " model trained successfully on preprocessed data");
+            result.put("metrics", model.getMetrics());
+        } catch (MemoryBudget.MemoryBudgetExceededException e) {
+            result.put("success", false);
+            result.put("retryable", true);
+            result.put("message", e.getMessage());
         } catch (Exception e) {
             result.put("success", false);
-            result.put("message", "Error training ARIMA: " + e.getMessage());
+            result.put("message", "Error training " + engine.getName() + ": " + e.getMessage());
         }
-        
         return result;
     }
     
-    private ModelMetrics createSimulatedMetrics(String modelName, List<Map<String, Object>> data, String targetColumn) {
-        ModelMetrics metrics = new ModelMetrics();
-        metrics.setModelName(modelName);
+    /**
+     * Thay snapshot bằng bản có thêm mô hình; nhiều luồng huấn luyện song song cùng công bố
+     * thì updateAndGet thử lại trên snapshot mới nhất nên không mất mô hình nào.
+     * {@code trainedRows} là độ dài chuỗi lúc huấn luyện, để dự báo biết các dòng nối thêm sau đó.
+     */
+    private void publishModel(Workspace workspace, String key, FittedModel model, int trainedRows) {
+        workspace.update(current -> current.withModel(key, model, trainedRows));
+        workspace.getForecastCache().invalidate();
+        memoryBudget.enforce();
+    }
+    
+    /**
+     * Danh sách mô hình đã đăng ký và trạng thái huấn luyện
+     */
+    public List<Map<String, Object>> listModels(String workspaceId) {
+        return inWorkspace(workspaceId, workspace -> listModels(workspace));
+    }
+    
+    private List<Map<String, Object>> listModels(Workspace workspace) {
+        Map<String, FittedModel> trainedModels = workspace.getSnapshot().getModels();
+        List<Map<String, Object>> models = new ArrayList<>();
+        for (ForecastEngine engine : modelRegistry.getEngines()) {
+            Map<String, Object> info = new LinkedHashMap<>();
+            info.put("key", engine.getKey());
+            info.put("name", engine.getName());
+            info.put("trained", trainedModels.containsKey(engine.getKey()));
+            models.add(info);
+        }
+        return models;
+    }
+    
+    /**
+     * Lấy chuỗi giá trị số của cột mục tiêu (đã sắp xếp theo thời gian) dưới dạng mảng primitive
+     */
+    private double[] extractTargetSeries(List<Map<String, Object>> processedData, String targetColumn) {
+        if (targetColumn == null || processedData == null) {
+            return new double[0];
+        }
         
-        // Tính toán metrics dựa trên dữ liệu thực
-        if (targetColumn != null && !data.isEmpty()) {
-            List<Double> targetValues = new ArrayList<>();
-            
-            for (Map<String, Object> row : data) {
-                Object value = row.get(targetColumn);
-                if (value instanceof Number) {
-                    targetValues.add(((Number) value).doubleValue());
-                }
+        double[] series = new double[processedData.size()];
+        int count = 0;
+        for (Map<String, Object> row : processedData) {
+            Object value = row.get(targetColumn);
+            if (value instanceof Number) {
+                series[count++] = ((Number) value).doubleValue();
+            }
+        }
+        return count == series.length ? series : Arrays.copyOf(series, count);
+    }
+    
+    /**
+     * Mô hình đã huấn luyện theo thứ tự đăng ký trong registry
+     */
+    Map<String, FittedModel> trainedModelsInOrder(ForecastSnapshot snapshot) {
+        Map<String, FittedModel> models = new LinkedHashMap<>();
+        for (String key : modelRegistry.getKeys()) {
+            FittedModel model = snapshot.getModels().get(key);
+            if (model != null) models.put(key, model);
+        }
+        return models;
+    }
+    
+    /**
+     * Dự báo qua cache: khóa cache và mô hình dùng để tính cùng lấy từ một snapshot
+     */
+    public ForecastResult generateForecast(String workspaceId, int hours) {
+        validateHours(hours);
+        return inWorkspace(workspaceId, workspace -> generateForecast(workspace, workspace.getSnapshot(), hours));
+    }
+    
+    /**
+     * Kiểm tra tầm dự báo trước khi cấp phát (1..forecast.max-hours)
+     */
+    public void validateHours(int hours) {
+        if (hours < 1 || hours > maxForecastHours) {
+            throw new IllegalArgumentException("hours must be between 1 and " + maxForecastHours);
+        }
+    }
+    
+    private static void validateMaxPoints(Integer maxPoints) {
+        if (maxPoints != null && maxPoints < Downsampling.MIN_POINTS) {
+            throw new IllegalArgumentException("maxPoints must be at least " + Downsampling.MIN_POINTS);
+        }
+    }
+    
+    /**
+     * Dự báo cho biểu đồ: kết quả cache được giảm xuống tối đa {@code maxPoints} điểm mỗi mô hình (LTTB).
+     * Việc giảm điểm chạy sau cache nên mọi giá trị maxPoints dùng chung một mục cache.
+     */
+    public ForecastResult generateForecast(String workspaceId, int hours, Integer maxPoints) {
+        validateMaxPoints(maxPoints);
+        validateHours(hours);
+        return inWorkspace(workspaceId, workspace -> generateForecast(workspace, workspace.getSnapshot(), hours, maxPoints));
+    }
+    
+    private ForecastResult generateForecast(Workspace workspace, ForecastSnapshot snapshot, int hours, Integer maxPoints) {
+        ForecastResult result = generateForecast(workspace, snapshot, hours);
+        return maxPoints != null && result.isSuccess() && hours > maxPoints ? downsampleForecast(result, maxPoints) : result;
+    }
+    
+    private ForecastResult generateForecast(Workspace workspace, ForecastSnapshot snapshot, int hours) {
+        return workspace.getForecastCache().get(snapshot.getDatasetVersion(), snapshot.getModelVersion(), hours,
+                h -> computeForecast(workspace, snapshot, h), this::forecastPrefix);
+    }
+    
+    /**
+     * Cắt {@code hours} giờ đầu từ một dự báo dài hơn
+     */
+    ForecastResult forecastPrefix(ForecastResult longer, int hours) {
+        Map<String, List<Double>> forecasts = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Double>> entry : longer.getForecasts().entrySet()) {
+            forecasts.put(entry.getKey(), new ArrayList<>(entry.getValue().subList(0, hours)));
+        }
+        Map<String, Map<String, List<Double>>> intervals = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<String, List<Double>>> entry : longer.getIntervals().entrySet()) {
+            Map<String, List<Double>> bands = new LinkedHashMap<>();
+            entry.getValue().forEach((label, values) -> bands.put(label, new ArrayList<>(values.subList(0, hours))));
+            intervals.put(entry.getKey(), bands);
+        }
+        List<String> timestamps = new ArrayList<>(longer.getTimestamps().subList(0, hours));
+        
+        ForecastResult result = new ForecastResult(true, "Forecast generated for " + hours + " hours");
+        result.setForecasts(forecasts);
+        result.setIntervals(intervals);
+        result.setTimestamps(timestamps);
+        result.setStaleModels(longer.getStaleModels());
+        result.setPlotImage(generateSimplePlot(timestamps, forecasts));
+        return result;
+    }
+    
+    /**
+     * Dự báo mã hóa nhị phân dạng cột ({@link ColumnarEncoder}): mỗi mô hình một khối giá trị và một khối
+     * cho mỗi phân vị ("lstm", "lstm.p10", ...). Giờ dự báo đầu tiên là một giờ sau dòng dữ liệu cuối cùng;
+     * khi giảm điểm, mỗi khối mang thời gian tường minh của các điểm được giữ.
+     */
+    public byte[] encodeForecast(String workspaceId, int hours, Integer maxPoints, boolean doublePrecision) {
+        validateMaxPoints(maxPoints);
+        validateHours(hours);
+        // Mốc thời gian và giá trị dự báo lấy từ cùng một snapshot
+        return inWorkspace(workspaceId, workspace -> {
+            ForecastSnapshot snapshot = workspace.getSnapshot();
+            TimeIndex index = snapshot.getTimeIndex();
+            long origin = index.size() > 0 ? index.secondAt(index.size() - 1) : 0;
+            ForecastResult result = generateForecast(workspace, snapshot, hours, maxPoints);
+            if (!result.isSuccess()) {
+                throw new IllegalStateException(result.getMessage());
+            }
+            return encodeForecast(result, origin, doublePrecision);
+        });
+    }
+    
+    private byte[] encodeForecast(ForecastResult result, long origin, boolean doublePrecision) {
+        ColumnarEncoder encoder = new ColumnarEncoder(doublePrecision);
+        for (Map.Entry<String, List<Double>> entry : result.getForecasts().entrySet()) {
+            String key = entry.getKey();
+            List<Integer> steps = result.getSteps() != null ? result.getSteps().get(key) : null;
+            long[] times = null;
+            if (steps != null) {
+                times = new long[steps.size()];
+                for (int i = 0; i < times.length; i++) times[i] = origin + steps.get(i) * HOUR_SECONDS;
             }
             
-            if (!targetValues.isEmpty()) {
-                // Tính thống kê cơ bản
-                double mean = targetValues.stream().mapToDouble(Double::doubleValue).average().orElse(0);
-                double std = Math.sqrt(
-                    targetValues.stream()
-                        .mapToDouble(v -> Math.pow(v - mean, 2))
-                        .average()
-                        .orElse(0)
-                );
-                
-                // Tạo metrics mô phỏng dựa trên thống kê thực
-                double baseError = std * 0.1; // 10% của độ lệch chuẩn
-                
-                if (modelName.equals("LSTM")) {
-                    metrics.setMae(Math.round(baseError * 100.0) / 100.0);
-                    metrics.setRmse(Math.round(baseError * 1.2 * 100.0) / 100.0);
-                    metrics.setMape(Math.round((baseError / mean) * 1000.0) / 10.0);
-                    metrics.setTrainingTime(2.1);
+            Map<String, List<Double>> columns = new LinkedHashMap<>();
+            columns.put(key, entry.getValue());
+            Map<String, List<Double>> bands = result.getIntervals().get(key);
+            if (bands != null) {
+                bands.forEach((label, band) -> columns.put(key + "." + label, band));
+            }
+            for (Map.Entry<String, List<Double>> column : columns.entrySet()) {
+                double[] values = column.getValue().stream().mapToDouble(Double::doubleValue).toArray();
+                if (times != null) {
+                    encoder.addExplicit(column.getKey(), times, values);
                 } else {
-                    metrics.setMae(Math.round(baseError * 1.2 * 100.0) / 100.0);
-                    metrics.setRmse(Math.round(baseError * 1.4 * 100.0) / 100.0);
-                    metrics.setMape(Math.round((baseError * 1.2 / mean) * 1000.0) / 10.0);
-                    metrics.setTrainingTime(1.2);
+                    encoder.addRegular(column.getKey(), origin + HOUR_SECONDS, HOUR_SECONDS, values);
                 }
-                
-                return metrics;
             }
         }
-        
-        // Fallback nếu không có dữ liệu
-        if (modelName.equals("LSTM")) {
-            metrics.setMae(150.5);
-            metrics.setRmse(210.3);
-            metrics.setMape(8.7);
-            metrics.setTrainingTime(2.1);
-        } else {
-            metrics.setMae(180.2);
-            metrics.setRmse(245.8);
-            metrics.setMape(10.3);
-            metrics.setTrainingTime(1.2);
+        return encoder.toByteArray();
+    }
+    
+    /**
+     * Bản sao đã giảm điểm của một dự báo (không sửa kết quả trong cache). Điểm được chọn theo dự báo điểm
+     * của từng mô hình và áp dụng cho các phân vị của chính mô hình đó; steps ghi lại giờ của từng điểm.
+     */
+    private ForecastResult downsampleForecast(ForecastResult full, int maxPoints) {
+        Map<String, List<Double>> forecasts = new LinkedHashMap<>();
+        Map<String, Map<String, List<Double>>> intervals = new LinkedHashMap<>();
+        Map<String, List<Integer>> steps = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Double>> entry : full.getForecasts().entrySet()) {
+            List<Double> values = entry.getValue();
+            double[] x = new double[values.size()];
+            double[] y = new double[values.size()];
+            for (int i = 0; i < y.length; i++) {
+                x[i] = i + 1;
+                y[i] = values.get(i);
+            }
+            int[] positions = Downsampling.lttb(x, y, maxPoints);
+            
+            forecasts.put(entry.getKey(), pick(values, positions));
+            List<Integer> modelSteps = new ArrayList<>(positions.length);
+            for (int position : positions) modelSteps.add(position + 1);
+            steps.put(entry.getKey(), modelSteps);
+            
+            Map<String, List<Double>> bands = full.getIntervals().get(entry.getKey());
+            if (bands != null) {
+                Map<String, List<Double>> sampledBands = new LinkedHashMap<>();
+                bands.forEach((label, band) -> sampledBands.put(label, pick(band, positions)));
+                intervals.put(entry.getKey(), sampledBands);
+            }
         }
         
-        return metrics;
+        ForecastResult result = new ForecastResult(true, full.getMessage() + " (" + maxPoints + " points per model)");
+        result.setForecasts(forecasts);
+        result.setIntervals(intervals);
+        result.setSteps(steps);
+        result.setStaleModels(full.getStaleModels());
+        result.setPlotImage(full.getPlotImage());
+        return result;
+    }
+    
+    private static List<Double> pick(List<Double> values, int[] positions) {
+        List<Double> picked = new ArrayList<>(positions.length);
+        for (int position : positions) picked.add(values.get(position));
+        return picked;
+    }
+    
+    /**
+     * Chỉ lần tính thật (cache miss) được ghi vào lịch sử pipeline
+     */
+    private ForecastResult computeForecast(Workspace workspace, ForecastSnapshot snapshot, int hours) {
+        PipelineTrace trace = profiler.start("forecast", workspace.getId());
+        try {
+            return computeForecast(snapshot, hours, trace);
+        } finally {
+            profiler.finish(trace);
+        }
     }
     
-    public ForecastResult generateForecast(int hours) {
+    private ForecastResult computeForecast(ForecastSnapshot snapshot, int hours, PipelineTrace trace) {
         ForecastResult result = new ForecastResult();
         
         try {
             // Kiểm tra dữ liệu và model
-            if (processedData == null || processedData.isEmpty()) {
+            if (!snapshot.hasData()) {
                 result.setSuccess(false);
                 result.setMessage("No preprocessed data available");
                 return result;
             }
             
-            if (lstmMetrics == null || arimaMetrics == null) {
+            Map<String, FittedModel> models = trainedModelsInOrder(snapshot);
+            if (models.isEmpty()) {
                 result.setSuccess(false);
-                result.setMessage("Please train both models first");
+                result.setMessage("Please train at least one model first");
                 return result;
             }
             
-            // Lấy giá trị gần nhất từ dữ liệu đã xử lý
-            double lastValue = 1000.0; // Default
-            if (currentData.getTargetColumn() != null) {
-                // Tìm giá trị gần nhất không null
-                for (int i = processedData.size() - 1; i >= 0; i--) {
-                    Object value = processedData.get(i).get(currentData.getTargetColumn());
-                    if (value instanceof Number) {
-                        lastValue = ((Number) value).doubleValue();
-                        break;
-                    }
+            // Dự báo điểm và khoảng dự báo (bootstrap sai số) từ từng mô hình đã huấn luyện
+            Map<String, List<Double>> forecasts = new LinkedHashMap<>();
+            Map<String, Map<String, List<Double>>> intervals = new LinkedHashMap<>();
+            Map<String, Integer> stale = new LinkedHashMap<>();
+            for (Map.Entry<String, FittedModel> entry : models.entrySet()) {
+                FittedModel model = entry.getValue();
+                if (isStale(snapshot, entry.getKey(), model)) {
+                    stale.put(entry.getKey(), snapshot.rowsSinceTraining(entry.getKey()));
+                }
+                double[] point = trace.stage("predict:" + entry.getKey(),
+                        () -> predictFromEnd(snapshot, entry.getKey(), model, hours));
+                if (point == null) continue;
+                forecasts.put(entry.getKey(), roundValues(point));
+                
+                double[] quantiles = PredictionIntervals.DEFAULT_QUANTILES;
+                double[][] bands = trace.stage("intervals:" + entry.getKey(), () -> PredictionIntervals.bootstrap(
+                        point, model.getResiduals(), intervalPaths, quantiles, entry.getKey().hashCode()));
+                Map<String, List<Double>> modelIntervals = new LinkedHashMap<>();
+                for (int q = 0; q < quantiles.length; q++) {
+                    modelIntervals.put(PredictionIntervals.label(quantiles[q]), roundValues(bands[q]));
                 }
+                intervals.put(entry.getKey(), modelIntervals);
             }
             
-            // Tạo dự báo dựa trên dữ liệu thực
-            List<Double> lstmForecast = new ArrayList<>();
-            List<Double> arimaForecast = new ArrayList<>();
-            List<String> timestamps = new ArrayList<>();
-            
-            Random rand = new Random();
-            double baseValue = 1000.0;
+            if (forecasts.isEmpty()) {
+                result.setSuccess(false);
+                result.setMessage("All models are more than " + maxForecastHours
+                        + " rows (forecast.max-hours) behind the appended data; please retrain");
+                return result;
+            }
             
+            List<String> timestamps = new ArrayList<>();
             for (int i = 1; i <= hours; i++) {
-                // Dự báo có tính đến pattern thời gian
-                double hourOfDay = (i % 24);
-                
-                // LSTM forecast với pattern phức tạp hơn
-                double lstmValue = lastValue * (0.95 + 0.1 * Math.sin(hourOfDay * Math.PI / 12))
-                                 + 50 * Math.sin(i * 0.2) + rand.nextDouble() * 30;
-                lstmForecast.add(Math.round(lstmValue * 100.0) / 100.0);
-                
-                // ARIMA forecast with different pattern
-                double arimaValue = lastValue * (0.97 + 0.06 * Math.cos(hourOfDay * Math.PI / 12))
-                   + 40 * Math.cos(i * 0.15) + rand.nextDouble() * 40;
-                   arimaForecast.add(Math.round(arimaValue * 100.0) / 100.0);
-                
                 // Tạo timestamp thực tế hơn
                 timestamps.add(String.format("T+%02d:00", i));
             }
             
             result.setSuccess(true);
             result.setMessage("Forecast generated for " + hours + " hours");
-            result.setLstmForecast(lstmForecast);
-            result.setArimaForecast(arimaForecast);
+            result.setForecasts(forecasts);
+            result.setIntervals(intervals);
             result.setTimestamps(timestamps);
+            if (!stale.isEmpty()) result.setStaleModels(stale);
             
             // Generate simple plot data
-            result.setPlotImage(generateSimplePlot(timestamps, lstmForecast, arimaForecast));
+            result.setPlotImage(trace.stage("plot", () -> generateSimplePlot(timestamps, forecasts)));
             
         } catch (Exception e) {
             result.setSuccess(false);
@@ -641,10 +1431,156 @@ public class ForecastService {
         return result;
     }
     
-    private String generateSimplePlot(List<String> timestamps, 
-                                    List<Double> lstmForecast, 
-                                    List<Double> arimaForecast) {
-        if (lstmForecast.isEmpty() || arimaForecast.isEmpty()) {
+    /**
+     * Dự báo {@code hours} giờ sau dòng cuối cùng của {@code snapshot}. Khi đã nối thêm dữ liệu sau lần huấn luyện,
+     * mô hình dự báo được từ ngữ cảnh (LSTM) nhận phần cuối chuỗi hiện tại; mô hình khác chỉ dự báo tiếp từ cuối
+     * chuỗi huấn luyện nên các bước đã có dữ liệu thật bị bỏ và dự báo bị coi là cũ ({@link #isStale}).
+     * null nếu mô hình đã chậm hơn dữ liệu quá {@code forecast.max-hours} dòng (cần huấn luyện lại).
+     */
+    double[] predictFromEnd(ForecastSnapshot snapshot, String key, FittedModel model, int hours) {
+        int appended = snapshot.rowsSinceTraining(key);
+        if (appended == 0) return model.predict(hours);
+        if (model.supportsContexts()) return model.predictBatch(new double[][] {contextTail(snapshot, model)}, hours)[0];
+        if (appended > maxForecastHours) return null;
+        return Arrays.copyOfRange(model.predict(appended + hours), appended, appended + hours);
+    }
+    
+    /**
+     * Mô hình chưa thấy các dòng nối thêm sau lần huấn luyện và không dự báo được từ chúng
+     */
+    boolean isStale(ForecastSnapshot snapshot, String key, FittedModel model) {
+        return snapshot.rowsSinceTraining(key) > 0 && !model.supportsContexts();
+    }
+    
+    /**
+     * Phần cuối chuỗi mục tiêu hiện tại, đủ cho cửa sổ ngữ cảnh của mô hình; chỉ đọc các giá trị cần dùng
+     */
+    private static double[] contextTail(ForecastSnapshot snapshot, FittedModel model) {
+        SeriesColumn series = snapshot.getTargetSeries();
+        int length = Math.min(series.size(), Math.max(1, model.contextLength()));
+        double[] tail = new double[length];
+        for (int i = 0; i < length; i++) tail[i] = series.get(series.size() - length + i);
+        return tail;
+    }
+    
+    /**
+     * Dự báo dạng luồng (NDJSON hoặc SSE): mỗi bước của mỗi mô hình được ghi ngay khi tính xong,
+     * kèm P10/P50/P90 từ bộ mô phỏng theo bước. Bộ nhớ không phụ thuộc horizon; ghi ra socket chặn
+     * khi client đọc chậm nên việc tính toán tự chậm theo, và dừng ngay khi client ngắt kết nối.
+     */
+    public void streamForecast(String workspaceId, int hours, boolean sse, OutputStream output) throws IOException {
+        Workspace workspace = workspaces.acquire(workspaceId);
+        try {
+            ForecastSnapshot snapshot = workspace.getSnapshot();
+            Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            
+            Map<String, FittedModel> models = trainedModelsInOrder(snapshot);
+            if (!snapshot.hasData() || models.isEmpty()) {
+                Map<String, Object> error = new LinkedHashMap<>();
+                error.put("type", "error");
+                error.put("message", !snapshot.hasData() ? "No preprocessed data available" : "Please train at least one model first");
+                writeEvent(writer, sse, error);
+                writer.flush();
+                return;
+            }
+            
+            // Mô hình chưa thấy dữ liệu nối thêm: dự báo tiếp từ cuối chuỗi huấn luyện, bỏ nếu đã quá xa
+            Map<String, Integer> stale = new LinkedHashMap<>();
+            for (Map.Entry<String, FittedModel> entry : models.entrySet()) {
+                if (isStale(snapshot, entry.getKey(), entry.getValue())) {
+                    stale.put(entry.getKey(), snapshot.rowsSinceTraining(entry.getKey()));
+                }
+            }
+            models.keySet().removeIf(key -> stale.containsKey(key) && stale.get(key) > maxForecastHours);
+            if (models.isEmpty()) {
+                Map<String, Object> error = new LinkedHashMap<>();
+                error.put("type", "error");
+                error.put("message", "All models are more than " + maxForecastHours
+                        + " rows (forecast.max-hours) behind the appended data; please retrain");
+                writeEvent(writer, sse, error);
+                writer.flush();
+                return;
+            }
+            
+            long start = System.nanoTime();
+            Map<String, Object> header = new LinkedHashMap<>();
+            header.put("type", "start");
+            header.put("workspace", workspace.getId());
+            header.put("hours", hours);
+            header.put("models", new ArrayList<>(models.keySet()));
+            if (!stale.isEmpty()) header.put("staleModels", stale);
+            writeEvent(writer, sse, header);
+            writer.flush();
+            
+            double[] quantiles = PredictionIntervals.DEFAULT_QUANTILES;
+            double[] band = new double[quantiles.length];
+            long points = 0;
+            for (Map.Entry<String, FittedModel> entry : models.entrySet()) {
+                String key = entry.getKey();
+                // Cùng seed với /forecast nên khoảng dự báo trùng với bản không luồng
+                PredictionIntervals.PathSimulator simulator = PredictionIntervals.simulator(
+                        entry.getValue().getResiduals(), intervalPaths, key.hashCode());
+                
+                FittedModel.StepSink sink = (step, value) -> {
+                    simulator.next(value, quantiles, band);
+                    Map<String, Object> point = new LinkedHashMap<>();
+                    point.put("type", "point");
+                    point.put("model", key);
+                    point.put("step", step + 1);
+                    point.put("timestamp", String.format("T+%02d:00", step + 1));
+                    point.put("value", Math.round(value * 100.0) / 100.0);
+                    for (int q = 0; q < quantiles.length; q++) {
+                        point.put(PredictionIntervals.label(quantiles[q]), Math.round(band[q] * 100.0) / 100.0);
+                    }
+                    writeEvent(writer, sse, point);
+                    // Đẩy bước đầu ngay để giảm time-to-first-byte, sau đó đẩy theo từng ngày
+                    if (step == 0 || (step + 1) % 24 == 0) writer.flush();
+                };
+                int appended = snapshot.rowsSinceTraining(key);
+                if (appended == 0) {
+                    entry.getValue().predictStepwise(hours, sink);
+                } else if (entry.getValue().supportsContexts()) {
+                    entry.getValue().predictStepwise(contextTail(snapshot, entry.getValue()), hours, sink);
+                } else {
+                    entry.getValue().predictStepwise(appended + hours, (step, value) -> {
+                        if (step >= appended) sink.accept(step - appended, value);
+                    });
+                }
+                points += hours;
+                writer.flush();
+            }
+            
+            Map<String, Object> footer = new LinkedHashMap<>();
+            footer.put("type", "end");
+            footer.put("points", points);
+            footer.put("elapsedMs", Math.round((System.nanoTime() - start) / 1e5) / 10.0);
+            writeEvent(writer, sse, footer);
+            writer.flush();
+        } finally {
+            workspace.release();
+        }
+    }
+    
+    private void writeEvent(Writer writer, boolean sse, Map<String, Object> event) throws IOException {
+        String json = objectMapper.writeValueAsString(event);
+        if (sse) {
+            writer.write("event: " + event.get("type") + "\ndata: " + json + "\n\n");
+        } else {
+            writer.write(json);
+            writer.write('\n');
+        }
+    }
+    
+    private List<Double> roundValues(double[] values) {
+        List<Double> rounded = new ArrayList<>(values.length);
+        for (double value : values) {
+            rounded.add(Math.round(value * 100.0) / 100.0);
+        }
+        return rounded;
+    }
+    
+    private String generateSimplePlot(List<String> timestamps, Map<String, List<Double>> forecasts) {
+        if (forecasts.isEmpty() || forecasts.values().stream().anyMatch(List::isEmpty)) {
             return "No forecast data available";
         }
         
@@ -653,86 +1589,330 @@ public class ForecastService {
         plot.append("====================\n");
         
         int maxLength = 40;
-        double maxValue = Math.max(
-            Collections.max(lstmForecast),
-            Collections.max(arimaForecast)
-        );
+        double maxValue = forecasts.values().stream()
+            .mapToDouble(Collections::max)
+            .max()
+            .orElse(1.0);
         
         for (int i = 0; i < Math.min(10, timestamps.size()); i++) {
-            int lstmBars = (int) ((lstmForecast.get(i) / maxValue) * maxLength);
-            int arimaBars = (int) ((arimaForecast.get(i) / maxValue) * maxLength);
-            
-            plot.append(String.format("%-8s: LSTM[%-40s] ARIMA[%-40s]\n",
-            timestamps.get(i),
-            "=".repeat(lstmBars),
-            "=".repeat(arimaBars)));
+            plot.append(String.format("%-8s:", timestamps.get(i)));
+            for (Map.Entry<String, List<Double>> entry : forecasts.entrySet()) {
+                int bars = Math.max(0, (int) ((entry.getValue().get(i) / maxValue) * maxLength));
+                plot.append(String.format(" %s[%-40s]", displayName(entry.getKey()), "=".repeat(bars)));
+            }
+            plot.append("\n");
         }
         
         // Thêm summary
-        double lstmAvg = lstmForecast.stream().mapToDouble(Double::doubleValue).average().orElse(0);
-        double arimaAvg = arimaForecast.stream().mapToDouble(Double::doubleValue).average().orElse(0);
-        
-        plot.append(String.format("\nAverage: LSTM=%.1f, ARIMA=%.1f (Diff=%.1f)",
-            lstmAvg, arimaAvg, Math.abs(lstmAvg - arimaAvg)));
+        plot.append("\nAverage:");
+        for (Map.Entry<String, List<Double>> entry : forecasts.entrySet()) {
+            double avg = entry.getValue().stream().mapToDouble(Double::doubleValue).average().orElse(0);
+            plot.append(String.format(" %s=%.1f", displayName(entry.getKey()), avg));
+        }
         
         return plot.toString();
     }
     
-    public Map<String, Object> compareModels() {
+    private String displayName(String modelKey) {
+        return modelRegistry.find(modelKey).map(ForecastEngine::getName).orElse(modelKey);
+    }
+    
+    public Map<String, Object> compareModels(String workspaceId) {
+        return withSnapshot(workspaceId, this::compareModels);
+    }
+    
+    /**
+     * So sánh các mô hình của một snapshot; tính một lần cho mỗi phiên bản mô hình
+     */
+    public Map<String, Object> compareModels(ForecastSnapshot snapshot) {
+        return snapshot.comparisonReport(this::buildComparison);
+    }
+    
+    private Map<String, Object> buildComparison(ForecastSnapshot snapshot) {
         Map<String, Object> comparison = new HashMap<>();
         
-        if (lstmMetrics == null || arimaMetrics == null) {
+        Map<String, FittedModel> models = trainedModelsInOrder(snapshot);
+        if (models.size() < 2) {
             comparison.put("success", false);
-            comparison.put("message", "Both models need to be trained first");
+            comparison.put("message", "At least two models need to be trained first");
             return comparison;
         }
         
+        List<String> keys = new ArrayList<>(models.keySet());
+        ModelMetrics[] candidates = new ModelMetrics[keys.size()];
+        Map<String, ModelMetrics> metricsByModel = new LinkedHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            candidates[i] = models.get(keys.get(i)).getMetrics();
+            metricsByModel.put(keys.get(i), candidates[i]);
+            comparison.put(keys.get(i), candidates[i]);
+        }
+        
+        // Mỗi chỉ số (MAE, RMSE, MAPE, thời gian) cho 1 điểm tới mô hình tốt nhất
+        int[] scores = new int[candidates.length];
+        scores[argMin(candidates, ModelMetrics::getMae)]++;
+        scores[argMin(candidates, ModelMetrics::getRmse)]++;
+        scores[argMin(candidates, ModelMetrics::getMape)]++;
+        scores[argMin(candidates, ModelMetrics::getTrainingTime)]++;
+        
+        int best = 0;
+        double worstRmse = candidates[0].getRmse();
+        Map<String, Integer> scoreByModel = new LinkedHashMap<>();
+        for (int i = 0; i < candidates.length; i++) {
+            if (scores[i] > scores[best]) best = i;
+            worstRmse = Math.max(worstRmse, candidates[i].getRmse());
+            scoreByModel.put(keys.get(i), scores[i]);
+        }
+        
+        double improvement = worstRmse > 0 ? (worstRmse - candidates[best].getRmse()) / worstRmse * 100 : 0;
+        
         comparison.put("success", true);
-        comparison.put("lstm", lstmMetrics);
-        comparison.put("arima", arimaMetrics);
+        comparison.put("models", metricsByModel);
+        comparison.put("scores", scoreByModel);
+        comparison.put("bestModel", candidates[best].getModelName());
+        comparison.put("bestModelKey", keys.get(best));
+        comparison.put("improvement", Math.round(improvement * 10.0) / 10.0);
         
-        // So sánh chi tiết hơn
-        double maeDiff = lstmMetrics.getMae() - arimaMetrics.getMae();
-        double rmseDiff = lstmMetrics.getRmse() - arimaMetrics.getRmse();
-        double mapeDiff = lstmMetrics.getMape() - arimaMetrics.getMape();
+        return comparison;
+    }
+    
+    private int argMin(ModelMetrics[] candidates, ToDoubleFunction<ModelMetrics> metric) {
+        int best = 0;
+        for (int i = 1; i < candidates.length; i++) {
+            if (metric.applyAsDouble(candidates[i]) < metric.applyAsDouble(candidates[best])) best = i;
+        }
+        return best;
+    }
+    
+    // Thêm phương thức để reset dữ liệu
+    public void resetData(String workspaceId) {
+        inWorkspace(workspaceId, workspace -> {
+            workspace.update(ForecastSnapshot::cleared);
+            workspace.getForecastCache().invalidate();
+            return null;
+        });
+    }
+    
+    public Map<String, Object> getForecastCacheStats(String workspaceId) {
+        return inWorkspace(workspaceId, workspace -> {
+            Map<String, Object> stats = workspace.getForecastCache().getStats();
+            ForecastSnapshot snapshot = workspace.getSnapshot();
+            stats.put("workspace", workspace.getId());
+            stats.put("datasetVersion", snapshot.getDatasetVersion());
+            stats.put("modelVersion", snapshot.getModelVersion());
+            return stats;
+        });
+    }
+    
+    /**
+     * Các workspace đang trong bộ nhớ cùng mức dùng tài nguyên
+     */
+    public List<Map<String, Object>> listWorkspaces() {
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (Workspace workspace : workspaces.getActive()) {
+            ForecastSnapshot snapshot = workspace.getSnapshot();
+            Map<String, Object> info = new LinkedHashMap<>();
+            info.put("id", workspace.getId());
+            info.put("filename", snapshot.getDataModel().getFilename());
+            info.put("rows", snapshot.hasData() ? snapshot.getProcessedData().size() : 0);
+            info.put("models", new ArrayList<>(trainedModelsInOrder(snapshot).keySet()));
+            info.put("memoryMb", Math.round(snapshot.getMemoryBytes() / 1048576.0 * 10.0) / 10.0);
+            info.put("memoryQuotaMb", workspace.getMemoryQuotaBytes() / 1048576);
+            info.put("trainingThreads", workspace.getTrainingThreads());
+            info.put("idleSeconds", (System.currentTimeMillis() - workspace.getLastAccess()) / 1000);
+            list.add(info);
+        }
+        return list;
+    }
+    
+    public Map<String, Object> deleteWorkspace(String workspaceId) throws IOException {
+        Map<String, Object> result = new HashMap<>();
+        boolean deleted = workspaces.delete(workspaceId);
+        result.put("success", deleted);
+        result.put("message", deleted ? "Workspace deleted" : "Workspace is busy, try again later");
+        return result;
+    }
+    
+    ForecastMetrics getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * Ngân sách bộ nhớ chung: đã dùng, đang giữ chỗ, số lần bỏ bản thô / ghi workspace ra đĩa / từ chối
+     */
+    public Map<String, Object> getMemoryStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("success", true);
+        result.putAll(memoryBudget.getStats());
+        return result;
+    }
+    
+    /**
+     * Snapshot workspace trên đĩa: đường dẫn CSV gốc, phiên bản và các mô hình đã tuần tự hóa.
+     * Dữ liệu được đọc và tiền xử lý lại từ CSV khi khôi phục thay vì lưu các dòng đã xử lý;
+     * từ phiên bản 2 có thêm các CSV đã nối thêm, được nối lại theo đúng thứ tự; từ phiên bản 3 mỗi mô hình
+     * có thêm độ dài chuỗi lúc huấn luyện (bản cũ hơn coi như mô hình đã thấy toàn bộ chuỗi).
+     */
+    private final class DiskSnapshotStore implements WorkspaceManager.SnapshotStore {
         
-        // Xác định model tốt nhất
-        int lstmScore = 0;
-        int arimaScore = 0;
+        private static final int FORMAT_VERSION = 3;
         
-        if (lstmMetrics.getMae() < arimaMetrics.getMae()) lstmScore++;
-        else arimaScore++;
+        private Path snapshotFile(String id) {
+            return Paths.get(workspaceSnapshotDir, id + ".snapshot");
+        }
         
-        if (lstmMetrics.getRmse() < arimaMetrics.getRmse()) lstmScore++;
-        else arimaScore++;
+        @Override
+        public void save(String id, ForecastSnapshot snapshot) throws IOException {
+            if (!snapshot.hasData() && snapshot.getModels().isEmpty()) {
+                delete(id, snapshot);
+                return;
+            }
+            Path file = snapshotFile(id);
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(id + ".snapshot.tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                DataModel dataModel = snapshot.getDataModel();
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(dataModel.getFilepath() != null ? dataModel.getFilepath() : "");
+                out.writeUTF(dataModel.getFilename() != null ? dataModel.getFilename() : "");
+                out.writeInt(dataModel.getAppendedFiles().size());
+                for (String appended : dataModel.getAppendedFiles()) {
+                    out.writeUTF(appended);
+                }
+                out.writeLong(snapshot.getDatasetVersion());
+                out.writeLong(snapshot.getModelVersion());
+                out.writeInt(snapshot.getModels().size());
+                for (Map.Entry<String, FittedModel> entry : snapshot.getModels().entrySet()) {
+                    byte[] bytes = entry.getValue().serialize();
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                    out.writeInt(snapshot.getTargetSeries().size() - snapshot.rowsSinceTraining(entry.getKey()));
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
         
-        if (lstmMetrics.getMape() < arimaMetrics.getMape()) lstmScore++;
-        else arimaScore++;
+        @Override
+        public ForecastSnapshot load(String id) throws IOException {
+            Path file = snapshotFile(id);
+            if (!Files.exists(file)) return null;
+            
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                int format = in.readInt();
+                if (format < 1 || format > FORMAT_VERSION) {
+                    throw new IOException("Unsupported snapshot format");
+                }
+                String filepath = in.readUTF();
+                String filename = in.readUTF();
+                List<String> appendedFiles = new ArrayList<>();
+                int appendedCount = format >= 2 ? in.readInt() : 0;
+                for (int i = 0; i < appendedCount; i++) {
+                    appendedFiles.add(in.readUTF());
+                }
+                long datasetVersion = in.readLong();
+                long modelVersion = in.readLong();
+                
+                Map<String, FittedModel> models = new HashMap<>();
+                Map<String, Integer> modelRows = new HashMap<>();
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    String key = in.readUTF();
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    int trainedRows = format >= 3 ? in.readInt() : -1;
+                    Optional<ForecastEngine> engine = modelRegistry.find(key);
+                    if (engine.isPresent()) {
+                        models.put(key, engine.get().deserialize(bytes));
+                        if (trainedRows >= 0) modelRows.put(key, trainedRows);
+                    }
+                }
+                
+                ForecastSnapshot dataset = ForecastSnapshot.empty();
+                if (!filepath.isEmpty() && Files.exists(Paths.get(filepath))) {
+                    dataset = loadDataset(filepath, filename, appendedFiles);
+                }
+                return ForecastSnapshot.restored(dataset, models, modelRows, datasetVersion, modelVersion);
+            }
+        }
         
-        if (lstmMetrics.getTrainingTime() < arimaMetrics.getTrainingTime()) lstmScore++;
-        else arimaScore++;
+        /**
+         * Xóa snapshot cùng CSV gốc và các CSV nối thêm mà nó (hoặc snapshot trong bộ nhớ) tham chiếu
+         */
+        @Override
+        public void delete(String id, ForecastSnapshot current) throws IOException {
+            Set<String> files = new LinkedHashSet<>(referencedFiles(snapshotFile(id)));
+            if (current != null) {
+                DataModel dataModel = current.getDataModel();
+                if (dataModel.getFilepath() != null) files.add(dataModel.getFilepath());
+                files.addAll(dataModel.getAppendedFiles());
+            }
+            Files.deleteIfExists(snapshotFile(id));
+            for (String file : files) {
+                if (!file.isEmpty()) Files.deleteIfExists(Paths.get(file));
+            }
+        }
         
-        String bestModel = lstmScore > arimaScore ? "LSTM" : "ARIMA";
-        double improvement = Math.abs(lstmMetrics.getRmse() - arimaMetrics.getRmse()) / 
-                           Math.max(lstmMetrics.getRmse(), arimaMetrics.getRmse()) * 100;
+        /**
+         * Chỉ đọc phần đầu của snapshot (đường dẫn CSV), không đọc mô hình
+         */
+        private List<String> referencedFiles(Path file) throws IOException {
+            if (!Files.exists(file)) return List.of();
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                int format = in.readInt();
+                if (format < 1 || format > FORMAT_VERSION) return List.of();
+                List<String> files = new ArrayList<>();
+                files.add(in.readUTF());
+                in.readUTF();
+                int appendedCount = format >= 2 ? in.readInt() : 0;
+                for (int i = 0; i < appendedCount; i++) {
+                    files.add(in.readUTF());
+                }
+                return files;
+            }
+        }
+    }
+    
+    /**
+     * Đọc lại và tiền xử lý một CSV đã lưu rồi nối lại các CSV đã nối thêm (dùng khi khôi phục workspace).
+     * Các file nối thêm đi qua đúng đường nối thêm nên dữ liệu khôi phục giống hệt lúc lưu.
+     */
+    private ForecastSnapshot loadDataset(String filepath, String filename, List<String> appendedFiles) throws IOException {
+        List<Map<String, Object>> rawData = readCSV(filepath);
+        String targetCol = findTargetColumn(rawData);
+        DataPreprocessor.Prepared prepared = dataPreprocessor.prepare(rawData, targetCol, PipelineTrace.disabled());
+        List<Map<String, Object>> processedData = prepared.rows();
+        PreprocessingState state = prepared.state();
+        Map<String, Object> preprocessingInfo = dataPreprocessor.getPreprocessingInfo(rawData, processedData, targetCol);
+        List<String> restoredFiles = new ArrayList<>();
+        for (String appended : appendedFiles) {
+            if (state == null || !Files.exists(Paths.get(appended))) continue;
+            List<Map<String, Object>> appendedRaw = readCSV(appended);
+            DataPreprocessor.Prepared tail = dataPreprocessor.appendData(state, appendedRaw, PipelineTrace.disabled());
+            if (tail.rows().isEmpty()) continue;
+            preprocessingInfo = dataPreprocessor.appendPreprocessingInfo(preprocessingInfo, appendedRaw, tail.rows(), state);
+            rawData.addAll(appendedRaw);
+            processedData.addAll(tail.rows());
+            state = tail.state();
+            restoredFiles.add(appended);
+        }
         
-        comparison.put("bestModel", bestModel);
-        comparison.put("improvement", Math.round(improvement * 10.0) / 10.0);
-        comparison.put("lstmScore", lstmScore);
-        comparison.put("arimaScore", arimaScore);
-        comparison.put("maeDiff", Math.round(maeDiff * 100.0) / 100.0);
-        comparison.put("rmseDiff", Math.round(rmseDiff * 100.0) / 100.0);
-        comparison.put("mapeDiff", Math.round(mapeDiff * 10.0) / 10.0);
+        DataModel dataModel = new DataModel();
+        dataModel.setFilename(filename);
+        dataModel.setFilepath(filepath);
+        dataModel.setTargetColumn(targetCol);
+        dataModel.setData(Collections.unmodifiableList(processedData));
+        dataModel.setSummary(analyzeData(processedData));
+        dataModel.setAppendedFiles(Collections.unmodifiableList(restoredFiles));
         
-        return comparison;
+        return ForecastSnapshot.empty().withDataset(dataModel, rawData, processedData,
+                SeriesColumn.of(extractTargetSeries(processedData, targetCol), offHeapStorage),
+                preprocessingInfo, state,
+                MemoryBudget.estimateRows(rawData) + MemoryBudget.estimateRows(processedData));
     }
     
-    // Thêm phương thức để reset dữ liệu
-    public void resetData() {
-        this.currentData = new DataModel();
-        this.rawData = null;
-        this.processedData = null;
-        this.lstmMetrics = null;
-        this.arimaMetrics = null;
+    @PreDestroy
+    public void shutdown() {
+        workspaces.shutdown();
+        trainingExecutor.shutdownNow();
     }
 }
\ No newline at end of file
@@ -0,0 +1,243 @@
+package com.electricity.forecast.service;
+
+import com.electricity.forecast.engine.FittedModel;
+import com.electricity.forecast.engine.SeriesColumn;
+import com.electricity.forecast.engine.SeriesDiagnostics;
+import com.electricity.forecast.engine.TrainingData;
+import com.electricity.forecast.model.DataModel;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Trạng thái bất biến của service: dữ liệu đã tải, chuỗi mục tiêu, mô hình đã huấn luyện và phiên bản.
+ * Mỗi thay đổi tạo một snapshot mới và được công bố nguyên khối qua AtomicReference,
+ * nên luồng đọc không cần khóa và không bao giờ thấy trạng thái cập nhật dở.
+ * Các đối tượng bên trong (DataModel, các dòng dữ liệu) không được sửa sau khi công bố.
+ * Chuỗi mục tiêu và trọng số mô hình có thể nằm ngoài heap; Workspace trả chúng qua
+ * {@link #releaseReplaced(ForecastSnapshot)} khi không còn request nào có thể đọc snapshot cũ.
+ */
+public final class ForecastSnapshot {
+
+    private static final ForecastSnapshot EMPTY = new ForecastSnapshot(new DataModel(), null, null,
+            SeriesColumn.empty(), TimeIndex.empty(), null, null, 0, Collections.emptyMap(), Collections.emptyMap(), 0, 0, new AtomicReference<>());
+
+    private final DataModel dataModel;
+    private final List<Map<String, Object>> rawData;
+    private final List<Map<String, Object>> processedData;
+    private final SeriesColumn targetSeries;
+    private final TimeIndex timeIndex;
+    private final Map<String, Object> preprocessingReport;
+    private final PreprocessingState preprocessingState;
+    private final long memoryBytes;
+    private final Map<String, FittedModel> models;
+    // Độ dài chuỗi mục tiêu lúc huấn luyện từng mô hình; các dòng nối thêm sau đó nằm ngoài trạng thái của mô hình
+    private final Map<String, Integer> modelRows;
+    private final long datasetVersion;
+    private final long modelVersion;
+    
+    // Chẩn đoán chuỗi mục tiêu: tính lần đầu được yêu cầu, dùng chung giữa các snapshot của cùng phiên bản dữ liệu
+    private final AtomicReference<SeriesDiagnostics> diagnostics;
+    
+    // Báo cáo so sánh mô hình: tính lần đầu được yêu cầu rồi giữ cùng snapshot (tức cùng phiên bản mô hình)
+    private final AtomicReference<Map<String, Object>> comparisonReport = new AtomicReference<>();
+
+    private ForecastSnapshot(DataModel dataModel, List<Map<String, Object>> rawData,
+                             List<Map<String, Object>> processedData, SeriesColumn targetSeries, TimeIndex timeIndex,
+                             Map<String, Object> preprocessingReport, PreprocessingState preprocessingState,
+                             long memoryBytes, Map<String, FittedModel> models, Map<String, Integer> modelRows,
+                             long datasetVersion, long modelVersion, AtomicReference<SeriesDiagnostics> diagnostics) {
+        this.dataModel = dataModel;
+        this.rawData = rawData;
+        this.processedData = processedData;
+        this.targetSeries = targetSeries;
+        this.timeIndex = timeIndex;
+        this.preprocessingReport = preprocessingReport;
+        this.preprocessingState = preprocessingState;
+        this.memoryBytes = memoryBytes;
+        this.models = models;
+        this.modelRows = modelRows;
+        this.datasetVersion = datasetVersion;
+        this.modelVersion = modelVersion;
+        this.diagnostics = diagnostics;
+    }
+
+    public static ForecastSnapshot empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Snapshot khôi phục từ đĩa với đúng phiên bản đã lưu
+     */
+    public static ForecastSnapshot restored(ForecastSnapshot dataset, Map<String, FittedModel> models,
+                                            Map<String, Integer> modelRows, long datasetVersion, long modelVersion) {
+        return new ForecastSnapshot(dataset.dataModel, dataset.rawData, dataset.processedData, dataset.targetSeries,
+                dataset.timeIndex, dataset.preprocessingReport, dataset.preprocessingState, dataset.memoryBytes,
+                Collections.unmodifiableMap(new HashMap<>(models)), Collections.unmodifiableMap(new HashMap<>(modelRows)),
+                datasetVersion, modelVersion, dataset.diagnostics);
+    }
+
+    /**
+     * Snapshot với bộ dữ liệu mới. Mô hình hiện có bị bỏ (chúng dự báo từ trạng thái của chuỗi cũ) và phiên bản
+     * mô hình tăng; Workspace trả tài nguyên của chúng khi snapshot cũ không còn được đọc.
+     * memoryBytes là ước lượng bộ nhớ của dữ liệu, dùng cho hạn mức workspace.
+     * Chỉ mục thời gian được dựng một lần ở đây cho mọi truy vấn khoảng thời gian sau đó;
+     * báo cáo tiền xử lý được tính một lần khi tải dữ liệu và giữ cùng bộ dữ liệu.
+     * {@code preprocessingState} null thì bộ dữ liệu không nối thêm được.
+     */
+    public ForecastSnapshot withDataset(DataModel dataModel, List<Map<String, Object>> rawData,
+                                        List<Map<String, Object>> processedData, SeriesColumn targetSeries,
+                                        Map<String, Object> preprocessingReport, PreprocessingState preprocessingState,
+                                        long memoryBytes) {
+        return new ForecastSnapshot(dataModel, Collections.unmodifiableList(rawData),
+                Collections.unmodifiableList(processedData), targetSeries, TimeIndex.build(processedData),
+                Collections.unmodifiableMap(preprocessingReport), preprocessingState, memoryBytes,
+                Collections.emptyMap(), Collections.emptyMap(), datasetVersion + 1, modelVersion + 1,
+                new AtomicReference<>());
+    }
+
+    /**
+     * Bộ dữ liệu sau khi nối thêm các dòng mới; các phần được dựng tăng dần từ snapshot này
+     * (chỉ mục thời gian qua {@link TimeIndex#append}, các danh sách dòng là {@link AppendableList} chỉ đọc
+     * nên được giữ nguyên để lần nối sau chỉ ghi phần đuôi). Mô hình được giữ lại, phiên bản dữ liệu tăng;
+     * {@link #rowsSinceTraining(String)} cho biết chúng chưa thấy bao nhiêu dòng.
+     * rawData null nếu bản thô đã bị bỏ trước đó.
+     */
+    public ForecastSnapshot withAppended(DataModel dataModel, List<Map<String, Object>> rawData,
+                                         List<Map<String, Object>> processedData, SeriesColumn targetSeries,
+                                         TimeIndex timeIndex, Map<String, Object> preprocessingReport,
+                                         PreprocessingState preprocessingState, long memoryBytes) {
+        return new ForecastSnapshot(dataModel, rawData, processedData, targetSeries, timeIndex,
+                Collections.unmodifiableMap(preprocessingReport), preprocessingState, memoryBytes, models, modelRows,
+                datasetVersion + 1, modelVersion, new AtomicReference<>());
+    }
+
+    /**
+     * Cùng bộ dữ liệu nhưng không giữ bản thô (khi thiếu bộ nhớ); phiên bản không đổi vì mọi truy vấn
+     * và mô hình chỉ dùng dữ liệu đã xử lý, còn báo cáo tiền xử lý đã được tính từ trước
+     */
+    public ForecastSnapshot withoutRawData() {
+        if (rawData == null) return this;
+        return new ForecastSnapshot(dataModel, null, processedData, targetSeries, timeIndex, preprocessingReport,
+                preprocessingState, Math.max(0, memoryBytes - MemoryBudget.estimateRows(rawData)), models, modelRows,
+                datasetVersion, modelVersion, diagnostics);
+    }
+
+    /**
+     * {@code trainedRows}: độ dài chuỗi mục tiêu mà mô hình đã được huấn luyện trên đó
+     */
+    public ForecastSnapshot withModel(String key, FittedModel model, int trainedRows) {
+        Map<String, FittedModel> updated = new HashMap<>(models);
+        updated.put(key, model);
+        Map<String, Integer> updatedRows = new HashMap<>(modelRows);
+        updatedRows.put(key, trainedRows);
+        return new ForecastSnapshot(dataModel, rawData, processedData, targetSeries, timeIndex, preprocessingReport,
+                preprocessingState, memoryBytes, Collections.unmodifiableMap(updated),
+                Collections.unmodifiableMap(updatedRows), datasetVersion, modelVersion + 1, diagnostics);
+    }
+
+    /**
+     * Snapshot rỗng nhưng phiên bản vẫn tăng, để cache không trả lại kết quả cũ
+     */
+    public ForecastSnapshot cleared() {
+        return new ForecastSnapshot(new DataModel(), null, null, SeriesColumn.empty(), TimeIndex.empty(), null, null,
+                0, Collections.emptyMap(), Collections.emptyMap(), datasetVersion + 1, modelVersion + 1,
+                new AtomicReference<>());
+    }
+
+    /**
+     * Trả chuỗi mục tiêu và các mô hình của snapshot này mà {@code next} không còn dùng
+     */
+    public void releaseReplaced(ForecastSnapshot next) {
+        // Bộ dữ liệu nối thêm tại chỗ dùng chung vùng lưu với chuỗi cũ: chỉ trả khi snapshot mới không còn dùng nó
+        if (!targetSeries.sharesStorage(next.targetSeries)) targetSeries.release();
+        Set<FittedModel> kept = Collections.newSetFromMap(new IdentityHashMap<>());
+        kept.addAll(next.models.values());
+        for (FittedModel model : models.values()) {
+            if (!kept.contains(model)) model.release();
+        }
+    }
+
+    /**
+     * Trả mọi tài nguyên ngoài heap (khi workspace rời bộ nhớ)
+     */
+    public void releaseAll() {
+        targetSeries.release();
+        models.values().forEach(FittedModel::release);
+    }
+
+    /**
+     * Số dòng của chuỗi mục tiêu được nối thêm sau lần huấn luyện mô hình {@code key}
+     * (mô hình không rõ độ dài lúc huấn luyện thì coi như đã thấy toàn bộ chuỗi)
+     */
+    public int rowsSinceTraining(String key) {
+        Integer trained = modelRows.get(key);
+        return trained != null ? Math.max(0, targetSeries.size() - trained) : 0;
+    }
+
+    public Map<String, Integer> getModelRows() { return modelRows; }
+
+    public boolean hasData() {
+        return processedData != null && !processedData.isEmpty();
+    }
+
+    /**
+     * Dữ liệu huấn luyện dùng chung mảng chuỗi mục tiêu (chỉ đọc) của snapshot;
+     * chuỗi ngoài heap được sao chép lên heap cho lần huấn luyện này
+     */
+    public TrainingData trainingData() {
+        return new TrainingData(targetSeries, dataModel.getTargetColumn(), this::diagnostics);
+    }
+
+    /**
+     * Chẩn đoán chuỗi mục tiêu của phiên bản dữ liệu này; tính ở lần gọi đầu tiên
+     * (nếu hai luồng cùng tính, kết quả giống nhau và chỉ một bản được giữ)
+     */
+    public SeriesDiagnostics diagnostics() {
+        SeriesDiagnostics result = diagnostics.get();
+        if (result == null) {
+            diagnostics.compareAndSet(null, SeriesDiagnostics.compute(targetSeries.toArray()));
+            result = diagnostics.get();
+        }
+        return result;
+    }
+
+    /**
+     * true nếu chẩn đoán của phiên bản dữ liệu này đã được tính
+     */
+    public boolean hasDiagnostics() {
+        return diagnostics.get() != null;
+    }
+
+    public DataModel getDataModel() { return dataModel; }
+    /**
+     * null nếu chưa có dữ liệu hoặc bản thô đã bị bỏ để tiết kiệm bộ nhớ
+     */
+    public List<Map<String, Object>> getRawData() { return rawData; }
+    public List<Map<String, Object>> getProcessedData() { return processedData; }
+    /**
+     * Báo cáo so sánh của snapshot này; {@code build} chỉ chạy ở lần gọi đầu tiên
+     * (nếu hai luồng cùng tính, kết quả giống nhau và chỉ một bản được giữ)
+     */
+    public Map<String, Object> comparisonReport(Function<ForecastSnapshot, Map<String, Object>> build) {
+        Map<String, Object> report = comparisonReport.get();
+        if (report == null) {
+            comparisonReport.compareAndSet(null, Collections.unmodifiableMap(build.apply(this)));
+            report = comparisonReport.get();
+        }
+        return report;
+    }
+    
+    public SeriesColumn getTargetSeries() { return targetSeries; }
+    public TimeIndex getTimeIndex() { return timeIndex; }
+    public Map<String, Object> getPreprocessingReport() { return preprocessingReport; }
+    /**
+     * Tham số tiền xử lý để nối thêm dữ liệu, null nếu không có
+     */
+    public PreprocessingState getPreprocessingState() { return preprocessingState; }
+    public Map<String, FittedModel> getModels() { return models; }
+    public long getMemoryBytes() { return memoryBytes; }
+    public long getDatasetVersion() { return datasetVersion; }
+    public long getModelVersion() { return modelVersion; }
+}
@@ -0,0 +1,487 @@
+package com.electricity.forecast.service;
+
+import com.electricity.forecast.engine.FittedModel;
+import com.electricity.forecast.engine.PredictionIntervals;
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Nhận từng số đo (hoặc lô nhỏ) theo thời gian thực cho mỗi workspace, không tiền xử lý lại lịch sử.
+ * Đường ingest chỉ ghi vào {@link LiveSeries} (không khóa) và so với khoảng dự báo đã tính sẵn;
+ * dự báo ngắn hạn được tính lại trên một luồng riêng khi có giờ mới đóng hoặc mô hình/dữ liệu đổi,
+ * rồi đẩy tới các client đăng ký qua SSE (sự kiện "forecast", và "flag" cho số đo nằm ngoài khoảng).
+ */
+@Service
+public class LiveIngestService {
+
+    @Autowired
+    private ForecastService forecastService;
+
+    @Autowired
+    private DataPreprocessor dataPreprocessor;
+
+    @Value("${forecast.live.buffer-size:4096}")
+    private int bufferSize;
+
+    // Số giờ giữ trong vòng đệm theo giờ, cũng là độ dài ngữ cảnh cho mô hình dự báo từ chuỗi khác (LSTM)
+    @Value("${forecast.live.hours:256}")
+    private int hourCapacity;
+
+    @Value("${forecast.live.horizon-hours:24}")
+    private int horizonHours;
+
+    @Value("${forecast.live.refresh-seconds:5}")
+    private long refreshSeconds;
+
+    @Value("${forecast.live.max-batch:10000}")
+    private int maxBatch;
+
+    @Value("${forecast.live.subscription-timeout-minutes:30}")
+    private long subscriptionTimeoutMinutes;
+
+    @Value("${forecast.intervals.paths:1000}")
+    private int intervalPaths;
+
+    // Số cờ chi tiết tối đa trả về trong một phản hồi ingest (tổng số vẫn đầy đủ)
+    private static final int MAX_FLAGS_IN_RESPONSE = 100;
+
+    private final Map<String, LiveSeries> series = new ConcurrentHashMap<>();
+    private final Set<String> pendingRefresh = ConcurrentHashMap.newKeySet();
+
+    // Tính lại dự báo và gửi sự kiện SSE đều trên luồng này, không bao giờ trên luồng ingest
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "live-forecast");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        refresher.scheduleWithFixedDelay(this::refreshAll, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+        series.values().forEach(live -> live.subscribers.forEach(SseEmitter::complete));
+    }
+
+    /**
+     * Một số đo {"timestamp", "value"}, một mảng số đo, hoặc {"readings": [...]}.
+     * timestamp là chuỗi ngày giờ như trong CSV hoặc epoch millis; thiếu thì lấy giờ hiện tại.
+     */
+    public Map<String, Object> ingest(String workspaceId, JsonNode body) {
+        String id = WorkspaceManager.normalize(workspaceId);
+        JsonNode readings = body != null && body.has("readings") ? body.get("readings") : body;
+        if (readings == null || readings.isNull() || (readings.isArray() && readings.isEmpty())) {
+            throw new IllegalArgumentException("No readings in request");
+        }
+        int count = readings.isArray() ? readings.size() : 1;
+        if (count > maxBatch) {
+            throw new IllegalArgumentException("Too many readings: " + count + " (max " + maxBatch + ")");
+        }
+        long[] millis = new long[count];
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            JsonNode reading = readings.isArray() ? readings.get(i) : readings;
+            millis[i] = parseTimestamp(reading.get("timestamp"), i);
+            values[i] = parseValue(reading.get("value"), i);
+        }
+
+        return forecastService.withSnapshot(id, snapshot -> {
+            LiveSeries live = series.computeIfAbsent(id, key -> new LiveSeries(bufferSize, hourCapacity));
+            ensureBaseline(live, snapshot);
+
+            long lateBefore = live.getStats().late();
+            List<Map<String, Object>> flags = new ArrayList<>();
+            List<LiveSeries.Flag> pushed = new ArrayList<>();
+            int flagged = 0;
+            for (int i = 0; i < millis.length; i++) {
+                byte flag = live.append(millis[i], values[i]);
+                if (flag == LiveSeries.INSIDE) continue;
+                flagged++;
+                LiveSeries.Flag detail = live.describe(millis[i], values[i], flag);
+                if (flags.size() < MAX_FLAGS_IN_RESPONSE) flags.add(toMap(detail));
+                if (!live.subscribers.isEmpty()) pushed.add(detail);
+            }
+            forecastService.getMetrics().liveReadings(millis.length, flagged);
+
+            if (!pushed.isEmpty()) {
+                refresher.execute(() -> pushFlags(id, live, pushed));
+            }
+            if (isStale(live, snapshot)) {
+                requestRefresh(id);
+            }
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("success", true);
+            result.put("workspace", id);
+            result.put("accepted", millis.length);
+            result.put("late", live.getStats().late() - lateBefore);
+            result.put("flagged", flagged);
+            result.put("flags", flags);
+            result.put("stats", statsMap(live));
+            result.put("forecastAvailable", live.getForecast() != null);
+            return result;
+        });
+    }
+
+    /**
+     * Trạng thái trực tiếp: thống kê chạy, các giờ đã đóng gần nhất, số đo mới nhất (kèm cột đặc trưng thời gian
+     * và giá trị chuẩn hóa theo thang của bộ dữ liệu) và dự báo hiện tại
+     */
+    public Map<String, Object> status(String workspaceId, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        String id = WorkspaceManager.normalize(workspaceId);
+        Map<String, Object> result = new LinkedHashMap<>();
+        LiveSeries live = series.get(id);
+        if (live == null) {
+            result.put("success", false);
+            result.put("message", "No live readings for workspace " + id);
+            return result;
+        }
+        LiveSeries.Baseline base = live.getBaseline();
+        String column = base != null ? base.targetColumn() : "value";
+
+        List<Map<String, Object>> readings = new ArrayList<>();
+        for (Map<String, Object> reading : live.recent(limit)) {
+            LocalDateTime time = toDateTime((Long) reading.get("millis"));
+            double value = (Double) reading.get("value");
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("timestamp", time.toString());
+            row.put(column, value);
+            row.put(column + "_original", value);
+            if (base != null && base.std() > 0) {
+                row.put(column + "_scaled", (value - base.mean()) / base.std());
+            }
+            dataPreprocessor.putTimeFeatures(row, time);
+            row.put("flag", direction((Byte) reading.get("flag")));
+            readings.add(row);
+        }
+
+        List<Map<String, Object>> hours = new ArrayList<>();
+        long latest = live.getLatestClosedHour();
+        for (long hour = latest; latest != Long.MIN_VALUE && hour > latest - Math.min(24, live.getHourCapacity()); hour--) {
+            double value = live.hourValue(hour);
+            if (Double.isNaN(value)) continue;
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("timestamp", toDateTime(hour * LiveSeries.HOUR_MILLIS).toString());
+            row.put("mean", round(value));
+            hours.add(row);
+        }
+
+        result.put("success", true);
+        result.put("workspace", id);
+        result.put("targetColumn", column);
+        result.put("bufferCapacity", live.getReadingCapacity());
+        result.put("stats", statsMap(live));
+        result.put("closedHours", hours);
+        result.put("readings", readings);
+        result.put("subscribers", live.subscribers.size());
+        LiveSeries.Forecast forecast = live.getForecast();
+        result.put("forecast", forecast != null ? forecastMap(id, forecast) : null);
+        return result;
+    }
+
+    /**
+     * Đăng ký nhận dự báo làm mới (SSE); dự báo hiện có được gửi ngay.
+     * Vòng đệm chỉ được tạo khi đang giữ workspace (workspace có sẵn hoặc được nạp trong giới hạn số workspace)
+     */
+    public SseEmitter subscribe(String workspaceId) {
+        String id = WorkspaceManager.normalize(workspaceId);
+        SseEmitter emitter = new SseEmitter(TimeUnit.MINUTES.toMillis(subscriptionTimeoutMinutes));
+        LiveSeries live = forecastService.withSnapshot(id, snapshot -> {
+            LiveSeries created = series.computeIfAbsent(id, key -> new LiveSeries(bufferSize, hourCapacity));
+            created.subscribers.add(emitter);
+            return created;
+        });
+        emitter.onCompletion(() -> live.subscribers.remove(emitter));
+        emitter.onTimeout(() -> live.subscribers.remove(emitter));
+        emitter.onError(error -> live.subscribers.remove(emitter));
+
+        LiveSeries.Forecast forecast = live.getForecast();
+        if (forecast != null) {
+            refresher.execute(() -> send(live, List.of(emitter), "forecast", forecastMap(id, forecast)));
+        } else {
+            requestRefresh(id);
+        }
+        return emitter;
+    }
+
+    /**
+     * Bỏ số đo trực tiếp và đóng các kết nối đăng ký (khi workspace bị xóa)
+     */
+    public void forget(String workspaceId) {
+        LiveSeries live = series.remove(WorkspaceManager.normalize(workspaceId));
+        if (live != null) live.subscribers.forEach(SseEmitter::complete);
+    }
+
+    // ========== Làm mới dự báo ==========
+
+    private void requestRefresh(String id) {
+        if (pendingRefresh.add(id)) {
+            refresher.execute(() -> {
+                pendingRefresh.remove(id);
+                refresh(id);
+            });
+        }
+    }
+
+    /**
+     * Định kỳ cho các chuỗi có client đăng ký (mô hình có thể được huấn luyện lại mà không có số đo mới);
+     * chuỗi không ai đăng ký được làm mới khi ingest, để workspace nhàn rỗi vẫn có thể rời bộ nhớ.
+     * Chuỗi không ai đăng ký của workspace đã rời bộ nhớ bị bỏ cùng workspace.
+     */
+    private void refreshAll() {
+        for (String key : new ArrayList<>(series.keySet())) {
+            series.computeIfPresent(key, (id, live) ->
+                    live.subscribers.isEmpty() && !forecastService.isWorkspaceLoaded(id) ? null : live);
+        }
+        for (Map.Entry<String, LiveSeries> entry : series.entrySet()) {
+            if (entry.getValue().subscribers.isEmpty()) continue;
+            String id = entry.getKey();
+            try {
+                refresh(id);
+            } catch (RuntimeException e) {
+                System.out.println("Live forecast refresh failed for workspace " + id + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Tính lại dự báo nếu đã cũ; workspace đã rời bộ nhớ thì bỏ qua (không khôi phục từ đĩa chỉ để làm mới)
+     */
+    private void refresh(String id) {
+        LiveSeries live = series.get(id);
+        if (live == null) return;
+        LiveSeries.Forecast updated = forecastService.withLoadedSnapshot(id, snapshot -> {
+            if (!isStale(live, snapshot)) return null;
+            ensureBaseline(live, snapshot);
+            LiveSeries.Forecast forecast = computeForecast(live, snapshot);
+            live.setForecast(forecast);
+            return forecast;
+        });
+        if (updated != null && !live.subscribers.isEmpty()) {
+            send(live, live.subscribers, "forecast", forecastMap(id, updated));
+        }
+    }
+
+    private boolean isStale(LiveSeries live, ForecastSnapshot snapshot) {
+        if (!snapshot.hasData() || snapshot.getModels().isEmpty()) return false;
+        LiveSeries.Forecast forecast = live.getForecast();
+        return forecast == null
+                || forecast.datasetVersion() != snapshot.getDatasetVersion()
+                || forecast.modelVersion() != snapshot.getModelVersion()
+                || forecast.closedHours() != live.getClosedHours();
+    }
+
+    /**
+     * Thang chuẩn hóa và phần cuối chuỗi mục tiêu, tính một lần cho mỗi phiên bản bộ dữ liệu
+     */
+    private void ensureBaseline(LiveSeries live, ForecastSnapshot snapshot) {
+        LiveSeries.Baseline base = live.getBaseline();
+        if (!snapshot.hasData() || (base != null && base.datasetVersion() == snapshot.getDatasetVersion())) return;
+
+        double[] values = snapshot.getTargetSeries().toArray();
+        double mean = 0;
+        for (double value : values) mean += value;
+        mean = values.length > 0 ? mean / values.length : 0;
+        double variance = 0;
+        for (double value : values) variance += (value - mean) * (value - mean);
+        double std = values.length > 0 ? Math.sqrt(variance / values.length) : 0;
+
+        TimeIndex index = snapshot.getTimeIndex();
+        long endHour = index.size() > 0
+                ? Math.floorDiv(index.secondAt(index.size() - 1), 3600)
+                : Math.floorDiv(System.currentTimeMillis(), LiveSeries.HOUR_MILLIS);
+        double[] tail = Arrays.copyOfRange(values, Math.max(0, values.length - hourCapacity), values.length);
+        live.setBaseline(new LiveSeries.Baseline(snapshot.getDatasetVersion(), snapshot.getDataModel().getTargetColumn(),
+                mean, std, endHour, tail));
+    }
+
+    /**
+     * Dự báo {@code horizonHours} giờ sau giờ mới nhất đã biết (cuối dữ liệu huấn luyện hoặc giờ trực tiếp đã đóng).
+     * Mô hình dự báo được từ chuỗi khác (LSTM) nhận ngữ cảnh gồm đuôi bộ dữ liệu (kể cả các dòng nối thêm sau
+     * lần huấn luyện) và các giờ trực tiếp; mô hình khác dự báo từ cuối chuỗi huấn luyện và bỏ các bước đã qua.
+     */
+    private LiveSeries.Forecast computeForecast(LiveSeries live, ForecastSnapshot snapshot) {
+        long closedHours = live.getClosedHours();
+        LiveSeries.Baseline base = live.getBaseline();
+        long latest = live.getLatestClosedHour();
+        long origin = Math.max(base.endHour(), latest);
+        int offset = (int) Math.min(origin - base.endHour(), Integer.MAX_VALUE - horizonHours);
+
+        double[] context = null;
+        Map<String, double[]> points = new LinkedHashMap<>();
+        Map<String, double[][]> bands = new LinkedHashMap<>();
+        Map<String, Integer> stale = new LinkedHashMap<>();
+        String reference = null;
+        double referenceMape = Double.POSITIVE_INFINITY;
+        for (Map.Entry<String, FittedModel> entry : forecastService.trainedModelsInOrder(snapshot).entrySet()) {
+            FittedModel model = entry.getValue();
+            // Số bước từ cuối chuỗi huấn luyện của mô hình tới giờ gốc của dự báo
+            long behind = (long) snapshot.rowsSinceTraining(entry.getKey()) + offset;
+            double[] point;
+            if (behind == 0) {
+                point = model.predict(horizonHours);
+            } else if (model.supportsContexts()) {
+                if (context == null) context = live.context(base, origin, hourCapacity);
+                point = model.predictBatch(new double[][] {context}, horizonHours)[0];
+            } else if (behind <= hourCapacity) {
+                int skip = (int) behind;
+                point = Arrays.copyOfRange(model.predict(skip + horizonHours), skip, skip + horizonHours);
+                stale.put(entry.getKey(), skip);
+            } else {
+                // Đã quá xa cuối chuỗi huấn luyện: mô hình này cần huấn luyện lại
+                continue;
+            }
+            points.put(entry.getKey(), point);
+            bands.put(entry.getKey(), PredictionIntervals.bootstrap(point, model.getResiduals(), intervalPaths,
+                    PredictionIntervals.DEFAULT_QUANTILES, entry.getKey().hashCode()));
+
+            double mape = model.getMetrics() != null ? model.getMetrics().getMape() : Double.POSITIVE_INFINITY;
+            if (reference == null || mape < referenceMape) {
+                reference = entry.getKey();
+                referenceMape = mape;
+            }
+        }
+        return new LiveSeries.Forecast(origin + 1, reference, points, bands, stale, snapshot.getDatasetVersion(),
+                snapshot.getModelVersion(), closedHours, System.currentTimeMillis());
+    }
+
+    // ========== SSE ==========
+
+    private void pushFlags(String id, LiveSeries live, List<LiveSeries.Flag> flags) {
+        List<Map<String, Object>> payload = new ArrayList<>();
+        for (LiveSeries.Flag flag : flags) payload.add(toMap(flag));
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("workspace", id);
+        event.put("flags", payload);
+        send(live, live.subscribers, "flag", event);
+    }
+
+    private void send(LiveSeries live, List<SseEmitter> emitters, String name, Object data) {
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(SseEmitter.event().name(name).data(data));
+            } catch (IOException | IllegalStateException e) {
+                // Client đã ngắt kết nối
+                live.subscribers.remove(emitter);
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    // ========== Chuyển đổi ==========
+
+    private Map<String, Object> forecastMap(String id, LiveSeries.Forecast forecast) {
+        List<String> timestamps = new ArrayList<>();
+        for (int step = 0; step < forecast.horizon(); step++) {
+            timestamps.add(toDateTime((forecast.firstHour() + step) * LiveSeries.HOUR_MILLIS).toString());
+        }
+        Map<String, List<Double>> forecasts = new LinkedHashMap<>();
+        Map<String, Map<String, List<Double>>> intervals = new LinkedHashMap<>();
+        forecast.points().forEach((key, point) -> {
+            forecasts.put(key, roundValues(point));
+            Map<String, List<Double>> modelIntervals = new LinkedHashMap<>();
+            double[][] modelBands = forecast.bands().get(key);
+            for (int q = 0; q < modelBands.length; q++) {
+                modelIntervals.put(PredictionIntervals.label(PredictionIntervals.DEFAULT_QUANTILES[q]), roundValues(modelBands[q]));
+            }
+            intervals.put(key, modelIntervals);
+        });
+
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("workspace", id);
+        map.put("referenceModel", forecast.referenceModel());
+        map.put("createdAt", forecast.createdAt());
+        map.put("timestamps", timestamps);
+        map.put("forecasts", forecasts);
+        map.put("intervals", intervals);
+        if (!forecast.staleModels().isEmpty()) map.put("staleModels", forecast.staleModels());
+        return map;
+    }
+
+    private Map<String, Object> statsMap(LiveSeries live) {
+        LiveSeries.Stats stats = live.getStats();
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("count", stats.count());
+        map.put("late", stats.late());
+        if (stats.count() > 0) {
+            map.put("mean", round(stats.mean()));
+            map.put("std", round(stats.std()));
+            map.put("min", stats.min());
+            map.put("max", stats.max());
+            map.put("last", stats.lastValue());
+            map.put("lastTimestamp", toDateTime(stats.lastMillis()).toString());
+        }
+        return map;
+    }
+
+    private Map<String, Object> toMap(LiveSeries.Flag flag) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("timestamp", toDateTime(flag.millis()).toString());
+        map.put("value", flag.value());
+        map.put("flag", direction(flag.direction()));
+        map.put("lower", Double.isNaN(flag.lower()) ? null : round(flag.lower()));
+        map.put("upper", Double.isNaN(flag.upper()) ? null : round(flag.upper()));
+        map.put("model", flag.model());
+        return map;
+    }
+
+    private static String direction(byte flag) {
+        return flag == LiveSeries.ABOVE ? "above" : flag == LiveSeries.BELOW ? "below" : null;
+    }
+
+    private long parseTimestamp(JsonNode timestamp, int index) {
+        if (timestamp == null || timestamp.isNull()) {
+            // Cùng quy ước với dữ liệu CSV: giờ địa phương không múi giờ, đổi sang epoch như UTC
+            return TimeIndex.toEpochSecond(LocalDateTime.now()) * 1000;
+        }
+        if (timestamp.isNumber()) {
+            return timestamp.asLong();
+        }
+        LocalDateTime time = dataPreprocessor.parseDateTime(timestamp.asText().trim());
+        if (time == null) {
+            throw new IllegalArgumentException("Reading " + index + ": cannot parse timestamp '" + timestamp.asText() + "'");
+        }
+        return TimeIndex.toEpochSecond(time) * 1000;
+    }
+
+    private static double parseValue(JsonNode value, int index) {
+        if (value == null || !value.isNumber() || !Double.isFinite(value.asDouble())) {
+            throw new IllegalArgumentException("Reading " + index + ": value must be a finite number");
+        }
+        return value.asDouble();
+    }
+
+    private static LocalDateTime toDateTime(long millis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000), 0, ZoneOffset.UTC);
+    }
+
+    private static List<Double> roundValues(double[] values) {
+        List<Double> rounded = new ArrayList<>(values.length);
+        for (double value : values) rounded.add(round(value));
+        return rounded;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+}
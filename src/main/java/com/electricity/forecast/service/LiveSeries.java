@@ -0,0 +1,255 @@
+package com.electricity.forecast.service;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Số đo trực tiếp của một workspace (một chuỗi, vd. một công tơ gửi qua SCADA), không đụng tới lịch sử đã xử lý.
+ * Mọi cấu trúc đều không khóa để nhiều luồng ingest ghi cùng lúc:
+ * - vòng đệm số đo: mỗi số đo giành một ô bằng getAndIncrement, ô được công bố bằng số thứ tự của nó
+ * - vòng đệm theo giờ: trung bình của mỗi giờ đã đóng, ô được đánh khóa bằng chính số giờ nên thứ tự ghi không quan trọng
+ * - thống kê chạy (Welford) và giờ đang gom nằm trong một trạng thái bất biến thay bằng CAS
+ * Số đo cũ hơn giờ đang gom vẫn vào thống kê nhưng không vào giờ đã đóng (late).
+ */
+public final class LiveSeries {
+
+    static final long HOUR_MILLIS = 3_600_000L;
+
+    static final byte INSIDE = 0;
+    static final byte BELOW = -1;
+    static final byte ABOVE = 1;
+
+    /**
+     * Thống kê chạy của mọi số đo đã nhận
+     */
+    record Stats(long count, double mean, double m2, double min, double max, long lastMillis, double lastValue, long late) {
+        static final Stats EMPTY = new Stats(0, 0, 0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                Long.MIN_VALUE, Double.NaN, 0);
+
+        Stats add(long millis, double value, boolean isLate) {
+            long n = count + 1;
+            double delta = value - mean;
+            double newMean = mean + delta / n;
+            boolean newest = millis >= lastMillis;
+            return new Stats(n, newMean, m2 + delta * (value - newMean), Math.min(min, value), Math.max(max, value),
+                    newest ? millis : lastMillis, newest ? value : lastValue, late + (isLate ? 1 : 0));
+        }
+
+        double std() {
+            return count > 1 ? Math.sqrt(m2 / (count - 1)) : 0;
+        }
+    }
+
+    private record State(Stats stats, long openHour, double openSum, int openCount) {}
+
+    /**
+     * Thang chuẩn hóa và phần cuối chuỗi huấn luyện của bộ dữ liệu hiện tại
+     * (endHour là giờ của dòng dữ liệu cuối, tail kết thúc ở giờ đó)
+     */
+    record Baseline(long datasetVersion, String targetColumn, double mean, double std, long endHour, double[] tail) {}
+
+    /**
+     * Dự báo ngắn hạn tính từ dữ liệu huấn luyện cộng các giờ trực tiếp đã đóng; bước 0 là giờ firstHour.
+     * bands của mỗi mô hình là P10/P50/P90; số đo được so với khoảng P10-P90 của referenceModel.
+     * staleModels: mô hình không dự báo được từ ngữ cảnh -> số giờ từ cuối chuỗi huấn luyện tới firstHour - 1.
+     */
+    record Forecast(long firstHour, String referenceModel, Map<String, double[]> points, Map<String, double[][]> bands,
+                    Map<String, Integer> staleModels, long datasetVersion, long modelVersion, long closedHours, long createdAt) {
+        int horizon() {
+            return points.isEmpty() ? 0 : points.values().iterator().next().length;
+        }
+    }
+
+    /**
+     * Số đo nằm ngoài khoảng dự báo
+     */
+    record Flag(long millis, double value, byte direction, double lower, double upper, String model) {}
+
+    // Vòng đệm số đo
+    private final int readingMask;
+    private final long[] readingMillis;
+    private final double[] readingValues;
+    private final byte[] readingFlags;
+    private final AtomicLongArray readingPublished;
+    private final AtomicLong readingSequence = new AtomicLong();
+
+    // Vòng đệm theo giờ: khóa là số giờ + 1 (0 là ô trống)
+    private final int hourMask;
+    private final double[] hourValues;
+    private final AtomicLongArray hourKeys;
+    private final AtomicLong closedHours = new AtomicLong();
+    private final AtomicLong latestClosedHour = new AtomicLong(Long.MIN_VALUE);
+
+    private final AtomicReference<State> state = new AtomicReference<>(new State(Stats.EMPTY, Long.MIN_VALUE, 0, 0));
+    private volatile Baseline baseline;
+    private volatile Forecast forecast;
+
+    final List<SseEmitter> subscribers = new CopyOnWriteArrayList<>();
+
+    LiveSeries(int readingCapacity, int hourCapacity) {
+        int readings = Integer.highestOneBit(Math.max(2, readingCapacity) * 2 - 1);
+        int hours = Integer.highestOneBit(Math.max(2, hourCapacity) * 2 - 1);
+        this.readingMask = readings - 1;
+        this.readingMillis = new long[readings];
+        this.readingValues = new double[readings];
+        this.readingFlags = new byte[readings];
+        this.readingPublished = new AtomicLongArray(readings);
+        this.hourMask = hours - 1;
+        this.hourValues = new double[hours];
+        this.hourKeys = new AtomicLongArray(hours);
+    }
+
+    /**
+     * Thêm một số đo: so với khoảng dự báo hiện tại, ghi vào vòng đệm, cập nhật thống kê và giờ đang gom.
+     * Trả về BELOW/ABOVE nếu số đo nằm ngoài khoảng, INSIDE nếu không (hoặc chưa có dự báo cho giờ đó).
+     */
+    byte append(long millis, double value) {
+        byte flag = check(millis, value);
+
+        long sequence = readingSequence.getAndIncrement();
+        int slot = (int) (sequence & readingMask);
+        readingPublished.set(slot, 0);
+        readingMillis[slot] = millis;
+        readingValues[slot] = value;
+        readingFlags[slot] = flag;
+        readingPublished.set(slot, sequence + 1);
+
+        long hour = Math.floorDiv(millis, HOUR_MILLIS);
+        while (true) {
+            State current = state.get();
+            boolean late = hour < current.openHour();
+            State next;
+            if (late) {
+                next = new State(current.stats().add(millis, value, true), current.openHour(), current.openSum(), current.openCount());
+            } else if (hour == current.openHour()) {
+                next = new State(current.stats().add(millis, value, false), hour, current.openSum() + value, current.openCount() + 1);
+            } else {
+                next = new State(current.stats().add(millis, value, false), hour, value, 1);
+            }
+            if (state.compareAndSet(current, next)) {
+                // Chỉ luồng thắng CAS đóng giờ cũ, nên mỗi giờ được ghi đúng một lần
+                if (hour > current.openHour() && current.openCount() > 0) {
+                    closeHour(current.openHour(), current.openSum() / current.openCount());
+                }
+                return flag;
+            }
+        }
+    }
+
+    private void closeHour(long hour, double mean) {
+        int slot = (int) (hour & hourMask);
+        hourKeys.set(slot, 0);
+        hourValues[slot] = mean;
+        hourKeys.set(slot, hour + 1);
+        latestClosedHour.accumulateAndGet(hour, Math::max);
+        closedHours.incrementAndGet();
+    }
+
+    /**
+     * Trung bình của giờ đã đóng, NaN nếu không có (chưa có số đo hoặc đã bị ghi đè)
+     */
+    double hourValue(long hour) {
+        int slot = (int) (hour & hourMask);
+        long key = hourKeys.get(slot);
+        double value = hourValues[slot];
+        return key == hour + 1 && hourKeys.get(slot) == key ? value : Double.NaN;
+    }
+
+    private byte check(long millis, double value) {
+        Forecast current = forecast;
+        if (current == null || current.referenceModel() == null) return INSIDE;
+        long step = Math.floorDiv(millis, HOUR_MILLIS) - current.firstHour();
+        if (step < 0 || step >= current.horizon()) return INSIDE;
+        double[][] bands = current.bands().get(current.referenceModel());
+        if (value < bands[0][(int) step]) return BELOW;
+        if (value > bands[bands.length - 1][(int) step]) return ABOVE;
+        return INSIDE;
+    }
+
+    /**
+     * Chi tiết của một số đo bị gắn cờ (khoảng dự báo mà nó đã được so)
+     */
+    Flag describe(long millis, double value, byte direction) {
+        Forecast current = forecast;
+        if (current == null || current.referenceModel() == null) return new Flag(millis, value, direction, Double.NaN, Double.NaN, null);
+        int step = (int) (Math.floorDiv(millis, HOUR_MILLIS) - current.firstHour());
+        double[][] bands = current.bands().get(current.referenceModel());
+        boolean inRange = step >= 0 && step < current.horizon();
+        return new Flag(millis, value, direction, inRange ? bands[0][step] : Double.NaN,
+                inRange ? bands[bands.length - 1][step] : Double.NaN, current.referenceModel());
+    }
+
+    /**
+     * Chuỗi theo giờ dài {@code length} kết thúc ở giờ {@code lastHour}: giờ trong dữ liệu huấn luyện lấy từ tail,
+     * giờ sau đó lấy từ các giờ trực tiếp đã đóng; giờ thiếu lấy giá trị trước đó
+     */
+    double[] context(Baseline base, long lastHour, int length) {
+        double[] values = new double[length];
+        double previous = base.tail().length > 0 ? base.tail()[0] : Double.NaN;
+        for (int i = 0; i < length; i++) {
+            long hour = lastHour - length + 1 + i;
+            double value;
+            if (hour <= base.endHour()) {
+                long back = base.endHour() - hour;
+                value = back < base.tail().length ? base.tail()[(int) (base.tail().length - 1 - back)] : Double.NaN;
+            } else {
+                value = hourValue(hour);
+            }
+            if (Double.isNaN(value)) value = previous;
+            values[i] = value;
+            previous = value;
+        }
+        return values;
+    }
+
+    /**
+     * Tối đa {@code limit} số đo mới nhất còn trong vòng đệm, mới nhất trước
+     */
+    List<Map<String, Object>> recent(int limit) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        long end = readingSequence.get();
+        for (long sequence = end - 1; sequence >= 0 && sequence >= end - readingMask - 1 && rows.size() < limit; sequence--) {
+            int slot = (int) (sequence & readingMask);
+            if (readingPublished.get(slot) != sequence + 1) continue;
+            long millis = readingMillis[slot];
+            double value = readingValues[slot];
+            byte flag = readingFlags[slot];
+            // Ô bị ghi đè trong lúc đọc (một vòng đệm quay hết): bỏ qua
+            if (readingPublished.get(slot) != sequence + 1) continue;
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("millis", millis);
+            row.put("value", value);
+            row.put("flag", flag);
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    Stats getStats() { return state.get().stats(); }
+
+    long getReadingCount() { return readingSequence.get(); }
+
+    int getReadingCapacity() { return readingMask + 1; }
+
+    int getHourCapacity() { return hourMask + 1; }
+
+    long getClosedHours() { return closedHours.get(); }
+
+    /**
+     * Giờ đã đóng mới nhất, Long.MIN_VALUE nếu chưa có
+     */
+    long getLatestClosedHour() { return latestClosedHour.get(); }
+
+    Baseline getBaseline() { return baseline; }
+
+    void setBaseline(Baseline baseline) { this.baseline = baseline; }
+
+    Forecast getForecast() { return forecast; }
+
+    void setForecast(Forecast forecast) { this.forecast = forecast; }
+}
@@ -0,0 +1,253 @@
+package com.electricity.forecast.service;
+
+import com.electricity.forecast.engine.FittedModel;
+import com.electricity.forecast.engine.OffHeapBuffer;
+import com.electricity.forecast.engine.TrainingData;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ngân sách heap chung cho mọi workspace: dữ liệu (thô + đã xử lý) và mô hình đã huấn luyện.
+ * Upload và huấn luyện giữ chỗ phần bộ nhớ dự kiến trước khi cấp phát; nếu không đủ chỗ thì giải phóng
+ * theo thứ tự: bỏ bản dữ liệu thô (chỉ dùng cho báo cáo, đã tính sẵn), rồi ghi workspace ít dùng nhất
+ * ra snapshot trên đĩa. Vẫn không đủ thì chờ các lần giữ chỗ khác xong, quá hạn thì từ chối với
+ * {@link MemoryBudgetExceededException} thay vì để JVM hết bộ nhớ.
+ * Mọi con số là ước lượng (HashMap với giá trị đóng hộp, kích thước mô hình đã tuần tự hóa).
+ */
+public final class MemoryBudget {
+
+    // createTimeFeatures thêm 13 cột; normalizeNumericalData thêm _scaled và _original cho mỗi cột số
+    private static final int TIME_FEATURE_COLUMNS = 13;
+    // Huấn luyện tạo cửa sổ trượt trên chuỗi (LSTM mặc định 24 bước) cùng các mảng phụ
+    private static final int TRAINING_COPIES = 32;
+    private static final long WAIT_SLICE_MILLIS = 200;
+
+    public static final class MemoryBudgetExceededException extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        MemoryBudgetExceededException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Phần bộ nhớ đã giữ chỗ; đóng sau khi kết quả đã được công bố vào snapshot (hoặc bị bỏ)
+     */
+    public final class Reservation implements AutoCloseable {
+        private final long bytes;
+        private boolean closed;
+
+        private Reservation(long bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void close() {
+            synchronized (MemoryBudget.this) {
+                if (closed) return;
+                closed = true;
+                reserved -= bytes;
+                MemoryBudget.this.notifyAll();
+            }
+        }
+    }
+
+    private final long budgetBytes;
+    private final long admissionTimeoutMillis;
+    private final WorkspaceManager workspaces;
+
+    private long reserved;
+    private final AtomicLong rawDropped = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    // Kích thước tuần tự hóa của mỗi mô hình, tính một lần; mô hình bị thay thế thì tự rơi khỏi map
+    private final Map<FittedModel, Long> modelBytes = Collections.synchronizedMap(new WeakHashMap<>());
+
+    public MemoryBudget(long budgetBytes, long admissionTimeoutMillis, WorkspaceManager workspaces) {
+        this.budgetBytes = budgetBytes;
+        this.admissionTimeoutMillis = admissionTimeoutMillis;
+        this.workspaces = workspaces;
+    }
+
+    /**
+     * Giữ chỗ {@code bytes} cho một thao tác của {@code requester} (workspace này không bị ghi ra đĩa
+     * vì đang bận). Chờ tối đa thời gian cấu hình nếu cần.
+     * Chỉ việc kiểm tra và cộng phần giữ chỗ nằm trong monitor; việc giải phóng (có thể ghi snapshot ra đĩa)
+     * chạy ngoài monitor để các lần giữ chỗ và trả chỗ khác không bị chặn, rồi kiểm tra lại.
+     */
+    public Reservation reserve(long bytes, String purpose, Workspace requester) throws InterruptedException {
+        if (bytes > budgetBytes) {
+            rejected.incrementAndGet();
+            throw new MemoryBudgetExceededException(String.format(
+                    "%s needs about %.1f MB, more than the whole memory budget (%.1f MB)",
+                    purpose, mb(bytes), mb(budgetBytes)));
+        }
+        long deadline = System.currentTimeMillis() + admissionTimeoutMillis;
+        while (true) {
+            Reservation reservation = tryReserve(usedBytes(), bytes);
+            if (reservation != null) return reservation;
+
+            reclaim(usedBytes() + getReservedBytes() + bytes - budgetBytes, requester);
+
+            long used = usedBytes();
+            synchronized (this) {
+                reservation = tryReserve(used, bytes);
+                if (reservation != null) return reservation;
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    rejected.incrementAndGet();
+                    throw new MemoryBudgetExceededException(String.format(
+                            "%s needs about %.1f MB but %.1f MB of the %.1f MB memory budget is in use or reserved; "
+                                    + "try again later or delete unused workspaces",
+                            purpose, mb(bytes), mb(used + reserved), mb(budgetBytes)));
+                }
+                // Bộ nhớ cũng được trả khi workspace bị loại hay xóa (không báo), nên chờ từng quãng ngắn
+                wait(Math.min(remaining, WAIT_SLICE_MILLIS));
+            }
+        }
+    }
+
+    private synchronized Reservation tryReserve(long used, long bytes) {
+        if (used + reserved + bytes > budgetBytes) return null;
+        reserved += bytes;
+        return new Reservation(bytes);
+    }
+
+    /**
+     * Sau khi công bố dữ liệu hoặc mô hình: nếu vượt ngân sách thì giải phóng như khi giữ chỗ (ngoài monitor)
+     */
+    public void enforce() {
+        long over = usedBytes() + getReservedBytes() - budgetBytes;
+        if (over > 0) reclaim(over, null);
+    }
+
+    /**
+     * Giải phóng ít nhất {@code needed} byte; trả về true nếu đủ
+     */
+    private boolean reclaim(long needed, Workspace requester) {
+        List<Workspace> coldestFirst = new ArrayList<>(workspaces.getActive());
+        coldestFirst.sort(Comparator.comparingLong(Workspace::getLastAccess));
+
+        long freed = 0;
+        // 1. Bỏ bản dữ liệu thô, kể cả của workspace đang yêu cầu (nó chỉ cần dữ liệu đã xử lý)
+        for (Workspace workspace : coldestFirst) {
+            if (freed >= needed) return true;
+            ForecastSnapshot before = workspace.getSnapshot();
+            if (before.getRawData() == null) continue;
+            ForecastSnapshot after = workspace.update(ForecastSnapshot::withoutRawData);
+            freed += before.getMemoryBytes() - after.getMemoryBytes();
+            rawDropped.incrementAndGet();
+        }
+        // 2. Ghi workspace ít dùng nhất ra đĩa; workspace đang bận được WorkspaceManager bỏ qua
+        for (Workspace workspace : coldestFirst) {
+            if (freed >= needed) return true;
+            if (workspace == requester) continue;
+            long bytes = footprint(workspace);
+            if (bytes > 0 && workspaces.spill(workspace.getId())) {
+                freed += bytes;
+                spilled.incrementAndGet();
+                System.out.println("Workspace " + workspace.getId() + " spilled to disk (memory budget)");
+            }
+        }
+        return freed >= needed;
+    }
+
+    public long getBudgetBytes() { return budgetBytes; }
+
+    public synchronized long getReservedBytes() { return reserved; }
+
+    /**
+     * Bộ nhớ ước lượng của mọi workspace đang nằm trong bộ nhớ
+     */
+    public long usedBytes() {
+        long used = 0;
+        for (Workspace workspace : workspaces.getActive()) {
+            used += footprint(workspace);
+        }
+        return used;
+    }
+
+    public long footprint(Workspace workspace) {
+        return workspace.getSnapshot().getMemoryBytes() + modelBytes(workspace);
+    }
+
+    public long modelBytes(Workspace workspace) {
+        long total = 0;
+        for (FittedModel model : workspace.getSnapshot().getModels().values()) {
+            total += modelBytes.computeIfAbsent(model, MemoryBudget::serializedSize);
+        }
+        return total;
+    }
+
+    public Map<String, Object> getStats() {
+        long datasets = 0;
+        long models = 0;
+        for (Workspace workspace : workspaces.getActive()) {
+            datasets += workspace.getSnapshot().getMemoryBytes();
+            models += modelBytes(workspace);
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("budgetMb", round(mb(budgetBytes)));
+        stats.put("usedMb", round(mb(datasets + models)));
+        stats.put("datasetsMb", round(mb(datasets)));
+        stats.put("modelsMb", round(mb(models)));
+        stats.put("reservedMb", round(mb(getReservedBytes())));
+        // Chuỗi và trọng số ngoài heap không tính vào ngân sách heap
+        stats.put("offHeapMb", round(mb(OffHeapBuffer.allocatedBytes())));
+        stats.put("rawCopiesDropped", rawDropped.get());
+        stats.put("workspacesSpilled", spilled.get());
+        stats.put("rejected", rejected.get());
+        return stats;
+    }
+
+    public long getRawDroppedCount() { return rawDropped.get(); }
+    public long getSpilledCount() { return spilled.get(); }
+    public long getRejectedCount() { return rejected.get(); }
+
+    /**
+     * Ước lượng bộ nhớ của các dòng dữ liệu (HashMap với giá trị đóng hộp)
+     */
+    public static long estimateRows(List<Map<String, Object>> rows) {
+        long bytes = 0;
+        for (Map<String, Object> row : rows) {
+            bytes += 64 + row.size() * 80L;
+        }
+        return bytes;
+    }
+
+    /**
+     * Bộ nhớ dự kiến của một upload sau khi tiền xử lý: bản thô đã đọc cộng bản đã xử lý
+     */
+    public static long projectUpload(List<Map<String, Object>> rawData) {
+        if (rawData.isEmpty()) return 0;
+        int columns = 3 * (rawData.get(0).size() + TIME_FEATURE_COLUMNS) + 1;
+        return estimateRows(rawData) + rawData.size() * (64 + columns * 80L);
+    }
+
+    /**
+     * Bộ nhớ tạm khi huấn luyện một mô hình trên {@code data}
+     */
+    public static long projectTraining(TrainingData data) {
+        return (long) data.size() * Double.BYTES * TRAINING_COPIES;
+    }
+
+    private static long serializedSize(FittedModel model) {
+        try {
+            return model.serialize().length;
+        } catch (IOException | IllegalStateException e) {
+            // IllegalStateException: trọng số ngoài heap đã được trả (mô hình vừa bị thay thế)
+            return 0;
+        }
+    }
+
+    private static double mb(long bytes) {
+        return bytes / 1048576.0;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10.0) / 10.0;
+    }
+}
@@ -0,0 +1,61 @@
+package com.electricity.forecast.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Tạo {@link PipelineTrace} cho mỗi lần chạy và giữ các lần chạy gần nhất trong một ring buffer
+ * cố định: ghi không khóa (một số thứ tự tăng dần chọn ô), lần chạy cũ nhất bị ghi đè.
+ */
+@Component
+public class PipelineProfiler {
+
+    @Value("${forecast.profiling.history:100}")
+    private int capacity;
+
+    private AtomicReferenceArray<Map<String, Object>> runs;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        runs = new AtomicReferenceArray<>(Math.max(1, capacity));
+    }
+
+    public PipelineTrace start(String kind, String workspace) {
+        return new PipelineTrace(kind, workspace);
+    }
+
+    /**
+     * Kết thúc lần chạy, lưu vào ring buffer và trả về bản tổng kết để đưa vào response
+     */
+    public Map<String, Object> finish(PipelineTrace trace) {
+        Map<String, Object> run = trace.toMap();
+        long id = sequence.getAndIncrement();
+        run.put("id", id);
+        Map<String, Object> stored = Collections.unmodifiableMap(run);
+        runs.set((int) (id % runs.length()), stored);
+        return stored;
+    }
+
+    /**
+     * Các lần chạy gần nhất, mới nhất trước; {@code kind} null là mọi loại
+     */
+    public List<Map<String, Object>> recent(String kind, int limit) {
+        List<Map<String, Object>> recent = new ArrayList<>();
+        long last = sequence.get() - 1;
+        for (long id = last; id >= 0 && id > last - runs.length() && recent.size() < limit; id--) {
+            Map<String, Object> run = runs.get((int) (id % runs.length()));
+            // Ô đã bị lần chạy mới hơn ghi đè hoặc chưa ghi xong
+            if (run == null || !Long.valueOf(id).equals(run.get("id"))) continue;
+            if (kind == null || kind.equals(run.get("kind"))) recent.add(run);
+        }
+        return recent;
+    }
+
+    public int getCapacity() { return runs.length(); }
+}
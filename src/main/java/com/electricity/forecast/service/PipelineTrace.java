@@ -0,0 +1,131 @@
+package com.electricity.forecast.service;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Đo từng bước của một lần chạy pipeline (tải dữ liệu, huấn luyện, dự báo): thời gian thực,
+ * thời gian CPU và số byte cấp phát của luồng chạy bước đó (bộ đếm theo luồng của JVM,
+ * -1 nếu JVM không hỗ trợ). Việc luồng khác làm thay bước đó không được tính vào CPU/cấp phát.
+ * Các bước có thể chạy song song trên nhiều luồng; mỗi bước ghi độ lệch so với lúc bắt đầu.
+ */
+public final class PipelineTrace {
+
+    /**
+     * Thân một bước; ngoại lệ được ném lại nguyên vẹn
+     */
+    @FunctionalInterface
+    public interface Stage<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    private record Sample(String name, String thread, long offsetNanos, long wallNanos, long cpuNanos,
+                          long allocatedBytes, boolean failed) {}
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU_TIME = THREADS.isCurrentThreadCpuTimeSupported() && THREADS.isThreadCpuTimeEnabled();
+    private static final com.sun.management.ThreadMXBean ALLOCATION = allocationBean();
+
+    private static final PipelineTrace DISABLED = new PipelineTrace("disabled", null);
+
+    private final String kind;
+    private final String workspace;
+    private final LocalDateTime startedAt = LocalDateTime.now();
+    private final long startNanos = System.nanoTime();
+    private final Queue<Sample> samples = new ConcurrentLinkedQueue<>();
+
+    PipelineTrace(String kind, String workspace) {
+        this.kind = kind;
+        this.workspace = workspace;
+    }
+
+    /**
+     * Trace không đo gì, dùng khi gọi pipeline ngoài một lần chạy được theo dõi
+     */
+    public static PipelineTrace disabled() {
+        return DISABLED;
+    }
+
+    public String getKind() { return kind; }
+
+    /**
+     * Chạy {@code body} như một bước tên {@code name} và ghi lại số đo, kể cả khi bước ném ngoại lệ
+     */
+    public <T, E extends Exception> T stage(String name, Stage<T, E> body) throws E {
+        if (this == DISABLED) {
+            return body.run();
+        }
+        long wall = System.nanoTime();
+        long cpu = cpuTime();
+        long allocated = allocatedBytes();
+        boolean failed = true;
+        try {
+            T value = body.run();
+            failed = false;
+            return value;
+        } finally {
+            long end = System.nanoTime();
+            samples.add(new Sample(name, Thread.currentThread().getName(), wall - startNanos, end - wall,
+                    cpu < 0 ? -1 : cpuTime() - cpu, allocated < 0 ? -1 : allocatedBytes() - allocated, failed));
+        }
+    }
+
+    /**
+     * Tổng kết lần chạy: tổng thời gian thực từ lúc bắt đầu, tổng CPU và cấp phát của các bước,
+     * và từng bước theo thứ tự kết thúc
+     */
+    public Map<String, Object> toMap() {
+        long wallNanos = System.nanoTime() - startNanos;
+        long cpuNanos = 0;
+        long allocated = 0;
+        List<Map<String, Object>> stages = new ArrayList<>();
+        for (Sample sample : samples) {
+            cpuNanos = sample.cpuNanos() < 0 || cpuNanos < 0 ? -1 : cpuNanos + sample.cpuNanos();
+            allocated = sample.allocatedBytes() < 0 || allocated < 0 ? -1 : allocated + sample.allocatedBytes();
+
+            Map<String, Object> stage = new LinkedHashMap<>();
+            stage.put("name", sample.name());
+            stage.put("thread", sample.thread());
+            stage.put("offsetMs", millis(sample.offsetNanos()));
+            stage.put("wallMs", millis(sample.wallNanos()));
+            stage.put("cpuMs", millis(sample.cpuNanos()));
+            stage.put("allocatedBytes", sample.allocatedBytes());
+            if (sample.failed()) stage.put("failed", true);
+            stages.add(stage);
+        }
+
+        Map<String, Object> run = new LinkedHashMap<>();
+        run.put("kind", kind);
+        run.put("workspace", workspace);
+        run.put("startedAt", startedAt.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        run.put("wallMs", millis(wallNanos));
+        run.put("cpuMs", millis(cpuNanos));
+        run.put("allocatedBytes", allocated);
+        run.put("stages", stages);
+        return run;
+    }
+
+    private static double millis(long nanos) {
+        return nanos < 0 ? -1 : Math.round(nanos / 1e4) / 100.0;
+    }
+
+    private static long cpuTime() {
+        return CPU_TIME ? THREADS.getCurrentThreadCpuTime() : -1;
+    }
+
+    private static long allocatedBytes() {
+        return ALLOCATION != null ? ALLOCATION.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+            return bean;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,75 @@
+package com.electricity.forecast.service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Các tham số đã học khi tiền xử lý toàn bộ file, giữ cùng bộ dữ liệu để xử lý các dòng nối thêm
+ * đúng như các dòng cũ mà không phải chạy lại trên cả lịch sử:
+ * cột thời gian, cột bị bỏ vì thiếu quá nhiều, giá trị điền (median), ngưỡng ngoại lệ IQR và thang chuẩn hóa.
+ * Dòng cuối (thời điểm và giá trị mục tiêu) dùng cho nội suy và để bỏ các dòng không mới hơn.
+ */
+public final class PreprocessingState {
+
+    private final String targetColumn;
+    private final String timeColumn;
+    private final Set<String> columns;
+    private final Set<String> sparseColumns;
+    private final Map<String, Double> fillValues;
+    private final double[] outlierBounds;
+    private final Map<String, double[]> scaler;
+    private final LocalDateTime lastTimestamp;
+    private final Double lastTarget;
+
+    PreprocessingState(String targetColumn, String timeColumn, Set<String> columns, Set<String> sparseColumns,
+                       Map<String, Double> fillValues, double[] outlierBounds, Map<String, double[]> scaler,
+                       LocalDateTime lastTimestamp, Double lastTarget) {
+        this.targetColumn = targetColumn;
+        this.timeColumn = timeColumn;
+        this.columns = Set.copyOf(columns);
+        this.sparseColumns = Set.copyOf(sparseColumns);
+        this.fillValues = Map.copyOf(fillValues);
+        this.outlierBounds = outlierBounds;
+        this.scaler = Map.copyOf(scaler);
+        this.lastTimestamp = lastTimestamp;
+        this.lastTarget = lastTarget;
+    }
+
+    /**
+     * Cùng tham số, dòng cuối là dòng cuối của phần vừa nối thêm
+     */
+    PreprocessingState withTail(LocalDateTime lastTimestamp, Double lastTarget) {
+        return new PreprocessingState(targetColumn, timeColumn, columns, sparseColumns, fillValues, outlierBounds,
+                scaler, lastTimestamp, lastTarget);
+    }
+
+    String getTargetColumn() { return targetColumn; }
+
+    /**
+     * null nếu file không có cột thời gian (timestamp được sinh theo giờ)
+     */
+    String getTimeColumn() { return timeColumn; }
+
+    /**
+     * Các cột của file sau khi làm sạch (tên viết thường), trước khi thêm đặc trưng
+     */
+    Set<String> getColumns() { return columns; }
+
+    Set<String> getSparseColumns() { return sparseColumns; }
+
+    Map<String, Double> getFillValues() { return fillValues; }
+
+    /**
+     * {lower, upper, median} của cột mục tiêu, null nếu không xử lý ngoại lệ
+     */
+    double[] getOutlierBounds() { return outlierBounds; }
+
+    /**
+     * Cột số -> {mean, std}
+     */
+    Map<String, double[]> getScaler() { return scaler; }
+
+    LocalDateTime getLastTimestamp() { return lastTimestamp; }
+
+    Double getLastTarget() { return lastTarget; }
+}
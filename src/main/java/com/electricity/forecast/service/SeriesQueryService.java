@@ -0,0 +1,249 @@
+package com.electricity.forecast.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * Truy vấn dữ liệu lịch sử theo khoảng thời gian: from/to, cột, giới hạn và phân trang bằng cursor.
+ * Dựa trên chỉ mục thời gian của snapshot nên mỗi trang chỉ đọc đúng các dòng trả về,
+ * không bao giờ chuyển toàn bộ bộ dữ liệu sang JSON.
+ */
+@Service
+public class SeriesQueryService {
+
+    @Autowired
+    private ForecastService forecastService;
+
+    @Value("${forecast.series.default-limit:500}")
+    private int defaultLimit;
+
+    @Value("${forecast.series.max-limit:10000}")
+    private int maxLimit;
+
+    /**
+     * Các dòng được chọn cho một request: vị trí trong chỉ mục, cột và cursor trang sau
+     */
+    public record Page(ForecastSnapshot snapshot, List<String> columns, int[] positions,
+                       int total, boolean downsampled, String nextCursor) {}
+
+    /**
+     * Trang dữ liệu trong [from, to] (bao gồm hai đầu). Khi có cursor, from/to được lấy từ cursor.
+     * Với maxPoints, cả khoảng được giảm còn tối đa maxPoints dòng bằng LTTB trên cột đầu tiên
+     * (không phân trang); các cột khác lấy tại cùng thời điểm.
+     */
+    public Map<String, Object> query(String workspaceId, String from, String to, String columns,
+                                     Integer limit, String cursor, Integer maxPoints) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        Page page = select(workspaceId, from, to, columns, limit, cursor, maxPoints);
+        if (page == null) {
+            result.put("success", false);
+            result.put("message", "No data loaded");
+            return result;
+        }
+
+        List<Map<String, Object>> processedData = page.snapshot().getProcessedData();
+        TimeIndex index = page.snapshot().getTimeIndex();
+        List<Map<String, Object>> points = new ArrayList<>(page.positions().length);
+        for (int position : page.positions()) {
+            Map<String, Object> row = processedData.get(index.rowAt(position));
+            Map<String, Object> point = new LinkedHashMap<>();
+            point.put("timestamp", formatTime(index.secondAt(position)));
+            for (String column : page.columns()) {
+                point.put(column, row.get(column));
+            }
+            points.add(point);
+        }
+
+        result.put("success", true);
+        result.put("columns", page.columns());
+        result.put("total", page.total());
+        result.put("count", points.size());
+        result.put("downsampled", page.downsampled());
+        result.put("points", points);
+        result.put("nextCursor", page.nextCursor());
+        return result;
+    }
+
+    /**
+     * Cùng trang dữ liệu như {@link #query}, mã hóa nhị phân dạng cột: một khối cho mỗi cột,
+     * thời gian dạng bắt đầu + bước khi các dòng cách đều, tường minh khi không (giảm điểm, dữ liệu có khoảng trống).
+     * Giá trị không phải số được ghi là NaN. Trả về null nếu chưa có dữ liệu.
+     */
+    public Page encode(String workspaceId, String from, String to, String columns, Integer limit, String cursor,
+                       Integer maxPoints, ColumnarEncoder encoder) {
+        Page page = select(workspaceId, from, to, columns, limit, cursor, maxPoints);
+        if (page == null) return null;
+
+        List<Map<String, Object>> processedData = page.snapshot().getProcessedData();
+        TimeIndex index = page.snapshot().getTimeIndex();
+        int[] positions = page.positions();
+        long[] times = new long[positions.length];
+        for (int i = 0; i < positions.length; i++) times[i] = index.secondAt(positions[i]);
+        boolean regular = times.length < 2 || times[1] - times[0] <= Integer.MAX_VALUE;
+        for (int i = 2; i < times.length && regular; i++) {
+            regular = times[i] - times[i - 1] == times[1] - times[0];
+        }
+
+        for (String column : page.columns()) {
+            double[] values = new double[positions.length];
+            for (int i = 0; i < positions.length; i++) {
+                Object value = processedData.get(index.rowAt(positions[i])).get(column);
+                values[i] = value instanceof Number ? ((Number) value).doubleValue() : Double.NaN;
+            }
+            if (regular) {
+                long start = times.length > 0 ? times[0] : 0;
+                int step = times.length > 1 ? (int) (times[1] - times[0]) : 0;
+                encoder.addRegular(column, start, step, values);
+            } else {
+                encoder.addExplicit(column, times, values);
+            }
+        }
+        return page;
+    }
+
+    private Page select(String workspaceId, String from, String to, String columns,
+                        Integer limit, String cursor, Integer maxPoints) {
+        ForecastSnapshot snapshot = forecastService.getSnapshot(workspaceId);
+        if (!snapshot.hasData()) return null;
+
+        int pageSize = limit != null ? limit : defaultLimit;
+        if (pageSize < 1 || pageSize > maxLimit) {
+            throw new IllegalArgumentException("limit must be between 1 and " + maxLimit);
+        }
+        if (maxPoints != null && (maxPoints < Downsampling.MIN_POINTS || maxPoints > maxLimit)) {
+            throw new IllegalArgumentException("maxPoints must be between " + Downsampling.MIN_POINTS + " and " + maxLimit);
+        }
+        List<Map<String, Object>> processedData = snapshot.getProcessedData();
+        List<String> selected = resolveColumns(columns, processedData.get(0), snapshot.getDataModel().getTargetColumn());
+
+        TimeIndex index = snapshot.getTimeIndex();
+        int start;
+        int end;
+        if (cursor != null && !cursor.isBlank()) {
+            long[] position = decodeCursor(cursor);
+            if (position[0] != snapshot.getDatasetVersion()) {
+                throw new IllegalArgumentException("Cursor is no longer valid: the dataset has changed");
+            }
+            start = (int) position[1];
+            end = (int) position[2];
+            if (start < 0 || end > index.size() || start > end) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        } else {
+            // Hai lần tìm kiếm nhị phân trên cột epoch-second đã sắp xếp
+            start = from != null ? index.lowerBound(parseTime(from)) : 0;
+            end = to != null ? index.upperBound(parseTime(to)) : index.size();
+            end = Math.max(start, end);
+        }
+
+        int[] positions;
+        int stop;
+        boolean downsampled = maxPoints != null && end - start > maxPoints;
+        if (downsampled) {
+            positions = downsample(processedData, index, start, end, selected.get(0), maxPoints);
+            stop = end;
+        } else {
+            stop = maxPoints != null ? end : Math.min(end, start + pageSize);
+            positions = new int[stop - start];
+            for (int i = 0; i < positions.length; i++) positions[i] = start + i;
+        }
+
+        String nextCursor = stop < end ? encodeCursor(snapshot.getDatasetVersion(), stop, end) : null;
+        return new Page(snapshot, selected, positions, end - start, downsampled, nextCursor);
+    }
+
+    /**
+     * Vị trí trong chỉ mục của các điểm LTTB giữ lại trong [start, end); trục x là thời gian thực
+     * nên khoảng trống trong dữ liệu không bị co lại
+     */
+    private static int[] downsample(List<Map<String, Object>> processedData, TimeIndex index, int start, int end,
+                                    String column, int maxPoints) {
+        double[] x = new double[end - start];
+        double[] y = new double[end - start];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = index.secondAt(start + i);
+            Object value = processedData.get(index.rowAt(start + i)).get(column);
+            y[i] = value instanceof Number ? ((Number) value).doubleValue() : Double.NaN;
+        }
+        int[] positions = Downsampling.lttb(x, y, maxPoints);
+        for (int i = 0; i < positions.length; i++) positions[i] += start;
+        return positions;
+    }
+
+    /**
+     * Mặc định chỉ cột mục tiêu; "*" là mọi cột của dữ liệu đã xử lý
+     */
+    private static List<String> resolveColumns(String columns, Map<String, Object> sampleRow, String targetColumn) {
+        List<String> selected = new ArrayList<>();
+        if (columns == null || columns.isBlank()) {
+            selected.add(targetColumn);
+            return selected;
+        }
+        if (columns.trim().equals("*")) {
+            for (String column : sampleRow.keySet()) {
+                if (!column.equals("timestamp")) selected.add(column);
+            }
+            Collections.sort(selected);
+            return selected;
+        }
+        for (String column : columns.split(",")) {
+            String name = column.trim();
+            if (name.isEmpty()) continue;
+            if (!sampleRow.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown column: " + name);
+            }
+            selected.add(name);
+        }
+        return selected;
+    }
+
+    /**
+     * Nhận epoch-second, ISO-8601 (2015-01-01T00:00:00), "yyyy-MM-dd HH:mm:ss" hoặc chỉ ngày
+     */
+    static long parseTime(String value) {
+        String text = value.trim();
+        try {
+            if (text.matches("-?\\d+")) {
+                return Long.parseLong(text);
+            }
+            if (text.length() == 10) {
+                return LocalDate.parse(text).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+            }
+            return TimeIndex.toEpochSecond(LocalDateTime.parse(text.replace(' ', 'T')));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid time: " + value + " (use ISO-8601 or epoch seconds)");
+        }
+    }
+
+    private static String formatTime(long epochSecond) {
+        return DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC));
+    }
+
+    /**
+     * Cursor gồm phiên bản dữ liệu và khoảng vị trí còn lại trong chỉ mục
+     */
+    private static String encodeCursor(long datasetVersion, int start, int end) {
+        String raw = datasetVersion + ":" + start + ":" + end;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long[] decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":");
+            if (parts.length != 3) throw new IllegalArgumentException("Invalid cursor");
+            return new long[] { Long.parseLong(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2]) };
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
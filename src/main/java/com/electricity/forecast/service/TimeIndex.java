@@ -0,0 +1,159 @@
+package com.electricity.forecast.service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Chỉ mục thời gian của dữ liệu đã xử lý: cột epoch-second đã sắp xếp và vị trí dòng tương ứng.
+ * Truy vấn khoảng [from, to] là hai lần tìm kiếm nhị phân, sau đó chỉ đọc k dòng trong khoảng (O(log n + k)).
+ * Dòng không có timestamp không được đưa vào chỉ mục. Thời gian cục bộ được quy đổi theo UTC.
+ * Như {@link AppendableList}, các chỉ mục nối tiếp nhau dùng chung mảng có dư dung lượng, mỗi bản chỉ thấy
+ * {@code size} vị trí đầu; nối vào bản mới nhất chỉ ghi các dòng mới.
+ */
+public final class TimeIndex {
+
+    private static final TimeIndex EMPTY = new TimeIndex(new Storage(new long[0], new int[0], 0), 0);
+
+    private static final class Storage {
+        final long[] seconds;
+        final int[] rows;
+        // Số vị trí đã ghi; chỉ đổi khi giữ khóa của vùng lưu
+        int length;
+
+        Storage(long[] seconds, int[] rows, int length) {
+            this.seconds = seconds;
+            this.rows = rows;
+            this.length = length;
+        }
+    }
+
+    private final Storage storage;
+    private final long[] seconds;
+    private final int[] rows;
+    private final int size;
+
+    private TimeIndex(Storage storage, int size) {
+        this.storage = storage;
+        this.seconds = storage.seconds;
+        this.rows = storage.rows;
+        this.size = size;
+    }
+
+    public static TimeIndex empty() {
+        return EMPTY;
+    }
+
+    public static TimeIndex build(List<Map<String, Object>> data) {
+        if (data == null || data.isEmpty()) return EMPTY;
+
+        long[] seconds = new long[data.size()];
+        int[] rows = new int[data.size()];
+        int size = 0;
+        boolean sorted = true;
+        for (int i = 0; i < data.size(); i++) {
+            Object timestamp = data.get(i).get("timestamp");
+            if (!(timestamp instanceof LocalDateTime)) continue;
+            long epoch = toEpochSecond((LocalDateTime) timestamp);
+            if (size > 0 && epoch < seconds[size - 1]) sorted = false;
+            seconds[size] = epoch;
+            rows[size] = i;
+            size++;
+        }
+        seconds = Arrays.copyOf(seconds, size);
+        rows = Arrays.copyOf(rows, size);
+
+        // Bộ tiền xử lý đã sắp xếp theo thời gian; chỉ sắp lại khi dữ liệu có dòng thiếu timestamp xen giữa
+        if (!sorted) {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) order[i] = i;
+            long[] unsortedSeconds = seconds;
+            Arrays.sort(order, Comparator.comparingLong(i -> unsortedSeconds[i]));
+            long[] sortedSeconds = new long[size];
+            int[] sortedRows = new int[size];
+            for (int i = 0; i < size; i++) {
+                sortedSeconds[i] = seconds[order[i]];
+                sortedRows[i] = rows[order[i]];
+            }
+            seconds = sortedSeconds;
+            rows = sortedRows;
+        }
+        return new TimeIndex(new Storage(seconds, rows, size), size);
+    }
+
+    /**
+     * Chỉ mục sau khi nối {@code tail} vào cuối dữ liệu (dòng đầu của tail là dòng {@code firstRow}).
+     * Chỉ duyệt các dòng mới; các dòng nối thêm luôn muộn hơn dòng cũ nên vẫn đã sắp xếp.
+     * Phần cũ chỉ bị sao chép khi mảng hết chỗ (dung lượng tăng gấp đôi) hoặc đã có bản khác nối vào cùng vùng lưu.
+     */
+    public TimeIndex append(List<Map<String, Object>> tail, int firstRow) {
+        TimeIndex added = build(tail);
+        int count = added.size();
+        if (count == 0) return this;
+        synchronized (storage) {
+            if (storage.length == size && size + count <= seconds.length) {
+                write(seconds, rows, added, firstRow);
+                storage.length = size + count;
+                return new TimeIndex(storage, size + count);
+            }
+        }
+        int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(2L * size, (long) size + count));
+        Storage grown = new Storage(Arrays.copyOf(seconds, capacity), Arrays.copyOf(rows, capacity), size + count);
+        write(grown.seconds, grown.rows, added, firstRow);
+        return new TimeIndex(grown, size + count);
+    }
+
+    private void write(long[] targetSeconds, int[] targetRows, TimeIndex added, int firstRow) {
+        for (int i = 0; i < added.size(); i++) {
+            targetSeconds[size + i] = added.seconds[i];
+            targetRows[size + i] = firstRow + added.rows[i];
+        }
+    }
+
+    public static long toEpochSecond(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Vị trí đầu tiên có thời gian >= epochSecond (size() nếu không có)
+     */
+    public int lowerBound(long epochSecond) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (seconds[mid] < epochSecond) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Vị trí đầu tiên có thời gian > epochSecond (size() nếu không có)
+     */
+    public int upperBound(long epochSecond) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (seconds[mid] <= epochSecond) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    public long secondAt(int position) {
+        return seconds[position];
+    }
+
+    /**
+     * Chỉ số dòng trong dữ liệu đã xử lý tại vị trí {@code position} của chỉ mục
+     */
+    public int rowAt(int position) {
+        return rows[position];
+    }
+}
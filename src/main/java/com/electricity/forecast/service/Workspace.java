@@ -0,0 +1,132 @@
+package com.electricity.forecast.service;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * Không gian làm việc độc lập: dữ liệu, mô hình, cache dự báo và hạn mức riêng.
+ * Trạng thái vẫn là snapshot bất biến như trước, chỉ là mỗi workspace có AtomicReference của nó.
+ * Tài nguyên ngoài heap của snapshot bị thay thế chỉ được trả khi không còn request nào vào workspace
+ * từ trước lúc thay thế (request vào sau chỉ thấy snapshot mới).
+ */
+public class Workspace {
+
+    private final String id;
+    private final AtomicReference<ForecastSnapshot> state;
+    private final ForecastCache forecastCache;
+    private final long memoryQuotaBytes;
+    private final int trainingThreads;
+    private final Semaphore trainingPermits;
+
+    // Số request đang dùng workspace; workspace bận không bao giờ bị loại khỏi bộ nhớ
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile long lastAccess = System.currentTimeMillis();
+    // Đang được ghi ra đĩa hoặc xóa: request mới không vào được, phải chờ WorkspaceManager xong
+    private volatile boolean closing;
+
+    // Snapshot đã bị thay thế, chờ trả tài nguyên; sequence đánh dấu thứ tự thay thế
+    private record Retired(long sequence, ForecastSnapshot previous, ForecastSnapshot next) {}
+    private final Queue<Retired> retired = new ConcurrentLinkedQueue<>();
+    private final AtomicLong retiredSequence = new AtomicLong();
+
+    Workspace(String id, ForecastSnapshot snapshot, ForecastCache forecastCache,
+              long memoryQuotaBytes, int trainingThreads) {
+        this.id = id;
+        this.state = new AtomicReference<>(snapshot);
+        this.forecastCache = forecastCache;
+        this.memoryQuotaBytes = memoryQuotaBytes;
+        this.trainingThreads = trainingThreads;
+        this.trainingPermits = new Semaphore(trainingThreads, true);
+    }
+
+    public String getId() { return id; }
+
+    public ForecastSnapshot getSnapshot() { return state.get(); }
+
+    /**
+     * Công bố snapshot mới; hàm cập nhật có thể chạy lại nếu có luồng khác công bố trước
+     */
+    public ForecastSnapshot update(UnaryOperator<ForecastSnapshot> change) {
+        ForecastSnapshot[] previous = new ForecastSnapshot[1];
+        ForecastSnapshot next = state.updateAndGet(current -> {
+            previous[0] = current;
+            return change.apply(current);
+        });
+        if (previous[0] != next) {
+            retired.add(new Retired(retiredSequence.incrementAndGet(), previous[0], next));
+            long horizon = retiredSequence.get();
+            if (inFlight.get() == 0) releaseRetired(horizon);
+        }
+        return next;
+    }
+
+    public ForecastCache getForecastCache() { return forecastCache; }
+
+    public long getMemoryQuotaBytes() { return memoryQuotaBytes; }
+
+    public int getTrainingThreads() { return trainingThreads; }
+
+    /**
+     * Hạn mức CPU: tổng số luồng huấn luyện của workspace chạy cùng lúc
+     */
+    public void acquireTrainingSlots(int threads) throws InterruptedException {
+        trainingPermits.acquire(Math.min(threads, trainingThreads));
+    }
+
+    public void releaseTrainingSlots(int threads) {
+        trainingPermits.release(Math.min(threads, trainingThreads));
+    }
+
+    /**
+     * Số luồng huấn luyện đang chờ hạn mức
+     */
+    public int getTrainingQueueLength() { return trainingPermits.getQueueLength(); }
+
+    public long getLastAccess() { return lastAccess; }
+
+    void enter() {
+        inFlight.incrementAndGet();
+        lastAccess = System.currentTimeMillis();
+    }
+
+    public void release() {
+        lastAccess = System.currentTimeMillis();
+        // Đọc mốc trước khi giảm: mọi snapshot thay thế trước mốc này chỉ có thể được request cũ đọc
+        long horizon = retiredSequence.get();
+        if (inFlight.decrementAndGet() == 0) releaseRetired(horizon);
+    }
+
+    /**
+     * Trả tài nguyên của các snapshot thay thế có thứ tự không vượt quá {@code horizon}
+     */
+    private void releaseRetired(long horizon) {
+        for (Iterator<Retired> it = retired.iterator(); it.hasNext(); ) {
+            Retired entry = it.next();
+            if (entry.sequence() <= horizon && retired.remove(entry)) {
+                entry.previous().releaseReplaced(entry.next());
+            }
+        }
+    }
+
+    /**
+     * Workspace đã rời bộ nhớ (sau khi ghi ra đĩa hoặc bị xóa): trả mọi tài nguyên ngoài heap
+     */
+    void close() {
+        releaseRetired(Long.MAX_VALUE);
+        getSnapshot().releaseAll();
+    }
+
+    boolean isClosing() { return closing; }
+
+    void setClosing(boolean closing) { this.closing = closing; }
+
+    boolean isBusy() {
+        return inFlight.get() > 0;
+    }
+}
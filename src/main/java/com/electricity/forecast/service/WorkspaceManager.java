@@ -0,0 +1,299 @@
+package com.electricity.forecast.service;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Quản lý các workspace theo id: tạo khi dùng lần đầu, khôi phục từ snapshot trên đĩa,
+ * và loại workspace nhàn rỗi khỏi bộ nhớ sau khi ghi snapshot.
+ * Việc vào workspace và việc đánh dấu nó đang đóng cùng chạy trong ConcurrentHashMap.compute trên cùng khóa,
+ * nên một workspace đang có request không bao giờ bị loại giữa chừng. Việc đọc và ghi đĩa chạy ngoài map:
+ * mỗi id có tối đa một thao tác mở/đóng đang chạy ({@code transitions}), request khác của id đó chờ nó xong.
+ * Số workspace trong bộ nhớ được giới hạn bằng bộ đếm chỗ ({@code slots}): chỗ được giữ bằng CAS trước khi mở,
+ * nên nhiều id mở cùng lúc cũng không vượt giới hạn.
+ */
+public class WorkspaceManager {
+
+    public static final String DEFAULT_WORKSPACE = "default";
+
+    private static final Pattern VALID_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    /**
+     * Ghi và đọc snapshot của workspace trên đĩa
+     */
+    public interface SnapshotStore {
+        void save(String id, ForecastSnapshot snapshot) throws IOException;
+
+        /**
+         * Trả về null nếu workspace chưa từng được lưu
+         */
+        ForecastSnapshot load(String id) throws IOException;
+
+        /**
+         * Xóa snapshot và các file dữ liệu nó tham chiếu; {@code current} (có thể null) là snapshot
+         * trong bộ nhớ, có thể tham chiếu file chưa được ghi vào snapshot trên đĩa
+         */
+        void delete(String id, ForecastSnapshot current) throws IOException;
+    }
+
+    private final Map<String, Workspace> workspaces = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Void>> transitions = new ConcurrentHashMap<>();
+    // Số workspace đang trong bộ nhớ cộng số workspace đang được mở
+    private final AtomicInteger slots = new AtomicInteger();
+    private final SnapshotStore store;
+    private final long memoryQuotaBytes;
+    private final int trainingThreads;
+    private final long idleTimeoutMillis;
+    private final int cacheEntries;
+    private final long cacheTtlSeconds;
+    private final int maxWorkspaces;
+
+    private final ScheduledExecutorService evictionScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "workspace-eviction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public WorkspaceManager(SnapshotStore store, long memoryQuotaBytes, int trainingThreads,
+                            long idleTimeoutMillis, int cacheEntries, long cacheTtlSeconds, int maxWorkspaces) {
+        this.store = store;
+        this.memoryQuotaBytes = memoryQuotaBytes;
+        this.trainingThreads = Math.max(1, trainingThreads);
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.cacheEntries = cacheEntries;
+        this.cacheTtlSeconds = cacheTtlSeconds;
+        this.maxWorkspaces = Math.max(1, maxWorkspaces);
+
+        long period = Math.max(1000, Math.min(idleTimeoutMillis / 2, 60_000));
+        evictionScheduler.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Lấy workspace để dùng (tạo hoặc khôi phục nếu cần); phải gọi {@link Workspace#release()} khi xong.
+     * Snapshot được đọc từ đĩa ngoài map; request khác cùng id chờ lần mở này thay vì đọc lần nữa.
+     */
+    public Workspace acquire(String id) {
+        String workspaceId = normalize(id);
+        while (true) {
+            Workspace loaded = acquireIfLoaded(workspaceId);
+            if (loaded != null) return loaded;
+
+            CompletableFuture<Void> transition = new CompletableFuture<>();
+            CompletableFuture<Void> running = transitions.putIfAbsent(workspaceId, transition);
+            if (running != null) {
+                running.join();
+                continue;
+            }
+            try {
+                if (workspaces.containsKey(workspaceId)) continue;
+                reserveSlot();
+                boolean opened = false;
+                try {
+                    Workspace workspace = open(workspaceId);
+                    workspace.enter();
+                    workspaces.put(workspaceId, workspace);
+                    opened = true;
+                    return workspace;
+                } finally {
+                    if (!opened) slots.decrementAndGet();
+                }
+            } finally {
+                finish(workspaceId, transition);
+            }
+        }
+    }
+
+    /**
+     * Như {@link #acquire} nhưng không tạo hay khôi phục workspace; null nếu workspace không nằm trong bộ nhớ
+     * (hoặc đang được ghi ra đĩa)
+     */
+    public Workspace acquireIfLoaded(String id) {
+        Workspace[] entered = {null};
+        workspaces.computeIfPresent(normalize(id), (key, workspace) -> {
+            if (!workspace.isClosing()) {
+                workspace.enter();
+                entered[0] = workspace;
+            }
+            return workspace;
+        });
+        return entered[0];
+    }
+
+    public boolean isLoaded(String id) {
+        return workspaces.containsKey(normalize(id));
+    }
+
+    public static String normalize(String id) {
+        if (id == null || id.isBlank()) return DEFAULT_WORKSPACE;
+        if (!VALID_ID.matcher(id).matches()) {
+            throw new IllegalArgumentException("Invalid workspace id: " + id + " (letters, digits, '-' and '_', max 64)");
+        }
+        return id;
+    }
+
+    /**
+     * Các workspace đang nằm trong bộ nhớ
+     */
+    public Collection<Workspace> getActive() {
+        return Collections.unmodifiableCollection(workspaces.values());
+    }
+
+    /**
+     * Xóa workspace khỏi bộ nhớ và đĩa (cả file CSV đã tải lên); trả về false nếu workspace đang bận
+     */
+    public boolean delete(String id) throws IOException {
+        String workspaceId = normalize(id);
+        CompletableFuture<Void> transition = new CompletableFuture<>();
+        CompletableFuture<Void> running;
+        while ((running = transitions.putIfAbsent(workspaceId, transition)) != null) {
+            running.join();
+        }
+        try {
+            boolean[] busy = {false};
+            Workspace closing = markClosing(workspaceId, workspace -> {
+                busy[0] = workspace.isBusy();
+                return !busy[0];
+            });
+            if (busy[0]) return false;
+            try {
+                store.delete(workspaceId, closing != null ? closing.getSnapshot() : null);
+            } catch (IOException e) {
+                if (closing != null) closing.setClosing(false);
+                throw e;
+            }
+            if (closing != null) {
+                remove(workspaceId, closing);
+                closing.close();
+            }
+            return true;
+        } finally {
+            finish(workspaceId, transition);
+        }
+    }
+
+    /**
+     * Ghi snapshot và bỏ workspace khỏi bộ nhớ ngay, không chờ hết thời gian nhàn rỗi
+     * (dùng khi vượt ngân sách bộ nhớ); trả về false nếu workspace đang bận hoặc không ghi được
+     */
+    public boolean spill(String id) {
+        return unload(id, workspace -> true);
+    }
+
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        for (String id : new ArrayList<>(workspaces.keySet())) {
+            unload(id, workspace -> now - workspace.getLastAccess() >= idleTimeoutMillis);
+        }
+    }
+
+    /**
+     * Ghi snapshot của mọi workspace (khi tắt ứng dụng) để khởi động lại vẫn còn dữ liệu và mô hình
+     */
+    public void shutdown() {
+        evictionScheduler.shutdownNow();
+        for (Workspace workspace : workspaces.values()) {
+            persist(workspace);
+        }
+    }
+
+    /**
+     * Ghi snapshot rồi bỏ workspace khỏi bộ nhớ nếu nó rảnh và thỏa {@code eligible}.
+     * Workspace được đánh dấu đang đóng trong map (cùng khóa với việc vào workspace), còn việc ghi đĩa
+     * chạy ngoài map; nếu id đang có thao tác mở/đóng khác thì bỏ qua.
+     */
+    private boolean unload(String id, Predicate<Workspace> eligible) {
+        CompletableFuture<Void> transition = new CompletableFuture<>();
+        if (transitions.putIfAbsent(id, transition) != null) return false;
+        try {
+            Workspace closing = markClosing(id, workspace -> !workspace.isBusy() && eligible.test(workspace));
+            if (closing == null) return false;
+            if (!persist(closing)) {
+                closing.setClosing(false);
+                return false;
+            }
+            remove(id, closing);
+            closing.close();
+            return true;
+        } finally {
+            finish(id, transition);
+        }
+    }
+
+    private Workspace markClosing(String id, Predicate<Workspace> eligible) {
+        Workspace[] closing = {null};
+        workspaces.computeIfPresent(id, (key, workspace) -> {
+            if (eligible.test(workspace)) {
+                workspace.setClosing(true);
+                closing[0] = workspace;
+            }
+            return workspace;
+        });
+        return closing[0];
+    }
+
+    private void remove(String id, Workspace workspace) {
+        if (workspaces.remove(id, workspace)) slots.decrementAndGet();
+    }
+
+    private void finish(String id, CompletableFuture<Void> transition) {
+        transitions.remove(id, transition);
+        transition.complete(null);
+    }
+
+    /**
+     * Giữ một chỗ cho workspace sắp mở (mọi id hợp lệ đều tạo workspace): khi đầy, bỏ các workspace rỗng
+     * đang rảnh rồi thử lại; nếu vẫn đầy thì từ chối. Chỗ được trả khi workspace bị bỏ khỏi bộ nhớ.
+     */
+    private void reserveSlot() {
+        if (tryReserveSlot()) return;
+        for (String id : new ArrayList<>(workspaces.keySet())) {
+            unload(id, workspace -> !workspace.getSnapshot().hasData() && workspace.getSnapshot().getModels().isEmpty());
+        }
+        if (!tryReserveSlot()) {
+            throw new IllegalArgumentException("Too many workspaces loaded (max " + maxWorkspaces
+                + "); delete an unused workspace first");
+        }
+    }
+
+    private boolean tryReserveSlot() {
+        while (true) {
+            int used = slots.get();
+            if (used >= maxWorkspaces) return false;
+            if (slots.compareAndSet(used, used + 1)) return true;
+        }
+    }
+
+    private Workspace open(String id) {
+        ForecastSnapshot snapshot = null;
+        try {
+            snapshot = store.load(id);
+        } catch (IOException e) {
+            System.out.println("Cannot restore workspace " + id + ": " + e.getMessage());
+        }
+        if (snapshot != null) {
+            System.out.println("Workspace " + id + " restored from snapshot");
+        }
+        return new Workspace(id, snapshot != null ? snapshot : ForecastSnapshot.empty(),
+                new ForecastCache(cacheEntries, cacheTtlSeconds), memoryQuotaBytes, trainingThreads);
+    }
+
+    /**
+     * Trả về true nếu đã ghi snapshot và workspace có thể bỏ khỏi bộ nhớ.
+     * Workspace rỗng cũng được ghi để store xóa snapshot cũ (sau khi reset).
+     */
+    private boolean persist(Workspace workspace) {
+        ForecastSnapshot snapshot = workspace.getSnapshot();
+        try {
+            store.save(workspace.getId(), snapshot);
+            System.out.println("Workspace " + workspace.getId() + " saved to snapshot");
+            return true;
+        } catch (IOException e) {
+            System.out.println("Cannot save workspace " + workspace.getId() + ": " + e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.electricity.forecast.engine;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HoltWintersModelTest {
+
+	private static double[] seasonalSeries(int length) {
+		double[] series = new double[length];
+		for (int t = 0; t < length; t++) {
+			series[t] = 1000
+				+ 200 * Math.sin(2 * Math.PI * t / 24)
+				+ 80 * Math.cos(2 * Math.PI * t / 168)
+				+ 0.05 * t;
+		}
+		return series;
+	}
+
+	@Test
+	void forecastsDailyAndWeeklySeasonality() {
+		double[] series = seasonalSeries(24 * 7 * 6 + 168);
+		int train = series.length - 168;
+
+		HoltWintersModel model = HoltWintersModel.fit(java.util.Arrays.copyOf(series, train));
+		double[] forecast = model.forecast(168);
+
+		double mae = 0;
+		for (int h = 0; h < forecast.length; h++) {
+			mae += Math.abs(forecast[h] - series[train + h]);
+		}
+		mae /= forecast.length;
+
+		assertEquals(168, model.getParameters().get("weeklyPeriod"));
+		assertTrue(mae < 20, "MAE too large: " + mae);
+	}
+
+	@Test
+	void fallsBackToHoltForShortSeries() {
+		double[] series = {10, 11, 12, 13, 14, 15, 16, 17};
+
+		HoltWintersModel model = HoltWintersModel.fit(series);
+
+		assertEquals(0, model.getParameters().get("dailyPeriod"));
+		assertTrue(model.forecast(1)[0] > 16);
+	}
+}
@@ -0,0 +1,66 @@
+package com.electricity.forecast.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PredictionIntervalsTest {
+
+	private static double[] autocorrelatedResiduals(int length) {
+		Random random = new Random(3);
+		double[] residuals = new double[length];
+		double error = 0;
+		for (int t = 0; t < length; t++) {
+			error = 0.8 * error + random.nextGaussian() * 50;
+			residuals[t] = error;
+		}
+		return residuals;
+	}
+
+	@Test
+	void bandsAreOrderedAndWidenWithHorizon() {
+		double[] point = new double[168];
+		java.util.Arrays.fill(point, 1000);
+
+		double[][] bands = PredictionIntervals.bootstrap(point, autocorrelatedResiduals(168), 1000,
+			PredictionIntervals.DEFAULT_QUANTILES, 11);
+
+		for (int h = 0; h < point.length; h++) {
+			assertTrue(bands[0][h] <= bands[1][h] && bands[1][h] <= bands[2][h], "quantiles crossed at step " + h);
+		}
+		assertEquals(1000, bands[1][167], 50);
+		assertTrue(bands[2][167] - bands[0][167] > bands[2][0] - bands[0][0], "band should widen with horizon");
+	}
+
+	@Test
+	void sameSeedGivesSameBands() {
+		double[] point = {10, 20, 30, 40};
+		double[] residuals = autocorrelatedResiduals(50);
+
+		double[][] first = PredictionIntervals.bootstrap(point, residuals, 500, PredictionIntervals.DEFAULT_QUANTILES, 5);
+		double[][] second = PredictionIntervals.bootstrap(point, residuals, 500, PredictionIntervals.DEFAULT_QUANTILES, 5);
+
+		for (int q = 0; q < first.length; q++) {
+			assertArrayEquals(first[q], second[q]);
+		}
+	}
+
+	@Test
+	void stepwiseSimulatorMatchesBatchBootstrap() {
+		double[] point = new double[48];
+		for (int h = 0; h < point.length; h++) point[h] = 500 + 10 * h;
+		double[] residuals = autocorrelatedResiduals(100);
+
+		double[][] bands = PredictionIntervals.bootstrap(point, residuals, 300, PredictionIntervals.DEFAULT_QUANTILES, 9);
+		PredictionIntervals.PathSimulator simulator = PredictionIntervals.simulator(residuals, 300, 9);
+		double[] band = new double[3];
+		for (int h = 0; h < point.length; h++) {
+			simulator.next(point[h], PredictionIntervals.DEFAULT_QUANTILES, band);
+			for (int q = 0; q < 3; q++) {
+				assertEquals(bands[q][h], band[q], 1e-9);
+			}
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package com.electricity.forecast.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeriesDiagnosticsTest {
+
+	private static double[] dailyLoad(int hours, long seed) {
+		SplittableRandom random = new SplittableRandom(seed);
+		double[] series = new double[hours];
+		for (int t = 0; t < hours; t++) {
+			series[t] = 1000 + 200 * Math.sin(2 * Math.PI * t / 24) + 50 * Math.sin(2 * Math.PI * t / 168)
+					+ 20 * random.nextGaussian();
+		}
+		return series;
+	}
+
+	@Test
+	void fftAcfMatchesDirectSum() {
+		double[] series = dailyLoad(1000, 7);
+		SeriesDiagnostics diagnostics = SeriesDiagnostics.compute(series, 200, 5);
+
+		double mean = 0;
+		for (double v : series) mean += v;
+		mean /= series.length;
+		double variance = 0;
+		for (double v : series) variance += (v - mean) * (v - mean);
+		for (int k : new int[] {1, 12, 24, 168, 200}) {
+			double sum = 0;
+			for (int t = k; t < series.length; t++) sum += (series[t] - mean) * (series[t - k] - mean);
+			assertEquals(sum / variance, diagnostics.acf()[k], 1e-9, "lag " + k);
+		}
+	}
+
+	@Test
+	void pacfOfAr1CutsOffAfterLagOne() {
+		SplittableRandom random = new SplittableRandom(3);
+		double[] series = new double[5000];
+		for (int t = 1; t < series.length; t++) series[t] = 0.6 * series[t - 1] + random.nextGaussian();
+		SeriesDiagnostics diagnostics = SeriesDiagnostics.compute(series, 20, 3);
+
+		assertEquals(0.6, diagnostics.pacf()[1], 0.05);
+		for (int k = 2; k <= 20; k++) {
+			assertTrue(Math.abs(diagnostics.pacf()[k]) < 0.06, "lag " + k);
+		}
+		SeriesDiagnostics.ArimaOrder order = diagnostics.suggestedArimaOrder(5);
+		assertEquals(0, order.d());
+		assertEquals(1, order.p());
+	}
+
+	@Test
+	void periodogramFindsDailyAndWeeklyCycles() {
+		SeriesDiagnostics diagnostics = SeriesDiagnostics.compute(dailyLoad(24 * 7 * 8, 11));
+
+		assertEquals(24, diagnostics.periods().get(0).lag());
+		assertEquals(168, diagnostics.periods().get(1).lag());
+		assertEquals(24, diagnostics.dominantPeriod(2, 168));
+		assertEquals(24, diagnostics.suggestedWindow(2, 168));
+	}
+}
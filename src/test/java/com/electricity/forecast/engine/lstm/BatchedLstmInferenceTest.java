@@ -0,0 +1,126 @@
+package com.electricity.forecast.engine.lstm;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchedLstmInferenceTest {
+
+	private static double[] sine(int length, double phase) {
+		double[] series = new double[length];
+		for (int t = 0; t < length; t++) {
+			series[t] = 500 + 100 * Math.sin(2 * Math.PI * t / 24 + phase);
+		}
+		return series;
+	}
+
+	@Test
+	void batchedForecastMatchesSingleSeriesForecast() {
+		LstmNetwork network = new LstmNetwork(8, 2, 12);
+		network.initialize(7);
+		network.setScaler(500, 100);
+
+		double[][] contexts = {sine(40, 0), sine(30, 1), sine(5, 2)};
+		double[][] batched = BatchedLstmInference.forecast(network, contexts, 48);
+
+		for (int b = 0; b < contexts.length; b++) {
+			double[] single = BatchedLstmInference.forecast(network, new double[][] {contexts[b]}, 48)[0];
+			assertArrayEquals(single, batched[b], 1e-9);
+		}
+	}
+
+	@Test
+	void recursiveStepsCarryStateInsteadOfReplayingTheWindow() {
+		LstmNetwork network = new LstmNetwork(8, 2, 12);
+		network.initialize(11);
+		network.setScaler(500, 100);
+		InferenceWeights weights = InferenceWeights.from(network, WeightPrecision.FP64);
+		double[] context = sine(40, 0);
+
+		// Chạy tay: cửa sổ một lần, sau đó mỗi bước đệ quy là đúng một bước
+		BatchedLstmInference engine = new BatchedLstmInference(weights, 1);
+		double[] in = new double[1];
+		double[] out = new double[1];
+		for (int t = context.length - 12; t < context.length; t++) {
+			in[0] = weights.scale(context[t]);
+			engine.step(in, out);
+		}
+		double[] expected = new double[24];
+		for (int step = 0; step < expected.length; step++) {
+			if (step > 0) {
+				in[0] = out[0];
+				engine.step(in, out);
+			}
+			expected[step] = weights.unscale(out[0]);
+		}
+
+		assertArrayEquals(expected, BatchedLstmInference.forecast(weights, new double[][] {context}, 24)[0], 1e-12);
+	}
+
+	@Test
+	void trainingReducesValidationLoss() {
+		double[] series = sine(600, 0);
+		LstmConfig config = new LstmConfig();
+		config.setWindow(12);
+		config.setHiddenSize(8);
+		config.setLayers(2);
+		config.setEpochs(1);
+
+		LstmTrainer trainer = new LstmTrainer(config, new LstmTrainingSet(series, 500, 550));
+		trainer.trainEpoch();
+		double early = trainer.validationLoss();
+		for (int epoch = 0; epoch < 15; epoch++) {
+			trainer.trainEpoch();
+		}
+
+		assertTrue(trainer.validationLoss() < early * 0.5,
+			"validation loss did not improve: " + early + " -> " + trainer.validationLoss());
+	}
+
+	@Test
+	void quantizedWeightsStayCloseToFullPrecision() {
+		LstmNetwork network = new LstmNetwork(16, 1, 24);
+		network.initialize(3);
+		network.setScaler(500, 100);
+		double[][] contexts = {sine(48, 0), sine(48, 0.5)};
+
+		double[][] full = BatchedLstmInference.forecast(network, contexts, 24);
+		for (WeightPrecision precision : new WeightPrecision[] {WeightPrecision.FP16, WeightPrecision.INT8}) {
+			InferenceWeights weights = InferenceWeights.from(network, precision);
+			double[][] quantized = BatchedLstmInference.forecast(weights, contexts, 24);
+			for (int b = 0; b < contexts.length; b++) {
+				assertArrayEquals(full[b], quantized[b], 5.0, precision.name());
+			}
+			assertTrue(weights.footprintBytes() < InferenceWeights.from(network, WeightPrecision.FP64).footprintBytes() / 3);
+		}
+	}
+
+	@Test
+	void offHeapWeightsMatchHeapWeightsUntilReleased() throws Exception {
+		LstmNetwork network = new LstmNetwork(16, 2, 24);
+		network.initialize(5);
+		network.setScaler(500, 100);
+		double[][] contexts = {sine(48, 0), sine(30, 1)};
+
+		InferenceWeights heap = InferenceWeights.from(network, WeightPrecision.FP64);
+		InferenceWeights offHeap = heap.toOffHeap();
+		assertTrue(offHeap.isOffHeap());
+		double[][] expected = BatchedLstmInference.forecast(heap, contexts, 24);
+		double[][] actual = BatchedLstmInference.forecast(offHeap, contexts, 24);
+		for (int b = 0; b < contexts.length; b++) {
+			assertArrayEquals(expected[b], actual[b], 1e-9);
+		}
+
+		// Cùng định dạng tuần tự hóa: đọc lại thành bản trên heap
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		offHeap.writeTo(new DataOutputStream(bytes));
+		InferenceWeights restored = InferenceWeights.readFrom(
+			new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+		assertArrayEquals(expected[0], BatchedLstmInference.forecast(restored, contexts, 24)[0], 1e-9);
+
+		offHeap.release();
+		assertThrows(IllegalStateException.class, () -> BatchedLstmInference.forecast(offHeap, contexts, 24));
+	}
+}
@@ -0,0 +1,26 @@
+package com.electricity.forecast.engine.lstm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LstmSearchSpaceTest {
+
+	private static final LstmSearchSpace.Limits LIMITS = new LstmSearchSpace.Limits(168, 256, 4, 100, 200, 8);
+
+	@Test
+	void valuesOutsideTheLimitsAreRejected() {
+		assertThrows(IllegalArgumentException.class, () -> LstmSearchSpace.fromMap(Map.of("hiddenSize", 100000), LIMITS));
+		assertThrows(IllegalArgumentException.class, () -> LstmSearchSpace.fromMap(Map.of("layers", List.of(1, 0)), LIMITS));
+		assertThrows(IllegalArgumentException.class, () -> LstmSearchSpace.fromMap(Map.of("parallelism", 10000), LIMITS));
+		assertThrows(IllegalArgumentException.class, () -> LstmSearchSpace.fromMap(Map.of("window", List.of("24")), LIMITS));
+		assertThrows(IllegalArgumentException.class, () -> LstmSearchSpace.fromMap(Map.of("learningRate", 0), LIMITS));
+
+		LstmSearchSpace space = LstmSearchSpace.fromMap(Map.of("trials", 5, "parallelism", 2, "window", 48), LIMITS);
+		assertEquals(5, space.getTrials());
+		assertEquals(2, space.getParallelism());
+	}
+}
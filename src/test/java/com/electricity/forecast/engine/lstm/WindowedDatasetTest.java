@@ -0,0 +1,56 @@
+package com.electricity.forecast.engine.lstm;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WindowedDatasetTest {
+
+	@Test
+	void windowsAreViewsOverTheMatrix() {
+		double[][] columns = new double[2][20];
+		for (int r = 0; r < 20; r++) {
+			columns[0][r] = r;
+			columns[1][r] = 100 + r;
+		}
+		WindowedDataset dataset = WindowedDataset.fromColumns(columns, 4, 0);
+
+		WindowedDataset.Split split = dataset.split(12, 16);
+		assertArrayEquals(new int[] {0, 1, 2, 3, 4, 5, 6, 7}, split.train());
+		assertArrayEquals(new int[] {8, 9, 10, 11}, split.validation());
+		assertArrayEquals(new int[] {12, 13, 14, 15}, split.test());
+		assertEquals(12.0, dataset.target(split.validation()[0]));
+
+		WindowedDataset.Batch batch = dataset.newBatch(3);
+		dataset.fill(new int[] {5, 2}, 0, 2, batch);
+		assertEquals(2, batch.size());
+		for (int t = 0; t < 4; t++) {
+			assertEquals(5 + t, batch.inputs()[t][0]);
+			assertEquals(105 + t, batch.inputs()[t][1]);
+			assertEquals(2 + t, batch.inputs()[t][2]);
+			assertEquals(102 + t, batch.inputs()[t][3]);
+		}
+		assertArrayEquals(new double[] {9, 6}, new double[] {batch.targets()[0], batch.targets()[1]});
+	}
+
+	@Test
+	void prefetchedTrainingMatchesSequentialTraining() {
+		double[] series = new double[400];
+		for (int t = 0; t < series.length; t++) series[t] = 500 + 100 * Math.sin(2 * Math.PI * t / 24);
+		LstmTrainingSet data = new LstmTrainingSet(series, 320, 360);
+
+		double[] losses = new double[2];
+		for (int run = 0; run < 2; run++) {
+			LstmConfig config = new LstmConfig();
+			config.setWindow(12);
+			config.setHiddenSize(8);
+			config.setBatchSize(16);
+			config.setPrefetch(run == 1);
+			LstmTrainer trainer = new LstmTrainer(config, data);
+			for (int epoch = 0; epoch < 3; epoch++) trainer.trainEpoch();
+			losses[run] = trainer.validationLoss();
+		}
+
+		assertEquals(losses[0], losses[1], 0.0);
+	}
+}
@@ -0,0 +1,113 @@
+package com.electricity.forecast.service;
+
+import com.electricity.forecast.engine.FittedModel;
+import com.electricity.forecast.engine.ForecastEngine;
+import com.electricity.forecast.engine.ModelRegistry;
+import com.electricity.forecast.engine.TrainingData;
+import com.electricity.forecast.model.BatchForecastRequest;
+import com.electricity.forecast.model.ForecastJob;
+import com.electricity.forecast.model.ModelMetrics;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchForecastServiceTest {
+
+	private final List<Integer> predictHorizons = Collections.synchronizedList(new ArrayList<>());
+	private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+	private final Map<String, Workspace> workspaces = new HashMap<>();
+
+	@Test
+	void mixedHorizonsShareOneRunPerWorkspaceAndModel() {
+		BatchForecastService service = new BatchForecastService();
+		ReflectionTestUtils.setField(service, "forecastService", new ForecastService() {
+			@Override
+			public Workspace acquireWorkspace(String workspaceId) {
+				Workspace workspace = workspaces.computeIfAbsent(workspaceId, id -> new Workspace(id,
+						ForecastSnapshot.empty().withModel("m", new CountingModel(), 0), new ForecastCache(8, 600), 0, 1));
+				workspace.enter();
+				return workspace;
+			}
+		});
+		ReflectionTestUtils.setField(service, "modelRegistry", new ModelRegistry(List.of(new Engine())));
+		ReflectionTestUtils.setField(service, "maxJobs", 100);
+		ReflectionTestUtils.setField(service, "maxForecastHours", 1000);
+		ReflectionTestUtils.setField(service, "intervalPaths", 50);
+
+		BatchForecastRequest request = new BatchForecastRequest();
+		request.setJobs(List.of(
+				job("a", 24, null), job("a", 6, null), job("a", 12, List.of(5.0, 7.0)),
+				job("a", 3, List.of(1.0)), job("b", 48, null), job("b", 48, null), job("a", 5000, null)));
+		request.setIntervals(true);
+		Map<String, Object> result = service.run(request);
+
+		assertEquals(2, result.get("groups"));
+		assertEquals(3, result.get("modelRuns"));
+		assertEquals(List.of(24, 48), predictHorizons.stream().sorted().toList());
+		assertEquals(List.of(2), batchSizes);
+
+		List<Map<String, Object>> jobs = castJobs(result.get("jobs"));
+		assertEquals(get(jobs, 0, "values").subList(0, 6), get(jobs, 1, "values"));
+		assertEquals(get(jobs, 0, "p90").subList(0, 6), get(jobs, 1, "p90"));
+		assertEquals(List.of(8.0, 9.0, 10.0), get(jobs, 2, "values").subList(0, 3));
+		assertEquals(List.of(2.0, 3.0, 4.0), get(jobs, 3, "values"));
+		assertEquals(get(jobs, 4, "values"), get(jobs, 5, "values"));
+		assertEquals(false, jobs.get(6).get("success"));
+		workspaces.values().forEach(workspace -> assertFalse(workspace.isBusy()));
+	}
+
+	private static ForecastJob job(String workspace, int hours, List<Double> history) {
+		ForecastJob job = new ForecastJob();
+		job.setWorkspace(workspace);
+		job.setModel("m");
+		job.setHours(hours);
+		job.setHistory(history);
+		return job;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Map<String, Object>> castJobs(Object jobs) {
+		return (List<Map<String, Object>>) jobs;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Double> get(List<Map<String, Object>> jobs, int index, String key) {
+		return (List<Double>) jobs.get(index).get(key);
+	}
+
+	private final class CountingModel implements FittedModel {
+		public String getEngineKey() { return "m"; }
+
+		public double[] predict(int horizon) {
+			predictHorizons.add(horizon);
+			double[] values = new double[horizon];
+			for (int h = 0; h < horizon; h++) values[h] = 100 + h;
+			return values;
+		}
+
+		public boolean supportsContexts() { return true; }
+
+		public double[][] predictBatch(double[][] contexts, int horizon) {
+			batchSizes.add(contexts.length);
+			double[][] forecasts = new double[contexts.length][horizon];
+			for (int c = 0; c < contexts.length; c++) {
+				for (int h = 0; h < horizon; h++) forecasts[c][h] = contexts[c][contexts[c].length - 1] + 1 + h;
+			}
+			return forecasts;
+		}
+
+		public double[] getResiduals() { return new double[] {-1, 0, 1}; }
+		public byte[] serialize() { return new byte[0]; }
+		public ModelMetrics getMetrics() { return new ModelMetrics(); }
+	}
+
+	private static final class Engine implements ForecastEngine {
+		public String getKey() { return "m"; }
+		public String getName() { return "M"; }
+		public FittedModel fit(TrainingData data) { throw new UnsupportedOperationException(); }
+		public FittedModel deserialize(byte[] bytes) { throw new UnsupportedOperationException(); }
+	}
+}
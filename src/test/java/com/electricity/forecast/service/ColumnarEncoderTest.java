@@ -0,0 +1,47 @@
+package com.electricity.forecast.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarEncoderTest {
+
+	@Test
+	void writesLittleEndianBlocks() {
+		byte[] bytes = new ColumnarEncoder(false)
+			.addRegular("lstm", 1_700_000_000L, 3600, new double[] {1.5, 2.5})
+			.addExplicit("x", new long[] {10, 30}, new double[] {3, Double.NaN})
+			.toByteArray();
+		ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+
+		byte[] magic = new byte[4];
+		buffer.get(magic);
+		assertEquals("EFC1", new String(magic, StandardCharsets.US_ASCII));
+		assertEquals(4, buffer.get());
+		buffer.get();
+		assertEquals(2, buffer.getShort());
+
+		assertEquals(4, buffer.getShort());
+		buffer.position(buffer.position() + 4);
+		assertEquals(0, buffer.get());
+		assertEquals(2, buffer.getInt());
+		assertEquals(1_700_000_000L, buffer.getLong());
+		assertEquals(3600, buffer.getInt());
+		assertEquals(1.5f, buffer.getFloat());
+		assertEquals(2.5f, buffer.getFloat());
+
+		assertEquals(1, buffer.getShort());
+		buffer.get();
+		assertEquals(1, buffer.get());
+		assertEquals(2, buffer.getInt());
+		assertEquals(10, buffer.getLong());
+		assertEquals(30, buffer.getLong());
+		assertEquals(3f, buffer.getFloat());
+		assertTrue(Float.isNaN(buffer.getFloat()));
+		assertFalse(buffer.hasRemaining());
+	}
+}
@@ -0,0 +1,72 @@
+package com.electricity.forecast.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DataPreprocessorTest {
+
+	private static final LocalDateTime START = LocalDateTime.of(2023, 1, 1, 0, 0);
+	private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+	private static Map<String, Object> raw(int hour, String load) {
+		Map<String, Object> row = new HashMap<>();
+		row.put("time", START.plusHours(hour).format(FORMAT));
+		row.put("Load", load);
+		row.put("temp", String.valueOf(10.0 + hour % 5));
+		return row;
+	}
+
+	private static List<Map<String, Object>> rows(int from, int to) {
+		List<Map<String, Object>> rows = new ArrayList<>();
+		for (int h = from; h < to; h++) rows.add(raw(h, String.valueOf(1000.0 + (h % 24) * 10)));
+		return rows;
+	}
+
+	@Test
+	void appendedRowsUsePersistedParameters() {
+		DataPreprocessor preprocessor = new DataPreprocessor();
+		DataPreprocessor.Prepared base = preprocessor.prepare(rows(0, 48), "load", PipelineTrace.disabled());
+		PreprocessingState state = base.state();
+		assertEquals(START.plusHours(47), state.getLastTimestamp());
+
+		List<Map<String, Object>> tail = rows(50, 53);
+		tail.add(0, raw(47, "1.0"));         // không mới hơn dòng cuối: bỏ
+		tail.add(2, raw(51, null));          // thiếu giá trị mục tiêu: nội suy
+		tail.remove(3);
+		DataPreprocessor.Prepared appended = preprocessor.appendData(state, tail, PipelineTrace.disabled());
+
+		assertEquals(3, appended.rows().size());
+		assertEquals(START.plusHours(52), appended.state().getLastTimestamp());
+		double[] scaler = state.getScaler().get("load");
+		for (Map<String, Object> row : appended.rows()) {
+			double load = ((Number) row.get("load")).doubleValue();
+			assertEquals((load - scaler[0]) / scaler[1], (Double) row.get("load_scaled"), 1e-12);
+		}
+		double before = ((Number) appended.rows().get(0).get("load")).doubleValue();
+		double after = ((Number) appended.rows().get(2).get("load")).doubleValue();
+		assertEquals((before + after) / 2, ((Number) appended.rows().get(1).get("load")).doubleValue(), 1e-12);
+	}
+
+	@Test
+	void appendMatchesFullRunWhenParametersAreUnchanged() {
+		DataPreprocessor preprocessor = new DataPreprocessor();
+		// Hai ngày đủ: thêm một ngày không đổi mean/std của chuỗi theo giờ
+		List<Map<String, Object>> full = preprocessor.preprocessData(rows(0, 72), "load");
+		DataPreprocessor.Prepared base = preprocessor.prepare(rows(0, 48), "load", PipelineTrace.disabled());
+		DataPreprocessor.Prepared tail = preprocessor.appendData(base.state(), rows(48, 72), PipelineTrace.disabled());
+
+		assertEquals(24, tail.rows().size());
+		for (int i = 0; i < 24; i++) {
+			Map<String, Object> expected = full.get(48 + i);
+			Map<String, Object> actual = tail.rows().get(i);
+			assertEquals(expected.get("timestamp"), actual.get("timestamp"));
+			assertEquals(expected.get("load"), actual.get("load"));
+			assertEquals((Double) expected.get("load_scaled"), (Double) actual.get("load_scaled"), 1e-9);
+		}
+	}
+}
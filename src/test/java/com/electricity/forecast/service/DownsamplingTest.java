@@ -0,0 +1,38 @@
+package com.electricity.forecast.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DownsamplingTest {
+
+	@Test
+	void keepsEndpointsAndSpikes() {
+		int n = 10_000;
+		double[] x = new double[n];
+		double[] y = new double[n];
+		for (int i = 0; i < n; i++) {
+			x[i] = i;
+			y[i] = Math.sin(2 * Math.PI * i / 24);
+		}
+		y[4321] = 50;
+		y[7654] = -50;
+
+		int[] selected = Downsampling.lttb(x, y, 200);
+
+		assertEquals(200, selected.length);
+		assertEquals(0, selected[0]);
+		assertEquals(n - 1, selected[selected.length - 1]);
+		for (int i = 1; i < selected.length; i++) {
+			assertTrue(selected[i] > selected[i - 1]);
+		}
+		assertTrue(java.util.Arrays.stream(selected).anyMatch(i -> i == 4321));
+		assertTrue(java.util.Arrays.stream(selected).anyMatch(i -> i == 7654));
+	}
+
+	@Test
+	void shortSeriesIsUnchanged() {
+		double[] values = {1, 2, 3, 4};
+		assertArrayEquals(new int[] {0, 1, 2, 3}, Downsampling.lttb(values, values, 10));
+	}
+}
@@ -0,0 +1,112 @@
+package com.electricity.forecast.service;
+
+import com.electricity.forecast.engine.ModelRegistry;
+import com.electricity.forecast.model.ForecastResult;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ForecastCacheTest {
+
+	private final ForecastService service = new ForecastService();
+	private final List<Integer> computed = new ArrayList<>();
+	private final IntFunction<ForecastResult> compute = hours -> {
+		computed.add(hours);
+		return forecast(hours);
+	};
+
+	ForecastCacheTest() {
+		ReflectionTestUtils.setField(service, "modelRegistry", new ModelRegistry(List.of()));
+	}
+
+	@Test
+	void exactHitReturnsTheCachedResult() {
+		ForecastCache cache = new ForecastCache(8, 600);
+		ForecastResult first = cache.get(1, 1, 24, compute, service::forecastPrefix);
+		ForecastResult second = cache.get(1, 1, 24, compute, service::forecastPrefix);
+
+		assertSame(first, second);
+		assertEquals(List.of(24), computed);
+		assertEquals(1L, cache.getStats().get("hits"));
+	}
+
+	@Test
+	void shorterHorizonIsSlicedFromALongerEntry() {
+		ForecastCache cache = new ForecastCache(8, 600);
+		ForecastResult longer = cache.get(1, 1, 48, compute, service::forecastPrefix);
+		ForecastResult shorter = cache.get(1, 1, 12, compute, service::forecastPrefix);
+
+		assertEquals(List.of(48), computed);
+		assertEquals(1L, cache.getStats().get("prefixHits"));
+		assertEquals(longer.getForecasts().get("m").subList(0, 12), shorter.getForecasts().get("m"));
+		assertEquals(longer.getIntervals().get("m").get("p10").subList(0, 12), shorter.getIntervals().get("m").get("p10"));
+		assertEquals(longer.getIntervals().get("m").get("p90").subList(0, 12), shorter.getIntervals().get("m").get("p90"));
+		assertEquals(longer.getTimestamps().subList(0, 12), shorter.getTimestamps());
+	}
+
+	@Test
+	void versionBumpMisses() {
+		ForecastCache cache = new ForecastCache(8, 600);
+		cache.get(1, 1, 48, compute, service::forecastPrefix);
+		cache.get(1, 2, 24, compute, service::forecastPrefix);
+		cache.get(2, 2, 24, compute, service::forecastPrefix);
+
+		assertEquals(List.of(48, 24, 24), computed);
+		assertEquals(3L, cache.getStats().get("misses"));
+	}
+
+	@Test
+	void expiredEntriesAreRecomputed() throws InterruptedException {
+		ForecastCache cache = new ForecastCache(8, 0);
+		cache.get(1, 1, 24, compute, service::forecastPrefix);
+		Thread.sleep(5);
+		cache.get(1, 1, 24, compute, service::forecastPrefix);
+		cache.get(1, 1, 12, compute, service::forecastPrefix);
+
+		assertEquals(List.of(24, 24, 12), computed);
+	}
+
+	@Test
+	void leastRecentlyUsedEntryIsEvicted() throws InterruptedException {
+		ForecastCache cache = new ForecastCache(2, 600);
+		cache.get(1, 1, 24, compute, service::forecastPrefix);
+		Thread.sleep(1);
+		cache.get(1, 2, 24, compute, service::forecastPrefix);
+		Thread.sleep(1);
+		cache.get(1, 1, 24, compute, service::forecastPrefix);
+		Thread.sleep(1);
+		cache.get(1, 3, 24, compute, service::forecastPrefix);
+
+		assertEquals(1L, cache.getStats().get("evictions"));
+		assertEquals(2, cache.getStats().get("entries"));
+		cache.get(1, 1, 24, compute, service::forecastPrefix);
+		cache.get(1, 2, 24, compute, service::forecastPrefix);
+		assertEquals(List.of(24, 24, 24, 24), computed);
+	}
+
+	private static ForecastResult forecast(int hours) {
+		List<Double> values = new ArrayList<>();
+		List<Double> p10 = new ArrayList<>();
+		List<Double> p90 = new ArrayList<>();
+		List<String> timestamps = new ArrayList<>();
+		for (int h = 1; h <= hours; h++) {
+			values.add(100.0 + h);
+			p10.add(90.0 + h);
+			p90.add(110.0 + h);
+			timestamps.add(String.format("T+%02d:00", h));
+		}
+		Map<String, List<Double>> bands = new LinkedHashMap<>();
+		bands.put("p10", p10);
+		bands.put("p90", p90);
+
+		ForecastResult result = new ForecastResult(true, "Forecast generated for " + hours + " hours");
+		result.setForecasts(Map.of("m", values));
+		result.setIntervals(Map.of("m", bands));
+		result.setTimestamps(timestamps);
+		return result;
+	}
+}
@@ -0,0 +1,64 @@
+package com.electricity.forecast.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiveSeriesTest {
+
+	private static final long HOUR = LiveSeries.HOUR_MILLIS;
+
+	@Test
+	void aggregatesReadingsIntoClosedHoursAndRunningStats() {
+		LiveSeries live = new LiveSeries(4, 8);
+		long start = 1000 * HOUR;
+		live.append(start, 10);
+		live.append(start + HOUR / 2, 20);
+		live.append(start + HOUR, 30);
+		// Muộn hơn giờ đang gom: chỉ vào thống kê
+		live.append(start + HOUR / 4, 40);
+		live.append(start + 3 * HOUR, 50);
+
+		assertEquals(15, live.hourValue(1000), 1e-12);
+		assertEquals(30, live.hourValue(1001), 1e-12);
+		assertTrue(Double.isNaN(live.hourValue(1002)));
+		assertEquals(1001, live.getLatestClosedHour());
+
+		LiveSeries.Stats stats = live.getStats();
+		assertEquals(5, stats.count());
+		assertEquals(1, stats.late());
+		assertEquals(30, stats.mean(), 1e-12);
+		assertEquals(Math.sqrt(250), stats.std(), 1e-12);
+		assertEquals(50, stats.lastValue());
+
+		// Vòng đệm 4 ô: chỉ còn 4 số đo mới nhất, mới nhất trước
+		List<Map<String, Object>> recent = live.recent(10);
+		assertEquals(4, recent.size());
+		assertEquals(50.0, recent.get(0).get("value"));
+		assertEquals(20.0, recent.get(3).get("value"));
+
+		// Ngữ cảnh theo giờ: đuôi dữ liệu huấn luyện, rồi giờ trực tiếp; giờ thiếu lấy giá trị trước
+		LiveSeries.Baseline base = new LiveSeries.Baseline(1, "load", 0, 1, 999, new double[] {7, 8});
+		assertArrayEquals(new double[] {7, 8, 15, 30, 30}, live.context(base, 1002, 5));
+	}
+
+	@Test
+	void flagsReadingsOutsideTheReferenceInterval() {
+		LiveSeries live = new LiveSeries(16, 8);
+		double[][] bands = {{90, 95}, {100, 100}, {110, 105}};
+		live.setForecast(new LiveSeries.Forecast(500, "lstm", Map.of("lstm", new double[] {100, 100}),
+				Map.of("lstm", bands), Map.of(), 1, 1, 0, 0));
+
+		assertEquals(LiveSeries.INSIDE, live.append(500 * HOUR, 100));
+		assertEquals(LiveSeries.ABOVE, live.append(500 * HOUR + 10, 111));
+		assertEquals(LiveSeries.BELOW, live.append(501 * HOUR, 94));
+		// Ngoài horizon của dự báo: không gắn cờ
+		assertEquals(LiveSeries.INSIDE, live.append(502 * HOUR, 1_000));
+
+		LiveSeries.Flag flag = live.describe(501 * HOUR, 94, LiveSeries.BELOW);
+		assertEquals(95, flag.lower());
+		assertEquals(105, flag.upper());
+	}
+}
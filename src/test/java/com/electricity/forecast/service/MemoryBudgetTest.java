@@ -0,0 +1,85 @@
+package com.electricity.forecast.service;
+
+import com.electricity.forecast.engine.SeriesColumn;
+import com.electricity.forecast.model.DataModel;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemoryBudgetTest {
+
+	private static final long MB = 1024 * 1024;
+
+	private final Map<String, ForecastSnapshot> disk = new HashMap<>();
+
+	private final WorkspaceManager manager = new WorkspaceManager(new WorkspaceManager.SnapshotStore() {
+		@Override
+		public void save(String id, ForecastSnapshot snapshot) {
+			disk.put(id, snapshot);
+		}
+
+		@Override
+		public ForecastSnapshot load(String id) {
+			return disk.get(id);
+		}
+
+		@Override
+		public void delete(String id, ForecastSnapshot current) {
+			disk.remove(id);
+		}
+	}, 1024 * MB, 1, 3_600_000, 8, 600, 100);
+
+	@Test
+	void dropsRawCopiesBeforeSpillingColdWorkspaces() throws Exception {
+		load("cold", 4 * MB, 2 * MB);
+		load("warm", 4 * MB, 2 * MB);
+		MemoryBudget budget = new MemoryBudget(14 * MB, 0, manager);
+		assertEquals(12 * MB, budget.usedBytes());
+
+		// Bỏ bản thô của "cold" là đủ chỗ
+		MemoryBudget.Reservation small = budget.reserve(3 * MB, "test", null);
+		try {
+			assertNull(manager.getActive().stream().filter(w -> w.getId().equals("cold")).findFirst().get()
+					.getSnapshot().getRawData());
+			assertEquals(2, manager.getActive().size());
+		} finally {
+			small.close();
+		}
+
+		// Cần nhiều hơn: bỏ bản thô còn lại rồi ghi workspace ít dùng nhất ra đĩa
+		MemoryBudget.Reservation large = budget.reserve(9 * MB, "test", null);
+		try {
+			assertEquals(1, manager.getActive().size());
+			assertTrue(disk.containsKey("cold"));
+			assertEquals(1, budget.getSpilledCount());
+		} finally {
+			large.close();
+		}
+
+		assertThrows(MemoryBudget.MemoryBudgetExceededException.class, () -> budget.reserve(15 * MB, "test", null));
+		assertEquals(1, budget.getRejectedCount());
+	}
+
+	/**
+	 * Workspace có dữ liệu với bản thô chiếm {@code rawBytes} theo ước lượng của MemoryBudget
+	 */
+	private void load(String id, long processedBytes, long rawBytes) throws InterruptedException {
+		List<Map<String, Object>> raw = rows(rawBytes);
+		List<Map<String, Object>> processed = rows(processedBytes);
+		Workspace workspace = manager.acquire(id);
+		workspace.update(s -> s.withDataset(new DataModel(), raw, processed, SeriesColumn.empty(), Map.of(), null,
+				processedBytes + rawBytes));
+		workspace.release();
+		Thread.sleep(5);
+	}
+
+	private static List<Map<String, Object>> rows(long bytes) {
+		// estimateRows: 64 + 80 * số cột cho mỗi dòng; một dòng một cột = 144 byte
+		List<Map<String, Object>> rows = new ArrayList<>();
+		Map<String, Object> row = Map.of("value", 1.0);
+		for (long i = 0; i < bytes / 144; i++) rows.add(row);
+		return rows;
+	}
+}
@@ -0,0 +1,42 @@
+package com.electricity.forecast.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineProfilerTest {
+
+	@Test
+	void recordsStagesAndKeepsNewestRuns() {
+		PipelineProfiler profiler = new PipelineProfiler();
+		ReflectionTestUtils.setField(profiler, "capacity", 3);
+		profiler.init();
+
+		for (int i = 0; i < 5; i++) {
+			PipelineTrace trace = profiler.start(i % 2 == 0 ? "upload" : "train", "default");
+			int size = trace.stage("allocate", () -> new double[100_000].length);
+			assertEquals(100_000, size);
+			assertThrows(IllegalStateException.class, () -> trace.stage("fail", () -> {
+				throw new IllegalStateException("boom");
+			}));
+			profiler.finish(trace);
+		}
+
+		List<Map<String, Object>> runs = profiler.recent(null, 10);
+		assertEquals(3, runs.size());
+		assertEquals(4L, runs.get(0).get("id"));
+		assertEquals(2L, runs.get(2).get("id"));
+		assertEquals(2, profiler.recent("upload", 10).size());
+
+		@SuppressWarnings("unchecked")
+		List<Map<String, Object>> stages = (List<Map<String, Object>>) runs.get(0).get("stages");
+		assertEquals("allocate", stages.get(0).get("name"));
+		long allocated = (Long) stages.get(0).get("allocatedBytes");
+		assertTrue(allocated == -1 || allocated >= 800_000);
+		assertEquals(true, stages.get(1).get("failed"));
+	}
+}
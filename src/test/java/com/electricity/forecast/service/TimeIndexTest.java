@@ -0,0 +1,62 @@
+package com.electricity.forecast.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeIndexTest {
+
+	private static Map<String, Object> row(LocalDateTime timestamp) {
+		Map<String, Object> row = new HashMap<>();
+		if (timestamp != null) row.put("timestamp", timestamp);
+		return row;
+	}
+
+	@Test
+	void boundsSelectInclusiveRange() {
+		LocalDateTime start = LocalDateTime.of(2023, 1, 1, 0, 0);
+		List<Map<String, Object>> data = new ArrayList<>();
+		for (int h = 0; h < 100; h++) data.add(row(start.plusHours(h)));
+		TimeIndex index = TimeIndex.build(data);
+
+		long from = TimeIndex.toEpochSecond(start.plusHours(10));
+		long to = TimeIndex.toEpochSecond(start.plusHours(20));
+		assertEquals(10, index.lowerBound(from));
+		assertEquals(21, index.upperBound(to));
+		assertEquals(10, index.lowerBound(from - 1800));
+		assertEquals(0, index.lowerBound(Long.MIN_VALUE));
+		assertEquals(100, index.upperBound(Long.MAX_VALUE));
+	}
+
+	@Test
+	void skipsRowsWithoutTimestampAndKeepsOrder() {
+		LocalDateTime start = LocalDateTime.of(2023, 1, 1, 0, 0);
+		List<Map<String, Object>> data = List.of(
+			row(start.plusHours(2)), row(null), row(start), row(start.plusHours(1)));
+		TimeIndex index = TimeIndex.build(data);
+
+		assertEquals(3, index.size());
+		assertEquals(2, index.rowAt(0));
+		assertEquals(3, index.rowAt(1));
+		assertEquals(0, index.rowAt(2));
+	}
+
+	@Test
+	void appendingToAnOlderIndexDoesNotChangeNewerOnes() {
+		LocalDateTime start = LocalDateTime.of(2023, 1, 1, 0, 0);
+		TimeIndex base = TimeIndex.build(List.of(row(start), row(start.plusHours(1))));
+		TimeIndex first = base.append(List.of(row(start.plusHours(2)), row(start.plusHours(3))), 2);
+		TimeIndex second = first.append(List.of(row(start.plusHours(4))), 4);
+		TimeIndex branch = first.append(List.of(row(start.plusHours(10))), 4);
+
+		assertEquals(2, base.size());
+		assertEquals(4, first.size());
+		assertEquals(4, first.upperBound(Long.MAX_VALUE));
+		assertEquals(TimeIndex.toEpochSecond(start.plusHours(4)), second.secondAt(4));
+		assertEquals(TimeIndex.toEpochSecond(start.plusHours(10)), branch.secondAt(4));
+		assertEquals(4, branch.rowAt(4));
+	}
+}
@@ -0,0 +1,190 @@
+package com.electricity.forecast.service;
+
+import com.electricity.forecast.engine.FittedModel;
+import com.electricity.forecast.engine.SeriesColumn;
+import com.electricity.forecast.model.DataModel;
+import com.electricity.forecast.model.ModelMetrics;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorkspaceTest {
+
+	@Test
+	void replacedOffHeapSeriesIsReleasedOnlyAfterEarlierRequestsFinish() {
+		Workspace workspace = new Workspace("test", ForecastSnapshot.empty(), new ForecastCache(8, 600), 0, 1);
+		SeriesColumn first = SeriesColumn.of(new double[] {1, 2, 3}, true);
+		SeriesColumn second = SeriesColumn.of(new double[] {4, 5}, true);
+		workspace.update(s -> s.withDataset(new DataModel(), List.of(), List.of(), first, Map.of(), null, 0));
+
+		// Request đang đọc snapshot cũ: bộ dữ liệu mới không được trả chuỗi cũ ngay
+		workspace.enter();
+		ForecastSnapshot reading = workspace.getSnapshot();
+		workspace.update(s -> s.withDataset(new DataModel(), List.of(), List.of(), second, Map.of(), null, 0));
+		assertArrayEquals(new double[] {1, 2, 3}, reading.trainingData().values());
+		assertEquals(3, first.offHeapBytes() / Double.BYTES);
+
+		workspace.release();
+		assertEquals(0, first.offHeapBytes());
+		assertThrows(IllegalStateException.class, first::toArray);
+		assertEquals(5.0, second.get(1));
+
+		workspace.close();
+		assertEquals(0, second.offHeapBytes());
+	}
+
+	@Test
+	void replacingDatasetDropsModelsOfThePreviousSeries() {
+		Workspace workspace = new Workspace("test", ForecastSnapshot.empty(), new ForecastCache(8, 600), 0, 1);
+		boolean[] released = {false};
+		FittedModel model = new FittedModel() {
+			public String getEngineKey() { return "test"; }
+			public double[] predict(int horizon) { return new double[horizon]; }
+			public double[] getResiduals() { return new double[0]; }
+			public byte[] serialize() { return new byte[0]; }
+			public ModelMetrics getMetrics() { return new ModelMetrics(); }
+			public void release() { released[0] = true; }
+		};
+		workspace.update(s -> s.withDataset(new DataModel(), List.of(), List.of(), SeriesColumn.empty(), Map.of(), null, 0));
+		ForecastSnapshot trained = workspace.update(s -> s.withModel("test", model, 0));
+
+		ForecastSnapshot replaced = workspace.update(s -> s.withDataset(new DataModel(), List.of(), List.of(),
+				SeriesColumn.empty(), Map.of(), null, 0));
+		assertTrue(replaced.getModels().isEmpty());
+		assertTrue(replaced.getModelVersion() > trained.getModelVersion());
+		assertTrue(released[0]);
+	}
+
+	@Test
+	void fullManagerUnloadsEmptyWorkspacesBeforeRejectingNewIds() throws Exception {
+		Map<String, ForecastSnapshot> disk = new HashMap<>();
+		List<String> deleted = new ArrayList<>();
+		WorkspaceManager manager = new WorkspaceManager(new WorkspaceManager.SnapshotStore() {
+			@Override
+			public void save(String id, ForecastSnapshot snapshot) {
+				disk.put(id, snapshot);
+			}
+
+			@Override
+			public ForecastSnapshot load(String id) {
+				return disk.get(id);
+			}
+
+			@Override
+			public void delete(String id, ForecastSnapshot current) {
+				disk.remove(id);
+				deleted.add(id);
+			}
+		}, 0, 1, 3_600_000, 8, 600, 2);
+
+		Workspace full = manager.acquire("full");
+		full.update(s -> s.withDataset(new DataModel(), List.of(), List.of(Map.of("load", 1.0)),
+				SeriesColumn.of(new double[] {1}, false), Map.of(), null, 0));
+		full.release();
+		manager.acquire("empty").release();
+
+		manager.acquire("other").release();
+		assertFalse(manager.isLoaded("empty"));
+		manager.acquire("other").update(s -> s.withDataset(new DataModel(), List.of(), List.of(Map.of("load", 2.0)),
+				SeriesColumn.of(new double[] {2}, false), Map.of(), null, 0));
+		assertThrows(IllegalArgumentException.class, () -> manager.acquire("another"));
+
+		assertFalse(manager.delete("other"));
+		assertTrue(manager.delete("full"));
+		assertEquals(List.of("full"), deleted);
+		assertFalse(manager.isLoaded("full"));
+	}
+
+	@Test
+	void concurrentAcquiresNeverExceedTheWorkspaceLimit() throws Exception {
+		WorkspaceManager manager = new WorkspaceManager(new WorkspaceManager.SnapshotStore() {
+			@Override
+			public void save(String id, ForecastSnapshot snapshot) {
+			}
+
+			@Override
+			public ForecastSnapshot load(String id) throws IOException {
+				// Giữ các lần mở chồng lên nhau để mọi luồng cùng qua bước kiểm tra giới hạn
+				try {
+					Thread.sleep(200);
+				} catch (InterruptedException e) {
+					throw new InterruptedIOException();
+				}
+				return null;
+			}
+
+			@Override
+			public void delete(String id, ForecastSnapshot current) {
+			}
+		}, 0, 1, 3_600_000, 8, 600, 2);
+
+		ExecutorService pool = Executors.newFixedThreadPool(6);
+		try {
+			List<Future<Workspace>> acquired = new ArrayList<>();
+			for (int i = 0; i < 6; i++) {
+				String id = "ws" + i;
+				acquired.add(pool.submit(() -> manager.acquire(id)));
+			}
+			int admitted = 0;
+			for (Future<Workspace> future : acquired) {
+				try {
+					future.get(10, TimeUnit.SECONDS);
+					admitted++;
+				} catch (ExecutionException e) {
+					assertInstanceOf(IllegalArgumentException.class, e.getCause());
+				}
+			}
+			assertEquals(2, admitted);
+			assertEquals(2, manager.getActive().size());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	void appendedRowsShareTheSeriesAndReachForecasts() {
+		Workspace workspace = new Workspace("test", ForecastSnapshot.empty(), new ForecastCache(8, 600), 0, 1);
+		SeriesColumn trained = SeriesColumn.of(new double[] {1, 2, 3}, true);
+		FittedModel model = new FittedModel() {
+			public String getEngineKey() { return "test"; }
+			public double[] predict(int horizon) {
+				double[] values = new double[horizon];
+				for (int h = 0; h < horizon; h++) values[h] = 4 + h;
+				return values;
+			}
+			public double[] getResiduals() { return new double[0]; }
+			public byte[] serialize() { return new byte[0]; }
+			public ModelMetrics getMetrics() { return new ModelMetrics(); }
+		};
+		workspace.update(s -> s.withDataset(new DataModel(), List.of(), List.of(Map.of("load", 1.0)), trained, Map.of(), null, 0));
+		workspace.update(s -> s.withModel("test", model, 3));
+
+		// Lần nối đầu chép sang vùng lưu có dư chỗ, lần sau chỉ ghi phần đuôi vào cùng vùng lưu
+		SeriesColumn grown = trained.append(new double[] {4});
+		SeriesColumn appended = grown.append(new double[] {5});
+		assertTrue(appended.sharesStorage(grown));
+		assertFalse(appended.sharesStorage(trained));
+		workspace.update(s -> s.withAppended(s.getDataModel(), null, s.getProcessedData(), grown, s.getTimeIndex(),
+				Map.of(), null, 0));
+		ForecastSnapshot current = workspace.update(s -> s.withAppended(s.getDataModel(), null, s.getProcessedData(),
+				appended, s.getTimeIndex(), Map.of(), null, 0));
+		assertEquals(0, trained.offHeapBytes());
+		assertArrayEquals(new double[] {1, 2, 3, 4}, grown.toArray());
+		assertArrayEquals(new double[] {1, 2, 3, 4, 5}, appended.toArray());
+
+		ForecastService service = new ForecastService();
+		ReflectionTestUtils.setField(service, "maxForecastHours", 100);
+		assertEquals(2, current.rowsSinceTraining("test"));
+		assertTrue(service.isStale(current, "test", model));
+		assertArrayEquals(new double[] {6, 7}, service.predictFromEnd(current, "test", model, 2));
+
+		workspace.close();
+		assertEquals(0, appended.offHeapBytes());
+	}
+}